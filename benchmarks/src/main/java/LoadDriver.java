@@ -0,0 +1,383 @@
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class LoadDriver{
+  /*
+    OVERVIEW: LoadDriver esegue un carico misto di letture e scritture su un
+    SocialNetwork (o SocialNetworkWithReport) da più thread e misura, per ogni
+    operazione, il throughput e la distribuzione delle latenze (p50, p99, p999).
+    Ogni thread estrae l'operazione da eseguire con probabilità proporzionale al
+    suo peso nel mix, e i suoi argomenti con un proprio fork del WorkloadGenerator.
+
+    SocialNetwork non è thread-safe: le operazioni vengono eseguite in mutua
+    esclusione su un unico lock, e la latenza misurata comprende l'attesa del
+    lock, come per un client del social condiviso. Le operazioni che falliscono
+    con un'eccezione (ad esempio un like dell'autore al proprio post) sono
+    contate come errori e la loro latenza è registrata comunque.
+
+    Uso: java -cp benchmarks.jar LoadDriver [chiave=valore ...], con chiavi
+      target=social|report, threads, users, posts (iniziali), seconds, warmup (secondi),
+      seed, invariants (frazione di CPU del verificatore a campione dell'invariante,
+      si veda InvariantSampler; 0, il default, lo disattiva) e, per ogni operazione,
+      il suo peso (ad esempio containing=20, addPost=5).
+  */
+  public enum Operation{
+    ADD_POST("addPost", 5), ADD_USER("addUser", 1), LIKE_POST("likePost", 10), REPORT_POST("reportPost", 0),
+    CONTAINS_POST_BY_ID("containsPostById", 20), CONTAINING("containing", 20), WRITTEN_BY("writtenBy", 20),
+    FEED("feed", 20), INFLUENCERS("influencers", 4), GET_MENTIONED_USERS("getMentionedUsers", 0);
+
+    private final String key; // nome dell'operazione sulla riga di comando
+    private final int defaultWeight; // peso nel mix predefinito
+
+    Operation(String key, int defaultWeight){
+      this.key = key;
+      this.defaultWeight = defaultWeight;
+    }
+  }
+
+  private final SocialNetwork social;
+  private final WorkloadGenerator generator;
+  private final Operation operations[]; // operazioni con peso positivo
+  private final int cumulativeWeights[]; // pesi cumulati di operations
+  private final int threads;
+  private final ReentrantLock lock; // serializza le chiamate al social
+  private final AtomicInteger maxPostId; // massimo id di un post del social
+  private final AtomicInteger newUsers; // utenti aggiunti da ADD_USER
+  private volatile int phase; // WARMUP, MEASURE o STOP
+
+  private static final int WARMUP = 0;
+  private static final int MEASURE = 1;
+  private static final int STOP = 2;
+  private static final int FEED_PAGE = 20; // post per pagina del feed
+  private static final int QUERY_WORDS = 2; // parole per ricerca
+
+  /*
+    Il social deve contenere gli utenti di generator e, se il mix comprende
+    LIKE_POST, REPORT_POST o CONTAINS_POST_BY_ID, post con id in [0, maxPostId].
+
+    REQUIRES: social != null && generator != null && mix != null && threads > 0 && maxPostId >= -1 &&
+              forall o. mix.get(o) == null || mix.get(o) >= 0 && exist o. mix.get(o) > 0 &&
+              (mix.get(REPORT_POST) > 0 => social instanceof SocialNetworkWithReport)
+    THROWS: NullPointerException se social, generator o mix sono null
+            IllegalArgumentException se threads o i pesi non rispettano REQUIRES
+    MODIFIES: this
+    EFFECTS: inizializza un driver che esegue il mix su social da threads thread
+  */
+  public LoadDriver(SocialNetwork social, WorkloadGenerator generator, Map<Operation, Integer> mix, int threads, int maxPostId) throws NullPointerException, IllegalArgumentException{
+    if( social == null || generator == null || mix == null ){
+      throw new NullPointerException();
+    }
+    if( threads <= 0 ){
+      throw new IllegalArgumentException("The number of threads must be positive");
+    }
+    List<Operation> selected = new ArrayList<Operation>();
+    List<Integer> cumulative = new ArrayList<Integer>();
+    int total = 0;
+    for(Operation operation: Operation.values()){
+      int weight = mix.getOrDefault(operation, 0);
+      if( weight < 0 ){
+        throw new IllegalArgumentException("The weight of " + operation.key + " is negative");
+      }
+      if( weight > 0 ){
+        total += weight;
+        selected.add(operation);
+        cumulative.add(total);
+      }
+    }
+    if( total == 0 ){
+      throw new IllegalArgumentException("The mix is empty");
+    }
+    if( selected.contains(Operation.REPORT_POST) && social instanceof SocialNetworkWithReport == false ){
+      throw new IllegalArgumentException("reportPost requires a SocialNetworkWithReport");
+    }
+    this.social = social;
+    this.generator = generator;
+    this.operations = selected.toArray(new Operation[0]);
+    this.cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+    this.threads = threads;
+    this.lock = new ReentrantLock();
+    this.maxPostId = new AtomicInteger(maxPostId);
+    this.newUsers = new AtomicInteger();
+  }
+
+  /*
+    EFFECTS: restituisce il mix predefinito (solo letture e scritture di SocialNetwork)
+  */
+  public static Map<Operation, Integer> defaultMix(){
+    Map<Operation, Integer> mix = new EnumMap<Operation, Integer>(Operation.class);
+    for(Operation operation: Operation.values()){
+      mix.put(operation, operation.defaultWeight);
+    }
+    return mix;
+  }
+
+  /*
+    Esegue il carico per warmupMillis millisecondi senza misurarlo, poi per
+    durationMillis millisecondi misurandolo.
+
+    REQUIRES: warmupMillis >= 0 && durationMillis > 0
+    THROWS: IllegalArgumentException se le durate non rispettano REQUIRES
+            InterruptedException se il thread chiamante viene interrotto
+    MODIFIES: this, social
+    EFFECTS: restituisce i risultati delle operazioni del mix, nell'ordine di Operation
+  */
+  public List<Result> run(long warmupMillis, long durationMillis) throws IllegalArgumentException, InterruptedException{
+    if( warmupMillis < 0 || durationMillis <= 0 ){
+      throw new IllegalArgumentException("Invalid durations");
+    }
+    LatencyHistogram histograms[][] = new LatencyHistogram[threads][operations.length];
+    long errors[][] = new long[threads][operations.length];
+    List<Thread> workers = new ArrayList<Thread>();
+    phase = WARMUP;
+    for(int t = 0; t < threads; t++){
+      for(int o = 0; o < operations.length; o++){
+        histograms[t][o] = new LatencyHistogram();
+      }
+      int worker = t;
+      Thread thread = new Thread(() -> work(worker, histograms[worker], errors[worker]), "load-driver-" + t);
+      workers.add(thread);
+    }
+    for(Thread thread: workers){
+      thread.start();
+    }
+    try{
+      Thread.sleep(warmupMillis);
+      phase = MEASURE;
+      long start = System.nanoTime();
+      Thread.sleep(durationMillis);
+      phase = STOP;
+      double seconds = (System.nanoTime() - start) / 1e9;
+      for(Thread thread: workers){
+        thread.join();
+      }
+      List<Result> results = new ArrayList<Result>();
+      for(int o = 0; o < operations.length; o++){
+        LatencyHistogram latencies = new LatencyHistogram();
+        long errorCount = 0;
+        for(int t = 0; t < threads; t++){
+          latencies.add(histograms[t][o]);
+          errorCount += errors[t][o];
+        }
+        results.add(new Result(operations[o], latencies, errorCount, seconds));
+      }
+      return results;
+    }
+    finally{
+      phase = STOP;
+    }
+  }
+
+  /*
+    Ciclo di un thread del carico: registra le latenze solo nella fase MEASURE.
+  */
+  private void work(int worker, LatencyHistogram histograms[], long errors[]){
+    WorkloadGenerator arguments = generator.fork(worker * 0x9E3779B97F4A7C15L + 1);
+    Random random = new Random(worker);
+    int total = cumulativeWeights[cumulativeWeights.length - 1];
+    for(int current = phase; current != STOP; current = phase){
+      int choice = random.nextInt(total);
+      int o = 0;
+      while( cumulativeWeights[o] <= choice ){
+        o += 1;
+      }
+      boolean failed = false;
+      Post post = operations[o] == Operation.ADD_POST ? arguments.nextPost() : null; // la generazione non viene misurata
+      long start = System.nanoTime();
+      try{
+        execute(operations[o], post, arguments, random);
+      }
+      catch(Exception e){
+        failed = true;
+      }
+      long elapsed = System.nanoTime() - start;
+      if( current == MEASURE ){
+        histograms[o].record(elapsed);
+        if( failed ){
+          errors[o] += 1;
+        }
+      }
+    }
+  }
+
+  private void execute(Operation operation, Post post, WorkloadGenerator arguments, Random random) throws Exception{
+    lock.lock();
+    try{
+      switch( operation ){
+        case ADD_POST:
+          social.addPost(post);
+          maxPostId.accumulateAndGet(post.getId(), Math::max);
+          break;
+        case ADD_USER:
+          social.addUser("driver" + newUsers.getAndIncrement());
+          break;
+        case LIKE_POST:
+          social.likePost(random.nextInt(maxPostId.get() + 1), arguments.randomUser());
+          break;
+        case REPORT_POST:
+          ((SocialNetworkWithReport) social).reportPost(random.nextInt(maxPostId.get() + 1), arguments.randomUser());
+          break;
+        case CONTAINS_POST_BY_ID:
+          social.containsPostById(random.nextInt(maxPostId.get() + 1));
+          break;
+        case CONTAINING:
+          social.containing(arguments.randomWords(QUERY_WORDS));
+          break;
+        case WRITTEN_BY:
+          social.writtenBy(arguments.randomAuthor());
+          break;
+        case FEED:
+          social.feed(arguments.randomUser(), null, FEED_PAGE);
+          break;
+        case INFLUENCERS:
+          social.influencers();
+          break;
+        case GET_MENTIONED_USERS:
+          social.getMentionedUsers();
+          break;
+      }
+    }
+    finally{
+      lock.unlock();
+    }
+  }
+
+  /*
+    REQUIRES: social != null && generator != null && posts >= 0 && social contiene
+              gli utenti di generator
+    MODIFIES: social, generator
+    EFFECTS: aggiunge a social posts post di generator e restituisce il massimo id
+             dei post aggiunti (-1 se posts == 0)
+  */
+  public static int populate(SocialNetwork social, WorkloadGenerator generator, int posts) throws UserNotExistException, PostAlreadyExistException, NegativeIdException{
+    List<Post> batch = new ArrayList<Post>();
+    int maxId = -1;
+    for(int i = 0; i < posts; i++){
+      Post post = generator.nextPost();
+      maxId = Math.max(maxId, post.getId());
+      batch.add(post);
+      if( batch.size() == 10000 || i == posts - 1 ){
+        social.addPosts(batch);
+        batch.clear();
+      }
+    }
+    return maxId;
+  }
+
+  public static final class Result{
+    /*
+      OVERVIEW: risultato immutabile di un'operazione del carico
+    */
+    private final Operation operation;
+    private final LatencyHistogram latencies;
+    private final long errors;
+    private final double seconds; // durata della misura
+
+    Result(Operation operation, LatencyHistogram latencies, long errors, double seconds){
+      this.operation = operation;
+      this.latencies = latencies;
+      this.errors = errors;
+      this.seconds = seconds;
+    }
+
+    public Operation getOperation(){
+      return operation;
+    }
+
+    public long getCount(){
+      return latencies.count();
+    }
+
+    public long getErrors(){
+      return errors;
+    }
+
+    public double throughput(){
+      return latencies.count() / seconds;
+    }
+
+    // latenza in nanosecondi del percentile passato
+    public long percentile(double percentile){
+      return latencies.percentile(percentile);
+    }
+
+    public String toString(){
+      return String.format("%-18s %10d %8d %12.0f %10.1f %10.1f %10.1f %10.1f", operation.key, getCount(), errors, throughput(),
+                           percentile(50) / 1e3, percentile(99) / 1e3, percentile(99.9) / 1e3, latencies.max() / 1e3);
+    }
+  }
+
+  public static void main(String args[]) throws Exception{
+    String target = "social";
+    int threads = 4;
+    int users = 10000;
+    int posts = 100000;
+    long seconds = 10;
+    long warmup = 3;
+    long seed = 42;
+    double invariants = 0;
+    Map<Operation, Integer> mix = defaultMix();
+    for(String arg: args){
+      String pair[] = arg.split("=", 2);
+      if( pair.length != 2 ){
+        throw new IllegalArgumentException("Expected key=value: " + arg);
+      }
+      switch( pair[0] ){
+        case "target": target = pair[1]; break;
+        case "threads": threads = Integer.parseInt(pair[1]); break;
+        case "users": users = Integer.parseInt(pair[1]); break;
+        case "posts": posts = Integer.parseInt(pair[1]); break;
+        case "seconds": seconds = Long.parseLong(pair[1]); break;
+        case "warmup": warmup = Long.parseLong(pair[1]); break;
+        case "seed": seed = Long.parseLong(pair[1]); break;
+        case "invariants": invariants = Double.parseDouble(pair[1]); break;
+        default:
+          Operation operation = null;
+          for(Operation candidate: Operation.values()){
+            if( candidate.key.equals(pair[0]) ){
+              operation = candidate;
+            }
+          }
+          if( operation == null ){
+            throw new IllegalArgumentException("Unknown key: " + pair[0]);
+          }
+          mix.put(operation, Integer.parseInt(pair[1]));
+      }
+    }
+    SocialNetwork social;
+    if( target.equals("social") ){
+      social = new SocialNetwork();
+    }
+    else if( target.equals("report") ){
+      social = new SocialNetworkWithReport();
+    }
+    else{
+      throw new IllegalArgumentException("Unknown target: " + target);
+    }
+    WorkloadGenerator generator = new WorkloadGenerator(users, seed);
+    for(String username: generator.usernames()){
+      social.addUser(username);
+    }
+    int maxPostId = populate(social, generator, posts);
+    System.out.printf("%s: %d users, %d posts, %d threads, %d s (+%d s warmup)%n", target, users, posts, threads, seconds, warmup);
+    System.out.printf("%-18s %10s %8s %12s %10s %10s %10s %10s%n", "operation", "count", "errors", "ops/s", "p50 us", "p99 us", "p999 us", "max us");
+    LoadDriver driver = new LoadDriver(social, generator, mix, threads, maxPostId);
+    InvariantSampler sampler = null;
+    if( invariants > 0 ){
+      sampler = new InvariantSampler(social, driver.lock, invariants,
+                                     (entity, invariant) -> System.err.println("Invariant violated by " + entity + ": " + invariant));
+      sampler.start();
+    }
+    for(Result result: driver.run(warmup * 1000, seconds * 1000)){
+      System.out.println(result);
+    }
+    if( sampler != null ){
+      sampler.stop();
+      System.out.printf("invariants: %d samples, %d violations%n", sampler.samples(), sampler.violations());
+    }
+  }
+}
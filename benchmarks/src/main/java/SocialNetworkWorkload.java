@@ -0,0 +1,152 @@
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import socialnetwork.jmh.Workload;
+
+public class SocialNetworkWorkload implements Workload{
+  /*
+    OVERVIEW: SocialNetworkWorkload implementa le operazioni dei benchmark
+    (si veda Workload) su un SocialNetworkWithReport popolato in modo
+    pseudo-casuale: il testo di ogni post è composto da WORDS_PER_POST parole
+    di un vocabolario di VOCABULARY parole, i likes di ogni post sono dati da
+    utenti consecutivi (a partire da uno casuale) diversi dall'autore.
+    Gli argomenti delle operazioni di lettura sono scelti ciclando su PICKS
+    indici casuali generati in setUp, per non misurare il costo di Random.
+  */
+  private static final int VOCABULARY = 1000;
+  private static final int WORDS_PER_POST = 5;
+  private static final int PICKS = 1024;
+
+  private SocialNetworkWithReport social;
+  private String users[]; // utenti creati in setUp
+  private int postIds[]; // id dei post creati in setUp
+  private List<Post> posts; // post creati in setUp
+  private List<List<String>> queries; // argomenti di containing
+  private int picks[]; // indici casuali non negativi
+  private int likesPerPost;
+  private Random random;
+  private long nextMillis; // timestamp del prossimo post
+  private int nextPick;
+  private int nextAuthor;
+  private int nextNewUser;
+  private int nextRemoved;
+  private int nextReport;
+
+  public void setUp(int users, int postsPerUser, int likesPerPost, long seed) throws Exception{
+    if( users < 2 || postsPerUser < 1 || likesPerPost < 0 || likesPerPost >= users ){
+      throw new IllegalArgumentException("Invalid workload parameters");
+    }
+    this.social = new SocialNetworkWithReport();
+    this.users = new String[users];
+    this.postIds = new int[users * postsPerUser];
+    this.posts = new ArrayList<Post>(users * postsPerUser);
+    this.likesPerPost = likesPerPost;
+    this.random = new Random(seed);
+    this.nextMillis = 0;
+    this.nextPick = 0;
+    this.nextAuthor = 0;
+    this.nextNewUser = 0;
+    this.nextRemoved = 0;
+    this.nextReport = 0;
+    for(int i = 0; i < users; i++){
+      this.users[i] = "user" + i;
+      social.addUser(this.users[i]);
+    }
+    for(int i = 0; i < postsPerUser; i++){ // i post di utenti diversi si alternano nel tempo
+      for(String author: this.users){
+        Post post = newPost(author);
+        social.addPost(post);
+        postIds[posts.size()] = post.getId();
+        posts.add(post);
+      }
+    }
+    picks = new int[PICKS];
+    queries = new ArrayList<List<String>>(PICKS);
+    for(int i = 0; i < PICKS; i++){
+      picks[i] = random.nextInt(Integer.MAX_VALUE);
+      queries.add(Arrays.asList("w" + random.nextInt(VOCABULARY), "w" + random.nextInt(VOCABULARY)));
+    }
+  }
+
+  public Object addPost() throws Exception{
+    Post post = newPost(users[nextAuthor]);
+    nextAuthor = (nextAuthor + 1) % users.length;
+    social.addPost(post);
+    return post;
+  }
+
+  public Object addUser() throws Exception{
+    String username = "new" + nextNewUser;
+    nextNewUser += 1;
+    social.addUser(username);
+    return username;
+  }
+
+  public Object removeUser() throws Exception{
+    String username = users[nextRemoved];
+    nextRemoved += 1;
+    social.removeUser(username);
+    return username;
+  }
+
+  public Object containsPostById() throws Exception{
+    return social.containsPostById(postIds[nextPick() % postIds.length]);
+  }
+
+  public Object containing() throws Exception{
+    return social.containing(queries.get(nextPick() % PICKS));
+  }
+
+  public Object writtenBy() throws Exception{
+    return social.writtenBy(users[nextPick() % users.length]);
+  }
+
+  public Object guessFollowers() throws Exception{
+    return SocialNetwork.guessFollowers(posts);
+  }
+
+  public Object influencers() throws Exception{
+    return social.influencers();
+  }
+
+  public Object getMentionedUsers() throws Exception{
+    return social.getMentionedUsers();
+  }
+
+  public Object reportPost() throws Exception{ // ogni coppia (post, utente) viene segnalata una sola volta per ciclo
+    int post = nextReport % postIds.length;
+    int user = (nextReport / postIds.length) % users.length;
+    nextReport = (nextReport + 1) % (postIds.length * users.length);
+    return social.reportPost(postIds[post], users[user]);
+  }
+
+  private int nextPick(){
+    int pick = picks[nextPick];
+    nextPick = (nextPick + 1) % PICKS;
+    return pick;
+  }
+
+  /*
+    EFFECTS: restituisce un nuovo post di author, con testo casuale e likesPerPost likes
+  */
+  private Post newPost(String author) throws Exception{
+    StringBuilder text = new StringBuilder();
+    for(int i = 0; i < WORDS_PER_POST; i++){
+      text.append(i == 0 ? "w" : " w").append(random.nextInt(VOCABULARY));
+    }
+    HashSet<String> usersLike = new HashSet<String>();
+    int start = random.nextInt(users.length);
+    for(int i = 0; usersLike.size() < likesPerPost; i++){
+      String username = users[(start + i) % users.length];
+      if( username.equals(author) == false ){
+        usersLike.add(username);
+      }
+    }
+    nextMillis += 1;
+    return new Post(author, text.toString().toCharArray(), new Timestamp(nextMillis), usersLike);
+  }
+}
@@ -0,0 +1,281 @@
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class WorkloadGenerator{
+  /*
+    OVERVIEW: WorkloadGenerator genera utenti e post sintetici con la forma dei
+    grafi sociali reali, riproducibili a partire da un seme:
+    - i followers di ogni utente sono fissati alla costruzione, e il loro numero
+      segue una legge di potenza P(d) ~ d^-followerExponent (pochi utenti molto
+      seguiti, molti utenti poco seguiti);
+    - gli autori dei post sono estratti con una distribuzione di Zipf di
+      esponente authorExponent sugli utenti (0 = uniforme);
+    - ogni follower dell'autore mette like a un post con probabilità
+      likeProbability, per cui il grafo dedotto dal social (utente che mette like
+      -> autore) tende al grafo dei followers;
+    - i timestamp crescono con intervalli esponenziali di media meanGapMillis,
+      divisi per burstFactor durante i picchi di attività (in cui si entra e da
+      cui si esce con probabilità BURST_SWITCH a ogni post);
+    - i testi (al più Post.MAX_CHAR_TEXT - 1 caratteri) sono composti da parole
+      di un vocabolario di vocabulary parole estratte con una distribuzione di
+      Zipf di esponente wordExponent, come nei testi reali.
+
+    La struttura del grafo e le distribuzioni sono immutabili e condivise dai
+    generatori ottenuti con fork, che hanno invece un proprio stato casuale: ogni
+    thread di un carico deve usare un proprio fork, perché un generatore non è
+    thread-safe.
+  */
+  private final String usernames[]; // utenti, "user" + indice
+  private final int followers[][]; // followers[u] = indici dei followers di u
+  private final Zipf authors; // distribuzione degli autori
+  private final Zipf words; // distribuzione delle parole
+  private final String vocabulary[]; // parole, in ordine di frequenza decrescente
+  private final double likeProbability;
+  private final double meanGapMillis;
+  private final double burstFactor;
+  private final Random random;
+  private long millis; // timestamp dell'ultimo post generato
+  private boolean burst; // vero durante un picco di attività
+
+  private static final double BURST_SWITCH = 0.01;
+  private static final long EPOCH = 1577836800000L; // timestamp del primo post (1/1/2020)
+
+  /*
+    Inizializza un generatore con distribuzioni tipiche: followers con
+    esponente 2.1, autori con esponente 1, likes con probabilità 0.05, parole
+    di un vocabolario di 50000 con esponente 1, un post ogni 10 ms in media e
+    picchi 20 volte più intensi.
+
+    REQUIRES: users >= 2
+    THROWS: IllegalArgumentException se users < 2
+  */
+  public WorkloadGenerator(int users, long seed) throws IllegalArgumentException{
+    this(users, seed, 2.1, 1.0, 0.05, 50000, 1.0, 10, 20);
+  }
+
+  /*
+    REQUIRES: users >= 2 && followerExponent > 1 && authorExponent >= 0 &&
+              0 <= likeProbability <= 1 && vocabulary > 0 && wordExponent >= 0 &&
+              meanGapMillis >= 0 && burstFactor >= 1
+    THROWS: IllegalArgumentException se un parametro non rispetta REQUIRES
+    MODIFIES: this
+    EFFECTS: inizializza un generatore con il grafo dei followers estratto a partire da seed
+  */
+  public WorkloadGenerator(int users, long seed, double followerExponent, double authorExponent, double likeProbability,
+                           int vocabulary, double wordExponent, double meanGapMillis, double burstFactor) throws IllegalArgumentException{
+    if( users < 2 || followerExponent <= 1 || authorExponent < 0 || likeProbability < 0 || likeProbability > 1 ||
+        vocabulary <= 0 || wordExponent < 0 || meanGapMillis < 0 || burstFactor < 1 ){
+      throw new IllegalArgumentException("Invalid workload parameters");
+    }
+    this.random = new Random(seed);
+    this.usernames = new String[users];
+    this.followers = new int[users][];
+    for(int u = 0; u < users; u++){
+      usernames[u] = "user" + u;
+      // legge di potenza discreta con grado minimo 1 (inversione della funzione di ripartizione)
+      double degree = Math.pow(1 - random.nextDouble(), -1 / (followerExponent - 1));
+      followers[u] = sample((int) Math.min(users - 1, degree), users, u);
+    }
+    this.authors = new Zipf(users, authorExponent);
+    this.words = new Zipf(vocabulary, wordExponent);
+    this.vocabulary = new String[vocabulary];
+    for(int i = 0; i < vocabulary; i++){
+      this.vocabulary[i] = word(i);
+    }
+    this.likeProbability = likeProbability;
+    this.meanGapMillis = meanGapMillis;
+    this.burstFactor = burstFactor;
+    this.millis = EPOCH;
+    this.burst = false;
+  }
+
+  private WorkloadGenerator(WorkloadGenerator other, long seed){
+    this.usernames = other.usernames;
+    this.followers = other.followers;
+    this.authors = other.authors;
+    this.words = other.words;
+    this.vocabulary = other.vocabulary;
+    this.likeProbability = other.likeProbability;
+    this.meanGapMillis = other.meanGapMillis;
+    this.burstFactor = other.burstFactor;
+    this.random = new Random(seed);
+    this.millis = other.millis;
+    this.burst = false;
+  }
+
+  /*
+    EFFECTS: restituisce un generatore con lo stesso grafo e le stesse distribuzioni
+             di this, ma con uno stato casuale inizializzato con seed
+  */
+  public WorkloadGenerator fork(long seed){
+    return new WorkloadGenerator(this, seed);
+  }
+
+  /*
+    EFFECTS: restituisce la lista degli username degli utenti
+  */
+  public List<String> usernames(){
+    return Arrays.asList(usernames.clone());
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: restituisce uno username estratto con probabilità uniforme
+  */
+  public String randomUser(){
+    return usernames[random.nextInt(usernames.length)];
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: restituisce uno username estratto con la distribuzione degli autori
+  */
+  public String randomAuthor(){
+    return usernames[authors.next(random)];
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: restituisce una lista di count parole estratte con la distribuzione delle parole
+  */
+  public List<String> randomWords(int count){
+    List<String> result = new ArrayList<String>(count);
+    for(int i = 0; i < count; i++){
+      result.add(vocabulary[words.next(random)]);
+    }
+    return result;
+  }
+
+  /*
+    Più fork possono generare post contemporaneamente: gli id sono assegnati dal
+    generatore di Post, che non richiede mutua esclusione.
+
+    MODIFIES: this
+    EFFECTS: restituisce un nuovo post con autore, likes, timestamp e testo estratti
+             con le distribuzioni di this
+  */
+  public Post nextPost(){
+    int author = authors.next(random);
+    HashSet<String> usersLike = new HashSet<String>();
+    int candidates[] = followers[author];
+    if( likeProbability > 0 ){ // salta tra i followers con passi geometrici
+      double logSkip = Math.log(1 - likeProbability);
+      for(int i = skip(logSkip); i < candidates.length; i += 1 + skip(logSkip)){
+        usersLike.add(usernames[candidates[i]]);
+      }
+    }
+    if( random.nextDouble() < BURST_SWITCH ){
+      burst = burst == false;
+    }
+    double gap = -Math.log(1 - random.nextDouble()) * meanGapMillis;
+    millis += (long) (burst ? gap / burstFactor : gap);
+    char text[] = nextText();
+    try{
+      return new Post(usernames[author], text, new Timestamp(millis), usersLike);
+    }
+    catch(TextTooLongException | AuthorCantLikeHimselfException e){ // escluso dalla costruzione
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: restituisce uno stream infinito di post generati con nextPost
+  */
+  public Stream<Post> posts(){
+    return Stream.generate(this::nextPost);
+  }
+
+  /*
+    EFFECTS: restituisce un testo di lunghezza casuale composto da parole del vocabolario
+  */
+  private char[] nextText(){
+    int length = 20 + random.nextInt(Post.MAX_CHAR_TEXT - 20);
+    StringBuilder text = new StringBuilder(length);
+    while( true ){
+      String word = vocabulary[words.next(random)];
+      int next = text.length() == 0 ? word.length() : text.length() + 1 + word.length();
+      if( next > length && text.length() > 0 || next >= Post.MAX_CHAR_TEXT ){
+        break;
+      }
+      if( text.length() > 0 ){
+        text.append(' ');
+      }
+      text.append(word);
+    }
+    return text.toString().toCharArray();
+  }
+
+  /*
+    EFFECTS: restituisce il numero di followers da saltare prima del prossimo like
+  */
+  private int skip(double logSkip){
+    if( logSkip == Double.NEGATIVE_INFINITY ){ // likeProbability == 1
+      return 0;
+    }
+    return (int) Math.min(1 << 30, Math.floor(Math.log(1 - random.nextDouble()) / logSkip)); // evita overflow sommando a i
+  }
+
+  /*
+    REQUIRES: 0 <= count < users && 0 <= excluded < users
+    EFFECTS: restituisce count indici distinti di [0, users) diversi da excluded, in ordine
+             crescente (algoritmo di Floyd)
+  */
+  private int[] sample(int count, int users, int excluded){
+    IntSet chosen = new IntSet();
+    for(int j = users - 1 - count; j < users - 1; j++){
+      int candidate = random.nextInt(j + 1);
+      chosen.add(chosen.contains(candidate) ? j : candidate);
+    }
+    int result[] = new int[count];
+    int size[] = {0};
+    chosen.forEach(index -> result[size[0]++] = index < excluded ? index : index + 1);
+    Arrays.sort(result);
+    return result;
+  }
+
+  /*
+    EFFECTS: restituisce la parola di indice index: una sequenza di lettere
+             tanto più corta quanto più index è piccolo
+  */
+  private static String word(int index){
+    StringBuilder word = new StringBuilder();
+    int value = index;
+    do{
+      word.append((char) ('a' + value % 26));
+      value = value / 26 - 1;
+    }while( value >= 0 );
+    return word.reverse().toString();
+  }
+
+  private static class Zipf{
+    /*
+      OVERVIEW: distribuzione di Zipf su [0, n): P(k) ~ 1 / (k + 1)^exponent,
+      estratta per inversione della funzione di ripartizione
+    */
+    private final double cumulative[];
+
+    Zipf(int n, double exponent){
+      cumulative = new double[n];
+      double total = 0;
+      for(int k = 0; k < n; k++){
+        total += 1 / Math.pow(k + 1, exponent);
+        cumulative[k] = total;
+      }
+      for(int k = 0; k < n; k++){
+        cumulative[k] /= total;
+      }
+    }
+
+    int next(Random random){
+      int index = Arrays.binarySearch(cumulative, random.nextDouble());
+      index = index >= 0 ? index + 1 : -index - 1; // primo k con cumulative[k] > u
+      return Math.min(index, cumulative.length - 1);
+    }
+  }
+}
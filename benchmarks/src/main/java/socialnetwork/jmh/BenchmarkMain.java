@@ -0,0 +1,18 @@
+package socialnetwork.jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkMain{
+  /*
+    Esegue i benchmark con le opzioni JMH passate sulla riga di comando
+    (ad esempio un filtro sui nomi o -p users=1000), aggiungendo sempre il
+    profiler gc, che riporta il tasso di allocazione (gc.alloc.rate.norm,
+    byte allocati per operazione) accanto al throughput.
+  */
+  public static void main(String args[]) throws Exception{
+    new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build()).run();
+  }
+}
@@ -0,0 +1,12 @@
+package socialnetwork.jmh;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+public class FreshState extends WorkloadState{
+  // le modifiche fanno crescere (o svuotano) il social, che viene ricostruito a ogni iterazione
+  @Setup(Level.Iteration)
+  public void setUp() throws Exception{
+    build();
+  }
+}
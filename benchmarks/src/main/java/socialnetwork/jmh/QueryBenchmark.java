@@ -0,0 +1,58 @@
+package socialnetwork.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+  Throughput delle interrogazioni su un social costruito una volta per trial
+  (reportPost modifica solo la mappa delle segnalazioni, che raggiunge presto
+  la dimensione massima).
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark{
+  @Benchmark
+  public Object containsPostById(ReadState state) throws Exception{
+    return state.workload.containsPostById();
+  }
+
+  @Benchmark
+  public Object containing(ReadState state) throws Exception{
+    return state.workload.containing();
+  }
+
+  @Benchmark
+  public Object writtenBy(ReadState state) throws Exception{
+    return state.workload.writtenBy();
+  }
+
+  @Benchmark
+  public Object guessFollowers(ReadState state) throws Exception{
+    return state.workload.guessFollowers();
+  }
+
+  @Benchmark
+  public Object influencers(ReadState state) throws Exception{
+    return state.workload.influencers();
+  }
+
+  @Benchmark
+  public Object getMentionedUsers(ReadState state) throws Exception{
+    return state.workload.getMentionedUsers();
+  }
+
+  @Benchmark
+  public Object reportPost(ReadState state) throws Exception{
+    return state.workload.reportPost();
+  }
+}
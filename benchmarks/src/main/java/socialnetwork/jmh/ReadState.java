@@ -0,0 +1,12 @@
+package socialnetwork.jmh;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+public class ReadState extends WorkloadState{
+  // le letture non modificano il social, che viene costruito una volta sola
+  @Setup(Level.Trial)
+  public void setUp() throws Exception{
+    build();
+  }
+}
@@ -0,0 +1,30 @@
+package socialnetwork.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+  removeUser può essere eseguita solo una volta per utente: ogni iterazione
+  rimuove BATCH utenti da un social appena costruito e ne misura il tempo
+  complessivo (il throughput è BATCH diviso il tempo riportato).
+*/
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = RemoveUserBenchmark.BATCH)
+@Measurement(iterations = 20, batchSize = RemoveUserBenchmark.BATCH)
+@Fork(1)
+public class RemoveUserBenchmark{
+  static final int BATCH = 50; // non più del minimo valore del parametro users
+
+  @Benchmark
+  public Object removeUser(FreshState state) throws Exception{
+    return state.workload.removeUser();
+  }
+}
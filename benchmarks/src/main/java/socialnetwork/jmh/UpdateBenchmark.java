@@ -0,0 +1,32 @@
+package socialnetwork.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+  Throughput degli inserimenti su un social ricostruito a ogni iterazione;
+  addPost comprende la costruzione del post (testo e likes casuali).
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateBenchmark{
+  @Benchmark
+  public Object addPost(FreshState state) throws Exception{
+    return state.workload.addPost();
+  }
+
+  @Benchmark
+  public Object addUser(FreshState state) throws Exception{
+    return state.workload.addUser();
+  }
+}
@@ -0,0 +1,50 @@
+package socialnetwork.jmh;
+
+public interface Workload{
+  /*
+    OVERVIEW: Workload descrive le operazioni misurate dai benchmark su un
+    social popolato. Le classi del social sono nel package di default, che non
+    può essere importato da un package con nome (e JMH non accetta benchmark
+    nel package di default): l'implementazione (SocialNetworkWorkload, nel
+    package di default) viene quindi caricata per nome una sola volta, e i
+    benchmark la usano attraverso questa interfaccia, senza reflection nelle
+    operazioni misurate.
+
+    Ogni operazione sceglie i propri argomenti (utenti, post, parole) ciclando
+    su insiemi generati in setUp, e restituisce un risultato da consumare per
+    evitare che il JIT elimini la chiamata.
+  */
+
+  /*
+    REQUIRES: users >= 2 && postsPerUser >= 1 && 0 <= likesPerPost < users
+    MODIFIES: this
+    EFFECTS: crea un social con users utenti, postsPerUser post per utente e
+             likesPerPost likes per post, generati a partire da seed
+  */
+  void setUp(int users, int postsPerUser, int likesPerPost, long seed) throws Exception;
+
+  // aggiunge un nuovo post di un utente esistente, con likesPerPost likes
+  Object addPost() throws Exception;
+
+  // aggiunge un nuovo utente
+  Object addUser() throws Exception;
+
+  // rimuove il prossimo utente creato in setUp (al più users volte dopo ogni setUp)
+  Object removeUser() throws Exception;
+
+  Object containsPostById() throws Exception;
+
+  // cerca i post che contengono una di due parole del vocabolario
+  Object containing() throws Exception;
+
+  Object writtenBy() throws Exception;
+
+  // deduce la rete sociale da tutti i post del social
+  Object guessFollowers() throws Exception;
+
+  Object influencers() throws Exception;
+
+  Object getMentionedUsers() throws Exception;
+
+  Object reportPost() throws Exception;
+}
@@ -0,0 +1,33 @@
+package socialnetwork.jmh;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public abstract class WorkloadState{
+  /*
+    OVERVIEW: stato comune dei benchmark: i parametri della dimensione del
+    social e il Workload su cui vengono misurate le operazioni. Le sottoclassi
+    decidono quando ricostruirlo (una volta per trial per le letture, a ogni
+    iterazione per le operazioni che modificano il social).
+  */
+  private static final String IMPLEMENTATION = "SocialNetworkWorkload";
+  private static final long SEED = 42;
+
+  @Param({"100", "1000"})
+  public int users;
+
+  @Param({"10", "100"})
+  public int postsPerUser;
+
+  @Param({"0", "10"})
+  public int likesPerPost;
+
+  public Workload workload;
+
+  protected void build() throws Exception{
+    workload = (Workload) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+    workload.setUp(users, postsPerUser, likesPerPost, SEED);
+  }
+}
@@ -28,6 +28,10 @@ public class BatteriaTest{
     Post p5 = new Post(username1, txt5, new Timestamp(928391919), new HashSet<String>());
     Post p8 = new Post(username6, txt6, new Timestamp(484929), new HashSet<String>());
     Post p9 = new Post(username7, txt1, new Timestamp(4930291), new HashSet<String>());
+    // Ricerca di parole nel testo: i metacaratteri delle espressioni regolari sono confrontati letteralmente
+    System.out.println("Il post p1 contiene \"NOTTE\": " + p1.doesContainWord("NOTTE"));
+    System.out.println("Il post p1 contiene \"c.mpioni\": " + p1.doesContainWord("c.mpioni"));
+    System.out.println("Il post p3 contiene una tra \"prova\" e \"complesso\": " + p3.doesContainAnyWord("prova", "complesso"));
     boolean repInvPosts = p1.checkRep() && p2.checkRep() && p3.checkRep() && p4.checkRep()
     && p5.checkRep() && p8.checkRep() && p9.checkRep();
     System.out.println("Le rep. inv. dei post sono tutte valide: " + repInvPosts);
@@ -116,6 +120,9 @@ public class BatteriaTest{
     list.add(p4);
     list.add(p5);
     System.out.println(SocialNetwork.guessFollowers(list));
+    System.out.println("La versione parallela produce la stessa mappa: "
+                      + SocialNetwork.guessFollowersParallel(list).equals(SocialNetwork.guessFollowers(list))
+                      + " " + SocialNetwork.guessFollowersParallel(list.stream()).equals(SocialNetwork.guessFollowers(list)));
     list.add(null);
     try{
       System.out.println("\nProvo a chiamare il metodo con una lista contenente null");
@@ -124,6 +131,13 @@ public class BatteriaTest{
     catch (Exception e){
       System.out.println(e);
     }
+    try{
+      System.out.println("\nProvo a chiamare la versione parallela con una lista contenente null");
+      System.out.println(SocialNetwork.guessFollowersParallel(list));
+    }
+    catch (Exception e){
+      System.out.println(e);
+    }
     list.remove(null);
     // METODO 2: List<String> influencers(Map<String, Set<String>> followers)
     System.out.println("\nMETODO 2 - influencers");
@@ -134,6 +148,10 @@ public class BatteriaTest{
     }
     System.out.println("Il risultato della chiamata di influencers:");
     System.out.println(SocialNetwork.influencers(followers));
+    System.out.println("Influencers ricavati dai contatori del social: " + social.influencers());
+    System.out.println("I due risultati contengono gli stessi utenti: "
+                      + new HashSet<>(social.influencers()).equals(new HashSet<>(SocialNetwork.influencers(followers))));
+    System.out.println("I 3 utenti con il margine followers - seguiti più alto: " + social.topInfluencers(3));
     followers.put("UsernameFittizio", new HashSet<>());
     followers.get("UsernameFittizio").add(null);
     try{
@@ -191,6 +209,19 @@ public class BatteriaTest{
     listBadWords.add("testo complesso");
     System.out.println("Bad words: " + listBadWords.toString());
     System.out.println(social.containing(listBadWords));
+    listBadWords.clear();
+    listBadWords.add("campioni");
+    listBadWords.add("notte");
+    System.out.println("Bad words (il post deve comparire una sola volta): " + listBadWords.toString());
+    System.out.println(social.containing(listBadWords));
+    // modificando il testo di un post del social, l'indice delle parole viene aggiornato
+    Post postDaModificare = social.writtenBy(username1).get(1);
+    postDaModificare.editText("Testo modificato".toCharArray());
+    listBadWords.clear();
+    listBadWords.add("MODIFICATO");
+    System.out.println("Bad words dopo la modifica di un post: " + listBadWords.toString());
+    System.out.println(social.containing(listBadWords));
+    System.out.println("Il rep. inv. è vero dopo la modifica del testo: " + social.checkRep());
     String nullString = null;
     listBadWords.add(nullString);
     try{
@@ -210,6 +241,68 @@ public class BatteriaTest{
     tmpCopy.put("utenteCasuale",new HashSet<String>());
     System.out.println("\nLa modifica della copia ha cambiato lo stato interno "
                       + "del social: " + !social_pre.equals(social.toString()));
+    // Likes aggiunti tramite il social e ricerca dei post apprezzati da un utente
+    System.out.println("\nPost cui " + username3 + " ha messo like: " + social.likedBy(username3));
+    System.out.println(username6 + " mette like al post " + p3.getId() + ": " + social.likePost(p3.getId(), username6));
+    System.out.println(username6 + " segue ora " + social.getUserFollowsMap().get(username6)
+                      + " e il rep. inv. è: " + social.checkRep());
+    try{
+      System.out.println("\nProvo a far mettere like ad un autore su un suo post tramite il social");
+      social.likePost(p3.getId(), username3); // Lancia AuthorCantLikeHimselfException
+    }
+    catch(Exception e){
+      System.out.println(e);
+    }
+    // Le istantanee del social sono immutabili: le modifiche successive non sono visibili
+    SocialNetworkSnapshot istantanea = social.snapshot();
+    Map<String,Set<String>> followsPreModifica = social.getUserFollowsMap();
+    social.addUser("utenteSnapshot");
+    System.out.println("\nL'istantanea (versione " + istantanea.getVersion() + ") contiene l'utente aggiunto "
+                      + "dopo la sua creazione: " + istantanea.containsUser("utenteSnapshot")
+                      + "; versione corrente: " + social.snapshot().getVersion());
+    System.out.println("Le relazioni dell'istantanea coincidono con quelle del social prima della modifica: "
+                      + istantanea.getUserFollowsMap().equals(followsPreModifica));
+    social.removeUser("utenteSnapshot");
+    // Ricerca di un post tramite id
+    System.out.println("\nRecupero il post con id " + p3.getId() + ": " + social.getPostById(p3.getId()));
+    try{
+      System.out.println("\nProvo a recuperare un post che non esiste");
+      social.getPostById(100); // Lancia PostDoesNotExist
+    }
+    catch(Exception e){
+      System.out.println(e);
+    }
+    // Feed di un utente, paginato con un cursore
+    List<Post> primaPagina = social.feed(username3, null, 1);
+    System.out.println("\nPrima pagina del feed di " + username3 + ": " + primaPagina);
+    System.out.println("Pagina successiva: " + social.feed(username3, FeedCursor.after(primaPagina.get(0)), 10));
+    // Ricerca dei post in un intervallo di tempo
+    Timestamp inizio = new Timestamp(0);
+    Timestamp fine = new Timestamp(200000000);
+    System.out.println("\nPost pubblicati tra " + inizio + " e " + fine + ": " + social.postsBetween(inizio, fine));
+    System.out.println("Post dello stesso intervallo che contengono \"prova\": "
+                      + social.containing(Arrays.asList("prova"), inizio, fine));
+    // Salvataggio e caricamento di un'istantanea binaria del social
+    java.nio.file.Path fileIstantanea = java.nio.file.Files.createTempFile("social", ".snapshot");
+    social.saveSnapshot(fileIstantanea);
+    SocialNetwork socialCaricato = SocialNetwork.loadSnapshot(fileIstantanea);
+    System.out.println("\nIl social caricato dall'istantanea coincide con l'originale: "
+                      + (socialCaricato.checkRep() && socialCaricato.toString().equals(social.toString())));
+    java.nio.file.Files.delete(fileIstantanea);
+    // Inserimento di un lotto di post: o vengono aggiunti tutti o nessuno
+    Post p12 = new Post(username4, txt3, new Timestamp(500000000), new HashSet<String>(Arrays.asList(username1)));
+    Post p13 = new Post(username4, txt4, new Timestamp(500000001), new HashSet<String>(Arrays.asList("nessuno")));
+    try{
+      social.addPosts(Arrays.asList(p12, p13)); // Lancia UserNotExistException
+    }
+    catch(Exception e){
+      System.out.println("\n" + e);
+    }
+    System.out.println("Il primo post del lotto non è stato aggiunto: " + (social.containsPostById(p12.getId()) == false));
+    Post p14 = new Post(username4, txt4, new Timestamp(500000001), new HashSet<String>(Arrays.asList(username2)));
+    social.addPosts(Arrays.asList(p12, p14));
+    System.out.println("Post di " + username4 + " dopo l'inserimento del lotto: " + social.writtenBy(username4));
+    System.out.println("Followers di " + username4 + ": " + social.getUserFollowersMap().get(username4));
     // ALCUNI TEST DELLA SOTTO CLASSE CON I REPORT
     System.out.println("\nAlcuni test con la sottoclasse che gestisce i report");
     SocialNetworkWithReport social2 = new SocialNetworkWithReport();
@@ -249,5 +342,257 @@ public class BatteriaTest{
     catch(Exception e){
       System.out.println(e);
     }
+    // ALCUNI TEST DELLA CODA DI MODERAZIONE
+    System.out.println("\nAlcuni test della coda di moderazione");
+    social2.setModerationListener((idPost, reports) -> System.out.println("Post " + idPost + " nascosto con " + reports + " segnalazioni"));
+    social2.setHideThreshold(4);
+    social2.reportPost(p3.getId(), username1);
+    social2.reportPost(p3.getId(), username2);
+    social2.reportPost(1, username5); // il post 1 raggiunge la soglia
+    String autoreSegnalato = social2.getPostById(1).getAuthor();
+    System.out.println("Post più segnalati: " + social2.mostReported(2));
+    System.out.println("Post con almeno 2 segnalazioni: " + social2.reportedAtLeast(2));
+    System.out.println("Segnalazioni ricevute da " + autoreSegnalato + ": " + social2.reportsByAuthor(autoreSegnalato));
+    System.out.println("Il post nascosto è escluso dai post del suo autore: "
+                      + social2.writtenBy(autoreSegnalato).stream().noneMatch(post -> post.getId() == 1));
+    social2.unhidePost(1);
+    System.out.println("Il post è di nuovo visibile: " + (social2.isHidden(1) == false));
+    // ALCUNI TEST DEL SOCIAL CON REGISTRO DELLE MODIFICHE
+    System.out.println("\nAlcuni test con il social che registra le modifiche su disco");
+    java.nio.file.Path fileRegistro = java.nio.file.Files.createTempFile("social", ".log");
+    DurableSocialNetwork social4 = new DurableSocialNetwork(fileRegistro);
+    social4.addUser(username1);
+    social4.addUser(username2);
+    social4.addUser(username3);
+    Post p10 = new Post(username1, txt1, new Timestamp(392929391), new HashSet<String>());
+    Post p11 = new Post(username2, txt2, new Timestamp(29328912), new HashSet<String>(Arrays.asList(username1)));
+    social4.addPost(p10);
+    social4.addPost(p11);
+    social4.likePost(p10.getId(), username3);
+    social4.reportPost(p11.getId(), username3);
+    social4.removeUser(username2);
+    social4.close(); // simulo il riavvio: il social viene ricostruito dal registro
+    DurableSocialNetwork social5 = new DurableSocialNetwork(fileRegistro);
+    System.out.println("Stato ripristinato uguale all'originale: " + social5.toString().equals(social4.toString()));
+    System.out.println("Segnalazioni ripristinate: " + social5.getReportedPostMap());
+    social5.compact();
+    social5.close();
+    social5 = new DurableSocialNetwork(fileRegistro);
+    System.out.println("Stato dopo la compattazione uguale all'originale: " + social5.toString().equals(social4.toString()));
+    social5.close();
+    java.nio.file.Files.delete(fileRegistro);
+    // ALCUNI TEST DELL'IMPORTAZIONE DI POST DA FILE
+    System.out.println("\nAlcuni test dell'importazione di post da file");
+    PostIngestion importazione = new PostIngestion(2, 2, 64); // blocchi piccoli per attraversare più blocchi
+    java.nio.file.Path fileTesto = java.nio.file.Files.createTempFile("posts", ".txt");
+    java.nio.file.Path fileBinario = java.nio.file.Files.createTempFile("posts", ".bin");
+    List<Post> daImportare = Arrays.asList(
+      new Post(username1, txt1, new Timestamp(392929391), new HashSet<String>()),
+      new Post(username2, txt2, new Timestamp(29328912), new HashSet<String>(Arrays.asList(username1, username3))),
+      new Post(username3, txt3, new Timestamp(39392293), new HashSet<String>(Arrays.asList(username1))),
+      new Post("nessuno", txt4, new Timestamp(29328913), new HashSet<String>())); // autore inesistente
+    List<String> righe = new ArrayList<>();
+    try(java.io.DataOutputStream out = new java.io.DataOutputStream(java.nio.file.Files.newOutputStream(fileBinario))){
+      for(Post post: daImportare){
+        righe.add(PostIngestion.toLine(post));
+        PostIngestion.writeRecord(out, post);
+      }
+    }
+    java.nio.file.Files.write(fileTesto, righe);
+    SocialNetwork social6 = new SocialNetwork();
+    SocialNetwork social7 = new SocialNetwork();
+    for(String utente: Arrays.asList(username1, username2, username3)){
+      social6.addUser(utente);
+      social7.addUser(utente);
+    }
+    IngestionReport resoconto = importazione.ingest(fileTesto, PostIngestion.Format.TEXT, social6);
+    System.out.println("Post letti dal file di testo: " + resoconto.getPostsRead() + ", aggiunti: "
+                      + resoconto.getPostsAdded() + ", rifiutati: " + resoconto.getPostsRejected());
+    resoconto = importazione.ingest(fileBinario, PostIngestion.Format.BINARY, social7);
+    System.out.println("Post letti dal file binario: " + resoconto.getPostsRead() + ", aggiunti: "
+                      + resoconto.getPostsAdded() + ", rifiutati: " + resoconto.getPostsRejected());
+    System.out.println("I due social coincidono: " + social6.toString().equals(social7.toString()));
+    System.out.println("Il rep. inv. del social è vero dopo l'importazione: " + social6.checkRep());
+    java.nio.file.Files.write(fileTesto, Arrays.asList("1\tuser\tnon è un numero\t0\t\ttesto"));
+    try{
+      importazione.ingest(fileTesto, PostIngestion.Format.TEXT, social6);
+    }
+    catch(java.io.IOException e){
+      System.out.println(e.getMessage());
+    }
+    java.nio.file.Files.delete(fileTesto);
+    java.nio.file.Files.delete(fileBinario);
+    // ALCUNI TEST DELLE METRICHE JMX
+    System.out.println("\nAlcuni test delle metriche esposte via JMX");
+    javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+    javax.management.ObjectName nomeJmx = SocialNetworkMetrics.register("social6", social6);
+    System.out.println("Utenti, post e relazioni di follow di social6: " + server.getAttribute(nomeJmx, "Users") + ", "
+                      + server.getAttribute(nomeJmx, "Posts") + ", " + server.getAttribute(nomeJmx, "Edges"));
+    SocialNetworkMetrics.unregister("social6");
+    System.out.println("Registrazione rimossa: " + (server.isRegistered(nomeJmx) == false));
+    // ALCUNI TEST DEL SOCIAL CONCORRENTE
+    System.out.println("\nAlcuni test con il social concorrente");
+    ConcurrentSocialNetwork social3 = new ConcurrentSocialNetwork();
+    List<String> utentiConcorrenti = Arrays.asList(username1, username2, username3, username4, username5, username6);
+    List<Thread> threads = new ArrayList<>();
+    for(String utente: utentiConcorrenti){ // ogni thread inserisce un utente
+      Thread thread = new Thread(() -> {
+        try{ social3.addUser(utente); }
+        catch(Exception e){ System.out.println(e); }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for(Thread thread: threads){
+      thread.join();
+    }
+    threads.clear();
+    for(Post post: list){ // ogni thread inserisce un post
+      Thread thread = new Thread(() -> {
+        try{ social3.addPost(post); }
+        catch(Exception e){ System.out.println(e); }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for(Thread thread: threads){
+      thread.join();
+    }
+    System.out.println("Il rep. inv. del social concorrente è vero dopo gli inserimenti: " + social3.checkRep());
+    System.out.println("Le relazioni di follow coincidono con quelle del social sequenziale: "
+                      + social3.getUserFollowsMap().equals(social2.getUserFollowsMap()));
+    social3.removeUser(username3);
+    System.out.println("Il rep. inv. del social concorrente è vero dopo la rimozione: " + social3.checkRep());
+    // ALCUNI TEST DI UN POST CON MIGLIAIA DI LIKES
+    // i likes memorizzati passano da array a bitmap compressa e, con le rimozioni, di nuovo ad array
+    SocialNetwork socialFans = new SocialNetwork();
+    socialFans.addUser(username1);
+    Post postPopolare = new Post(username1, txt1, new Timestamp(0), new HashSet<String>());
+    socialFans.addPost(postPopolare);
+    for(int i = 0; i < 5000; i++){
+      socialFans.addUser("fan" + i);
+      socialFans.likePost(postPopolare.getId(), "fan" + i);
+    }
+    for(int i = 0; i < 5000; i += 2){
+      socialFans.removeUser("fan" + i);
+    }
+    System.out.println("\nLikes del post popolare dopo la rimozione di metà dei fan: "
+                      + socialFans.getPostById(postPopolare.getId()).getUsersLike().size()
+                      + ", followers di " + username1 + ": " + socialFans.getUserFollowersMap().get(username1).size()
+                      + ", rep. inv.: " + socialFans.checkRep());
+    Post postPopolare2 = new Post(username1, txt2, new Timestamp(1), new HashSet<String>());
+    socialFans.addPost(postPopolare2);
+    for(int i = 3; i < 5000; i += 6){ // i fan rimasti il cui numero è multiplo di 3
+      socialFans.likePost(postPopolare2.getId(), "fan" + i);
+    }
+    System.out.println("Utenti che hanno messo like ad entrambi i post popolari: "
+                      + socialFans.coLikers(postPopolare.getId(), postPopolare2.getId()).size()
+                      + ", contiene fan3: " + socialFans.coLikers(postPopolare.getId(), postPopolare2.getId()).contains("fan3"));
+    // ALCUNI TEST DELLE VISTE IN SOLA LETTURA DEL POST
+    System.out.println("\nAlcuni test delle viste in sola lettura del post");
+    CharSequence vistaTesto = p1.getTextView();
+    System.out.println("Vista del testo di p1: " + vistaTesto + " (" + vistaTesto.length() + " caratteri, prima parola: "
+                      + vistaTesto.subSequence(0, 5) + ")");
+    System.out.println("Millisecondi del timestamp di p1 coerenti con getTimestamp: "
+                      + (p1.getEpochMillis() == p1.getTimestamp().getTime() && p1.getNanos() == p1.getTimestamp().getNanos()));
+    System.out.println("Likes di p1: " + p1.likeCount() + ", la vista contiene " + username2 + ": "
+                      + p1.getUsersLikeView().contains(username2));
+    try{
+      System.out.println("\nProvo a modificare la vista dei likes");
+      p1.getUsersLikeView().add(username6); // Lancia UnsupportedOperationException
+    }
+    catch(Exception e){
+      System.out.println(e);
+    }
+    // ALCUNI TEST DELLA VERIFICA INCREMENTALE E A CAMPIONE DELL'INVARIANTE
+    System.out.println("\nAlcuni test della verifica incrementale e a campione dell'invariante");
+    List<String> violazioni = new ArrayList<>();
+    SocialNetwork socialVerificato = new SocialNetwork();
+    socialVerificato.setInvariantListener((entity, invariant) -> violazioni.add(entity + ": " + invariant));
+    socialVerificato.addUser(username1);
+    socialVerificato.addUser(username2);
+    socialVerificato.addUser(username3);
+    Post postVerificato = new Post(username1, txt1, new Timestamp(0), new HashSet<String>(Arrays.asList(username2)));
+    socialVerificato.addPost(postVerificato);
+    socialVerificato.likePost(postVerificato.getId(), username3);
+    socialVerificato.getPostById(postVerificato.getId()).editText("Ciao mondo, testo modificato".toCharArray());
+    socialVerificato.removeUser(username2);
+    System.out.println("Violazioni trovate dalla verifica incrementale: " + violazioni);
+    java.util.concurrent.locks.ReentrantLock lockVerificato = new java.util.concurrent.locks.ReentrantLock();
+    InvariantSampler campionatore = new InvariantSampler(socialVerificato, lockVerificato, 0.5, (entity, invariant) -> {});
+    campionatore.start();
+    while( campionatore.samples() < 100 ){
+      Thread.sleep(1);
+    }
+    campionatore.stop();
+    System.out.println("Almeno 100 campioni verificati, violazioni trovate: " + campionatore.violations());
+    // ALCUNI TEST DEL GENERATORE DEGLI ID DEI POST
+    System.out.println("\nAlcuni test del generatore degli id dei post");
+    Set<Integer> idConcorrenti = Collections.synchronizedSet(new HashSet<Integer>());
+    List<Thread> creatori = new ArrayList<>();
+    for(int i = 0; i < 8; i++){ // ogni thread crea 1000 post
+      Thread thread = new Thread(() -> {
+        try{
+          for(int j = 0; j < 1000; j++){
+            idConcorrenti.add(new Post(username1, txt1, new Timestamp(0), new HashSet<String>()).getId());
+          }
+        }
+        catch(Exception e){ System.out.println(e); }
+      });
+      creatori.add(thread);
+      thread.start();
+    }
+    for(Thread thread: creatori){
+      thread.join();
+    }
+    System.out.println("Id distinti dei post creati da 8 thread: " + idConcorrenti.size());
+    BlockIdGenerator generatore = new BlockIdGenerator(4);
+    System.out.println("Primi id del generatore: " + generatore.nextId() + ", " + generatore.nextId());
+    generatore.reserve(Integer.MAX_VALUE - 2);
+    System.out.println("Id dopo reserve: " + generatore.nextId() + ", " + generatore.nextId());
+    try{
+      System.out.println("\nProvo ad ottenere un id dopo averli esauriti");
+      generatore.nextId(); // Lancia IllegalStateException
+    }
+    catch(Exception e){
+      System.out.println(e);
+    }
+    // ALCUNI TEST DEL SOCIAL PARTIZIONATO
+    System.out.println("\nAlcuni test del social partizionato");
+    ShardServer serverShard = new ShardServer(new SocialNetwork(), 0);
+    serverShard.start();
+    ShardedSocialNetwork socialPartizionato = new ShardedSocialNetwork(Arrays.asList(new LocalShard(), new LocalShard(), new RemoteShard("localhost", serverShard.getPort())));
+    SocialNetwork socialUnico = new SocialNetwork();
+    for(String username: Arrays.asList(username1, username2, username3, username4, username5)){
+      socialPartizionato.addUser(username);
+      socialUnico.addUser(username);
+    }
+    List<Post> postPartizionati = Arrays.asList(
+      new Post(username1, txt1, new Timestamp(10), new HashSet<String>(Arrays.asList(username2, username3, username4))),
+      new Post(username2, txt6, new Timestamp(20), new HashSet<String>(Arrays.asList(username1, username5))),
+      new Post(username5, "Un saluto a @Jomsviking".toCharArray(), new Timestamp(30), new HashSet<String>(Arrays.asList(username1))));
+    for(Post post: postPartizionati){
+      socialPartizionato.addPost(post);
+      socialUnico.addPost(post);
+    }
+    socialPartizionato.likePost(postPartizionati.get(2).getId(), username4);
+    socialUnico.likePost(postPartizionati.get(2).getId(), username4);
+    System.out.println("Followers uguali al social non partizionato: " + socialPartizionato.getUserFollowersMap().equals(socialUnico.getUserFollowersMap()));
+    System.out.println("Seguiti uguali al social non partizionato: " + socialPartizionato.getUserFollowsMap().equals(socialUnico.getUserFollowsMap()));
+    System.out.println("Influencers: " + socialPartizionato.influencers() + ", uguali al social non partizionato: " + socialPartizionato.influencers().equals(socialUnico.influencers()));
+    System.out.println("Utenti menzionati: " + socialPartizionato.getMentionedUsers());
+    System.out.println("Post che contengono \"testo\" trovati: " + socialPartizionato.containing(Arrays.asList("testo")).size());
+    socialPartizionato.removeUser(username1);
+    socialUnico.removeUser(username1);
+    System.out.println("Followers uguali dopo la rimozione di " + username1 + ": " + socialPartizionato.getUserFollowersMap().equals(socialUnico.getUserFollowersMap()));
+    try{
+      System.out.println("\nProvo ad aggiungere un utente già presente nel social partizionato");
+      socialPartizionato.addUser(username2); // Lancia UserAlreadyExistException
+    }
+    catch(Exception e){
+      System.out.println(e);
+    }
+    socialPartizionato.close();
+    serverShard.close();
   }
 }
@@ -0,0 +1,116 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BlockIdGenerator implements PostIdGenerator{
+  /*
+    OVERVIEW: BlockIdGenerator è un generatore di id senza lock: un contatore
+    atomico condiviso assegna ai thread blocchi di blockSize id consecutivi, e
+    ogni thread assegna gli id del proprio blocco senza sincronizzarsi con gli
+    altri. Il contatore condiviso viene quindi modificato (con compareAndSet)
+    una volta ogni blockSize id, e thread diversi non ricevono mai lo stesso id.
+    Un thread che crea post da solo riceve id consecutivi; con più thread gli
+    id di ognuno sono crescenti, ma non consecutivi, e gli id rimasti nei blocchi
+    dei thread terminati non vengono assegnati.
+    Quando il contatore raggiunge Integer.MAX_VALUE gli id sono esauriti e nextId
+    lancia un'eccezione, invece di ricominciare dagli id negativi.
+
+    IR(c): blockSize > 0 && 0 <= floor.get() <= next.get() <= Integer.MAX_VALUE &&
+           forall b. b è il blocco di un thread => 0 <= b.next <= b.end <= next.get() &&
+           i blocchi di thread diversi sono disgiunti
+  */
+  private final int blockSize; // id assegnati ad un thread per volta
+  private final AtomicInteger next; // primo id non ancora assegnato ad un blocco
+  private final AtomicInteger floor; // id minimo restituibile (si veda reserve)
+  private final ThreadLocal<Block> blocks; // blocco del thread corrente
+
+  private static final int DEFAULT_BLOCK_SIZE = 64;
+
+  /*
+    Intervallo [next, end) degli id ancora disponibili per un thread
+  */
+  private static class Block{
+    private int next;
+    private int end;
+  }
+
+  /*
+    Inizializza un generatore con blocchi di 64 id, a partire da 0
+
+    MODIFIES: this
+  */
+  public BlockIdGenerator(){
+    this(DEFAULT_BLOCK_SIZE);
+  }
+
+  /*
+    REQUIRES: blockSize > 0
+    THROWS: IllegalArgumentException se blockSize <= 0
+    MODIFIES: this
+    EFFECTS: inizializza un generatore con blocchi di blockSize id, a partire da 0
+  */
+  public BlockIdGenerator(int blockSize) throws IllegalArgumentException{
+    if( blockSize <= 0 ){
+      throw new IllegalArgumentException("The block size must be positive");
+    }
+    this.blockSize = blockSize;
+    this.next = new AtomicInteger(0);
+    this.floor = new AtomicInteger(0);
+    this.blocks = ThreadLocal.withInitial(Block::new);
+  }
+
+  /*
+    THROWS: IllegalStateException se gli id sono esauriti
+    MODIFIES: this
+    EFFECTS: restituisce il primo id del blocco del thread corrente, dopo
+             avergli assegnato un nuovo blocco se è esaurito o contiene id
+             minori di quelli riservati con reserve
+  */
+  public int nextId() throws IllegalStateException{
+    Block block = blocks.get();
+    if( block.next == block.end || block.next < floor.get() ){
+      claim(block);
+    }
+    int id = block.next;
+    block.next += 1;
+    return id;
+  }
+
+  /*
+    Gli id restituiti da nextId in seguito sono maggiori o uguali a nextId; un
+    nextId concorrente con reserve può ancora restituire un id minore.
+
+    MODIFIES: this
+    EFFECTS: porta il contatore condiviso, e il minimo restituibile, ad almeno
+             nextId
+  */
+  public void reserve(int nextId){
+    next.accumulateAndGet(nextId, Math::max);
+    floor.accumulateAndGet(nextId, Math::max);
+  }
+
+  /*
+    THROWS: IllegalStateException se gli id sono esauriti
+    MODIFIES: this, block
+    EFFECTS: assegna a block i successivi (al più) blockSize id del contatore condiviso
+  */
+  private void claim(Block block) throws IllegalStateException{
+    while( true ){
+      int start = next.get();
+      if( start == Integer.MAX_VALUE ){
+        throw new IllegalStateException("The post ids are exhausted");
+      }
+      int end = start + Math.min(blockSize, Integer.MAX_VALUE - start);
+      if( next.compareAndSet(start, end) ){
+        block.next = start;
+        block.end = end;
+        return;
+      }
+    }
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    return "BlockIdGenerator[next=" + next.get() + ", blockSize=" + blockSize + "]";
+  }
+}
@@ -0,0 +1,1342 @@
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.List;
+import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.TreeSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.sql.Timestamp;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentSocialNetwork{
+  /*
+    OVERVIEW: ConcurrentSocialNetwork è un tipo di dato astratto mutabile che
+    rappresenta un social network con la stessa specifica di SocialNetwork,
+    ma utilizzabile contemporaneamente da più thread.
+
+    Le strutture dati sono collezioni concorrenti: le operazioni di lettura
+    (writtenBy, containing, feed, likedBy, containsUser, ...) non acquisiscono
+    alcun lock e non vengono mai bloccate dalle scritture; il loro risultato è
+    debolmente consistente, ossia riflette tutte le modifiche completate prima
+    dell'invocazione ed eventualmente parte di quelle in corso.
+    Le scritture acquisiscono i lock (uno per gruppo di utenti, lock striping)
+    degli utenti coinvolti, in ordine crescente di indice per evitare deadlock:
+    addUser quello del nuovo utente, addPost quelli dell'autore e degli utenti che
+    hanno messo like (addPosts quelli di tutti i post del lotto), likePost quelli
+    dell'autore del post e dell'utente, la modifica del testo di un post quello
+    del suo autore. Solo removeUser, i cui likes possono trovarsi nei post di
+    chiunque, acquisisce tutti i lock; grazie alla mappa inversa dei likes visita
+    comunque solo i post dell'utente, quelli cui ha messo like e gli utenti a lui
+    collegati. Lo stato di un utente (post, likes messi, archi di follow e
+    contatori della classifica, condivisa con SocialNetwork) e quello dei suoi
+    post vengono quindi modificati solo da chi possiede il suo lock, e scritture
+    che riguardano utenti diversi procedono in parallelo.
+
+    Id, autore e timestamp dei post memorizzati non cambiano; testo e likes sono
+    memorizzati a parte (si veda StoredPost), così che un like non copi il post.
+    I metodi che restituiscono post ne restituiscono delle nuove copie e, come in
+    SocialNetwork, le modifiche del testo di tali copie sono riportate nel social.
+    snapshot e saveSnapshot copiano lo stato, acquisendo tutti i lock, in un
+    SocialNetwork da cui viene poi creata l'istantanea, per cui costano O(n).
+
+    Typical Element e AF(c): come in SocialNetwork, dove
+          userPosts(x) = { materialize(r) | userPostMap.get(x).containsValue(r) }
+    IR(c): l'invariante di SocialNetwork, che deve valere quando nessuna scrittura
+           è in corso (checkRep acquisisce tutti i lock prima di verificarlo), con:
+           dom(userPostMap) == dom(userFollowsMap) == dom(userFollowersMap) == dom(userLikesMap) &&
+           forall u, k. userPostMap.get(u).containsKey(k) =>
+            ( userPostMap.get(u).get(k).key == k && k.getAuthor().equals(u) &&
+              postIdIndex.get(k.getId()) == userPostMap.get(u).get(k) && timeIndex.get(k) == postIdIndex.get(k.getId()) ) &&
+           postIdIndex.size() == timeIndex.size() == sum_{u} userPostMap.get(u).size() &&
+           forall r. postIdIndex.containsValue(r) =>
+            ( ( forall t. t in InvertedIndex.terms(r.text) <=> wordIndex.get(t).contains(r) ) &&
+              ( forall l. r.likes.contains(l) <=> userLikesMap.get(l).contains(r) ) &&
+              ( forall l. r.likes.contains(l) => userFollowsMap.get(l).contains(r.key.getAuthor()) ) ) &&
+           forall t. wordIndex.containsKey(t) => ( wordIndex.get(t).isEmpty() == false &&
+            forall r. wordIndex.get(t).contains(r) => postIdIndex.get(r.key.getId()) == r ) &&
+           forall u, f. userFollowsMap.get(u).contains(f) <=> userFollowersMap.get(f).contains(u) &&
+           forall u. ranking.followsCount(u) == userFollowsMap.get(u).size() &&
+            ranking.followersCount(u) == userFollowersMap.get(u).size() &&
+           version >= 0
+  */
+  private final ConcurrentMap<String, ConcurrentNavigableMap<Post, StoredPost>> userPostMap; // mappa g(utente) -> post utente, ordinati per timestamp
+  private final ConcurrentMap<String, Set<String>> userFollowsMap; // mappa f(utente) -> utenti che segue
+  private final ConcurrentMap<String, Set<String>> userFollowersMap; // mappa h(utente) -> utenti che lo seguono
+  private final ConcurrentMap<String, Set<StoredPost>> userLikesMap; // mappa l(utente) -> post cui ha messo like
+  private final ConcurrentMap<Integer, StoredPost> postIdIndex; // indice id -> post
+  private final ConcurrentNavigableMap<Post, StoredPost> timeIndex; // tutti i post del social, ordinati per timestamp
+  private final ConcurrentMap<String, Set<StoredPost>> wordIndex; // indice parola -> post che la contengono
+  private final InfluenceRanking ranking; // contatori di followers e seguiti, ordinati per margine
+  private final AtomicLong version; // numero di modifiche applicate al social
+  private final ReentrantLock stripes[]; // lock degli utenti, indicizzati per hash dell'username
+  // osservatore dei post restituiti: riporta nel social le modifiche del testo
+  private final PostListener postListener = this::textEdited;
+
+  // Numero di lock usato dal costruttore senza parametri
+  private static final int DEFAULT_STRIPES = 64;
+
+  // Messaggio di errore da stampare se si prova ad operare su un utente che non esiste nel social
+  private final String USER_NOT_EXIST_EXCEPTION = "The user identified by the username doesn't exist in the system";
+  // Messaggio di errore da stampare se si prova ad inserire nel social un utente che già esiste
+  private final String USER_ALREADY_EXIST_EXCEPTION = "The user already exists";
+
+  /*
+    Un post memorizzato: key contiene id, autore e timestamp del post, che non
+    cambiano, ed è la chiave del post negli ordinamenti per timestamp; testo e
+    likes vengono modificati solo dal possessore del lock dell'autore.
+  */
+  private static final class StoredPost{
+    private final Post key; // id, autore e timestamp del post
+    private volatile char text[]; // testo corrente, sostituito e mai modificato
+    private final Set<String> likes; // utenti che hanno messo like al post
+
+    private StoredPost(Post post){
+      this.text = post.getText();
+      this.key = new Post(post.getId(), post.getAuthor(), text, post.getTimestamp(), new HashSet<String>());
+      this.likes = ConcurrentHashMap.newKeySet();
+      this.likes.addAll(post.getUsersLikeView());
+    }
+  }
+
+  /*
+    Sequenza dei post di un utente seguito, dal più recente, usata da feed
+  */
+  private static final class FeedSource{
+    private final Iterator<StoredPost> iterator; // post successivi a head
+    private StoredPost head; // post corrente della sequenza
+
+    private FeedSource(Iterator<StoredPost> iterator){
+      this.iterator = iterator;
+      this.head = iterator.next();
+    }
+
+    // passa al post successivo; restituisce falso se la sequenza è terminata
+    private boolean advance(){
+      head = iterator.hasNext() ? iterator.next() : null;
+      return head != null;
+    }
+  }
+
+  /*
+    Metodo costruttore che inizializza un social vuoto con il numero di lock predefinito
+
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this
+  */
+  public ConcurrentSocialNetwork(){
+    this(DEFAULT_STRIPES);
+  }
+
+  /*
+    Metodo costruttore che inizializza un social vuoto i cui utenti sono ripartiti
+    su (almeno) stripeCount lock
+
+    REQUIRES: stripeCount > 0
+    THROWS: IllegalArgumentException se stripeCount <= 0
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this, con un numero di lock pari
+             alla più piccola potenza di 2 maggiore o uguale a stripeCount
+  */
+  public ConcurrentSocialNetwork(int stripeCount) throws IllegalArgumentException{
+    if( stripeCount <= 0 ){
+      throw new IllegalArgumentException("The number of stripes must be positive");
+    }
+    int size = Integer.highestOneBit(stripeCount);
+    if( size < stripeCount ){
+      size <<= 1;
+    }
+    this.stripes = new ReentrantLock[size];
+    for(int i = 0; i < size; i++){
+      this.stripes[i] = new ReentrantLock();
+    }
+    this.userPostMap = new ConcurrentHashMap<>();
+    this.userFollowsMap = new ConcurrentHashMap<>();
+    this.userFollowersMap = new ConcurrentHashMap<>();
+    this.userLikesMap = new ConcurrentHashMap<>();
+    this.postIdIndex = new ConcurrentHashMap<>();
+    this.timeIndex = new ConcurrentSkipListMap<>(SocialNetwork.TIMESTAMP_ORDER);
+    this.wordIndex = new ConcurrentHashMap<>();
+    this.ranking = new InfluenceRanking(true);
+    this.version = new AtomicLong();
+  }
+
+  /*
+    Verifica l'invariante di rappresentazione; per osservare uno stato
+    consistente acquisisce tutti i lock, attendendo le scritture in corso.
+
+    EFFECTS: ritorna true se l'invariante di rappresentazione vale per this,
+             falso altrimenti
+  */
+  public boolean checkRep(){
+    int locked[] = lockAll();
+    try{
+      if( ! (userPostMap.keySet().equals(userFollowsMap.keySet()) &&
+             userFollowsMap.keySet().equals(userFollowersMap.keySet()) &&
+             userFollowersMap.keySet().equals(userLikesMap.keySet())) ){
+        return false;
+      }
+      int postCount = 0;
+      for(Map.Entry<String, ConcurrentNavigableMap<Post, StoredPost>> entry: userPostMap.entrySet()){
+        for(Map.Entry<Post, StoredPost> postEntry: entry.getValue().entrySet()){
+          StoredPost record = postEntry.getValue();
+          Post key = record.key;
+          if( key != postEntry.getKey() || key.getAuthor().equals(entry.getKey()) == false ||
+              materialize(record, null).checkRep() == false ){
+            return false;
+          }
+          if( postIdIndex.get(key.getId()) != record || timeIndex.get(key) != record ){
+            return false;
+          }
+          for(String term: InvertedIndex.terms(record.text)){
+            if( wordIndex.get(term).contains(record) == false ){
+              return false;
+            }
+          }
+          for(String liker: record.likes){
+            if( userLikesMap.get(liker).contains(record) == false ||
+                userFollowsMap.get(liker).contains(key.getAuthor()) == false ){
+              return false;
+            }
+          }
+          postCount += 1;
+        }
+      }
+      if( postCount != postIdIndex.size() || postCount != timeIndex.size() || version.get() < 0 ){
+        return false;
+      }
+      for(Map.Entry<String, Set<StoredPost>> entry: wordIndex.entrySet()){
+        if( entry.getValue().isEmpty() ){
+          return false;
+        }
+        for(StoredPost record: entry.getValue()){
+          if( postIdIndex.get(record.key.getId()) != record || InvertedIndex.terms(record.text).contains(entry.getKey()) == false ){
+            return false;
+          }
+        }
+      }
+      for(Map.Entry<String, Set<StoredPost>> entry: userLikesMap.entrySet()){
+        for(StoredPost record: entry.getValue()){
+          if( postIdIndex.get(record.key.getId()) != record || record.likes.contains(entry.getKey()) == false ){
+            return false;
+          }
+        }
+      }
+      if( ranking.top(Integer.MAX_VALUE).size() != userPostMap.size() ){
+        return false;
+      }
+      for(String username: userFollowsMap.keySet()){
+        if( ranking.followsCount(username) != userFollowsMap.get(username).size() ||
+            ranking.followersCount(username) != userFollowersMap.get(username).size() ){
+          return false;
+        }
+        // ogni utente seguito deve aver pubblicato un post cui username ha messo like,
+        // e viceversa username deve comparire tra i suoi followers
+        for(String followedUser: userFollowsMap.get(username)){
+          if( userFollowersMap.get(followedUser).contains(username) == false ||
+              likedAnyPost(username, followedUser) == false ){
+            return false;
+          }
+        }
+        for(String follower: userFollowersMap.get(username)){
+          if( userFollowsMap.get(follower).contains(username) == false ){
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+    catch(NullPointerException e){ // una delle mappe contiene null o manca una chiave
+      return false;
+    }
+    finally{
+      unlock(locked);
+    }
+  }
+
+  /*
+    EFFECTS: come SocialNetwork.getMentionedUsers()
+  */
+  public Set<String> getMentionedUsers(){
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GET_MENTIONED_USERS);
+    try{
+      Set<String> mentionedUsersSet = new HashSet<String>();
+      for(Map.Entry<String, ConcurrentNavigableMap<Post, StoredPost>> entry: userPostMap.entrySet()){
+        Set<String> follows = userFollowsMap.get(entry.getKey()); // null se l'utente è stato appena rimosso
+        // aggiungo gli utenti che hanno pubblicato almeno un post oppure che seguono qualcuno
+        if( entry.getValue().isEmpty() == false || (follows != null && follows.isEmpty() == false) ){
+          mentionedUsersSet.add(entry.getKey());
+        }
+      }
+      return mentionedUsersSet;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    REQUIRES: username in dom(userPosts)
+    THROWS: UserNotExistException se username not in dom(userPosts)
+    EFFECTS: come SocialNetwork.writtenBy(username)
+  */
+  public List<Post> writtenBy(String username) throws UserNotExistException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.WRITTEN_BY);
+    try{
+      ConcurrentNavigableMap<Post, StoredPost> posts = username == null ? null : userPostMap.get(username);
+      if( posts == null ){
+        throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+      }
+      List<Post> postList = new ArrayList<Post>();
+      for(StoredPost record: posts.values()){ // già in ordine di timestamp
+        postList.add(materialize(record, postListener));
+      }
+      return postList;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Le parole singole vengono cercate nell'indice invertito; solo le eventuali
+    parole composte richiedono la scansione dei testi.
+
+    REQUIRES: words != null && words.contains(null) == false
+    THROWS: NullPointerException se words == null || words.contains(null)
+    EFFECTS: come SocialNetwork.containing(words)
+  */
+  public List<Post> containing(List<String> words) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.CONTAINING);
+    try{
+      if( words == null || words.contains(null) ){
+        throw new NullPointerException();
+      }
+      Set<StoredPost> matching = new HashSet<StoredPost>(); // post che contengono almeno una parola
+      List<String> unindexedWords = new LinkedList<String>(); // parole non ricercabili nell'indice
+      for(String word: words){
+        if( InvertedIndex.isTerm(word) ){
+          Set<StoredPost> records = wordIndex.get(InvertedIndex.fold(word));
+          if( records != null ){
+            matching.addAll(records);
+          }
+        }
+        else{
+          unindexedWords.add(word);
+        }
+      }
+      if( unindexedWords.isEmpty() == false ){
+        String unindexedArray[] = unindexedWords.toArray(new String[0]);
+        for(StoredPost record: timeIndex.values()){
+          if( matching.contains(record) == false && WordMatcher.containsAnyWord(record.text, unindexedArray) ){
+            matching.add(record);
+          }
+        }
+      }
+      return materialize(matching);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    I post dell'intervallo vengono letti dall'indice temporale e filtrati.
+
+    REQUIRES: words != null && words.contains(null) == false && from != null && to != null
+    THROWS: NullPointerException se words == null || words.contains(null) || from == null || to == null
+    EFFECTS: come SocialNetwork.containing(words, from, to)
+  */
+  public List<Post> containing(List<String> words, Timestamp from, Timestamp to) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.CONTAINING);
+    try{
+      if( words == null || words.contains(null) || from == null || to == null ){
+        throw new NullPointerException();
+      }
+      List<Set<StoredPost>> postings = new ArrayList<Set<StoredPost>>(); // liste dell'indice delle parole singole
+      List<String> unindexedWords = new LinkedList<String>(); // parole non ricercabili nell'indice
+      for(String word: words){
+        if( InvertedIndex.isTerm(word) ){
+          Set<StoredPost> records = wordIndex.get(InvertedIndex.fold(word));
+          if( records != null ){
+            postings.add(records);
+          }
+        }
+        else{
+          unindexedWords.add(word);
+        }
+      }
+      String unindexedArray[] = unindexedWords.toArray(new String[0]);
+      List<Post> postList = new ArrayList<Post>();
+      for(StoredPost record: between(from, to)){
+        boolean found = false;
+        for(int i = 0; i < postings.size() && found == false; i++){
+          found = postings.get(i).contains(record);
+        }
+        if( found || (unindexedArray.length > 0 && WordMatcher.containsAnyWord(record.text, unindexedArray)) ){
+          postList.add(materialize(record, postListener));
+        }
+      }
+      return postList;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    REQUIRES: from != null && to != null
+    THROWS: NullPointerException se from == null || to == null
+    EFFECTS: come SocialNetwork.postsBetween(from, to)
+  */
+  public List<Post> postsBetween(Timestamp from, Timestamp to) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.POSTS_BETWEEN);
+    try{
+      if( from == null || to == null ){
+        throw new NullPointerException();
+      }
+      List<Post> postList = new ArrayList<Post>();
+      for(StoredPost record: between(from, to)){
+        postList.add(materialize(record, postListener));
+      }
+      return postList;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    EFFECTS: come SocialNetwork.influencers()
+  */
+  public List<String> influencers(){
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.INFLUENCERS);
+    try{
+      return ranking.influencers();
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    REQUIRES: k >= 0
+    THROWS: IllegalArgumentException se k < 0
+    EFFECTS: come SocialNetwork.topInfluencers(k)
+  */
+  public List<String> topInfluencers(int k) throws IllegalArgumentException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.TOP_INFLUENCERS);
+    try{
+      return ranking.top(k);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    REQUIRES: username in dom(userPosts)
+    THROWS: UserNotExistException se username not in dom(userPosts)
+    EFFECTS: come SocialNetwork.likedBy(username)
+  */
+  public List<Post> likedBy(String username) throws UserNotExistException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.LIKED_BY);
+    try{
+      Set<StoredPost> liked = username == null ? null : userLikesMap.get(username);
+      if( liked == null ){
+        throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+      }
+      return materialize(liked);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    REQUIRES: idPost >= 0 && otherIdPost >= 0 && containsPostById(idPost) && containsPostById(otherIdPost)
+    THROWS: NegativeIdException se idPost < 0 || otherIdPost < 0
+            PostDoesNotExist se non esiste un post con id idPost o otherIdPost
+    EFFECTS: come SocialNetwork.coLikers(idPost, otherIdPost)
+  */
+  public Set<String> coLikers(int idPost, int otherIdPost) throws NegativeIdException, PostDoesNotExist{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.CO_LIKERS);
+    try{
+      if( idPost < 0 || otherIdPost < 0 ){
+        throw new NegativeIdException();
+      }
+      StoredPost record = postIdIndex.get(idPost);
+      StoredPost other = postIdIndex.get(otherIdPost);
+      if( record == null || other == null ){
+        throw new PostDoesNotExist("The post identified by the id doesn't exist");
+      }
+      Set<String> smaller = record.likes.size() <= other.likes.size() ? record.likes : other.likes;
+      Set<String> larger = smaller == record.likes ? other.likes : record.likes;
+      Set<String> both = new HashSet<String>();
+      for(String username: smaller){
+        if( larger.contains(username) ){
+          both.add(username);
+        }
+      }
+      return Collections.unmodifiableSet(both);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Le sequenze dei post degli utenti seguiti, già ordinate per timestamp,
+    vengono fuse con un heap fermandosi dopo limit post.
+
+    REQUIRES: username != null && username in dom(userPosts) && limit >= 0
+    THROWS: NullPointerException se username == null
+            UserNotExistException se username not in dom(userPosts)
+            IllegalArgumentException se limit < 0
+    EFFECTS: come SocialNetwork.feed(username, cursor, limit)
+  */
+  public List<Post> feed(String username, FeedCursor cursor, int limit) throws NullPointerException, UserNotExistException, IllegalArgumentException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.FEED);
+    try{
+      if( username == null ){
+        throw new NullPointerException();
+      }
+      Set<String> followed = userFollowsMap.get(username);
+      if( followed == null ){
+        throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+      }
+      if( limit < 0 ){
+        throw new IllegalArgumentException("The limit must be non negative");
+      }
+      Post start = cursor == null ? null : keyOf(cursor.getMillis(), cursor.getNanos(), cursor.getId());
+      PriorityQueue<FeedSource> heap = new PriorityQueue<FeedSource>(Math.max(1, followed.size()),
+        (first, second) -> SocialNetwork.TIMESTAMP_ORDER.compare(second.head.key, first.head.key));
+      for(String followedUser: followed){
+        ConcurrentNavigableMap<Post, StoredPost> posts = userPostMap.get(followedUser);
+        if( posts != null ){ // l'utente potrebbe essere stato rimosso nel frattempo
+          // considero solo i post che precedono il cursore, dal più recente
+          Iterator<StoredPost> iterator = (start == null ? posts : posts.headMap(start, false)).descendingMap().values().iterator();
+          if( iterator.hasNext() ){
+            heap.add(new FeedSource(iterator));
+          }
+        }
+      }
+      List<Post> page = new ArrayList<Post>(Math.min(limit, 64));
+      while( page.size() < limit && heap.isEmpty() == false ){
+        FeedSource source = heap.poll();
+        page.add(materialize(source.head, postListener));
+        if( source.advance() ){
+          heap.add(source);
+        }
+      }
+      return page;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Lo stato viene copiato acquisendo tutti i lock, quindi attendendo le
+    scritture in corso, e l'istantanea viene creata dalla copia: il costo è O(n).
+
+    EFFECTS: come SocialNetwork.snapshot()
+  */
+  public SocialNetworkSnapshot snapshot(){
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.SNAPSHOT);
+    try{
+      List<String> users;
+      List<Post> postList;
+      long copiedVersion;
+      int locked[] = lockAll();
+      try{
+        users = new ArrayList<String>(userPostMap.keySet());
+        postList = materialize(timeIndex.values());
+        copiedVersion = version.get();
+      }
+      finally{
+        unlock(locked);
+      }
+      return copyOf(users, postList).snapshot().withVersion(copiedVersion);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Lo stato viene copiato come in snapshot, e la copia viene salvata.
+
+    REQUIRES: file != null
+    THROWS: NullPointerException se file == null
+            IOException se la scrittura del file fallisce
+    MODIFIES: file
+    EFFECTS: come SocialNetwork.saveSnapshot(file)
+  */
+  public void saveSnapshot(Path file) throws NullPointerException, IOException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.SAVE_SNAPSHOT);
+    try{
+      if( file == null ){
+        throw new NullPointerException();
+      }
+      List<String> users;
+      List<Post> postList;
+      int locked[] = lockAll();
+      try{
+        users = new ArrayList<String>(userPostMap.keySet());
+        postList = materialize(timeIndex.values());
+      }
+      finally{
+        unlock(locked);
+      }
+      copyOf(users, postList).saveSnapshot(file);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Aggiunge un utente al social.
+
+    REQUIRES: newUser != null && newUser not in dom(userPosts)
+    THROWS: NullPointerException se newUser == null
+            UserAlreadyExistException se newUser in dom(userPosts)
+    MODIFIES: this
+    EFFECTS: come SocialNetwork.addUser(newUser)
+  */
+  public void addUser(String newUser) throws NullPointerException, UserAlreadyExistException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.ADD_USER);
+    try{
+      if( newUser == null ){
+        throw new NullPointerException();
+      }
+      int locked[] = lock(new String[]{ newUser });
+      try{
+        if( userPostMap.containsKey(newUser) ){
+          throw new UserAlreadyExistException(USER_ALREADY_EXIST_EXCEPTION);
+        }
+        userFollowersMap.put(newUser, ConcurrentHashMap.newKeySet());
+        userFollowsMap.put(newUser, ConcurrentHashMap.newKeySet());
+        userLikesMap.put(newUser, ConcurrentHashMap.newKeySet());
+        ranking.addUser(newUser);
+        // userPostMap viene aggiornata per ultima: da questo momento l'utente è visibile ai lettori
+        userPostMap.put(newUser, new ConcurrentSkipListMap<Post, StoredPost>(SocialNetwork.TIMESTAMP_ORDER));
+        version.incrementAndGet();
+      }
+      finally{
+        unlock(locked);
+      }
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Rimuove un utente dal social, insieme ai suoi post, ai suoi likes e a
+    tutte le sue relazioni di follow. Acquisisce tutti i lock, ma grazie alla
+    mappa inversa dei likes visita solo i post dell'utente, quelli cui ha messo
+    like e gli utenti a lui collegati.
+
+    REQUIRES: username != null && username in dom(userPosts)
+    THROWS: NullPointerException se username == null
+            UserNotExistException se username not in dom(userPosts)
+    MODIFIES: this
+    EFFECTS: come SocialNetwork.removeUser(username)
+  */
+  public void removeUser(String username) throws NullPointerException, UserNotExistException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.REMOVE_USER);
+    try{
+      if( username == null ){
+        throw new NullPointerException();
+      }
+      int locked[] = lockAll(); // i likes dell'utente possono trovarsi nei post di chiunque
+      try{
+        // userPostMap viene aggiornata per prima: da questo momento l'utente non è più visibile ai lettori
+        ConcurrentNavigableMap<Post, StoredPost> posts = userPostMap.remove(username);
+        if( posts == null ){
+          throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+        }
+        for(String followed: userFollowsMap.get(username)){
+          userFollowersMap.get(followed).remove(username);
+          ranking.removeFollow(username, followed);
+        }
+        for(String follower: userFollowersMap.get(username)){
+          userFollowsMap.get(follower).remove(username);
+          ranking.removeFollow(follower, username);
+        }
+        userFollowsMap.remove(username);
+        userFollowersMap.remove(username);
+        ranking.removeUser(username);
+        // rimozione dei post dell'utente dagli indici e dai likes di chi li aveva apprezzati
+        for(StoredPost record: posts.values()){
+          postIdIndex.remove(record.key.getId());
+          timeIndex.remove(record.key);
+          unindex(record, record.text);
+          for(String liker: record.likes){
+            userLikesMap.get(liker).remove(record);
+          }
+        }
+        // rimozione dei likes che l'utente ha messo, visitando solo i post interessati
+        for(StoredPost record: userLikesMap.remove(username)){
+          record.likes.remove(username);
+        }
+        version.incrementAndGet();
+      }
+      finally{
+        unlock(locked);
+      }
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Aggiunge un post alla rete ed aggiorna le relazioni di follow tra
+    l'autore e gli utenti che hanno messo like al post; il post viene copiato,
+    per cui le modifiche successive del chiamante non hanno effetto sul social.
+
+    REQUIRES: come SocialNetwork.addPost(post)
+    MODIFIES: this
+    THROWS: NullPointerException se post == null
+            UserNotExistException se l'autore o un utente che ha messo like non esiste nel social
+            PostAlreadyExistException se esiste nel social un post con lo stesso id
+            NegativeIdException se post.getId() < 0
+    EFFECTS: come SocialNetwork.addPost(post)
+  */
+  public void addPost(Post post) throws NullPointerException, UserNotExistException, PostAlreadyExistException, NegativeIdException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.ADD_POST);
+    try{
+      if( post == null ){
+        throw new NullPointerException();
+      }
+      if( post.getId() < 0 ){
+        throw new NegativeIdException();
+      }
+      StoredPost record = new StoredPost(post); // copia privata del post
+      String authorUsername = record.key.getAuthor();
+      String involvedUsers[] = record.likes.toArray(new String[record.likes.size() + 1]);
+      involvedUsers[involvedUsers.length - 1] = authorUsername;
+      int locked[] = lock(involvedUsers);
+      try{
+        // controllo che tutti gli utenti che abbiano messo like al post stiano nel social
+        if( userPostMap.keySet().containsAll(record.likes) == false ){
+          throw new UserNotExistException("A user in the Like list doesn't exist in the system");
+        }
+        if( postIdIndex.containsKey(record.key.getId()) ){
+          throw new PostAlreadyExistException("A post with this id already exist in the system");
+        }
+        if( userPostMap.containsKey(authorUsername) == false ){
+          throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION); // l'autore del post non esiste nel social
+        }
+        // l'id è globale: un post di un altro autore (protetto da altri lock) potrebbe averlo appena occupato
+        if( postIdIndex.putIfAbsent(record.key.getId(), record) != null ){
+          throw new PostAlreadyExistException("A post with this id already exist in the system");
+        }
+        store(record);
+        version.incrementAndGet();
+      }
+      finally{
+        unlock(locked);
+      }
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Aggiunge al social tutti i post di newPosts, oppure nessuno, acquisendo i
+    lock degli autori e degli utenti che hanno messo like a un post del lotto.
+
+    REQUIRES: vedi SocialNetwork.addPosts
+    THROWS: vedi SocialNetwork.addPosts
+    MODIFIES: this
+    EFFECTS: come SocialNetwork.addPosts(newPosts)
+  */
+  public void addPosts(Collection<Post> newPosts) throws NullPointerException, UserNotExistException, PostAlreadyExistException, NegativeIdException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.ADD_POSTS);
+    try{
+      if( newPosts == null ){
+        throw new NullPointerException();
+      }
+      List<StoredPost> batch = new ArrayList<StoredPost>(newPosts.size()); // copie private dei post
+      Set<String> involvedUsers = new HashSet<String>();
+      for(Post post: newPosts){
+        if( post == null ){
+          throw new NullPointerException();
+        }
+        if( post.getId() < 0 ){
+          throw new NegativeIdException();
+        }
+        StoredPost record = new StoredPost(post);
+        batch.add(record);
+        involvedUsers.add(record.key.getAuthor());
+        involvedUsers.addAll(record.likes);
+      }
+      int locked[] = lock(involvedUsers.toArray(new String[0]));
+      try{
+        Set<String> unknownUsers = new TreeSet<String>();
+        for(String username: involvedUsers){
+          if( userPostMap.containsKey(username) == false ){
+            unknownUsers.add(username);
+          }
+        }
+        if( unknownUsers.isEmpty() == false ){
+          throw new UserNotExistException("These users don't exist in the system: " + unknownUsers);
+        }
+        Set<Integer> batchIds = new HashSet<Integer>();
+        for(StoredPost record: batch){
+          int id = record.key.getId();
+          if( batchIds.add(id) == false || postIdIndex.containsKey(id) ){
+            throw new PostAlreadyExistException("A post with the id " + id + " already exist in the system or in the batch");
+          }
+        }
+        // gli id sono globali: vengono riservati tutti prima di inserire i post,
+        // rilasciandoli se un post di un altro autore ne ha appena occupato uno
+        for(int i = 0; i < batch.size(); i++){
+          StoredPost record = batch.get(i);
+          if( postIdIndex.putIfAbsent(record.key.getId(), record) != null ){
+            for(int j = 0; j < i; j++){
+              postIdIndex.remove(batch.get(j).key.getId());
+            }
+            throw new PostAlreadyExistException("A post with the id " + record.key.getId() + " already exist in the system or in the batch");
+          }
+        }
+        for(StoredPost record: batch){
+          store(record);
+        }
+        version.addAndGet(batch.size());
+      }
+      finally{
+        unlock(locked);
+      }
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Acquisisce i lock dell'utente e dell'autore del post, letto prima di
+    acquisirli; se nel frattempo il post è stato rimosso o sostituito da un post
+    con lo stesso id, i lock vengono rilasciati e la ricerca ripetuta.
+
+    REQUIRES: vedi SocialNetwork.likePost
+    THROWS: vedi SocialNetwork.likePost
+    MODIFIES: this
+    EFFECTS: come SocialNetwork.likePost(idPost, username)
+  */
+  public boolean likePost(int idPost, String username) throws NullPointerException, NegativeIdException, UserNotExistException, PostDoesNotExist, AuthorCantLikeHimselfException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.LIKE_POST);
+    try{
+      if( username == null ){
+        throw new NullPointerException();
+      }
+      if( idPost < 0 ){
+        throw new NegativeIdException();
+      }
+      while( true ){
+        StoredPost record = postIdIndex.get(idPost);
+        String authorUsername = record == null ? username : record.key.getAuthor();
+        int locked[] = lock(new String[]{ username, authorUsername });
+        try{
+          if( postIdIndex.get(idPost) != record ){
+            continue; // il post è cambiato prima che acquisissi i lock
+          }
+          if( userPostMap.containsKey(username) == false ){
+            throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+          }
+          if( record == null ){
+            throw new PostDoesNotExist("The post identified by the id doesn't exist");
+          }
+          if( authorUsername.equals(username) ){
+            throw new AuthorCantLikeHimselfException("The author of the post can't like himself.");
+          }
+          if( record.likes.add(username) == false ){ // l'utente aveva già messo like
+            return false;
+          }
+          userLikesMap.get(username).add(record);
+          follow(username, authorUsername);
+          version.incrementAndGet();
+          return true;
+        }
+        finally{
+          unlock(locked);
+        }
+      }
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    REQUIRES: usernameCollection != null
+    THROWS: NullPointerException se usernameCollection == null
+    EFFECTS: come SocialNetwork.containsUser(usernameCollection)
+  */
+  public boolean containsUser(Collection<String> usernameCollection) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.CONTAINS_USER);
+    try{
+      if( usernameCollection == null ){
+        throw new NullPointerException();
+      }
+      return userPostMap.keySet().containsAll(usernameCollection);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    REQUIRES: username != null
+    THROWS: NullPointerException se username == null
+    EFFECTS: come SocialNetwork.containsUser(username)
+  */
+  public boolean containsUser(String username) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.CONTAINS_USER);
+    try{
+      if( username == null ){
+        throw new NullPointerException();
+      }
+      return userPostMap.containsKey(username);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    REQUIRES: idPost >= 0
+    THROWS: NegativeIdException se idPost < 0
+    EFFECTS: come SocialNetwork.containsPostById(idPost)
+  */
+  public boolean containsPostById(int idPost) throws NegativeIdException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.CONTAINS_POST_BY_ID);
+    try{
+      if( idPost < 0 ){
+        throw new NegativeIdException();
+      }
+      return postIdIndex.containsKey(idPost);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    REQUIRES: idPost >= 0 && containsPostById(idPost)
+    THROWS: NegativeIdException se idPost < 0
+            PostDoesNotExist se non esiste un post con id idPost
+    EFFECTS: come SocialNetwork.getPostById(idPost)
+  */
+  public Post getPostById(int idPost) throws NegativeIdException, PostDoesNotExist{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GET_POST_BY_ID);
+    try{
+      if( idPost < 0 ){
+        throw new NegativeIdException();
+      }
+      StoredPost record = postIdIndex.get(idPost);
+      if( record == null ){
+        throw new PostDoesNotExist("The post identified by the id doesn't exist");
+      }
+      return materialize(record, null);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce una deep copy della rappresentazione di userFollows
+  */
+  public Map<String, Set<String>> getUserFollowsMap(){
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GET_USER_FOLLOWS_MAP);
+    try{
+      return copyOf(userFollowsMap);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce una deep copy della rappresentazione di userPosts
+  */
+  public Map<String, Set<Post>> getUserPostMap(){
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GET_USER_POST_MAP);
+    try{
+      Map<String, Set<Post>> tmpMap = new HashMap<>();
+      for(Map.Entry<String, ConcurrentNavigableMap<Post, StoredPost>> entry: userPostMap.entrySet()){
+        Set<Post> tmpSet = new TreeSet<>(SocialNetwork.TIMESTAMP_ORDER);
+        for(StoredPost record: entry.getValue().values()){
+          tmpSet.add(materialize(record, null));
+        }
+        tmpMap.put(entry.getKey(), tmpSet);
+      }
+      return tmpMap;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce una deep copy della rappresentazione di userFollowers
+  */
+  public Map<String, Set<String>> getUserFollowersMap(){
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GET_USER_FOLLOWERS_MAP);
+    try{
+      return copyOf(userFollowersMap);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Invocato quando viene modificato il testo di un post restituito da this; la
+    modifica viene riportata nel social, come una scrittura che acquisisce il
+    lock dell'autore, ed ignorata se il post non fa più parte del social.
+
+    MODIFIES: this
+  */
+  private void textEdited(Post post, char oldText[]){
+    String authorUsername = post.getAuthor();
+    int locked[] = lock(new String[]{ authorUsername });
+    try{
+      StoredPost record = postIdIndex.get(post.getId());
+      if( record != null && record.key.getAuthor().equals(authorUsername) ){
+        char newText[] = post.getText();
+        // il testo memorizzato può differire da oldText, se il post è stato modificato tramite un'altra copia
+        unindex(record, record.text);
+        record.text = newText;
+        index(record, newText);
+        version.incrementAndGet();
+      }
+    }
+    finally{
+      unlock(locked);
+    }
+  }
+
+  /*
+    REQUIRES: il thread corrente possiede i lock dell'autore e degli utenti che hanno
+              messo like al post && postIdIndex.get(record.key.getId()) == record
+    MODIFIES: this
+    EFFECTS: inserisce il post tra i post dell'autore, negli indici e nella mappa
+             inversa dei likes, ed aggiunge gli archi di follow dovuti ai suoi likes
+  */
+  private void store(StoredPost record){
+    String authorUsername = record.key.getAuthor();
+    userPostMap.get(authorUsername).put(record.key, record);
+    timeIndex.put(record.key, record);
+    index(record, record.text);
+    for(String userWhoLiked: record.likes){ // ogni utente che ha messo like segue l'autore
+      userLikesMap.get(userWhoLiked).add(record);
+      follow(userWhoLiked, authorUsername);
+    }
+  }
+
+  /*
+    REQUIRES: il thread corrente possiede i lock di follower e followed
+    MODIFIES: this
+    EFFECTS: aggiunge, se non c'è già, l'arco follower -> followed, aggiornando i contatori
+  */
+  private void follow(String follower, String followed){
+    if( userFollowsMap.get(follower).add(followed) ){ // nuovo arco: aggiorno mappe e contatori
+      userFollowersMap.get(followed).add(follower);
+      ranking.addFollow(follower, followed);
+    }
+  }
+
+  /*
+    EFFECTS: restituisce vero se username ha messo like ad almeno un post di author
+  */
+  private boolean likedAnyPost(String username, String author){
+    for(StoredPost record: userPostMap.get(author).values()){
+      if( record.likes.contains(username) ){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: aggiunge il post alle liste delle parole di text; ogni lista viene
+             creata e modificata atomicamente, così da non perdere aggiunte
+             concorrenti ad una lista che unindex sta eliminando
+  */
+  private void index(StoredPost record, char text[]){
+    for(String term: InvertedIndex.terms(text)){
+      wordIndex.compute(term, (key, records) -> {
+        Set<StoredPost> updated = records == null ? ConcurrentHashMap.newKeySet() : records;
+        updated.add(record);
+        return updated;
+      });
+    }
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: rimuove il post dalle liste delle parole di text, eliminando
+             atomicamente le liste rimaste vuote
+  */
+  private void unindex(StoredPost record, char text[]){
+    for(String term: InvertedIndex.terms(text)){
+      wordIndex.computeIfPresent(term, (key, records) -> {
+        records.remove(record);
+        return records.isEmpty() ? null : records;
+      });
+    }
+  }
+
+  /*
+    EFFECTS: restituisce i post pubblicati tra from e to, estremi inclusi, in ordine
+             di timestamp; una collezione vuota se from è successivo a to
+  */
+  private Collection<StoredPost> between(Timestamp from, Timestamp to){
+    if( from.compareTo(to) > 0 ){
+      return Collections.emptyList();
+    }
+    Post fromKey = keyOf(from.getTime(), from.getNanos(), Integer.MIN_VALUE);
+    Post toKey = keyOf(to.getTime(), to.getNanos(), Integer.MAX_VALUE);
+    return timeIndex.subMap(fromKey, true, toKey, true).values();
+  }
+
+  /*
+    EFFECTS: restituisce un post con timestamp <millis, nanos> ed id id, da usare
+             solo come chiave di ricerca negli ordinamenti per timestamp
+  */
+  private static Post keyOf(long millis, int nanos, int id){
+    Timestamp timestamp = new Timestamp(millis);
+    timestamp.setNanos(nanos);
+    return new Post(id, null, null, timestamp, (HashSet<String>) null);
+  }
+
+  /*
+    EFFECTS: restituisce una nuova copia del post memorizzato, associata a listener
+  */
+  private static Post materialize(StoredPost record, PostListener listener){
+    Post post = new Post(record.key.getId(), record.key.getAuthor(), record.text, record.key.getTimestamp(), new HashSet<String>(record.likes));
+    post.setListener(listener);
+    return post;
+  }
+
+  /*
+    EFFECTS: restituisce una nuova lista delle copie dei post di records, ordinata
+             per timestamp; alle copie è associato l'osservatore del social
+  */
+  private List<Post> materialize(Collection<StoredPost> records){
+    List<Post> postList = new ArrayList<Post>(records.size());
+    for(StoredPost record: records){
+      postList.add(materialize(record, postListener));
+    }
+    postList.sort(SocialNetwork.TIMESTAMP_ORDER);
+    return postList;
+  }
+
+  /*
+    REQUIRES: users contiene gli autori e gli utenti che hanno messo like ai post di postList &&
+              i post di postList hanno id distinti e non negativi
+    EFFECTS: restituisce un nuovo SocialNetwork con gli utenti users ed i post di postList
+  */
+  private static SocialNetwork copyOf(List<String> users, List<Post> postList){
+    SocialNetwork copy = new SocialNetwork();
+    try{
+      for(String username: users){
+        copy.addUser(username);
+      }
+      copy.addPosts(postList); // gli archi di follow sono quelli dovuti ai likes
+    }
+    catch(UserAlreadyExistException | UserNotExistException | PostAlreadyExistException | NegativeIdException e){ // esclusi da REQUIRES
+      throw new IllegalStateException(e);
+    }
+    return copy;
+  }
+
+  /*
+    EFFECTS: restituisce l'indice del lock associato a username
+  */
+  private int stripeOf(String username){
+    int h = username.hashCode();
+    return (h ^ (h >>> 16)) & (stripes.length - 1);
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: acquisisce, in ordine crescente di indice e senza ripetizioni, i lock
+             degli utenti passati come parametro e restituisce gli indici acquisiti
+  */
+  private int[] lock(String usernames[]){
+    int indexes[] = new int[usernames.length];
+    for(int i = 0; i < usernames.length; i++){
+      indexes[i] = stripeOf(usernames[i]);
+    }
+    Arrays.sort(indexes);
+    int distinct = 0;
+    for(int i = 0; i < indexes.length; i++){
+      if( distinct == 0 || indexes[distinct - 1] != indexes[i] ){
+        indexes[distinct++] = indexes[i];
+      }
+    }
+    indexes = Arrays.copyOf(indexes, distinct);
+    for(int index: indexes){
+      stripes[index].lock();
+    }
+    return indexes;
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: acquisisce tutti i lock in ordine crescente di indice
+  */
+  private int[] lockAll(){
+    int indexes[] = new int[stripes.length];
+    for(int i = 0; i < stripes.length; i++){
+      stripes[i].lock();
+      indexes[i] = i;
+    }
+    return indexes;
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: rilascia i lock con gli indici passati come parametro
+  */
+  private void unlock(int indexes[]){
+    for(int i = indexes.length - 1; i >= 0; i--){
+      stripes[indexes[i]].unlock();
+    }
+  }
+
+  /*
+    EFFECTS: restituisce una deep copy della mappa passata come parametro
+  */
+  private static Map<String, Set<String>> copyOf(Map<String, Set<String>> map){
+    Map<String, Set<String>> tmp = new HashMap<>();
+    for(Map.Entry<String, Set<String>> entry: map.entrySet()){
+      tmp.put(entry.getKey(), new HashSet<String>(entry.getValue()));
+    }
+    return tmp;
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    return String.format("%s\n%s\n%s", getUserFollowsMap(), getUserPostMap(), getUserFollowersMap());
+  }
+}
@@ -0,0 +1,402 @@
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+
+public class DurableSocialNetwork extends SocialNetworkWithReport implements Closeable{
+  /*
+    OVERVIEW: DurableSocialNetwork è un social con segnalazioni le cui modifiche
+    (addUser, removeUser, addPost, addPosts, likePost, reportPost, setHideThreshold,
+    unhidePost e la modifica del testo dei post) vengono registrate in un
+    WriteAheadLog: anche i post nascosti, che dipendono dalle segnalazioni, dalla
+    soglia e dalle decisioni dei moderatori, sopravvivono quindi al riavvio. Alla creazione il social
+    viene ricostruito rieseguendo i record del registro, per cui dopo un crash
+    si ritrova lo stato dell'ultimo gruppo di record sincronizzato su disco (si
+    veda WriteAheadLog per la politica di group commit; sync() rende durevoli
+    tutte le modifiche precedenti).
+    Ogni modifica viene registrata solo dopo essere stata applicata con successo;
+    se la scrittura del registro fallisce viene lanciata UncheckedIOException e
+    il record incompleto viene scartato (WriteAheadLog.abortRecord). Le modifiche
+    che non potrebbero essere registrate (stringhe troppo lunghe per writeUTF, o
+    un lotto più lungo di WriteAheadLog.MAX_RECORD_SIZE) vengono rifiutate con
+    UncheckedIOException prima di essere applicate.
+    Quando il registro supera compactThreshold byte e il doppio della dimensione
+    ottenuta con l'ultima compattazione, viene riscritto con i soli record che
+    descrivono lo stato corrente (utenti, post con i relativi like,
+    segnalazioni, soglia e post nascosti): la sua dimensione resta così proporzionale allo stato del
+    social e non al numero di modifiche.
+
+    IR(c): IR di SocialNetworkWithReport && log != null && compactThreshold > 0 &&
+           compactedSize >= 0
+  */
+  private final WriteAheadLog log; // registro delle modifiche
+  private final long compactThreshold; // dimensione minima, in byte, prima di compattare
+  private long compactedSize; // dimensione del registro dopo l'ultima compattazione
+
+  private static final int DEFAULT_GROUP_SIZE = 512; // record per gruppo di sincronizzazione
+  private static final long DEFAULT_GROUP_MILLIS = 10; // attesa massima prima di sincronizzare un gruppo
+  private static final long DEFAULT_COMPACT_THRESHOLD = 64L << 20; // 64 MiB
+
+  /*
+    Interfaccia delle funzioni che scrivono il contenuto di un record (si veda logRecord)
+  */
+  private interface Payload{
+    void writeTo(DataOutput out) throws IOException;
+  }
+
+  // tipi dei record del registro
+  private static final int ADD_USER = 1;
+  private static final int REMOVE_USER = 2;
+  private static final int ADD_POST = 3;
+  private static final int LIKE_POST = 4;
+  private static final int REPORT_POST = 5;
+  private static final int EDIT_TEXT = 6;
+  private static final int ADD_POSTS = 7;
+  private static final int HIDE_THRESHOLD = 8;
+  private static final int UNHIDE_POST = 9;
+  private static final int HIDDEN_STATE = 10;
+
+  /*
+    Inizializza il social ripristinando lo stato registrato in logFile
+    (che viene creato se non esiste), con la politica di group commit predefinita
+
+    REQUIRES: logFile != null
+    THROWS: NullPointerException se logFile == null
+            IOException se il registro non può essere letto o scritto
+    MODIFIES: this, logFile
+  */
+  public DurableSocialNetwork(Path logFile) throws NullPointerException, IOException{
+    this(logFile, DEFAULT_GROUP_SIZE, DEFAULT_GROUP_MILLIS, DEFAULT_COMPACT_THRESHOLD);
+  }
+
+  /*
+    Inizializza il social ripristinando lo stato registrato in logFile
+    (che viene creato se non esiste)
+
+    REQUIRES: logFile != null && groupSize > 0 && groupMillis >= 0 && compactThreshold > 0
+    THROWS: NullPointerException se logFile == null
+            IllegalArgumentException se groupSize <= 0 || groupMillis < 0 || compactThreshold <= 0
+            IOException se il registro non può essere letto o scritto oppure contiene
+             una modifica che non può essere applicata
+    MODIFIES: this, logFile
+    EFFECTS: this contiene lo stato ottenuto applicando, nell'ordine, i record di logFile
+  */
+  public DurableSocialNetwork(Path logFile, int groupSize, long groupMillis, long compactThreshold) throws NullPointerException, IllegalArgumentException, IOException{
+    super();
+    if( compactThreshold <= 0 ){
+      throw new IllegalArgumentException("The compaction threshold must be positive");
+    }
+    this.log = new WriteAheadLog(logFile, groupSize, groupMillis);
+    this.compactThreshold = compactThreshold;
+    try{
+      log.replay(this::apply);
+    }
+    catch(IOException | RuntimeException e){
+      log.close();
+      throw e;
+    }
+    this.compactedSize = log.size();
+  }
+
+  /*
+    Vedi SocialNetwork.addUser; la modifica viene registrata nel registro
+  */
+  public void addUser(String newUser) throws NullPointerException, UserAlreadyExistException{
+    try{
+      PostCodec.utfSize(newUser);
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+    super.addUser(newUser);
+    logRecord(ADD_USER, out -> out.writeUTF(newUser));
+  }
+
+  /*
+    Vedi SocialNetwork.removeUser; la modifica viene registrata nel registro
+  */
+  public void removeUser(String username) throws NullPointerException, UserNotExistException{
+    super.removeUser(username);
+    logRecord(REMOVE_USER, out -> out.writeUTF(username));
+  }
+
+  /*
+    Vedi SocialNetwork.addPost; la modifica viene registrata nel registro
+  */
+  public void addPost(Post post) throws NullPointerException, UserNotExistException, PostAlreadyExistException, NegativeIdException{
+    try{
+      PostCodec.encodedSize(post);
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+    super.addPost(post);
+    logRecord(ADD_POST, out -> PostCodec.write(out, post));
+  }
+
+  /*
+    Vedi SocialNetwork.addPosts; il lotto viene registrato in un unico record,
+    per cui anche il ripristino dopo un crash lo applica per intero o per niente
+  */
+  public void addPosts(Collection<Post> newPosts) throws NullPointerException, UserNotExistException, PostAlreadyExistException, NegativeIdException{
+    try{
+      long size = 4;
+      for(Post post: newPosts){
+        size += PostCodec.encodedSize(post);
+      }
+      if( size + 1 > WriteAheadLog.MAX_RECORD_SIZE ){
+        throw new IOException("The batch is too large to be logged in a single record");
+      }
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+    super.addPosts(newPosts);
+    logRecord(ADD_POSTS, out -> {
+      out.writeInt(newPosts.size());
+      for(Post post: newPosts){
+        PostCodec.write(out, post);
+      }
+    });
+  }
+
+  /*
+    Vedi SocialNetwork.likePost; la modifica viene registrata nel registro se ha avuto effetto
+  */
+  public boolean likePost(int idPost, String username) throws NullPointerException, NegativeIdException, UserNotExistException, PostDoesNotExist, AuthorCantLikeHimselfException{
+    boolean liked = super.likePost(idPost, username);
+    if( liked ){
+      logPostEvent(LIKE_POST, idPost, username);
+    }
+    return liked;
+  }
+
+  /*
+    Vedi SocialNetworkWithReport.reportPost; la modifica viene registrata nel registro se ha avuto effetto
+  */
+  public boolean reportPost(int idPost, String username) throws NullPointerException, NegativeIdException, PostDoesNotExist, UserNotExistException{
+    boolean reported = super.reportPost(idPost, username);
+    if( reported ){
+      logPostEvent(REPORT_POST, idPost, username);
+    }
+    return reported;
+  }
+
+  /*
+    Vedi SocialNetworkWithReport.setHideThreshold; la modifica viene registrata nel registro
+  */
+  public void setHideThreshold(int threshold) throws IllegalArgumentException{
+    super.setHideThreshold(threshold);
+    logRecord(HIDE_THRESHOLD, out -> out.writeInt(threshold));
+  }
+
+  /*
+    Vedi SocialNetworkWithReport.unhidePost; la modifica viene registrata nel registro se ha avuto effetto
+  */
+  public boolean unhidePost(int idPost){
+    boolean unhidden = super.unhidePost(idPost);
+    if( unhidden ){
+      logRecord(UNHIDE_POST, out -> out.writeInt(idPost));
+    }
+    return unhidden;
+  }
+
+  /*
+    Vedi SocialNetwork.editText; la modifica viene registrata nel registro
+  */
+  void editText(int idPost, char newText[]){
+    super.editText(idPost, newText);
+    logRecord(EDIT_TEXT, out -> {
+      out.writeInt(idPost);
+      out.writeUTF(new String(newText));
+    });
+  }
+
+  /*
+    THROWS: IOException se la scrittura del registro fallisce
+    EFFECTS: rende durevoli tutte le modifiche registrate finora
+  */
+  public void sync() throws IOException{
+    log.sync();
+  }
+
+  /*
+    THROWS: IOException se la scrittura del registro fallisce
+    MODIFIES: this
+    EFFECTS: riscrive il registro con i soli record che descrivono lo stato corrente
+  */
+  public void compact() throws IOException{
+    log.compact(this::writeState);
+    compactedSize = log.size();
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: rende durevoli le modifiche registrate e chiude il registro; le
+             modifiche successive lanciano UncheckedIOException
+  */
+  public void close() throws IOException{
+    log.close();
+  }
+
+  private void logPostEvent(int type, int idPost, String username){
+    logRecord(type, out -> {
+      out.writeInt(idPost);
+      out.writeUTF(username);
+    });
+  }
+
+  /*
+    Registra un record di tipo type con il contenuto scritto da payload; se la
+    scrittura del contenuto fallisce il record viene scartato.
+
+    THROWS: UncheckedIOException se la scrittura del registro fallisce
+    MODIFIES: this
+  */
+  private void logRecord(int type, Payload payload){
+    try{
+      DataOutput out = log.beginRecord(type);
+      try{
+        payload.writeTo(out);
+      }
+      catch(IOException | RuntimeException e){
+        log.abortRecord();
+        throw e;
+      }
+      logged();
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /*
+    Chiude il record corrente e, se il registro è cresciuto abbastanza dall'ultima
+    compattazione, lo compatta.
+  */
+  private void logged() throws IOException{
+    log.endRecord();
+    long size = log.size();
+    if( size > compactThreshold && size > 2 * compactedSize ){
+      compact();
+    }
+  }
+
+  /*
+    Scrive nel registro i record che ricostruiscono lo stato corrente: prima gli
+    utenti, poi i post (con i like, da cui derivano le relazioni di follow),
+    poi le segnalazioni, che possono riguardare post o utenti già rimossi, ed
+    infine la soglia ed i post nascosti, che non si possono ricavare dalle
+    segnalazioni perché la soglia può essere cambiata e i moderatori possono
+    aver reso visibili dei post.
+  */
+  private void writeState(WriteAheadLog target) throws IOException{
+    Map<String, Set<Post>> userPostMap = getUserPostMap();
+    for(String username : userPostMap.keySet()){
+      target.beginRecord(ADD_USER).writeUTF(username);
+      target.endRecord();
+    }
+    for(Set<Post> userPosts : userPostMap.values()){
+      for(Post post : userPosts){
+        PostCodec.write(target.beginRecord(ADD_POST), post);
+        target.endRecord();
+      }
+    }
+    for(Map.Entry<Integer, Set<String>> report : getReportedPostMap().entrySet()){
+      for(String username : report.getValue()){
+        DataOutput out = target.beginRecord(REPORT_POST);
+        out.writeInt(report.getKey());
+        out.writeUTF(username);
+        target.endRecord();
+      }
+    }
+    int hidden[] = hiddenPostIds();
+    DataOutput out = target.beginRecord(HIDDEN_STATE);
+    out.writeInt(getHideThreshold());
+    out.writeInt(hidden.length);
+    for(int idPost: hidden){
+      out.writeInt(idPost);
+    }
+    target.endRecord();
+  }
+
+  /*
+    Applica a this, senza registrarla, la modifica descritta da un record del registro.
+
+    THROWS: IOException se il record non è valido o la modifica non può essere applicata
+    MODIFIES: this
+  */
+  private void apply(int type, DataInput in) throws IOException{
+    try{
+      switch( type ){
+        case ADD_USER:
+          super.addUser(in.readUTF());
+          break;
+        case REMOVE_USER:
+          super.removeUser(in.readUTF());
+          break;
+        case ADD_POST:
+          Post post = PostCodec.read(in);
+          super.addPost(post);
+          Post.reserveIds(post.getId() + 1);
+          break;
+        case ADD_POSTS:
+          int count = in.readInt();
+          List<Post> batch = new ArrayList<Post>();
+          int nextId = 0;
+          for(int i = 0; i < count; i++){
+            batch.add(PostCodec.read(in));
+            nextId = Math.max(nextId, batch.get(i).getId() + 1);
+          }
+          super.addPosts(batch);
+          Post.reserveIds(nextId);
+          break;
+        case LIKE_POST:
+          super.likePost(in.readInt(), in.readUTF());
+          break;
+        case REPORT_POST: // registrata solo se valida, ma il post o l'utente possono essere stati rimossi prima di una compattazione
+          restoreReport(in.readInt(), in.readUTF());
+          break;
+        case EDIT_TEXT:
+          int idPost = in.readInt();
+          char newText[] = in.readUTF().toCharArray();
+          if( containsPostById(idPost) == false ){
+            throw new PostDoesNotExist("The post identified by the id doesn't exist");
+          }
+          super.editText(idPost, newText);
+          break;
+        case HIDE_THRESHOLD:
+          super.setHideThreshold(in.readInt());
+          break;
+        case UNHIDE_POST:
+          super.unhidePost(in.readInt());
+          break;
+        case HIDDEN_STATE:
+          int threshold = in.readInt();
+          int hiddenCount = in.readInt();
+          if( threshold < 0 || hiddenCount < 0 ){
+            throw new IOException("Invalid hidden posts record");
+          }
+          int hidden[] = new int[hiddenCount];
+          for(int i = 0; i < hidden.length; i++){
+            hidden[i] = in.readInt();
+          }
+          restoreHidden(threshold, hidden);
+          break;
+        default:
+          throw new IOException("Unknown record type " + type);
+      }
+    }
+    catch(UserNotExistException | UserAlreadyExistException | PostAlreadyExistException | NegativeIdException |
+          PostDoesNotExist | AuthorCantLikeHimselfException | IllegalArgumentException e){
+      throw new IOException("The log contains a change that cannot be applied", e);
+    }
+  }
+}
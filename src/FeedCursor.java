@@ -0,0 +1,69 @@
+public final class FeedCursor{
+  /*
+    OVERVIEW: FeedCursor è un tipo di dato astratto immutabile che rappresenta
+    una posizione all'interno di un feed, ossia la chiave <timestamp, id>
+    dell'ultimo post restituito da una pagina. La pagina successiva contiene
+    i post che, nell'ordine SocialNetwork.TIMESTAMP_ORDER, precedono tale
+    chiave; la posizione resta valida anche se nel frattempo il post viene
+    rimosso o vengono pubblicati nuovi post.
+
+    AF(c): <millis, nanos, id>
+    IR(c): id >= 0 && 0 <= nanos < 1000000000
+  */
+  private final long millis; // millisecondi dall'epoch del timestamp dell'ultimo post
+  private final int nanos; // nanosecondi del timestamp dell'ultimo post
+  private final int id; // id dell'ultimo post
+
+  private FeedCursor(long millis, int nanos, int id){
+    this.millis = millis;
+    this.nanos = nanos;
+    this.id = id;
+  }
+
+  /*
+    REQUIRES: post != null
+    THROWS: NullPointerException se post == null
+    EFFECTS: restituisce il cursore che segue post, da passare a SocialNetwork.feed
+             per ottenere i post meno recenti di post
+  */
+  public static FeedCursor after(Post post) throws NullPointerException{
+    if( post == null ){
+      throw new NullPointerException();
+    }
+    return new FeedCursor(post.getEpochMillis(), post.getNanos(), post.getId());
+  }
+
+  long getMillis(){
+    return millis;
+  }
+
+  int getNanos(){
+    return nanos;
+  }
+
+  int getId(){
+    return id;
+  }
+
+  /*
+    EFFECTS: restituisce vero se obj è un FeedCursor con la stessa posizione di this
+  */
+  public boolean equals(Object obj){
+    if( obj instanceof FeedCursor ){
+      FeedCursor other = (FeedCursor) obj;
+      return millis == other.millis && nanos == other.nanos && id == other.id;
+    }
+    return false;
+  }
+
+  public int hashCode(){
+    return Long.hashCode(millis) * 31 + nanos * 17 + id;
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    return String.format("{%d,%d,%d}", millis, nanos, id);
+  }
+}
@@ -0,0 +1,263 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+public class FollowGraph{
+  /*
+    OVERVIEW: FollowGraph è un tipo di dato astratto modificabile che
+    rappresenta il grafo orientato dei follows tra utenti identificati da id
+    interi densi (si veda UserDictionary). Per ogni nodo sono memorizzati sia
+    gli archi uscenti (utenti seguiti) sia quelli entranti (followers) come
+    insiemi persistenti di int primitivi (si veda PersistentIntSet): ogni arco
+    occupa pochi bit e, poiché gli insiemi non vengono mai modificati ma
+    sostituiti, followedSet e followerSet li possono esporre senza copiarli
+    (ad esempio allo stato persistente da cui il social crea le istantanee).
+
+    Elemento tipico: <V, E> con V insieme di id ed E sottoinsieme di V x V
+
+    AF(c): < { i | follows[i] != null }, { <i, j> | follows[i] != null && follows[i].contains(j) } >
+    IR(c): follows != null && followers != null && follows.length == followers.length &&
+           forall i. ( follows[i] == null <=> followers[i] == null ) &&
+           forall i,j. follows[i] != null && follows[i].contains(j) =>
+            ( follows[j] != null && followers[j].contains(i) ) &&
+           forall i,j. followers[i] != null && followers[i].contains(j) => follows[j].contains(i) &&
+           nodeCount == #{ i | follows[i] != null } &&
+           edgeCount == sum_i follows[i].size()
+  */
+  private PersistentIntSet follows[]; // follows[i] = id degli utenti seguiti da i, null se i non è un nodo
+  private PersistentIntSet followers[]; // followers[i] = id degli utenti che seguono i, null se i non è un nodo
+  private int nodeCount; // numero di nodi
+  private int edgeCount; // numero di archi
+
+  /*
+    Metodo costruttore che inizializza un grafo vuoto
+
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this
+  */
+  public FollowGraph(){
+    this.follows = new PersistentIntSet[16];
+    this.followers = new PersistentIntSet[16];
+    this.nodeCount = 0;
+    this.edgeCount = 0;
+  }
+
+  /*
+    REQUIRES: id >= 0 && containsNode(id) == false
+    THROWS: IllegalArgumentException se id < 0 || containsNode(id)
+    MODIFIES: this
+    EFFECTS: aggiunge il nodo id, senza archi
+  */
+  public void addNode(int id) throws IllegalArgumentException{
+    if( id < 0 || containsNode(id) ){
+      throw new IllegalArgumentException("Invalid or existing node id");
+    }
+    if( id >= follows.length ){
+      int capacity = Math.max(follows.length * 2, id + 1);
+      follows = Arrays.copyOf(follows, capacity);
+      followers = Arrays.copyOf(followers, capacity);
+    }
+    follows[id] = PersistentIntSet.empty();
+    followers[id] = PersistentIntSet.empty();
+    nodeCount += 1;
+  }
+
+  /*
+    Rimuove il nodo id; gli archi incidenti devono essere stati rimossi
+    in precedenza con removeEdge.
+
+    REQUIRES: containsNode(id) && outDegree(id) == 0 && inDegree(id) == 0
+    THROWS: IllegalArgumentException se containsNode(id) == false
+            IllegalStateException se il nodo ha ancora archi incidenti
+    MODIFIES: this
+    EFFECTS: rimuove il nodo id
+  */
+  public void removeNode(int id) throws IllegalArgumentException, IllegalStateException{
+    if( containsNode(id) == false ){
+      throw new IllegalArgumentException("The node doesn't exist");
+    }
+    if( follows[id].isEmpty() == false || followers[id].isEmpty() == false ){
+      throw new IllegalStateException("The node still has edges");
+    }
+    follows[id] = null;
+    followers[id] = null;
+    nodeCount -= 1;
+  }
+
+  /*
+    EFFECTS: restituisce vero se id è un nodo del grafo, falso altrimenti
+  */
+  public boolean containsNode(int id){
+    return id >= 0 && id < follows.length && follows[id] != null;
+  }
+
+  /*
+    REQUIRES: containsNode(from) && containsNode(to)
+    THROWS: IllegalArgumentException se uno dei due nodi non esiste
+    MODIFIES: this
+    EFFECTS: aggiunge l'arco from -> to (from segue to); restituisce vero se
+             l'arco non era già presente, falso altrimenti
+  */
+  public boolean addEdge(int from, int to) throws IllegalArgumentException{
+    checkEdge(from, to);
+    PersistentIntSet followed = follows[from].plus(to);
+    if( followed == follows[from] ){
+      return false;
+    }
+    follows[from] = followed;
+    followers[to] = followers[to].plus(from);
+    edgeCount += 1;
+    return true;
+  }
+
+  /*
+    REQUIRES: containsNode(from) && containsNode(to)
+    THROWS: IllegalArgumentException se uno dei due nodi non esiste
+    MODIFIES: this
+    EFFECTS: rimuove l'arco from -> to; restituisce vero se l'arco era presente, falso altrimenti
+  */
+  public boolean removeEdge(int from, int to) throws IllegalArgumentException{
+    checkEdge(from, to);
+    PersistentIntSet followed = follows[from].minus(to);
+    if( followed == follows[from] ){
+      return false;
+    }
+    follows[from] = followed;
+    followers[to] = followers[to].minus(from);
+    edgeCount -= 1;
+    return true;
+  }
+
+  /*
+    EFFECTS: restituisce vero se esiste l'arco from -> to, falso altrimenti
+  */
+  public boolean containsEdge(int from, int to){
+    return containsNode(from) && follows[from].contains(to);
+  }
+
+  /*
+    REQUIRES: containsNode(id)
+    THROWS: IllegalArgumentException se containsNode(id) == false
+    EFFECTS: restituisce il numero di utenti seguiti da id
+  */
+  public int outDegree(int id) throws IllegalArgumentException{
+    checkNode(id);
+    return follows[id].size();
+  }
+
+  /*
+    REQUIRES: containsNode(id)
+    THROWS: IllegalArgumentException se containsNode(id) == false
+    EFFECTS: restituisce il numero di followers di id
+  */
+  public int inDegree(int id) throws IllegalArgumentException{
+    checkNode(id);
+    return followers[id].size();
+  }
+
+  /*
+    Applica action agli id degli utenti seguiti da id; action non deve modificare il grafo.
+
+    REQUIRES: containsNode(id) && action != null
+    THROWS: IllegalArgumentException se containsNode(id) == false
+            NullPointerException se action == null
+  */
+  public void forEachFollowed(int id, IntConsumer action) throws IllegalArgumentException, NullPointerException{
+    checkNode(id);
+    follows[id].forEach(action);
+  }
+
+  /*
+    Applica action agli id dei followers di id; action non deve modificare il grafo.
+
+    REQUIRES: containsNode(id) && action != null
+    THROWS: IllegalArgumentException se containsNode(id) == false
+            NullPointerException se action == null
+  */
+  public void forEachFollower(int id, IntConsumer action) throws IllegalArgumentException, NullPointerException{
+    checkNode(id);
+    followers[id].forEach(action);
+  }
+
+  /*
+    REQUIRES: containsNode(id)
+    THROWS: IllegalArgumentException se containsNode(id) == false
+    EFFECTS: restituisce, senza copiarlo, l'insieme immutabile degli id degli utenti
+             seguiti da id; le modifiche successive del grafo non sono visibili in esso
+  */
+  public PersistentIntSet followedSet(int id) throws IllegalArgumentException{
+    checkNode(id);
+    return follows[id];
+  }
+
+  /*
+    REQUIRES: containsNode(id)
+    THROWS: IllegalArgumentException se containsNode(id) == false
+    EFFECTS: restituisce, senza copiarlo, l'insieme immutabile degli id dei followers
+             di id; le modifiche successive del grafo non sono visibili in esso
+  */
+  public PersistentIntSet followerSet(int id) throws IllegalArgumentException{
+    checkNode(id);
+    return followers[id];
+  }
+
+  /*
+    REQUIRES: containsNode(id)
+    THROWS: IllegalArgumentException se containsNode(id) == false
+    EFFECTS: restituisce un nuovo array con gli id, in ordine crescente, degli utenti seguiti da id
+  */
+  public int[] followed(int id) throws IllegalArgumentException{
+    checkNode(id);
+    return follows[id].toArray();
+  }
+
+  /*
+    REQUIRES: containsNode(id)
+    THROWS: IllegalArgumentException se containsNode(id) == false
+    EFFECTS: restituisce un nuovo array con gli id, in ordine crescente, dei followers di id
+  */
+  public int[] followersOf(int id) throws IllegalArgumentException{
+    checkNode(id);
+    return followers[id].toArray();
+  }
+
+  /*
+    EFFECTS: restituisce il numero di nodi del grafo
+  */
+  public int nodeCount(){
+    return nodeCount;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di archi del grafo
+  */
+  public int edgeCount(){
+    return edgeCount;
+  }
+
+  private void checkNode(int id) throws IllegalArgumentException{
+    if( containsNode(id) == false ){
+      throw new IllegalArgumentException("The node doesn't exist");
+    }
+  }
+
+  private void checkEdge(int from, int to) throws IllegalArgumentException{
+    checkNode(from);
+    checkNode(to);
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    StringBuilder builder = new StringBuilder("{");
+    for(int i = 0; i < follows.length; i++){
+      if( follows[i] != null ){
+        if( builder.length() > 1 ){
+          builder.append(", ");
+        }
+        builder.append(i).append("->").append(follows[i]);
+      }
+    }
+    return builder.append('}').toString();
+  }
+}
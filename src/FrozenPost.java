@@ -0,0 +1,133 @@
+import java.nio.CharBuffer;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+public final class FrozenPost{
+  /*
+    OVERVIEW: FrozenPost è un tipo di dato astratto immutabile che rappresenta
+    lo stato di un post del social in un preciso istante, come conservato nello
+    stato persistente da cui vengono create le istantanee (si veda
+    SocialNetworkSnapshot). I likes sono l'insieme persistente di id utente
+    dell'archivio dei post (si veda PostStore.likeSet), condiviso e non copiato,
+    per cui dopo un like il nuovo stato del post si ottiene in tempo O(log n)
+    con withLikes; gli id vengono tradotti in username solo quando il post
+    viene ricostruito con toPost.
+    Anche il testo non viene copiato: this riferisce la porzione dell'arena
+    di PostStore in cui è codificato, che non viene mai sovrascritta (i nuovi
+    testi vengono scritti in fondo all'arena, o in una nuova arena quando
+    questa cresce o viene compattata), e lo decodifica solo quando viene letto.
+    Un FrozenPost occupa quindi lo stesso spazio qualunque sia la lunghezza
+    del testo e il numero di likes.
+
+    AF(c): <id, author, PostStore.decode(arena, textStart, textBytes), timestamp(millis, nanos), likes>
+    IR(c): id >= 0 && author != null && arena != null && likes != null &&
+           0 <= textStart && textStart + textBytes <= arena.length &&
+           0 <= nanos <= 999999999 && arena[textStart, textStart + textBytes) non viene mai modificato
+  */
+  private final int id; // id del post
+  private final String author; // username dell'autore
+  private final byte arena[]; // arena di PostStore che contiene il testo codificato, mai esposta
+  private final int textStart; // posizione del testo nell'arena
+  private final int textBytes; // lunghezza in byte del testo codificato
+  private final long millis; // millisecondi dall'epoch del timestamp
+  private final int nanos; // nanosecondi del timestamp
+  private final PersistentIntSet likes; // id degli utenti che hanno messo like
+
+  /*
+    Metodo costruttore usato da PostStore, che passa uno stato già valido
+
+    REQUIRES: i parametri rispettano IR
+    EFFECTS: inizializza this con i parametri, senza copiarli
+  */
+  FrozenPost(int id, String author, byte arena[], int textStart, int textBytes, long millis, int nanos, PersistentIntSet likes){
+    this.id = id;
+    this.author = author;
+    this.arena = arena;
+    this.textStart = textStart;
+    this.textBytes = textBytes;
+    this.millis = millis;
+    this.nanos = nanos;
+    this.likes = likes;
+  }
+
+  /*
+    EFFECTS: restituisce l'id del post
+  */
+  public int getId(){
+    return id;
+  }
+
+  /*
+    EFFECTS: restituisce l'username dell'autore del post
+  */
+  public String getAuthor(){
+    return author;
+  }
+
+  /*
+    EFFECTS: restituisce i millisecondi dall'epoch del timestamp del post
+  */
+  public long getEpochMillis(){
+    return millis;
+  }
+
+  /*
+    EFFECTS: restituisce i nanosecondi del timestamp del post
+  */
+  public int getNanos(){
+    return nanos;
+  }
+
+  /*
+    EFFECTS: restituisce l'insieme (immutabile) degli id degli utenti che hanno messo like
+  */
+  public PersistentIntSet getLikes(){
+    return likes;
+  }
+
+  /*
+    EFFECTS: restituisce un nuovo array con il testo del post
+  */
+  public char[] getText(){
+    char buffer[] = new char[textBytes];
+    return Arrays.copyOf(buffer, PostStore.decode(arena, textStart, textBytes, buffer));
+  }
+
+  /*
+    EFFECTS: restituisce una vista in sola lettura del testo del post
+  */
+  public CharSequence getTextView(){
+    return CharBuffer.wrap(getText()).asReadOnlyBuffer();
+  }
+
+  /*
+    REQUIRES: likes != null
+    THROWS: NullPointerException se likes == null
+    EFFECTS: restituisce il post di this con likes come insieme dei likes
+  */
+  public FrozenPost withLikes(PersistentIntSet likes) throws NullPointerException{
+    if( likes == null ){
+      throw new NullPointerException();
+    }
+    return new FrozenPost(id, author, arena, textStart, textBytes, millis, nanos, likes);
+  }
+
+  /*
+    REQUIRES: users != null && users traduce tutti gli id in likes
+    THROWS: NullPointerException se users == null
+    EFFECTS: restituisce un nuovo Post con lo stato di this, in cui gli id dei
+             likes sono tradotti in username con users
+  */
+  public Post toPost(UserDictionary.Frozen users) throws NullPointerException{
+    Timestamp timestamp = new Timestamp(millis);
+    timestamp.setNanos(nanos);
+    return new Post(id, author, getText(), timestamp, new UsernameSet(likes, users));
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    return String.format("<%d, %s, %s, %d.%09d, %s>", id, author, new String(getText()), millis, nanos, likes);
+  }
+}
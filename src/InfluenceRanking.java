@@ -0,0 +1,274 @@
+import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.TreeSet;
+import java.util.NavigableSet;
+import java.util.Iterator;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+public class InfluenceRanking{
+  /*
+    OVERVIEW: InfluenceRanking è un tipo di dato astratto modificabile che
+    mantiene, per ogni utente, il numero di followers e il numero di utenti
+    seguiti, insieme ad un ordinamento degli utenti per margine decrescente
+    (followers - seguiti). I contatori vengono aggiornati ad ogni variazione
+    del grafo dei follows, così che influencers e classifiche non richiedano
+    la scansione dell'intero grafo.
+
+    Una classifica creata come condivisa usa collezioni concorrenti e, ad ogni
+    aggiornamento, sostituisce i contatori dell'utente invece di modificarli,
+    così da poter essere usata da più thread (si veda ConcurrentSocialNetwork):
+    le letture non acquisiscono lock e possono essere eseguite durante le
+    modifiche, e modifiche che riguardano utenti diversi possono essere eseguite
+    contemporaneamente, mentre quelle di uno stesso utente vanno serializzate
+    dal chiamante. Durante una modifica un utente può temporaneamente mancare da
+    influencers e top, e l'invariante vale quando nessuna modifica è in corso.
+
+    Elemento tipico: { <user_0, followers_0, follows_0>, ... , <user_n-1, followers_n-1, follows_n-1> }
+
+    AF(c): { <d.username, d.followers, d.follows> | degrees.containsValue(d) }
+    IR(c): degrees != null && byMargin != null &&
+           degrees.containsKey(null) == false && degrees.containsValue(null) == false &&
+           forall u. degrees.containsKey(u) => ( degrees.get(u).username.equals(u) &&
+            degrees.get(u).followers >= 0 && degrees.get(u).follows >= 0 ) &&
+           byMargin.size() == degrees.size() &&
+           forall d. degrees.containsValue(d) <=> byMargin.contains(d)
+  */
+  private Map<String, Degree> degrees; // mappa utente -> contatori dell'utente
+  private NavigableSet<Degree> byMargin; // contatori ordinati per margine decrescente, a parità per username
+  private final boolean shared; // vero se la classifica può essere usata da più thread
+
+  // Ordinamento per margine decrescente e, a parità di margine, per username crescente
+  private static final Comparator<Degree> MARGIN_ORDER = (first, second) -> {
+    int cmp = Integer.compare(second.margin(), first.margin());
+    return cmp != 0 ? cmp : first.username.compareTo(second.username);
+  };
+
+  /*
+    Contatori di un singolo utente
+  */
+  private static final class Degree{
+    private final String username; // username dell'utente
+    private int followers; // numero di utenti che lo seguono
+    private int follows; // numero di utenti che segue
+
+    private Degree(String username, int followers, int follows){
+      this.username = username;
+      this.followers = followers;
+      this.follows = follows;
+    }
+
+    private int margin(){
+      return followers - follows;
+    }
+  }
+
+  /*
+    Metodo costruttore che inizializza una classifica vuota
+
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this
+  */
+  public InfluenceRanking(){
+    this(false);
+  }
+
+  /*
+    Metodo costruttore che inizializza una classifica vuota, condivisibile tra
+    più thread se shared è vero
+
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this, con collezioni concorrenti se shared
+  */
+  InfluenceRanking(boolean shared){
+    this.shared = shared;
+    if( shared ){
+      this.degrees = new ConcurrentHashMap<>();
+      this.byMargin = new ConcurrentSkipListSet<>(MARGIN_ORDER);
+    }
+    else{
+      this.degrees = new HashMap<>();
+      this.byMargin = new TreeSet<>(MARGIN_ORDER);
+    }
+  }
+
+  /*
+    REQUIRES: username != null && degrees.containsKey(username) == false
+    THROWS: NullPointerException se username == null
+            IllegalArgumentException se l'utente è già presente
+    MODIFIES: this
+    EFFECTS: aggiunge l'utente con entrambi i contatori a zero
+  */
+  public void addUser(String username) throws NullPointerException, IllegalArgumentException{
+    if( username == null ){
+      throw new NullPointerException();
+    }
+    if( degrees.containsKey(username) ){
+      throw new IllegalArgumentException("The user is already ranked");
+    }
+    Degree degree = new Degree(username, 0, 0);
+    degrees.put(username, degree);
+    byMargin.add(degree);
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: rimuove l'utente e i suoi contatori; non modifica i contatori
+             degli altri utenti, che vanno aggiornati con removeFollow
+  */
+  public void removeUser(String username){
+    Degree degree = degrees.remove(username);
+    if( degree != null ){
+      byMargin.remove(degree);
+    }
+  }
+
+  /*
+    Registra un nuovo arco follower -> followed nel grafo dei follows.
+
+    REQUIRES: follower e followed sono utenti presenti nella classifica
+    THROWS: IllegalArgumentException se uno dei due utenti non è presente
+    MODIFIES: this
+    EFFECTS: incrementa di 1 il numero di seguiti di follower e il numero
+             di followers di followed
+  */
+  public void addFollow(String follower, String followed) throws IllegalArgumentException{
+    update(follower, 0, 1);
+    update(followed, 1, 0);
+  }
+
+  /*
+    Registra la rimozione dell'arco follower -> followed dal grafo dei follows.
+
+    REQUIRES: follower e followed sono utenti presenti nella classifica
+    THROWS: IllegalArgumentException se uno dei due utenti non è presente
+    MODIFIES: this
+    EFFECTS: decrementa di 1 il numero di seguiti di follower e il numero
+             di followers di followed
+  */
+  public void removeFollow(String follower, String followed) throws IllegalArgumentException{
+    update(follower, 0, -1);
+    update(followed, -1, 0);
+  }
+
+  /*
+    Registra in blocco nuovi archi entranti e uscenti di un utente, ad esempio
+    quando il grafo dei follows viene caricato da un'istantanea: l'utente viene
+    riposizionato nell'ordinamento una sola volta invece che una per arco.
+
+    REQUIRES: username è presente nella classifica && followers >= 0 && follows >= 0
+    THROWS: IllegalArgumentException se l'utente non è presente o un contatore è negativo
+    MODIFIES: this
+    EFFECTS: incrementa di followers il numero di followers di username e di
+             follows il numero di utenti che segue
+  */
+  public void addFollows(String username, int followers, int follows) throws IllegalArgumentException{
+    if( followers < 0 || follows < 0 ){
+      throw new IllegalArgumentException("The counters must be non negative");
+    }
+    update(username, followers, follows);
+  }
+
+  /*
+    EFFECTS: restituisce il numero di followers dell'utente, 0 se non è presente
+  */
+  public int followersCount(String username){
+    Degree degree = degrees.get(username);
+    return degree == null ? 0 : degree.followers;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di utenti seguiti dall'utente, 0 se non è presente
+  */
+  public int followsCount(String username){
+    Degree degree = degrees.get(username);
+    return degree == null ? 0 : degree.follows;
+  }
+
+  /*
+    EFFECTS: restituisce una nuova mappa utente -> margine (followers - seguiti)
+             degli utenti con margine diverso da 0
+  */
+  public Map<String, Integer> margins(){
+    Map<String, Integer> marginMap = new HashMap<>();
+    for(Degree degree: degrees.values()){
+      if( degree.margin() != 0 ){
+        marginMap.put(degree.username, degree.margin());
+      }
+    }
+    return marginMap;
+  }
+
+  /*
+    EFFECTS: restituisce la lista degli utenti con più followers che utenti seguiti,
+             ordinata per margine decrescente (a parità di margine per username)
+  */
+  public List<String> influencers(){
+    List<String> influencersList = new ArrayList<>();
+    Iterator<Degree> iterator = byMargin.iterator();
+    while( iterator.hasNext() ){
+      Degree degree = iterator.next();
+      if( degree.margin() <= 0 ){ // i successivi hanno tutti margine minore o uguale
+        break;
+      }
+      influencersList.add(degree.username);
+    }
+    return influencersList;
+  }
+
+  /*
+    REQUIRES: k >= 0
+    THROWS: IllegalArgumentException se k < 0
+    EFFECTS: restituisce i min(k, #utenti) utenti con margine (followers - seguiti)
+             più alto, ordinati per margine decrescente (a parità di margine per username)
+  */
+  public List<String> top(int k) throws IllegalArgumentException{
+    if( k < 0 ){
+      throw new IllegalArgumentException("k must be non negative");
+    }
+    List<String> topList = new ArrayList<>(Math.min(k, degrees.size()));
+    Iterator<Degree> iterator = byMargin.iterator();
+    while( topList.size() < k && iterator.hasNext() ){
+      topList.add(iterator.next().username);
+    }
+    return topList;
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: somma i due delta ai contatori dell'utente, riposizionandolo nell'ordinamento;
+             se la classifica è condivisa i contatori vengono sostituiti da una copia
+             aggiornata, così che le letture concorrenti non li osservino a metà modifica
+  */
+  private void update(String username, int followersDelta, int followsDelta) throws IllegalArgumentException{
+    Degree degree = degrees.get(username);
+    if( degree == null ){
+      throw new IllegalArgumentException("The user is not ranked");
+    }
+    Degree updated = shared ? new Degree(username, degree.followers, degree.follows) : degree;
+    byMargin.remove(degree); // il margine è parte della chiave: rimuovo prima di modificarlo
+    updated.followers += followersDelta;
+    updated.follows += followsDelta;
+    if( updated != degree ){
+      degrees.put(username, updated);
+    }
+    byMargin.add(updated);
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    StringBuilder builder = new StringBuilder("[");
+    for(Degree degree: byMargin){
+      if( builder.length() > 1 ){
+        builder.append(", ");
+      }
+      builder.append(String.format("%s(%d/%d)", degree.username, degree.followers, degree.follows));
+    }
+    return builder.append(']').toString();
+  }
+}
@@ -0,0 +1,67 @@
+public final class IngestionReport{
+  /*
+    OVERVIEW: IngestionReport è un tipo di dato astratto immutabile che
+    riassume l'esito di un'importazione di post (si veda PostIngestion):
+    post letti, aggiunti e rifiutati dal social, byte letti e durata.
+
+    AF(c): <postsRead, postsAdded, postsRejected, bytesRead, elapsedNanos>
+    IR(c): postsRead >= 0 && postsAdded >= 0 && postsRejected >= 0 &&
+           postsAdded + postsRejected == postsRead && bytesRead >= 0 && elapsedNanos >= 0
+  */
+  private final long postsRead; // post letti dal file
+  private final long postsAdded; // post aggiunti al social
+  private final long postsRejected; // post rifiutati dal social (utenti inesistenti, id duplicati, ...)
+  private final long bytesRead; // byte letti dal file
+  private final long elapsedNanos; // durata dell'importazione
+
+  IngestionReport(long postsRead, long postsAdded, long postsRejected, long bytesRead, long elapsedNanos){
+    this.postsRead = postsRead;
+    this.postsAdded = postsAdded;
+    this.postsRejected = postsRejected;
+    this.bytesRead = bytesRead;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  public long getPostsRead(){
+    return postsRead;
+  }
+
+  public long getPostsAdded(){
+    return postsAdded;
+  }
+
+  public long getPostsRejected(){
+    return postsRejected;
+  }
+
+  public long getBytesRead(){
+    return bytesRead;
+  }
+
+  public long getElapsedNanos(){
+    return elapsedNanos;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di post letti al secondo
+  */
+  public double postsPerSecond(){
+    return elapsedNanos == 0 ? 0 : postsRead * 1e9 / elapsedNanos;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di megabyte (10^6 byte) letti al secondo
+  */
+  public double megabytesPerSecond(){
+    return elapsedNanos == 0 ? 0 : bytesRead * 1e3 / elapsedNanos;
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    return String.format("%d posts read (%d added, %d rejected), %d bytes in %d ms: %.0f posts/s, %.1f MB/s",
+                         postsRead, postsAdded, postsRejected, bytesRead, elapsedNanos / 1000000,
+                         postsPerSecond(), megabytesPerSecond());
+  }
+}
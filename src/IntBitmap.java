@@ -0,0 +1,864 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+public class IntBitmap{
+  /*
+    OVERVIEW: IntBitmap è un tipo di dato astratto modificabile che rappresenta
+    un insieme di interi non negativi, pensato per id densi come quelli di
+    UserDictionary. Gli elementi sono suddivisi in blocchi di 2^16 valori
+    consecutivi (i 16 bit alti sono la chiave del blocco) e ogni blocco è
+    memorizzato, come nelle Roaring bitmap, nel contenitore più compatto:
+    - un array ordinato dei 16 bit bassi, se il blocco ha al più ARRAY_MAX elementi;
+    - una bitmap di 2^16 bit (1024 long), se ne ha di più;
+    - una sequenza di intervalli [inizio, fine], se gli elementi formano pochi
+      intervalli consecutivi (si veda runOptimize).
+    Unione e conteggio dell'intersezione tra bitmap procedono un long (64
+    elementi) alla volta; un blocco con pochi elementi occupa 2 byte per elemento.
+
+    Elemento tipico: { x_0, x_1, ... , x_n-1 }
+
+    AF(c): { (keys[i] << 16) | v | i in [0, containerCount) && containers[i] contiene v }
+    IR(c): keys != null && containers != null && keys.length == containers.length &&
+           0 <= containerCount <= keys.length &&
+           forall i. i in [0, containerCount) => ( containers[i] != null && containers[i].cardinality() > 0 ) &&
+           forall i. i in [1, containerCount) => keys[i-1] < keys[i] &&
+           forall i. containers[i] è un ArrayContainer => containers[i].cardinality() <= ARRAY_MAX &&
+           forall i. containers[i] è un BitmapContainer => containers[i].cardinality() > ARRAY_MAX &&
+           size == sum_{i in [0, containerCount)} containers[i].cardinality()
+  */
+  private char keys[]; // 16 bit alti dei blocchi, in ordine crescente
+  private Container containers[]; // containers[i] = contenitore del blocco keys[i]
+  private int containerCount; // numero di blocchi non vuoti
+  private int size; // numero di elementi dell'insieme
+
+  private static final int ARRAY_MAX = 4096; // oltre questa cardinalità un array occupa più di una bitmap
+  private static final int WORDS = 1024; // long di una bitmap di un blocco (2^16 bit)
+
+  /*
+    Metodo costruttore che inizializza un insieme vuoto
+
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this
+  */
+  public IntBitmap(){
+    this.keys = new char[1];
+    this.containers = new Container[1];
+    this.containerCount = 0;
+    this.size = 0;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di elementi dell'insieme
+  */
+  public int size(){
+    return size;
+  }
+
+  /*
+    EFFECTS: restituisce vero se l'insieme è vuoto, falso altrimenti
+  */
+  public boolean isEmpty(){
+    return size == 0;
+  }
+
+  /*
+    EFFECTS: restituisce vero se value appartiene all'insieme, falso altrimenti
+  */
+  public boolean contains(int value){
+    if( value < 0 ){
+      return false;
+    }
+    int index = indexOf((char) (value >>> 16));
+    return index >= 0 && containers[index].contains(value & 0xFFFF);
+  }
+
+  /*
+    Aggiunge value all'insieme.
+
+    REQUIRES: value >= 0
+    THROWS: IllegalArgumentException se value < 0
+    MODIFIES: this
+    EFFECTS: this_post = this_pre U {value}; restituisce vero se value non
+             era già presente, falso altrimenti
+  */
+  public boolean add(int value) throws IllegalArgumentException{
+    if( value < 0 ){
+      throw new IllegalArgumentException("The value must be non negative");
+    }
+    char key = (char) (value >>> 16);
+    int index = indexOf(key);
+    if( index < 0 ){
+      index = -index - 1;
+      insertContainer(index, key, new ArrayContainer());
+    }
+    Container container = containers[index];
+    int before = container.cardinality();
+    containers[index] = container.add(value & 0xFFFF);
+    if( containers[index].cardinality() == before ){
+      return false;
+    }
+    size += 1;
+    return true;
+  }
+
+  /*
+    Rimuove value dall'insieme.
+
+    MODIFIES: this
+    EFFECTS: this_post = this_pre \ {value}; restituisce vero se value era
+             presente, falso altrimenti
+  */
+  public boolean remove(int value){
+    if( value < 0 ){
+      return false;
+    }
+    int index = indexOf((char) (value >>> 16));
+    if( index < 0 ){
+      return false;
+    }
+    Container container = containers[index];
+    int before = container.cardinality();
+    containers[index] = container.remove(value & 0xFFFF);
+    if( containers[index].cardinality() == before ){
+      return false;
+    }
+    size -= 1;
+    if( containers[index].cardinality() == 0 ){
+      removeContainer(index);
+    }
+    return true;
+  }
+
+  /*
+    Unisce a this gli elementi di other; i blocchi presenti in entrambi
+    vengono fusi una parola (64 elementi) alla volta.
+
+    REQUIRES: other != null
+    THROWS: NullPointerException se other == null
+    MODIFIES: this
+    EFFECTS: this_post = this_pre U other
+  */
+  public void or(IntBitmap other) throws NullPointerException{
+    if( other == null ){
+      throw new NullPointerException();
+    }
+    for(int j = 0; j < other.containerCount; j++){
+      int index = indexOf(other.keys[j]);
+      if( index < 0 ){
+        Container copy = other.containers[j].copy(); // i contenitori non vengono mai condivisi
+        insertContainer(-index - 1, other.keys[j], copy);
+        size += copy.cardinality();
+      }
+      else{
+        int before = containers[index].cardinality();
+        containers[index] = containers[index].or(other.containers[j]);
+        size += containers[index].cardinality() - before;
+      }
+    }
+  }
+
+  /*
+    Unisce a this i 64 elementi value + i tali che il bit i di word è
+    impostato; se il blocco è una bitmap la parola viene fusa direttamente
+    (si veda PersistentIntSet.orInto).
+
+    REQUIRES: value >= 0 && value % 64 == 0
+    THROWS: IllegalArgumentException se value < 0 || value % 64 != 0
+    MODIFIES: this
+    EFFECTS: this_post = this_pre U { value + i | (word & (1L << i)) != 0 }
+  */
+  void orWord(int value, long word) throws IllegalArgumentException{
+    if( value < 0 || (value & 63) != 0 ){
+      throw new IllegalArgumentException("The value must be a non negative multiple of 64");
+    }
+    if( word == 0 ){
+      return;
+    }
+    char key = (char) (value >>> 16);
+    int index = indexOf(key);
+    if( index < 0 ){
+      index = -index - 1;
+      insertContainer(index, key, new ArrayContainer());
+    }
+    int before = containers[index].cardinality();
+    containers[index] = containers[index].orWord((value & 0xFFFF) >>> 6, word);
+    size += containers[index].cardinality() - before;
+  }
+
+  /*
+    Conta gli elementi comuni a this e other senza costruire l'intersezione;
+    i blocchi presenti in entrambi sono confrontati una parola alla volta
+    (o, se uno dei due è un array, un elemento alla volta).
+
+    REQUIRES: other != null
+    THROWS: NullPointerException se other == null
+    EFFECTS: restituisce #(this ∩ other)
+  */
+  public int andCardinality(IntBitmap other) throws NullPointerException{
+    if( other == null ){
+      throw new NullPointerException();
+    }
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while( i < containerCount && j < other.containerCount ){
+      if( keys[i] < other.keys[j] ){
+        i += 1;
+      }
+      else if( keys[i] > other.keys[j] ){
+        j += 1;
+      }
+      else{
+        count += containers[i].andCardinality(other.containers[j]);
+        i += 1;
+        j += 1;
+      }
+    }
+    return count;
+  }
+
+  /*
+    Sostituisce ogni contenitore con la sua rappresentazione più compatta,
+    usando sequenze di intervalli per i blocchi in cui gli elementi sono
+    per lo più consecutivi; conviene invocarlo dopo aver costruito l'insieme.
+
+    MODIFIES: this
+    EFFECTS: lo stato astratto di this non cambia
+  */
+  public void runOptimize(){
+    for(int i = 0; i < containerCount; i++){
+      containers[i] = containers[i].runOptimize();
+    }
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: svuota l'insieme
+  */
+  public void clear(){
+    Arrays.fill(containers, 0, containerCount, null);
+    containerCount = 0;
+    size = 0;
+  }
+
+  /*
+    Applica l'azione passata come parametro ad ogni elemento dell'insieme,
+    in ordine crescente.
+
+    REQUIRES: action != null
+    THROWS: NullPointerException se action == null
+  */
+  public void forEach(IntConsumer action) throws NullPointerException{
+    if( action == null ){
+      throw new NullPointerException();
+    }
+    for(int i = 0; i < containerCount; i++){
+      containers[i].forEach(keys[i] << 16, action);
+    }
+  }
+
+  /*
+    EFFECTS: restituisce un nuovo array contenente gli elementi dell'insieme in ordine crescente
+  */
+  public int[] toArray(){
+    int array[] = new int[size];
+    int position[] = {0};
+    forEach(value -> array[position[0]++] = value);
+    return array;
+  }
+
+  /*
+    EFFECTS: restituisce l'indice del blocco key oppure, se non è presente,
+             -(punto di inserimento) - 1
+  */
+  private int indexOf(char key){
+    int low = 0;
+    int high = containerCount - 1;
+    while( low <= high ){
+      int middle = (low + high) >>> 1;
+      if( keys[middle] < key ){
+        low = middle + 1;
+      }
+      else if( keys[middle] > key ){
+        high = middle - 1;
+      }
+      else{
+        return middle;
+      }
+    }
+    return -(low + 1);
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: inserisce il contenitore container del blocco key in posizione index
+  */
+  private void insertContainer(int index, char key, Container container){
+    if( containerCount == keys.length ){
+      keys = Arrays.copyOf(keys, keys.length * 2);
+      containers = Arrays.copyOf(containers, containers.length * 2);
+    }
+    System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+    System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+    keys[index] = key;
+    containers[index] = container;
+    containerCount += 1;
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: rimuove il contenitore in posizione index
+  */
+  private void removeContainer(int index){
+    System.arraycopy(keys, index + 1, keys, index, containerCount - index - 1);
+    System.arraycopy(containers, index + 1, containers, index, containerCount - index - 1);
+    containerCount -= 1;
+    containers[containerCount] = null;
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    return Arrays.toString(toArray());
+  }
+
+  /*
+    Contenitore dei 16 bit bassi degli elementi di un blocco. Le operazioni che
+    modificano il contenitore restituiscono quello da usare al suo posto, che
+    può essere di un altro tipo se la cardinalità ha superato una soglia.
+  */
+  private static abstract class Container{
+    abstract int cardinality();
+
+    abstract boolean contains(int low);
+
+    abstract Container add(int low);
+
+    abstract Container remove(int low);
+
+    // applica action a high | v per ogni elemento v, in ordine crescente
+    abstract void forEach(int high, IntConsumer action);
+
+    // imposta in words i bit degli elementi del contenitore
+    abstract void orInto(long words[]);
+
+    // restituisce il numero di elementi del contenitore i cui bit sono impostati in words
+    abstract int countIn(long words[]);
+
+    // restituisce le parole della bitmap del contenitore, da non modificare
+    abstract long[] words();
+
+    abstract Container runOptimize();
+
+    abstract Container copy();
+
+    // restituisce il contenitore con i bit di word impostati nella parola index
+    Container orWord(int index, long word){
+      Container container = this;
+      while( word != 0 ){
+        container = container.add((index << 6) | Long.numberOfTrailingZeros(word));
+        word &= word - 1;
+      }
+      return container;
+    }
+
+    /*
+      EFFECTS: restituisce un contenitore con l'unione di this e other; this può
+               essere modificato e restituito, other non viene modificato
+    */
+    Container or(Container other){
+      long words[] = new long[WORDS];
+      orInto(words);
+      other.orInto(words);
+      return fromWords(words, bitCount(words));
+    }
+
+    /*
+      EFFECTS: restituisce il numero di elementi comuni a this e other
+    */
+    int andCardinality(Container other){
+      if( other instanceof ArrayContainer ){
+        return other.andCardinality(this);
+      }
+      return this instanceof BitmapContainer ? other.countIn(words()) : countIn(other.words());
+    }
+  }
+
+  private static final class ArrayContainer extends Container{
+    private char values[]; // 16 bit bassi degli elementi, in ordine crescente
+    private int cardinality; // elementi occupati di values
+
+    ArrayContainer(){
+      this.values = new char[4];
+      this.cardinality = 0;
+    }
+
+    ArrayContainer(char values[], int cardinality){
+      this.values = values;
+      this.cardinality = cardinality;
+    }
+
+    int cardinality(){
+      return cardinality;
+    }
+
+    boolean contains(int low){
+      return search(low) >= 0;
+    }
+
+    Container add(int low){
+      int index = search(low);
+      if( index >= 0 ){
+        return this;
+      }
+      if( cardinality == ARRAY_MAX ){ // l'array non conviene più: passo alla bitmap
+        long words[] = new long[WORDS];
+        orInto(words);
+        return new BitmapContainer(words, cardinality).add(low);
+      }
+      index = -index - 1;
+      if( cardinality == values.length ){
+        values = Arrays.copyOf(values, Math.min(ARRAY_MAX, values.length * 2));
+      }
+      System.arraycopy(values, index, values, index + 1, cardinality - index);
+      values[index] = (char) low;
+      cardinality += 1;
+      return this;
+    }
+
+    Container remove(int low){
+      int index = search(low);
+      if( index >= 0 ){
+        System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+        cardinality -= 1;
+      }
+      return this;
+    }
+
+    void forEach(int high, IntConsumer action){
+      for(int i = 0; i < cardinality; i++){
+        action.accept(high | values[i]);
+      }
+    }
+
+    void orInto(long words[]){
+      for(int i = 0; i < cardinality; i++){
+        words[values[i] >>> 6] |= 1L << values[i];
+      }
+    }
+
+    int countIn(long words[]){
+      int count = 0;
+      for(int i = 0; i < cardinality; i++){
+        if( (words[values[i] >>> 6] & (1L << values[i])) != 0 ){
+          count += 1;
+        }
+      }
+      return count;
+    }
+
+    long[] words(){
+      long words[] = new long[WORDS];
+      orInto(words);
+      return words;
+    }
+
+    Container or(Container other){
+      if( other instanceof ArrayContainer && cardinality + other.cardinality() <= ARRAY_MAX ){
+        ArrayContainer array = (ArrayContainer) other;
+        char merged[] = new char[cardinality + array.cardinality];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while( i < cardinality || j < array.cardinality ){
+          if( j == array.cardinality || (i < cardinality && values[i] < array.values[j]) ){
+            merged[count++] = values[i++];
+          }
+          else if( i == cardinality || array.values[j] < values[i] ){
+            merged[count++] = array.values[j++];
+          }
+          else{ // elemento comune
+            merged[count++] = values[i++];
+            j += 1;
+          }
+        }
+        return new ArrayContainer(merged, count);
+      }
+      return super.or(other);
+    }
+
+    int andCardinality(Container other){
+      int count = 0;
+      for(int i = 0; i < cardinality; i++){
+        if( other.contains(values[i]) ){
+          count += 1;
+        }
+      }
+      return count;
+    }
+
+    Container runOptimize(){
+      int runs = 0;
+      for(int i = 0; i < cardinality; i++){
+        if( i == 0 || values[i] != values[i - 1] + 1 ){
+          runs += 1;
+        }
+      }
+      if( RunContainer.sizeInBytes(runs) >= 2 * cardinality ){
+        return this;
+      }
+      RunContainer run = new RunContainer(runs);
+      for(int i = 0; i < cardinality; i++){
+        run.append(values[i]);
+      }
+      return run;
+    }
+
+    Container copy(){
+      return new ArrayContainer(Arrays.copyOf(values, Math.max(1, cardinality)), cardinality);
+    }
+
+    /*
+      EFFECTS: restituisce l'indice di low in values oppure, se non è presente,
+               -(punto di inserimento) - 1
+    */
+    private int search(int low){
+      int first = 0;
+      int last = cardinality - 1;
+      while( first <= last ){
+        int middle = (first + last) >>> 1;
+        if( values[middle] < low ){
+          first = middle + 1;
+        }
+        else if( values[middle] > low ){
+          last = middle - 1;
+        }
+        else{
+          return middle;
+        }
+      }
+      return -(first + 1);
+    }
+  }
+
+  private static final class BitmapContainer extends Container{
+    private final long words[]; // bit v impostato se v appartiene al blocco
+    private int cardinality; // numero di bit impostati
+
+    BitmapContainer(long words[], int cardinality){
+      this.words = words;
+      this.cardinality = cardinality;
+    }
+
+    int cardinality(){
+      return cardinality;
+    }
+
+    boolean contains(int low){
+      return (words[low >>> 6] & (1L << low)) != 0;
+    }
+
+    Container add(int low){
+      if( contains(low) == false ){
+        words[low >>> 6] |= 1L << low;
+        cardinality += 1;
+      }
+      return this;
+    }
+
+    Container remove(int low){
+      if( contains(low) == false ){
+        return this;
+      }
+      words[low >>> 6] &= ~(1L << low);
+      cardinality -= 1;
+      return cardinality > ARRAY_MAX ? this : fromWords(words, cardinality);
+    }
+
+    void forEach(int high, IntConsumer action){
+      for(int i = 0; i < WORDS; i++){
+        long word = words[i];
+        while( word != 0 ){
+          action.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+          word &= word - 1; // azzero il bit meno significativo
+        }
+      }
+    }
+
+    void orInto(long target[]){
+      for(int i = 0; i < WORDS; i++){
+        target[i] |= words[i];
+      }
+    }
+
+    int countIn(long target[]){
+      int count = 0;
+      for(int i = 0; i < WORDS; i++){
+        count += Long.bitCount(target[i] & words[i]);
+      }
+      return count;
+    }
+
+    long[] words(){
+      return words;
+    }
+
+    Container or(Container other){
+      other.orInto(words);
+      cardinality = bitCount(words);
+      return this;
+    }
+
+    Container orWord(int index, long word){
+      cardinality += Long.bitCount(word & ~words[index]);
+      words[index] |= word;
+      return this;
+    }
+
+    Container runOptimize(){
+      int runs = 0;
+      long previous = 0;
+      for(int i = 0; i < WORDS; i++){
+        // inizio di un intervallo: bit impostato il cui precedente non lo è
+        runs += Long.bitCount(words[i] & ~((words[i] << 1) | (previous >>> 63)));
+        previous = words[i];
+      }
+      if( RunContainer.sizeInBytes(runs) >= WORDS * 8 ){
+        return this;
+      }
+      RunContainer run = new RunContainer(runs);
+      forEach(0, run::append);
+      return run;
+    }
+
+    Container copy(){
+      return new BitmapContainer(Arrays.copyOf(words, WORDS), cardinality);
+    }
+  }
+
+  private static final class RunContainer extends Container{
+    private char runs[]; // coppie <inizio, lunghezza - 1> degli intervalli, in ordine crescente e non adiacenti
+    private int runCount; // numero di intervalli
+    private int cardinality; // numero di elementi
+
+    RunContainer(int capacity){
+      this.runs = new char[2 * Math.max(1, capacity)];
+      this.runCount = 0;
+      this.cardinality = 0;
+    }
+
+    // restituisce lo spazio occupato da un contenitore con runs intervalli
+    static int sizeInBytes(int runs){
+      return 2 + 4 * runs;
+    }
+
+    int cardinality(){
+      return cardinality;
+    }
+
+    boolean contains(int low){
+      int index = find(low);
+      return index >= 0 && low <= end(index);
+    }
+
+    Container add(int low){
+      int index = find(low);
+      if( index >= 0 && low <= end(index) ){
+        return this;
+      }
+      boolean extendsPrevious = index >= 0 && end(index) + 1 == low;
+      boolean extendsNext = index + 1 < runCount && start(index + 1) == low + 1;
+      if( extendsPrevious && extendsNext ){ // low unisce due intervalli
+        runs[2 * index + 1] = (char) (end(index + 1) - start(index));
+        deleteRun(index + 1);
+      }
+      else if( extendsPrevious ){
+        runs[2 * index + 1] += 1;
+      }
+      else if( extendsNext ){
+        runs[2 * (index + 1)] = (char) low;
+        runs[2 * (index + 1) + 1] += 1;
+      }
+      else{
+        insertRun(index + 1, low, low);
+      }
+      cardinality += 1;
+      return this;
+    }
+
+    Container remove(int low){
+      int index = find(low);
+      if( index < 0 || low > end(index) ){
+        return this;
+      }
+      int start = start(index);
+      int end = end(index);
+      if( start == end ){
+        deleteRun(index);
+      }
+      else if( low == start ){
+        runs[2 * index] = (char) (low + 1);
+        runs[2 * index + 1] -= 1;
+      }
+      else if( low == end ){
+        runs[2 * index + 1] -= 1;
+      }
+      else{ // low divide l'intervallo in due
+        runs[2 * index + 1] = (char) (low - 1 - start);
+        insertRun(index + 1, low + 1, end);
+      }
+      cardinality -= 1;
+      return this;
+    }
+
+    void forEach(int high, IntConsumer action){
+      for(int i = 0; i < runCount; i++){
+        for(int v = start(i), end = end(i); v <= end; v++){
+          action.accept(high | v);
+        }
+      }
+    }
+
+    void orInto(long words[]){
+      for(int i = 0; i < runCount; i++){
+        int first = start(i) >>> 6;
+        int last = end(i) >>> 6;
+        for(int w = first; w <= last; w++){
+          words[w] |= mask(i, w);
+        }
+      }
+    }
+
+    int countIn(long words[]){
+      int count = 0;
+      for(int i = 0; i < runCount; i++){
+        int first = start(i) >>> 6;
+        int last = end(i) >>> 6;
+        for(int w = first; w <= last; w++){
+          count += Long.bitCount(words[w] & mask(i, w));
+        }
+      }
+      return count;
+    }
+
+    long[] words(){
+      long words[] = new long[WORDS];
+      orInto(words);
+      return words;
+    }
+
+    Container runOptimize(){
+      // dopo molte modifiche gli intervalli possono essere diventati più costosi di un array o di una bitmap
+      if( sizeInBytes(runCount) < Math.min(2 * cardinality, WORDS * 8) ){
+        return this;
+      }
+      return fromWords(words(), cardinality);
+    }
+
+    Container copy(){
+      RunContainer copy = new RunContainer(runCount);
+      System.arraycopy(runs, 0, copy.runs, 0, 2 * runCount);
+      copy.runCount = runCount;
+      copy.cardinality = cardinality;
+      return copy;
+    }
+
+    /*
+      REQUIRES: low è maggiore di tutti gli elementi del contenitore
+      MODIFIES: this
+      EFFECTS: aggiunge low in fondo al contenitore
+    */
+    void append(int low){
+      if( runCount > 0 && end(runCount - 1) + 1 == low ){
+        runs[2 * runCount - 1] += 1;
+        cardinality += 1;
+      }
+      else{
+        insertRun(runCount, low, low);
+        cardinality += 1;
+      }
+    }
+
+    private int start(int index){
+      return runs[2 * index];
+    }
+
+    private int end(int index){
+      return runs[2 * index] + runs[2 * index + 1];
+    }
+
+    // restituisce i bit della parola w che appartengono all'intervallo index
+    private long mask(int index, int w){
+      int from = Math.max(start(index), w << 6) & 63;
+      int to = Math.min(end(index), (w << 6) | 63) & 63;
+      return (-1L << from) & (-1L >>> (63 - to));
+    }
+
+    /*
+      EFFECTS: restituisce l'indice dell'ultimo intervallo che inizia in un
+               valore <= low, -1 se non esiste
+    */
+    private int find(int low){
+      int first = 0;
+      int last = runCount - 1;
+      while( first <= last ){
+        int middle = (first + last) >>> 1;
+        if( start(middle) <= low ){
+          first = middle + 1;
+        }
+        else{
+          last = middle - 1;
+        }
+      }
+      return last;
+    }
+
+    private void insertRun(int index, int start, int end){
+      if( 2 * runCount == runs.length ){
+        runs = Arrays.copyOf(runs, runs.length * 2);
+      }
+      System.arraycopy(runs, 2 * index, runs, 2 * index + 2, 2 * (runCount - index));
+      runs[2 * index] = (char) start;
+      runs[2 * index + 1] = (char) (end - start);
+      runCount += 1;
+    }
+
+    private void deleteRun(int index){
+      System.arraycopy(runs, 2 * index + 2, runs, 2 * index, 2 * (runCount - index - 1));
+      runCount -= 1;
+    }
+  }
+
+  /*
+    EFFECTS: restituisce il numero di bit impostati in words
+  */
+  private static int bitCount(long words[]){
+    int count = 0;
+    for(long word: words){
+      count += Long.bitCount(word);
+    }
+    return count;
+  }
+
+  /*
+    REQUIRES: cardinality == bitCount(words)
+    EFFECTS: restituisce un array se cardinality <= ARRAY_MAX, altrimenti una bitmap
+             che usa words
+  */
+  private static Container fromWords(long words[], int cardinality){
+    if( cardinality > ARRAY_MAX ){
+      return new BitmapContainer(words, cardinality);
+    }
+    char values[] = new char[Math.max(1, cardinality)];
+    int count = 0;
+    for(int i = 0; i < WORDS; i++){
+      long word = words[i];
+      while( word != 0 ){
+        values[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+        word &= word - 1;
+      }
+    }
+    return new ArrayContainer(values, cardinality);
+  }
+}
@@ -0,0 +1,217 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+public class IntSet{
+  /*
+    OVERVIEW: IntSet è un tipo di dato astratto modificabile che rappresenta
+    un insieme di interi non negativi (ad esempio id di post o di utenti).
+    Gli elementi sono memorizzati come int primitivi in una tabella ad
+    indirizzamento aperto con scansione lineare.
+
+    Elemento tipico: { x_0, x_1, ... , x_n-1 }
+
+    AF(c): { elements[i] | i in [0, elements.length) && elements[i] != EMPTY }
+    IR(c): elements != null && elements.length è una potenza di 2 &&
+           forall i. i in [0, elements.length) && elements[i] != EMPTY => elements[i] >= 0 &&
+           size == #{ i | elements[i] != EMPTY } && size < elements.length &&
+           forall i,j. i,j in [0, elements.length) && i!=j && elements[i] != EMPTY => elements[i] != elements[j]
+  */
+  private int elements[]; // tabella degli elementi, EMPTY se lo slot è libero
+  private int size; // numero di elementi presenti nell'insieme
+
+  private static final int EMPTY = -1; // marcatore di slot libero (gli elementi sono sempre >= 0)
+  private static final int DEFAULT_CAPACITY = 4; // capacità iniziale della tabella
+
+  /*
+    Metodo costruttore che inizializza un insieme vuoto
+
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this
+  */
+  public IntSet(){
+    this.elements = new int[DEFAULT_CAPACITY];
+    Arrays.fill(this.elements, EMPTY);
+    this.size = 0;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di elementi dell'insieme
+  */
+  public int size(){
+    return this.size;
+  }
+
+  /*
+    EFFECTS: restituisce vero se l'insieme è vuoto, falso altrimenti
+  */
+  public boolean isEmpty(){
+    return this.size == 0;
+  }
+
+  /*
+    EFFECTS: restituisce vero se value appartiene all'insieme, falso altrimenti
+  */
+  public boolean contains(int value){
+    return value >= 0 && elements[indexOf(value)] == value;
+  }
+
+  /*
+    Aggiunge value all'insieme.
+
+    REQUIRES: value >= 0
+    THROWS: IllegalArgumentException se value < 0
+    MODIFIES: this
+    EFFECTS: this_post = this_pre U {value}; restituisce vero se value non
+             era già presente, falso altrimenti
+  */
+  public boolean add(int value) throws IllegalArgumentException{
+    if( value < 0 ){
+      throw new IllegalArgumentException("The value must be non negative");
+    }
+    int index = indexOf(value);
+    if( elements[index] == value ){
+      return false;
+    }
+    elements[index] = value;
+    size += 1;
+    if( size * 4 >= elements.length * 3 ){ // fattore di carico oltre 0.75: raddoppio la tabella
+      resize(elements.length * 2);
+    }
+    return true;
+  }
+
+  /*
+    Rimuove value dall'insieme.
+
+    MODIFIES: this
+    EFFECTS: this_post = this_pre \ {value}; restituisce vero se value era
+             presente, falso altrimenti
+  */
+  public boolean remove(int value){
+    if( value < 0 ){
+      return false;
+    }
+    int index = indexOf(value);
+    if( elements[index] == EMPTY ){
+      return false;
+    }
+    // cancellazione con backward shift: ricompatto la catena di collisioni
+    // successiva allo slot liberato, così da non dover usare lapidi
+    int mask = elements.length - 1;
+    int hole = index;
+    int next = (hole + 1) & mask;
+    while( elements[next] != EMPTY ){
+      int home = hash(elements[next]) & mask;
+      if( ((next - home) & mask) >= ((next - hole) & mask) ){
+        elements[hole] = elements[next];
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    elements[hole] = EMPTY;
+    size -= 1;
+    return true;
+  }
+
+  /*
+    REQUIRES: other != null
+    THROWS: NullPointerException se other == null
+    MODIFIES: this
+    EFFECTS: this_post = this_pre U other
+  */
+  public void addAll(IntSet other) throws NullPointerException{
+    if( other == null ){
+      throw new NullPointerException();
+    }
+    int otherElements[] = other.elements;
+    for(int i = 0; i < otherElements.length; i++){
+      if( otherElements[i] != EMPTY ){
+        add(otherElements[i]);
+      }
+    }
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: svuota l'insieme
+  */
+  public void clear(){
+    Arrays.fill(elements, EMPTY);
+    size = 0;
+  }
+
+  /*
+    Applica l'azione passata come parametro ad ogni elemento dell'insieme,
+    senza alcun ordine prestabilito.
+
+    REQUIRES: action != null
+    THROWS: NullPointerException se action == null
+  */
+  public void forEach(IntConsumer action) throws NullPointerException{
+    if( action == null ){
+      throw new NullPointerException();
+    }
+    for(int i = 0; i < elements.length; i++){
+      if( elements[i] != EMPTY ){
+        action.accept(elements[i]);
+      }
+    }
+  }
+
+  /*
+    EFFECTS: restituisce un nuovo array contenente gli elementi dell'insieme
+  */
+  public int[] toArray(){
+    int array[] = new int[size];
+    int j = 0;
+    for(int i = 0; i < elements.length; i++){
+      if( elements[i] != EMPTY ){
+        array[j++] = elements[i];
+      }
+    }
+    return array;
+  }
+
+  /*
+    EFFECTS: restituisce l'indice dello slot che contiene value oppure, se value
+             non è presente, dello slot libero in cui andrebbe inserito
+  */
+  private int indexOf(int value){
+    int mask = elements.length - 1;
+    int index = hash(value) & mask;
+    while( elements[index] != EMPTY && elements[index] != value ){
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: reinserisce tutti gli elementi in una tabella di capacità newCapacity
+  */
+  private void resize(int newCapacity){
+    int oldElements[] = elements;
+    elements = new int[newCapacity];
+    Arrays.fill(elements, EMPTY);
+    for(int i = 0; i < oldElements.length; i++){
+      if( oldElements[i] != EMPTY ){
+        elements[indexOf(oldElements[i])] = oldElements[i];
+      }
+    }
+  }
+
+  /*
+    EFFECTS: restituisce il valore di hash di value
+  */
+  private static int hash(int value){
+    int h = value * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    return Arrays.toString(toArray());
+  }
+}
@@ -0,0 +1,15 @@
+/*
+  interfaccia usata da chi deve essere avvisato quando la verifica
+  dell'invariante di rappresentazione di un post o di un social (incrementale
+  o a campione, si veda SocialNetwork.setInvariantListener e InvariantSampler)
+  trova una violazione
+*/
+public interface InvariantListener{
+  /*
+    Invocato per ogni violazione trovata, dal thread che ha eseguito la verifica.
+
+    EFFECTS: entity identifica l'utente o il post verificato (ad esempio "user x"
+             o "post 3"), invariant descrive la clausola dell'invariante violata
+  */
+  void invariantViolated(String entity, String invariant);
+}
@@ -0,0 +1,142 @@
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+public class InvariantSampler{
+  /*
+    OVERVIEW: InvariantSampler verifica in background l'invariante di un
+    SocialNetwork a campione: un thread daemon sceglie ripetutamente un utente
+    ed un post a caso e ne verifica le clausole (SocialNetwork.checkSample),
+    segnalando le violazioni ad un InvariantListener. Il thread occupa al più
+    una frazione cpuBudget del proprio tempo: dopo ogni verifica, durata t,
+    dorme per t * (1 - cpuBudget) / cpuBudget, così che il costo sia limitato
+    anche su social molto grandi, a differenza di checkRep.
+
+    SocialNetwork non è thread-safe: ogni verifica avviene tenendo lock, che
+    deve essere lo stesso lock tenuto dagli altri thread che usano il social
+    (il tempo di attesa del lock non viene contato nel budget).
+
+    IR(c): social != null && lock != null && listener != null &&
+           0 < cpuBudget <= 1 && samples >= 0 && violations >= 0
+  */
+  private final SocialNetwork social;
+  private final Lock lock; // lock che protegge social
+  private final double cpuBudget; // frazione di tempo dedicata alle verifiche
+  private final InvariantListener listener; // osservatore delle violazioni
+  private final Random random;
+  private final AtomicLong samples; // verifiche eseguite
+  private final AtomicLong violations; // violazioni trovate
+  private Thread thread; // thread delle verifiche, null se non è in esecuzione
+  private volatile boolean running;
+
+  private static final long MIN_SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(1); // pause più brevi vengono accumulate
+
+  /*
+    REQUIRES: social != null && lock != null && 0 < cpuBudget <= 1 && listener != null &&
+              gli altri thread accedono a social solo tenendo lock
+    THROWS: NullPointerException se social, lock o listener sono null
+            IllegalArgumentException se cpuBudget not in (0, 1]
+    MODIFIES: this
+    EFFECTS: inizializza un verificatore fermo di social
+  */
+  public InvariantSampler(SocialNetwork social, Lock lock, double cpuBudget, InvariantListener listener) throws NullPointerException, IllegalArgumentException{
+    if( social == null || lock == null || listener == null ){
+      throw new NullPointerException();
+    }
+    if( (cpuBudget > 0 && cpuBudget <= 1) == false ){
+      throw new IllegalArgumentException("The CPU budget must be in (0, 1]");
+    }
+    this.social = social;
+    this.lock = lock;
+    this.cpuBudget = cpuBudget;
+    this.listener = listener;
+    this.random = new Random();
+    this.samples = new AtomicLong();
+    this.violations = new AtomicLong();
+    this.thread = null;
+    this.running = false;
+  }
+
+  /*
+    THROWS: IllegalStateException se il verificatore è già in esecuzione
+    MODIFIES: this
+    EFFECTS: avvia il thread delle verifiche
+  */
+  public synchronized void start() throws IllegalStateException{
+    if( thread != null ){
+      throw new IllegalStateException("The sampler is already running");
+    }
+    running = true;
+    thread = new Thread(this::run, "invariant-sampler");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /*
+    Ferma il thread delle verifiche, attendendo la conclusione di quella in corso;
+    non fa nulla se il verificatore è fermo.
+
+    THROWS: InterruptedException se il thread chiamante viene interrotto
+    MODIFIES: this
+  */
+  public synchronized void stop() throws InterruptedException{
+    if( thread == null ){
+      return;
+    }
+    running = false;
+    thread.interrupt();
+    thread.join();
+    thread = null;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di verifiche eseguite
+  */
+  public long samples(){
+    return samples.get();
+  }
+
+  /*
+    EFFECTS: restituisce il numero di violazioni trovate
+  */
+  public long violations(){
+    return violations.get();
+  }
+
+  /*
+    Ciclo del thread delle verifiche: la pausa dovuta ad ogni verifica viene
+    accumulata finché non raggiunge MIN_SLEEP_NANOS, perché le verifiche di
+    utenti e post piccoli durano molto meno della granularità di sleep.
+  */
+  private void run(){
+    InvariantListener counting = (entity, invariant) -> {
+      violations.incrementAndGet();
+      listener.invariantViolated(entity, invariant);
+    };
+    long debt = 0; // nanosecondi di pausa dovuti
+    while( running ){
+      long elapsed;
+      lock.lock();
+      try{
+        long start = System.nanoTime();
+        social.checkSample(random, counting);
+        elapsed = System.nanoTime() - start;
+      }
+      finally{
+        lock.unlock();
+      }
+      samples.incrementAndGet();
+      debt += (long) (elapsed * (1 - cpuBudget) / cpuBudget);
+      if( debt >= MIN_SLEEP_NANOS ){
+        try{
+          TimeUnit.NANOSECONDS.sleep(debt);
+        }
+        catch(InterruptedException e){
+          return; // stop
+        }
+        debt = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,196 @@
+import java.nio.CharBuffer;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+
+public class InvertedIndex{
+  /*
+    OVERVIEW: InvertedIndex è un tipo di dato astratto modificabile che associa
+    ad ogni parola (in forma case-folded) l'insieme degli id dei post il cui
+    testo la contiene. Una parola è una sequenza massimale di caratteri
+    alfanumerici o '_', ossia quanto delimitato da due word boundary
+    (si veda WordMatcher).
+
+    Elemento tipico: { <term_0, {id_0_0, ...}>, ... , <term_n-1, {id_n-1_0, ...}> }
+
+    AF(c): { <t, postings.get(t)> | postings.containsKey(t) }
+    IR(c): postings != null && postings.containsKey(null) == false &&
+           postings.containsValue(null) == false &&
+           forall t. postings.containsKey(t) => ( isTerm(t) && t.equals(fold(t)) && postings.get(t).isEmpty() == false ) &&
+           postingCount == sum_{t in dom(postings)} postings.get(t).size()
+  */
+  private Map<String, IntSet> postings; // mappa term -> id dei post che lo contengono
+  private int postingCount; // numero totale di coppie <term, id> nell'indice
+
+  /*
+    Metodo costruttore che inizializza un indice vuoto
+
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this
+  */
+  public InvertedIndex(){
+    this.postings = new HashMap<>();
+    this.postingCount = 0;
+  }
+
+  /*
+    Restituisce gli id dei post che contengono la parola term.
+
+    REQUIRES: term != null && isTerm(term)
+    THROWS: NullPointerException se term == null
+            IllegalArgumentException se isTerm(term) == false
+    EFFECTS: restituisce l'insieme (da non modificare) degli id dei post che contengono
+             fold(term), null se nessun post la contiene
+  */
+  public IntSet lookup(String term) throws NullPointerException, IllegalArgumentException{
+    if( term == null ){
+      throw new NullPointerException();
+    }
+    if( isTerm(term) == false ){
+      throw new IllegalArgumentException("The term must be a single word");
+    }
+    return postings.get(fold(term));
+  }
+
+  /*
+    EFFECTS: restituisce il numero totale di coppie <term, id> contenute nell'indice
+  */
+  public int postingCount(){
+    return this.postingCount;
+  }
+
+  /*
+    EFFECTS: restituisce vero se term è una singola parola non vuota, ossia
+             se è composta esclusivamente da caratteri di parola, falso altrimenti
+  */
+  public static boolean isTerm(String term){
+    if( term == null || term.isEmpty() ){
+      return false;
+    }
+    for(int i = 0; i < term.length(); i++){
+      if( WordMatcher.isWordChar(term.charAt(i)) == false ){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /*
+    EFFECTS: restituisce l'insieme delle parole distinte (case-folded) contenute in text
+  */
+  public static Set<String> terms(char text[]){
+    return terms(CharBuffer.wrap(text));
+  }
+
+  /*
+    Come terms(char[]), leggendo il testo da una sequenza di caratteri
+    (ad esempio Post.getTextView) senza copiarlo in un array.
+
+    EFFECTS: restituisce l'insieme delle parole distinte (case-folded) contenute in text
+  */
+  public static Set<String> terms(CharSequence text){
+    Set<String> terms = new HashSet<String>();
+    int length = text.length();
+    int i = 0;
+    while( i < length ){
+      if( WordMatcher.isWordChar(text.charAt(i)) ){
+        int start = i;
+        while( i < length && WordMatcher.isWordChar(text.charAt(i)) ){
+          i++;
+        }
+        char folded[] = new char[i - start];
+        for(int k = 0; k < folded.length; k++){
+          folded[k] = WordMatcher.fold(text.charAt(start + k));
+        }
+        terms.add(new String(folded)); // come fold, senza creare la stringa intermedia
+      }
+      else{
+        i++;
+      }
+    }
+    return terms;
+  }
+
+  /*
+    EFFECTS: restituisce la forma case-folded di term, usata come chiave dell'indice
+  */
+  static String fold(String term){
+    char folded[] = new char[term.length()];
+    for(int i = 0; i < folded.length; i++){
+      folded[i] = WordMatcher.fold(term.charAt(i));
+    }
+    return new String(folded);
+  }
+
+  /*
+    Indicizza le parole di text come parole del post con id id.
+
+    REQUIRES: text != null
+    THROWS: NullPointerException se text == null
+    MODIFIES: this
+    EFFECTS: forall t. t in terms(text) => postings_post.get(t) = postings_pre.get(t) U {id}
+  */
+  public void add(int id, char text[]) throws NullPointerException{
+    add(id, CharBuffer.wrap(text));
+  }
+
+  /*
+    Come add(int, char[]), leggendo il testo da una sequenza di caratteri.
+
+    REQUIRES: text != null
+    THROWS: NullPointerException se text == null
+    MODIFIES: this
+  */
+  public void add(int id, CharSequence text) throws NullPointerException{
+    for(String term: terms(text)){
+      IntSet ids = postings.get(term);
+      if( ids == null ){
+        ids = new IntSet();
+        postings.put(term, ids);
+      }
+      if( ids.add(id) ){
+        postingCount += 1;
+      }
+    }
+  }
+
+  /*
+    Rimuove il post con id id dalle liste delle parole di text, eliminando
+    le liste rimaste vuote.
+
+    REQUIRES: text != null
+    THROWS: NullPointerException se text == null
+    MODIFIES: this
+    EFFECTS: forall t. t in terms(text) => postings_post.get(t) = postings_pre.get(t) \ {id}
+  */
+  public void remove(int id, char text[]) throws NullPointerException{
+    remove(id, CharBuffer.wrap(text));
+  }
+
+  /*
+    Come remove(int, char[]), leggendo il testo da una sequenza di caratteri.
+
+    REQUIRES: text != null
+    THROWS: NullPointerException se text == null
+    MODIFIES: this
+  */
+  public void remove(int id, CharSequence text) throws NullPointerException{
+    for(String term: terms(text)){
+      IntSet ids = postings.get(term);
+      if( ids != null && ids.remove(id) ){
+        postingCount -= 1;
+        if( ids.isEmpty() ){
+          postings.remove(term);
+        }
+      }
+    }
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    return postings.toString();
+  }
+}
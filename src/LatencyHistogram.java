@@ -0,0 +1,165 @@
+import java.util.Arrays;
+
+public class LatencyHistogram{
+  /*
+    OVERVIEW: LatencyHistogram è un tipo di dato astratto modificabile che
+    rappresenta la distribuzione di un multiinsieme di durate non negative,
+    espresse in nanosecondi, con errore relativo limitato: i valori minori di
+    2^(SUB_BITS+1) sono memorizzati esattamente, gli altri in intervalli
+    logaritmici (per ogni potenza di 2, 2^SUB_BITS intervalli di uguale ampiezza),
+    per cui un percentile è riportato con un errore relativo inferiore al 3%.
+    La memoria occupata è costante (BUCKETS contatori), indipendentemente dal
+    numero di valori registrati. Non è thread-safe: ogni thread registra in un
+    proprio istogramma, e gli istogrammi vengono poi uniti con add.
+
+    Elemento tipico: { v_0, v_1, ... , v_n-1 } (multiinsieme di durate)
+
+    AF(c): il multiinsieme che contiene counts[i] valori nell'intervallo bucket i
+           (i valori esatti sono rappresentati dall'estremo superiore highest(i))
+    IR(c): counts != null && counts.length == BUCKETS &&
+           forall i. counts[i] >= 0 && total == sum(counts) && sum >= 0 &&
+           (total == 0 => max == 0)
+  */
+  private final long counts[]; // numero di valori registrati in ogni intervallo
+  private long total; // numero di valori registrati
+  private long sum; // somma dei valori registrati
+  private long max; // valore massimo registrato
+
+  private static final int SUB_BITS = 5; // precisione: 2^SUB_BITS intervalli per potenza di 2
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int EXACT = 2 * SUB_COUNT; // valori memorizzati esattamente
+  private static final int BUCKETS = EXACT + (63 - (SUB_BITS + 1)) * SUB_COUNT;
+
+  /*
+    Metodo costruttore che inizializza un istogramma vuoto
+
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this
+  */
+  public LatencyHistogram(){
+    this.counts = new long[BUCKETS];
+  }
+
+  /*
+    REQUIRES: nanos >= 0
+    THROWS: IllegalArgumentException se nanos < 0
+    MODIFIES: this
+    EFFECTS: aggiunge nanos al multiinsieme
+  */
+  public void record(long nanos) throws IllegalArgumentException{
+    if( nanos < 0 ){
+      throw new IllegalArgumentException("The duration is negative");
+    }
+    counts[bucket(nanos)] += 1;
+    total += 1;
+    sum += nanos;
+    if( nanos > max ){
+      max = nanos;
+    }
+  }
+
+  /*
+    REQUIRES: other != null
+    THROWS: NullPointerException se other == null
+    MODIFIES: this
+    EFFECTS: aggiunge a this tutti i valori di other
+  */
+  public void add(LatencyHistogram other) throws NullPointerException{
+    for(int i = 0; i < BUCKETS; i++){
+      counts[i] += other.counts[i];
+    }
+    total += other.total;
+    sum += other.sum;
+    max = Math.max(max, other.max);
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: svuota il multiinsieme
+  */
+  public void reset(){
+    Arrays.fill(counts, 0);
+    total = 0;
+    sum = 0;
+    max = 0;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di valori registrati
+  */
+  public long count(){
+    return total;
+  }
+
+  /*
+    EFFECTS: restituisce il valore massimo registrato, 0 se l'istogramma è vuoto
+  */
+  public long max(){
+    return max;
+  }
+
+  /*
+    EFFECTS: restituisce la media dei valori registrati, 0 se l'istogramma è vuoto
+  */
+  public double mean(){
+    return total == 0 ? 0 : (double) sum / total;
+  }
+
+  /*
+    REQUIRES: 0 <= percentile <= 100
+    THROWS: IllegalArgumentException se percentile non è in [0, 100]
+    EFFECTS: restituisce il minimo valore v (a meno dell'errore di rappresentazione)
+             tale che almeno percentile% dei valori registrati è <= v, 0 se
+             l'istogramma è vuoto
+  */
+  public long percentile(double percentile) throws IllegalArgumentException{
+    if( percentile < 0 || percentile > 100 ){
+      throw new IllegalArgumentException("The percentile must be in [0, 100]");
+    }
+    if( total == 0 ){
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total)); // posizione del valore cercato
+    long seen = 0;
+    for(int i = 0; i < BUCKETS; i++){
+      seen += counts[i];
+      if( seen >= rank ){
+        return Math.min(highest(i), max);
+      }
+    }
+    return max;
+  }
+
+  /*
+    EFFECTS: restituisce l'indice dell'intervallo che contiene value >= 0
+  */
+  private static int bucket(long value){
+    if( value < EXACT ){
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BITS + 1
+    int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+    return EXACT + (exponent - SUB_BITS - 1) * SUB_COUNT + sub;
+  }
+
+  /*
+    EFFECTS: restituisce il massimo valore contenuto nell'intervallo index
+  */
+  private static long highest(int index){
+    if( index < EXACT ){
+      return index;
+    }
+    int exponent = (index - EXACT) / SUB_COUNT + SUB_BITS + 1;
+    int sub = (index - EXACT) % SUB_COUNT;
+    long width = 1L << (exponent - SUB_BITS);
+    return ((SUB_COUNT + sub) * width) + width - 1;
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    return String.format("count=%d mean=%.0fns p50=%dns p99=%dns p999=%dns max=%dns",
+                         total, mean(), percentile(50), percentile(99), percentile(99.9), max);
+  }
+}
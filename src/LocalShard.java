@@ -0,0 +1,117 @@
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class LocalShard implements SocialNetworkShard{
+  /*
+    OVERVIEW: LocalShard è uno shard che delega ogni operazione ad un
+    SocialNetwork dello stesso processo; i post restituiti sono quelli del
+    social, per cui le modifiche del loro testo sono riportate nello shard.
+
+    IR(c): social != null
+  */
+  private final SocialNetwork social;
+
+  /*
+    Inizializza uno shard con un social vuoto
+
+    MODIFIES: this
+  */
+  public LocalShard(){
+    this(new SocialNetwork());
+  }
+
+  /*
+    REQUIRES: social != null
+    THROWS: NullPointerException se social == null
+    MODIFIES: this
+    EFFECTS: inizializza uno shard che delega a social
+  */
+  public LocalShard(SocialNetwork social) throws NullPointerException{
+    if( social == null ){
+      throw new NullPointerException();
+    }
+    this.social = social;
+  }
+
+  public void addUser(String newUser) throws NullPointerException, UserAlreadyExistException{
+    social.addUser(newUser);
+  }
+
+  public void removeUser(String username) throws NullPointerException, UserNotExistException{
+    social.removeUser(username);
+  }
+
+  public boolean containsUser(String username) throws NullPointerException{
+    return social.containsUser(username);
+  }
+
+  public boolean containsUser(Collection<String> usernameCollection) throws NullPointerException{
+    return social.containsUser(usernameCollection);
+  }
+
+  public void addPost(Post post) throws NullPointerException, UserNotExistException, PostAlreadyExistException, NegativeIdException{
+    social.addPost(post);
+  }
+
+  public boolean likePost(int idPost, String username) throws NullPointerException, NegativeIdException, UserNotExistException, PostDoesNotExist, AuthorCantLikeHimselfException{
+    return social.likePost(idPost, username);
+  }
+
+  public boolean containsPostById(int idPost) throws NegativeIdException{
+    return social.containsPostById(idPost);
+  }
+
+  public Post getPostById(int idPost) throws NegativeIdException, PostDoesNotExist{
+    return social.getPostById(idPost);
+  }
+
+  public List<Post> writtenBy(String username) throws UserNotExistException{
+    return social.writtenBy(username);
+  }
+
+  public int[] postIdsOf(String username) throws NullPointerException{
+    if( username == null ){
+      throw new NullPointerException();
+    }
+    return social.postIdsOf(username);
+  }
+
+  public int[] postIds(){
+    return social.postIds();
+  }
+
+  public List<Post> containing(List<String> words) throws NullPointerException{
+    return social.containing(words);
+  }
+
+  public Set<String> getMentionedUsers(){
+    return social.getMentionedUsers();
+  }
+
+  public Map<String, Integer> influenceMargins(){
+    return social.influenceMargins();
+  }
+
+  public Map<String, Set<String>> getUserFollowsMap(){
+    return social.getUserFollowsMap();
+  }
+
+  public Map<String, Set<String>> getUserFollowersMap(){
+    return social.getUserFollowersMap();
+  }
+
+  /*
+    EFFECTS: restituisce il social cui lo shard delega
+  */
+  public SocialNetwork social(){
+    return social;
+  }
+
+  /*
+    Lo shard non trattiene risorse: close non fa nulla
+  */
+  public void close(){
+  }
+}
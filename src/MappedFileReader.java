@@ -0,0 +1,130 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class MappedFileReader implements Closeable{
+  /*
+    OVERVIEW: MappedFileReader legge sequenzialmente un file binario (nel
+    formato di DataOutputStream) mappandolo in memoria con FileChannel.map.
+    Un MappedByteBuffer non può superare i 2 GiB, per cui il file viene
+    mappato a finestre di WINDOW_SIZE byte: quando il valore da leggere non è
+    interamente contenuto nella finestra corrente, viene mappata una nuova
+    finestra a partire dalla posizione corrente. I file di dimensione
+    arbitraria vengono quindi letti senza copiarli nell'heap.
+
+    AF(c): il contenuto del file, con posizione di lettura base + window.position()
+    IR(c): channel != null && window != null && 0 <= base && base + window.limit() <= size
+  */
+  private final FileChannel channel; // canale in lettura sul file
+  private final long size; // dimensione del file
+  private MappedByteBuffer window; // finestra del file mappata in memoria
+  private long base; // posizione nel file del primo byte della finestra
+
+  private static final int WINDOW_SIZE = 1 << 28; // 256 MiB
+
+  /*
+    REQUIRES: file != null
+    THROWS: NullPointerException se file == null
+            IOException se il file non può essere aperto o mappato
+    MODIFIES: this
+    EFFECTS: apre file in lettura, con posizione iniziale 0
+  */
+  public MappedFileReader(Path file) throws NullPointerException, IOException{
+    if( file == null ){
+      throw new NullPointerException();
+    }
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    try{
+      this.size = channel.size();
+      this.base = 0;
+      this.window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, WINDOW_SIZE));
+    }
+    catch(IOException e){
+      channel.close();
+      throw e;
+    }
+  }
+
+  /*
+    EFFECTS: restituisce la dimensione del file
+  */
+  public long size(){
+    return size;
+  }
+
+  /*
+    EFFECTS: restituisce la posizione di lettura nel file
+  */
+  public long position(){
+    return base + window.position();
+  }
+
+  /*
+    THROWS: EOFException se il file termina prima del valore
+    MODIFIES: this
+    EFFECTS: legge un int e avanza di 4 byte
+  */
+  public int readInt() throws IOException{
+    require(4);
+    return window.getInt();
+  }
+
+  /*
+    THROWS: EOFException se il file termina prima del valore
+    MODIFIES: this
+    EFFECTS: legge un long e avanza di 8 byte
+  */
+  public long readLong() throws IOException{
+    require(8);
+    return window.getLong();
+  }
+
+  /*
+    REQUIRES: destination != null && 0 <= length <= destination.length
+    THROWS: NullPointerException se destination == null
+            IndexOutOfBoundsException se length < 0 || length > destination.length
+            EOFException se il file termina prima dei caratteri
+    MODIFIES: this, destination
+    EFFECTS: legge length caratteri (2 byte ciascuno) in destination[0, length)
+  */
+  public void readChars(char destination[], int length) throws NullPointerException, IndexOutOfBoundsException, IOException{
+    if( length < 0 || length > destination.length ){
+      throw new IndexOutOfBoundsException(length);
+    }
+    require(2L * length);
+    window.asCharBuffer().get(destination, 0, length);
+    window.position(window.position() + 2 * length);
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: chiude il file; la finestra mappata viene rilasciata dal garbage collector
+  */
+  public void close() throws IOException{
+    channel.close();
+  }
+
+  /*
+    THROWS: EOFException se mancano meno di length byte alla fine del file
+    MODIFIES: this
+    EFFECTS: garantisce che i prossimi length byte siano contenuti nella finestra
+  */
+  private void require(long length) throws IOException{
+    if( window.remaining() >= length ){
+      return;
+    }
+    long position = position();
+    if( position + length > size ){
+      throw new EOFException("Unexpected end of " + size + " bytes file at position " + position);
+    }
+    if( length > Integer.MAX_VALUE ){
+      throw new IOException("Value of " + length + " bytes doesn't fit in a mapped window");
+    }
+    window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, Math.max(WINDOW_SIZE, length)));
+    base = position;
+  }
+}
@@ -0,0 +1,13 @@
+/*
+  interfaccia usata da chi (ad esempio un moderatore) deve essere avvisato
+  quando un post di un SocialNetworkWithReport viene nascosto perché ha
+  raggiunto la soglia di segnalazioni
+*/
+public interface ModerationListener{
+  /*
+    Invocato dopo che il post idPost è stato nascosto.
+
+    EFFECTS: reports è il numero di segnalazioni ricevute dal post
+  */
+  void postHidden(int idPost, int reports);
+}
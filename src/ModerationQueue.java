@@ -0,0 +1,198 @@
+import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.TreeSet;
+import java.util.Iterator;
+import java.util.Comparator;
+
+public class ModerationQueue{
+  /*
+    OVERVIEW: ModerationQueue è un tipo di dato astratto modificabile che
+    mantiene, per ogni post segnalato, il numero di segnalazioni ricevute e
+    l'autore, insieme ad un ordinamento dei post per numero di segnalazioni
+    decrescente e al totale delle segnalazioni ricevute da ogni autore.
+    I contatori vengono aggiornati ad ogni segnalazione, così che i post più
+    segnalati, quelli oltre una soglia e le segnalazioni di un autore si
+    ottengano senza scandire tutte le segnalazioni.
+
+    Elemento tipico: { <id_0, author_0, reports_0>, ... , <id_n-1, author_n-1, reports_n-1> }
+
+    AF(c): { <r.id, r.author, r.reports> | entries.containsValue(r) }
+    IR(c): entries != null && byReports != null && reportsByAuthor != null &&
+           forall i. entries.containsKey(i) => ( entries.get(i).id == i && i >= 0 &&
+            entries.get(i).author != null && entries.get(i).reports > 0 ) &&
+           byReports.size() == entries.size() &&
+           forall r. entries.containsValue(r) <=> byReports.contains(r) &&
+           forall a. reportsByAuthor.containsKey(a) <=> exist r. entries.containsValue(r) && r.author.equals(a) &&
+           forall a. reportsByAuthor.containsKey(a) =>
+            reportsByAuthor.get(a) == sum { r.reports | entries.containsValue(r) && r.author.equals(a) }
+  */
+  private Map<Integer, Report> entries; // mappa id -> contatore del post
+  private TreeSet<Report> byReports; // contatori ordinati per segnalazioni decrescenti, a parità per id
+  private Map<String, Integer> reportsByAuthor; // mappa autore -> segnalazioni ricevute dai suoi post
+
+  // Ordinamento per segnalazioni decrescenti e, a parità, per id crescente
+  private static final Comparator<Report> REPORT_ORDER = (first, second) -> {
+    int cmp = Integer.compare(second.reports, first.reports);
+    return cmp != 0 ? cmp : Integer.compare(first.id, second.id);
+  };
+
+  /*
+    Contatore di un singolo post
+  */
+  private static class Report{
+    private final int id; // id del post
+    private final String author; // username dell'autore
+    private int reports; // numero di segnalazioni
+
+    private Report(int id, String author, int reports){
+      this.id = id;
+      this.author = author;
+      this.reports = reports;
+    }
+  }
+
+  /*
+    Metodo costruttore che inizializza una coda vuota
+
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this
+  */
+  public ModerationQueue(){
+    this.entries = new HashMap<>();
+    this.byReports = new TreeSet<>(REPORT_ORDER);
+    this.reportsByAuthor = new HashMap<>();
+  }
+
+  /*
+    Registra una nuova segnalazione del post idPost, in tempo O(log n).
+
+    REQUIRES: idPost >= 0 && author != null &&
+              (entries.containsKey(idPost) => entries.get(idPost).author.equals(author))
+    THROWS: NullPointerException se author == null
+            IllegalArgumentException se idPost < 0 o il post è già in coda con un altro autore
+    MODIFIES: this
+    EFFECTS: incrementa di 1 le segnalazioni di idPost (inserendolo con autore author se
+             assente) e di author, e restituisce il nuovo numero di segnalazioni di idPost
+  */
+  public int report(int idPost, String author) throws NullPointerException, IllegalArgumentException{
+    if( author == null ){
+      throw new NullPointerException();
+    }
+    if( idPost < 0 ){
+      throw new IllegalArgumentException("The post id is negative");
+    }
+    Report report = entries.get(idPost);
+    if( report == null ){
+      report = new Report(idPost, author, 0);
+      entries.put(idPost, report);
+    }
+    else if( report.author.equals(author) == false ){
+      throw new IllegalArgumentException("The post is queued with a different author");
+    }
+    else{
+      byReports.remove(report); // va rimosso prima di modificare la chiave di ordinamento
+    }
+    report.reports += 1;
+    byReports.add(report);
+    reportsByAuthor.merge(author, 1, Integer::sum);
+    return report.reports;
+  }
+
+  /*
+    Rimuove il post idPost dalla coda (ad esempio perché è stato rimosso dal social),
+    in tempo O(log n).
+
+    MODIFIES: this
+    EFFECTS: se idPost è in coda lo rimuove, sottraendo le sue segnalazioni a quelle
+             del suo autore, e restituisce vero; altrimenti restituisce falso
+  */
+  public boolean remove(int idPost){
+    Report report = entries.remove(idPost);
+    if( report == null ){
+      return false;
+    }
+    byReports.remove(report);
+    int remaining = reportsByAuthor.get(report.author) - report.reports;
+    if( remaining == 0 ){
+      reportsByAuthor.remove(report.author);
+    }
+    else{
+      reportsByAuthor.put(report.author, remaining);
+    }
+    return true;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di segnalazioni di idPost (0 se non è in coda)
+  */
+  public int reportsOf(int idPost){
+    Report report = entries.get(idPost);
+    return report == null ? 0 : report.reports;
+  }
+
+  /*
+    EFFECTS: restituisce il numero totale di segnalazioni ricevute dai post in coda
+             di author (0 se author == null o non ha post in coda)
+  */
+  public int reportsByAuthor(String author){
+    return author == null ? 0 : reportsByAuthor.getOrDefault(author, 0);
+  }
+
+  /*
+    EFFECTS: restituisce il numero di post in coda
+  */
+  public int size(){
+    return entries.size();
+  }
+
+  /*
+    Restituisce i k post più segnalati, in tempo O(log n + k).
+
+    REQUIRES: k >= 0
+    THROWS: IllegalArgumentException se k < 0
+    EFFECTS: restituisce la lista degli id dei min(k, size()) post con più segnalazioni,
+             ordinata per segnalazioni decrescenti e, a parità, per id crescente
+  */
+  public List<Integer> top(int k) throws IllegalArgumentException{
+    if( k < 0 ){
+      throw new IllegalArgumentException("k must be non negative");
+    }
+    List<Integer> topList = new ArrayList<Integer>(Math.min(k, entries.size()));
+    Iterator<Report> iterator = byReports.iterator();
+    while( topList.size() < k && iterator.hasNext() ){
+      topList.add(iterator.next().id);
+    }
+    return topList;
+  }
+
+  /*
+    Restituisce i post con almeno threshold segnalazioni, in tempo O(log n + k),
+    dove k è il numero di post restituiti.
+
+    EFFECTS: restituisce la lista degli id dei post con almeno threshold segnalazioni,
+             ordinata per segnalazioni decrescenti e, a parità, per id crescente
+  */
+  public List<Integer> atLeast(int threshold){
+    List<Integer> overList = new ArrayList<Integer>();
+    for(Report report: byReports.headSet(new Report(Integer.MAX_VALUE, "", threshold), true)){
+      overList.add(report.id);
+    }
+    return overList;
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    StringBuilder builder = new StringBuilder("[");
+    for(Report report: byReports){
+      if( builder.length() > 1 ){
+        builder.append(", ");
+      }
+      builder.append(report.id).append('=').append(report.reports);
+    }
+    return builder.append(']').toString();
+  }
+}
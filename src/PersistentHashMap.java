@@ -0,0 +1,382 @@
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V>{
+  /*
+    OVERVIEW: PersistentHashMap è un tipo di dato astratto immutabile che
+    rappresenta una mappa persistente: le operazioni plus e minus non
+    modificano this, ma restituiscono una nuova mappa che condivide con this
+    tutta la struttura non toccata dalla modifica (hash array mapped trie).
+    Ogni modifica costa O(log_32 n) e non invalida le mappe precedenti,
+    per cui una mappa può essere conservata come istantanea in tempo costante.
+    I metodi di modifica ereditati da Map lanciano UnsupportedOperationException.
+
+    Elemento tipico: { <k_0, v_0>, ... , <k_n-1, v_n-1> }
+
+    AF(c): insieme delle coppie <chiave, valore> contenute nelle foglie del trie root
+    IR(c): size == numero di coppie nel trie && ( size == 0 <=> root == null ) &&
+           nessuna chiave e nessun valore sono null &&
+           ogni coppia <k, v> si trova nel nodo raggiunto seguendo i blocchi di 5 bit di hash(k)
+  */
+  private final Node root; // radice del trie, null se la mappa è vuota
+  private final int size; // numero di coppie contenute
+
+  private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+  private static final int BITS = 5; // bit di hash consumati ad ogni livello
+  private static final int MASK = (1 << BITS) - 1;
+
+  private PersistentHashMap(Node root, int size){
+    this.root = root;
+    this.size = size;
+  }
+
+  /*
+    EFFECTS: restituisce la mappa vuota
+  */
+  @SuppressWarnings("unchecked")
+  public static <K, V> PersistentHashMap<K, V> empty(){
+    return (PersistentHashMap<K, V>) EMPTY;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di coppie contenute nella mappa
+  */
+  public int size(){
+    return size;
+  }
+
+  /*
+    EFFECTS: restituisce il valore associato a key, null se key non è presente
+  */
+  @SuppressWarnings("unchecked")
+  public V get(Object key){
+    if( key == null || root == null ){
+      return null;
+    }
+    return (V) root.find(0, hash(key), key);
+  }
+
+  /*
+    EFFECTS: restituisce vero se la mappa contiene la chiave key, falso altrimenti
+  */
+  public boolean containsKey(Object key){
+    return get(key) != null;
+  }
+
+  /*
+    REQUIRES: key != null && value != null
+    THROWS: NullPointerException se key == null || value == null
+    EFFECTS: restituisce una mappa uguale a this in cui key è associata a value;
+             this non viene modificata
+  */
+  public PersistentHashMap<K, V> plus(K key, V value) throws NullPointerException{
+    if( key == null || value == null ){
+      throw new NullPointerException();
+    }
+    boolean addedLeaf[] = new boolean[1];
+    Node start = root == null ? BitmapNode.EMPTY : root;
+    Node newRoot = start.assoc(0, hash(key), key, value, addedLeaf);
+    if( newRoot == root ){
+      return this;
+    }
+    return new PersistentHashMap<>(newRoot, addedLeaf[0] ? size + 1 : size);
+  }
+
+  /*
+    EFFECTS: restituisce una mappa uguale a this senza la chiave key;
+             this non viene modificata
+  */
+  public PersistentHashMap<K, V> minus(Object key){
+    if( key == null || root == null ){
+      return this;
+    }
+    Node newRoot = root.without(0, hash(key), key);
+    if( newRoot == root ){
+      return this;
+    }
+    return newRoot == null ? empty() : new PersistentHashMap<>(newRoot, size - 1);
+  }
+
+  /*
+    EFFECTS: restituisce una vista immutabile delle coppie della mappa
+  */
+  public Set<Map.Entry<K, V>> entrySet(){
+    return new AbstractSet<Map.Entry<K, V>>(){
+      public Iterator<Map.Entry<K, V>> iterator(){
+        return new EntryIterator<>(root);
+      }
+      public int size(){
+        return size;
+      }
+    };
+  }
+
+  /*
+    EFFECTS: restituisce il valore di hash di key, con i bit alti mescolati con quelli bassi
+  */
+  private static int hash(Object key){
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /*
+    EFFECTS: restituisce il bit del bitmap corrispondente a hash al livello shift
+  */
+  private static int bitpos(int hash, int shift){
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  /*
+    Nodo del trie; i nodi non vengono mai modificati dopo la costruzione
+  */
+  private static abstract class Node{
+    // restituisce il valore associato a key, null se assente
+    abstract Object find(int shift, int hash, Object key);
+    // restituisce il nodo con key associata a value (this se nulla cambia)
+    abstract Node assoc(int shift, int hash, Object key, Object value, boolean addedLeaf[]);
+    // restituisce il nodo senza key (this se assente, null se il nodo resta vuoto)
+    abstract Node without(int shift, int hash, Object key);
+  }
+
+  /*
+    Nodo interno: per ogni bit impostato in bitmap, array contiene una coppia
+    <chiave, valore> oppure <null, figlio>
+  */
+  private static final class BitmapNode extends Node{
+    private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+    private final int bitmap;
+    private final Object array[];
+
+    private BitmapNode(int bitmap, Object array[]){
+      this.bitmap = bitmap;
+      this.array = array;
+    }
+
+    private int index(int bit){
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    Object find(int shift, int hash, Object key){
+      int bit = bitpos(hash, shift);
+      if( (bitmap & bit) == 0 ){
+        return null;
+      }
+      int idx = index(bit);
+      Object keyOrNull = array[2 * idx];
+      Object valOrNode = array[2 * idx + 1];
+      if( keyOrNull == null ){
+        return ((Node) valOrNode).find(shift + BITS, hash, key);
+      }
+      return key.equals(keyOrNull) ? valOrNode : null;
+    }
+
+    Node assoc(int shift, int hash, Object key, Object value, boolean addedLeaf[]){
+      int bit = bitpos(hash, shift);
+      int idx = index(bit);
+      if( (bitmap & bit) != 0 ){
+        Object keyOrNull = array[2 * idx];
+        Object valOrNode = array[2 * idx + 1];
+        if( keyOrNull == null ){ // scendo nel figlio
+          Node child = (Node) valOrNode;
+          Node newChild = child.assoc(shift + BITS, hash, key, value, addedLeaf);
+          return newChild == child ? this : withSlot(2 * idx + 1, newChild);
+        }
+        if( key.equals(keyOrNull) ){ // sostituisco il valore
+          return valOrNode == value ? this : withSlot(2 * idx + 1, value);
+        }
+        // due chiavi diverse nello stesso slot: le sposto in un nuovo figlio
+        addedLeaf[0] = true;
+        Node child = createNode(shift + BITS, keyOrNull, valOrNode, hash, key, value);
+        Object newArray[] = array.clone();
+        newArray[2 * idx] = null;
+        newArray[2 * idx + 1] = child;
+        return new BitmapNode(bitmap, newArray);
+      }
+      addedLeaf[0] = true;
+      Object newArray[] = new Object[array.length + 2];
+      System.arraycopy(array, 0, newArray, 0, 2 * idx);
+      newArray[2 * idx] = key;
+      newArray[2 * idx + 1] = value;
+      System.arraycopy(array, 2 * idx, newArray, 2 * idx + 2, array.length - 2 * idx);
+      return new BitmapNode(bitmap | bit, newArray);
+    }
+
+    Node without(int shift, int hash, Object key){
+      int bit = bitpos(hash, shift);
+      if( (bitmap & bit) == 0 ){
+        return this;
+      }
+      int idx = index(bit);
+      Object keyOrNull = array[2 * idx];
+      Object valOrNode = array[2 * idx + 1];
+      if( keyOrNull == null ){
+        Node child = (Node) valOrNode;
+        Node newChild = child.without(shift + BITS, hash, key);
+        if( newChild == child ){
+          return this;
+        }
+        if( newChild != null ){
+          return withSlot(2 * idx + 1, newChild);
+        }
+      }
+      else if( key.equals(keyOrNull) == false ){
+        return this;
+      }
+      // rimuovo lo slot idx
+      if( bitmap == bit ){
+        return null;
+      }
+      Object newArray[] = new Object[array.length - 2];
+      System.arraycopy(array, 0, newArray, 0, 2 * idx);
+      System.arraycopy(array, 2 * idx + 2, newArray, 2 * idx, array.length - 2 * idx - 2);
+      return new BitmapNode(bitmap ^ bit, newArray);
+    }
+
+    private BitmapNode withSlot(int position, Object content){
+      Object newArray[] = array.clone();
+      newArray[position] = content;
+      return new BitmapNode(bitmap, newArray);
+    }
+  }
+
+  /*
+    Foglia che contiene coppie le cui chiavi hanno lo stesso hash (a 32 bit)
+  */
+  private static final class CollisionNode extends Node{
+    private final int hash;
+    private final Object array[]; // coppie <chiave, valore> consecutive
+
+    private CollisionNode(int hash, Object array[]){
+      this.hash = hash;
+      this.array = array;
+    }
+
+    private int indexOf(Object key){
+      for(int i = 0; i < array.length; i += 2){
+        if( key.equals(array[i]) ){
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    Object find(int shift, int hash, Object key){
+      if( hash != this.hash ){
+        return null;
+      }
+      int i = indexOf(key);
+      return i < 0 ? null : array[i + 1];
+    }
+
+    Node assoc(int shift, int hash, Object key, Object value, boolean addedLeaf[]){
+      if( hash == this.hash ){
+        int i = indexOf(key);
+        if( i >= 0 ){
+          if( array[i + 1] == value ){
+            return this;
+          }
+          Object newArray[] = array.clone();
+          newArray[i + 1] = value;
+          return new CollisionNode(hash, newArray);
+        }
+        addedLeaf[0] = true;
+        Object newArray[] = Arrays.copyOf(array, array.length + 2);
+        newArray[array.length] = key;
+        newArray[array.length + 1] = value;
+        return new CollisionNode(hash, newArray);
+      }
+      // hash diverso: inserisco questa foglia in un nodo interno
+      return new BitmapNode(bitpos(this.hash, shift), new Object[]{ null, this })
+        .assoc(shift, hash, key, value, addedLeaf);
+    }
+
+    Node without(int shift, int hash, Object key){
+      int i = hash == this.hash ? indexOf(key) : -1;
+      if( i < 0 ){
+        return this;
+      }
+      if( array.length == 2 ){
+        return null;
+      }
+      Object newArray[] = new Object[array.length - 2];
+      System.arraycopy(array, 0, newArray, 0, i);
+      System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+      return new CollisionNode(hash, newArray);
+    }
+  }
+
+  /*
+    EFFECTS: restituisce un nodo, al livello shift, che contiene le due coppie
+  */
+  private static Node createNode(int shift, Object key1, Object value1, int hash2, Object key2, Object value2){
+    int hash1 = hash(key1);
+    if( hash1 == hash2 ){
+      return new CollisionNode(hash1, new Object[]{ key1, value1, key2, value2 });
+    }
+    boolean addedLeaf[] = new boolean[1];
+    return BitmapNode.EMPTY
+      .assoc(shift, hash1, key1, value1, addedLeaf)
+      .assoc(shift, hash2, key2, value2, addedLeaf);
+  }
+
+  /*
+    Iteratore in profondità sulle coppie del trie, con una pila esplicita
+  */
+  private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>>{
+    private final Deque<Object[]> arrays = new ArrayDeque<>(); // array dei nodi in visita
+    private final Deque<Integer> positions = new ArrayDeque<>(); // posizione corrente in ognuno
+    private Map.Entry<K, V> next; // prossima coppia da restituire
+
+    private EntryIterator(Node root){
+      if( root != null ){
+        push(root);
+      }
+      advance();
+    }
+
+    private void push(Node node){
+      arrays.push(node instanceof BitmapNode ? ((BitmapNode) node).array : ((CollisionNode) node).array);
+      positions.push(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void advance(){
+      next = null;
+      while( next == null && arrays.isEmpty() == false ){
+        Object array[] = arrays.peek();
+        int position = positions.pop();
+        if( position >= array.length ){
+          arrays.pop();
+          continue;
+        }
+        positions.push(position + 2);
+        if( array[position] == null ){
+          push((Node) array[position + 1]);
+        }
+        else{
+          next = new AbstractMap.SimpleImmutableEntry<>((K) array[position], (V) array[position + 1]);
+        }
+      }
+    }
+
+    public boolean hasNext(){
+      return next != null;
+    }
+
+    public Map.Entry<K, V> next(){
+      if( next == null ){
+        throw new NoSuchElementException();
+      }
+      Map.Entry<K, V> current = next;
+      advance();
+      return current;
+    }
+  }
+}
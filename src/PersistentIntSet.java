@@ -0,0 +1,742 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+public final class PersistentIntSet{
+  /*
+    OVERVIEW: PersistentIntSet è un tipo di dato astratto immutabile che
+    rappresenta un insieme persistente di interi non negativi, pensato per id
+    come quelli di UserDictionary: plus e minus restituiscono un nuovo insieme
+    che condivide con this tutta la struttura non toccata dalla modifica, per
+    cui un insieme può far parte di un'istantanea (si veda SocialNetworkSnapshot)
+    senza essere copiato.
+    Come in IntBitmap, gli elementi sono suddivisi in blocchi di 2^16 valori
+    consecutivi (il prefisso di un elemento sono i suoi bit alti) e ogni blocco
+    è memorizzato nel contenitore più compatto:
+    - un array ordinato dei 16 bit bassi (char[]), se ha al più ARRAY_MAX elementi;
+    - una bitmap di 2^16 bit (long[WORDS]), se ne ha di più.
+    I blocchi sono le foglie di un trie indicizzato dai gruppi di 5 bit del
+    prefisso, a partire dai meno significativi, e ognuno è memorizzato nel primo
+    livello in cui non condivide lo slot con un altro blocco: gli insiemi con
+    id minori di 2^21 occupano un solo nodo. Un insieme sparso occupa quindi 2
+    byte per elemento più pochi byte per blocco, uno denso un bit per elemento;
+    una modifica costa O(log n) più la copia di un blocco (al più 8 KiB).
+
+    Elemento tipico: { x_0, x_1, ... , x_n-1 }
+
+    AF(c): { (p << 16) | v | <p, b> è una foglia del trie root && b contiene v }
+    IR(c): ( root == null <=> size == 0 ) && size == |AF(c)| &&
+           ogni foglia <p, b> ha b non vuoto e si trova, in un nodo di livello l,
+           nello slot (p >>> 5l) & 31 &&
+           ( b è un char[] ordinato senza duplicati di lunghezza <= ARRAY_MAX ||
+             b è un long[WORDS] con più di ARRAY_MAX bit impostati ) &&
+           i prefissi delle foglie sono distinti && nessun nodo è vuoto
+  */
+  private final Node root; // radice del trie, null se l'insieme è vuoto
+  private final int size; // numero di elementi
+
+  private static final PersistentIntSet EMPTY = new PersistentIntSet(null, 0);
+  private static final int BITS = 5; // bit di prefisso consumati ad ogni livello
+  private static final int MASK = (1 << BITS) - 1;
+  private static final int ARRAY_MAX = 4096; // oltre questa cardinalità un array occupa più di una bitmap
+  private static final int WORDS = 1024; // long di una bitmap di un blocco (2^16 bit)
+
+  private PersistentIntSet(Node root, int size){
+    this.root = root;
+    this.size = size;
+  }
+
+  /*
+    EFFECTS: restituisce l'insieme vuoto
+  */
+  public static PersistentIntSet empty(){
+    return EMPTY;
+  }
+
+  /*
+    Costruisce l'insieme un blocco alla volta, senza passare per un insieme
+    intermedio per ogni elemento.
+
+    REQUIRES: values != null && forall i. values[i] >= 0
+    THROWS: NullPointerException se values == null
+            IllegalArgumentException se exist i. values[i] < 0
+    EFFECTS: restituisce l'insieme degli elementi di values; values non viene modificato
+  */
+  public static PersistentIntSet of(int values[]) throws NullPointerException, IllegalArgumentException{
+    int sorted[] = values.clone();
+    Arrays.sort(sorted);
+    if( sorted.length > 0 && sorted[0] < 0 ){
+      throw new IllegalArgumentException("The value must be non negative");
+    }
+    Node root = null;
+    int size = 0;
+    int start = 0;
+    while( start < sorted.length ){
+      int prefix = sorted[start] >>> 16;
+      int end = start;
+      int count = 0; // elementi distinti del blocco
+      while( end < sorted.length && sorted[end] >>> 16 == prefix ){
+        if( end == start || sorted[end] != sorted[end - 1] ){
+          count += 1;
+        }
+        end += 1;
+      }
+      Object block;
+      if( count <= ARRAY_MAX ){
+        char array[] = new char[count];
+        for(int i = start, j = 0; i < end; i++){
+          if( i == start || sorted[i] != sorted[i - 1] ){
+            array[j++] = (char) sorted[i];
+          }
+        }
+        block = array;
+      }
+      else{
+        long words[] = new long[WORDS];
+        for(int i = start; i < end; i++){
+          words[(sorted[i] & 0xFFFF) >>> 6] |= 1L << sorted[i];
+        }
+        block = words;
+      }
+      root = root == null ? Node.leaf(slot(prefix, 0), prefix, block) : root.put(0, prefix, block);
+      size += count;
+      start = end;
+    }
+    return root == null ? EMPTY : new PersistentIntSet(root, size);
+  }
+
+  /*
+    EFFECTS: restituisce il numero di elementi dell'insieme
+  */
+  public int size(){
+    return size;
+  }
+
+  /*
+    EFFECTS: restituisce vero se l'insieme è vuoto, falso altrimenti
+  */
+  public boolean isEmpty(){
+    return size == 0;
+  }
+
+  /*
+    EFFECTS: restituisce vero se value appartiene all'insieme, falso altrimenti
+  */
+  public boolean contains(int value){
+    if( value < 0 ){
+      return false;
+    }
+    Object block = block(value >>> 16);
+    return block != null && blockContains(block, value & 0xFFFF);
+  }
+
+  /*
+    REQUIRES: value >= 0
+    THROWS: IllegalArgumentException se value < 0
+    EFFECTS: restituisce l'insieme this U {value} (this stesso se value è già
+             presente); this non viene modificato
+  */
+  public PersistentIntSet plus(int value) throws IllegalArgumentException{
+    if( value < 0 ){
+      throw new IllegalArgumentException("The value must be non negative");
+    }
+    int prefix = value >>> 16;
+    int low = value & 0xFFFF;
+    if( root == null ){
+      return new PersistentIntSet(Node.leaf(slot(prefix, 0), prefix, new char[]{ (char) low }), 1);
+    }
+    Object block = block(prefix);
+    if( block == null ){
+      return new PersistentIntSet(root.put(0, prefix, new char[]{ (char) low }), size + 1);
+    }
+    Object newBlock = blockWith(block, low);
+    return newBlock == block ? this : new PersistentIntSet(root.put(0, prefix, newBlock), size + 1);
+  }
+
+  /*
+    EFFECTS: restituisce l'insieme this \ {value} (this stesso se value non è
+             presente); this non viene modificato
+  */
+  public PersistentIntSet minus(int value){
+    if( value < 0 || root == null ){
+      return this;
+    }
+    int prefix = value >>> 16;
+    Object block = block(prefix);
+    if( block == null ){
+      return this;
+    }
+    Object newBlock = blockWithout(block, value & 0xFFFF);
+    if( newBlock == block ){
+      return this;
+    }
+    if( newBlock != null ){
+      return new PersistentIntSet(root.put(0, prefix, newBlock), size - 1);
+    }
+    Node newRoot = root.remove(0, prefix);
+    return newRoot == null ? EMPTY : new PersistentIntSet(newRoot, size - 1);
+  }
+
+  /*
+    Conta gli elementi comuni a this e other senza costruire l'intersezione; i
+    blocchi presenti in entrambi sono confrontati una parola (64 elementi) alla
+    volta se sono bitmap, altrimenti un elemento alla volta.
+
+    REQUIRES: other != null
+    THROWS: NullPointerException se other == null
+    EFFECTS: restituisce #(this ∩ other)
+  */
+  public int andCardinality(PersistentIntSet other) throws NullPointerException{
+    if( other == null ){
+      throw new NullPointerException();
+    }
+    PersistentIntSet smaller = size <= other.size ? this : other;
+    PersistentIntSet larger = smaller == this ? other : this;
+    int count[] = {0};
+    if( smaller.root != null ){
+      smaller.root.forEachBlock((prefix, block) -> {
+        Object otherBlock = larger.block(prefix);
+        if( otherBlock != null ){
+          count[0] += blockAndCardinality(block, otherBlock);
+        }
+      });
+    }
+    return count[0];
+  }
+
+  /*
+    Intersezione, costruita un blocco alla volta come in andCardinality.
+
+    REQUIRES: other != null
+    THROWS: NullPointerException se other == null
+    EFFECTS: restituisce l'insieme this ∩ other; this e other non vengono modificati
+  */
+  public PersistentIntSet and(PersistentIntSet other) throws NullPointerException{
+    if( other == null ){
+      throw new NullPointerException();
+    }
+    PersistentIntSet smaller = size <= other.size ? this : other;
+    PersistentIntSet larger = smaller == this ? other : this;
+    Node result[] = {null};
+    int count[] = {0};
+    if( smaller.root != null ){
+      smaller.root.forEachBlock((prefix, block) -> {
+        Object otherBlock = larger.block(prefix);
+        Object common = otherBlock == null ? null : blockAnd(block, otherBlock);
+        if( common != null ){
+          result[0] = result[0] == null ? Node.leaf(slot(prefix, 0), prefix, common) : result[0].put(0, prefix, common);
+          count[0] += blockCardinality(common);
+        }
+      });
+    }
+    return result[0] == null ? EMPTY : new PersistentIntSet(result[0], count[0]);
+  }
+
+  /*
+    Applica action ad ogni elemento dell'insieme, in un ordine non specificato
+    ma uguale per insiemi con la stessa struttura.
+
+    REQUIRES: action != null
+    THROWS: NullPointerException se action == null
+  */
+  public void forEach(IntConsumer action) throws NullPointerException{
+    if( action == null ){
+      throw new NullPointerException();
+    }
+    if( root != null ){
+      root.forEachBlock((prefix, block) -> blockForEach(block, prefix << 16, action));
+    }
+  }
+
+  /*
+    Unisce a target gli elementi di this, una parola (64 elementi) alla volta
+    (si veda IntBitmap.orWord).
+
+    REQUIRES: target != null
+    THROWS: NullPointerException se target == null
+    MODIFIES: target
+    EFFECTS: target_post = target_pre U this
+  */
+  public void orInto(IntBitmap target) throws NullPointerException{
+    if( target == null ){
+      throw new NullPointerException();
+    }
+    if( root != null ){
+      root.forEachBlock((prefix, block) -> blockOrInto(block, prefix << 16, target));
+    }
+  }
+
+  /*
+    EFFECTS: restituisce un nuovo array contenente gli elementi dell'insieme in ordine crescente
+  */
+  public int[] toArray(){
+    int array[] = new int[size];
+    int position[] = {0};
+    forEach(value -> array[position[0]++] = value);
+    Arrays.sort(array);
+    return array;
+  }
+
+  /*
+    EFFECTS: restituisce un iteratore sugli elementi dell'insieme, nello stesso
+             ordine di forEach
+  */
+  public PrimitiveIterator.OfInt iterator(){
+    return new ElementIterator(root);
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    return Arrays.toString(toArray());
+  }
+
+  /*
+    EFFECTS: restituisce il blocco del prefisso prefix, null se non è presente
+  */
+  private Object block(int prefix){
+    Node node = root;
+    if( node == null ){
+      return null;
+    }
+    for(int shift = 0; ; shift += BITS){
+      int slot = slot(prefix, shift);
+      if( (node.leafMap & slot) != 0 ){
+        int i = index(node.leafMap, slot);
+        return node.prefixes[i] == prefix ? node.blocks[i] : null;
+      }
+      if( (node.nodeMap & slot) == 0 ){
+        return null;
+      }
+      node = node.children[index(node.nodeMap, slot)];
+    }
+  }
+
+  /*
+    EFFECTS: restituisce il bit dello slot del prefisso prefix al livello shift
+  */
+  private static int slot(int prefix, int shift){
+    return 1 << ((prefix >>> shift) & MASK);
+  }
+
+  /*
+    EFFECTS: restituisce la posizione, negli array di un nodo, dello slot slot
+             tra quelli impostati in map
+  */
+  private static int index(int map, int slot){
+    return Integer.bitCount(map & (slot - 1));
+  }
+
+  /*
+    Operazioni sui blocchi: un blocco è un char[] ordinato o un long[WORDS], e
+    non viene mai modificato dopo la costruzione; le operazioni che lo cambiano
+    restituiscono un nuovo blocco (o lo stesso, se non cambia nulla).
+  */
+  private static boolean blockContains(Object block, int low){
+    if( block instanceof char[] ){
+      return Arrays.binarySearch((char[]) block, (char) low) >= 0;
+    }
+    return (((long[]) block)[low >>> 6] & (1L << low)) != 0;
+  }
+
+  private static int blockCardinality(Object block){
+    if( block instanceof char[] ){
+      return ((char[]) block).length;
+    }
+    int count = 0;
+    for(long word: (long[]) block){
+      count += Long.bitCount(word);
+    }
+    return count;
+  }
+
+  // restituisce il blocco con low aggiunto
+  private static Object blockWith(Object block, int low){
+    if( block instanceof long[] ){
+      long words[] = (long[]) block;
+      if( (words[low >>> 6] & (1L << low)) != 0 ){
+        return block;
+      }
+      long newWords[] = words.clone();
+      newWords[low >>> 6] |= 1L << low;
+      return newWords;
+    }
+    char values[] = (char[]) block;
+    int index = Arrays.binarySearch(values, (char) low);
+    if( index >= 0 ){
+      return block;
+    }
+    if( values.length == ARRAY_MAX ){ // l'array non conviene più: passo alla bitmap
+      long words[] = new long[WORDS];
+      for(char value: values){
+        words[value >>> 6] |= 1L << value;
+      }
+      words[low >>> 6] |= 1L << low;
+      return words;
+    }
+    index = -index - 1;
+    char newValues[] = new char[values.length + 1];
+    System.arraycopy(values, 0, newValues, 0, index);
+    newValues[index] = (char) low;
+    System.arraycopy(values, index, newValues, index + 1, values.length - index);
+    return newValues;
+  }
+
+  // restituisce il blocco senza low, null se resta vuoto
+  private static Object blockWithout(Object block, int low){
+    if( block instanceof long[] ){
+      long words[] = (long[]) block;
+      if( (words[low >>> 6] & (1L << low)) == 0 ){
+        return block;
+      }
+      long newWords[] = words.clone();
+      newWords[low >>> 6] &= ~(1L << low);
+      return fromWords(newWords);
+    }
+    char values[] = (char[]) block;
+    int index = Arrays.binarySearch(values, (char) low);
+    if( index < 0 ){
+      return block;
+    }
+    if( values.length == 1 ){
+      return null;
+    }
+    char newValues[] = new char[values.length - 1];
+    System.arraycopy(values, 0, newValues, 0, index);
+    System.arraycopy(values, index + 1, newValues, index, values.length - index - 1);
+    return newValues;
+  }
+
+  private static void blockForEach(Object block, int high, IntConsumer action){
+    if( block instanceof char[] ){
+      for(char value: (char[]) block){
+        action.accept(high | value);
+      }
+      return;
+    }
+    long words[] = (long[]) block;
+    for(int i = 0; i < WORDS; i++){
+      long word = words[i];
+      while( word != 0 ){
+        action.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+        word &= word - 1; // azzero il bit meno significativo
+      }
+    }
+  }
+
+  private static void blockOrInto(Object block, int high, IntBitmap target){
+    if( block instanceof long[] ){
+      long words[] = (long[]) block;
+      for(int i = 0; i < WORDS; i++){
+        target.orWord(high | (i << 6), words[i]);
+      }
+      return;
+    }
+    char values[] = (char[]) block;
+    int i = 0;
+    while( i < values.length ){ // gli elementi della stessa parola vengono uniti insieme
+      int index = values[i] >>> 6;
+      long word = 0;
+      for(; i < values.length && values[i] >>> 6 == index; i++){
+        word |= 1L << values[i];
+      }
+      target.orWord(high | (index << 6), word);
+    }
+  }
+
+  private static int blockAndCardinality(Object block, Object other){
+    if( block instanceof long[] && other instanceof long[] ){
+      long words[] = (long[]) block;
+      long otherWords[] = (long[]) other;
+      int count = 0;
+      for(int i = 0; i < WORDS; i++){
+        count += Long.bitCount(words[i] & otherWords[i]);
+      }
+      return count;
+    }
+    if( block instanceof long[] ){
+      return blockAndCardinality(other, block);
+    }
+    int count = 0;
+    for(char value: (char[]) block){
+      if( blockContains(other, value) ){
+        count += 1;
+      }
+    }
+    return count;
+  }
+
+  // restituisce il blocco degli elementi comuni, null se non ce ne sono
+  private static Object blockAnd(Object block, Object other){
+    if( block instanceof long[] && other instanceof long[] ){
+      long words[] = (long[]) block;
+      long otherWords[] = (long[]) other;
+      long common[] = new long[WORDS];
+      for(int i = 0; i < WORDS; i++){
+        common[i] = words[i] & otherWords[i];
+      }
+      return fromWords(common);
+    }
+    if( block instanceof long[] ){
+      return blockAnd(other, block);
+    }
+    char values[] = (char[]) block;
+    char common[] = new char[values.length];
+    int count = 0;
+    for(char value: values){
+      if( blockContains(other, value) ){
+        common[count++] = value;
+      }
+    }
+    return count == 0 ? null : Arrays.copyOf(common, count);
+  }
+
+  /*
+    EFFECTS: restituisce words se ha più di ARRAY_MAX bit impostati, altrimenti
+             l'array ordinato dei suoi bit (null se non ce ne sono)
+  */
+  private static Object fromWords(long words[]){
+    int cardinality = blockCardinality(words);
+    if( cardinality > ARRAY_MAX ){
+      return words;
+    }
+    if( cardinality == 0 ){
+      return null;
+    }
+    char values[] = new char[cardinality];
+    int count = 0;
+    for(int i = 0; i < WORDS; i++){
+      long word = words[i];
+      while( word != 0 ){
+        values[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+        word &= word - 1;
+      }
+    }
+    return values;
+  }
+
+  /*
+    Azione applicata ad ogni foglia del trie
+  */
+  private interface BlockAction{
+    void accept(int prefix, Object block);
+  }
+
+  /*
+    Nodo del trie: per ogni bit impostato in leafMap contiene una foglia
+    <prefisso, blocco>, per ogni bit impostato in nodeMap un figlio; i nodi e
+    i loro array non vengono mai modificati dopo la costruzione.
+  */
+  private static final class Node{
+    private static final int NO_PREFIXES[] = new int[0];
+    private static final Object NO_BLOCKS[] = new Object[0];
+    private static final Node NO_CHILDREN[] = new Node[0];
+
+    private final int leafMap; // slot che contengono una foglia
+    private final int nodeMap; // slot che contengono un figlio (disgiunti da quelli di leafMap)
+    private final int prefixes[]; // prefissi delle foglie, nell'ordine degli slot
+    private final Object blocks[]; // blocchi delle foglie, nell'ordine degli slot
+    private final Node children[]; // figli, nell'ordine degli slot
+
+    private Node(int leafMap, int nodeMap, int prefixes[], Object blocks[], Node children[]){
+      this.leafMap = leafMap;
+      this.nodeMap = nodeMap;
+      this.prefixes = prefixes;
+      this.blocks = blocks;
+      this.children = children;
+    }
+
+    // nodo con la sola foglia <prefix, block> nello slot slot
+    private static Node leaf(int slot, int prefix, Object block){
+      return new Node(slot, 0, new int[]{ prefix }, new Object[]{ block }, NO_CHILDREN);
+    }
+
+    // nodo, al livello shift, che contiene le due foglie (di prefisso diverso)
+    private static Node pair(int shift, int prefix1, Object block1, int prefix2, Object block2){
+      int slot1 = slot(prefix1, shift);
+      int slot2 = slot(prefix2, shift);
+      if( slot1 == slot2 ){
+        return new Node(0, slot1, NO_PREFIXES, NO_BLOCKS, new Node[]{ pair(shift + BITS, prefix1, block1, prefix2, block2) });
+      }
+      if( Integer.compareUnsigned(slot1, slot2) > 0 ){ // lo slot 31 è il bit di segno
+        return new Node(slot1 | slot2, 0, new int[]{ prefix2, prefix1 }, new Object[]{ block2, block1 }, NO_CHILDREN);
+      }
+      return new Node(slot1 | slot2, 0, new int[]{ prefix1, prefix2 }, new Object[]{ block1, block2 }, NO_CHILDREN);
+    }
+
+    // restituisce il nodo in cui la foglia del prefisso prefix ha il blocco block
+    private Node put(int shift, int prefix, Object block){
+      int slot = slot(prefix, shift);
+      if( (leafMap & slot) != 0 ){
+        int i = index(leafMap, slot);
+        if( prefixes[i] == prefix ){
+          Object newBlocks[] = blocks.clone();
+          newBlocks[i] = block;
+          return new Node(leafMap, nodeMap, prefixes, newBlocks, children);
+        }
+        // due blocchi nello stesso slot: li sposto in un nuovo figlio
+        Node child = pair(shift + BITS, prefixes[i], blocks[i], prefix, block);
+        return withoutLeaf(i, slot).withChild(slot, child);
+      }
+      if( (nodeMap & slot) != 0 ){
+        int j = index(nodeMap, slot);
+        Node newChildren[] = children.clone();
+        newChildren[j] = children[j].put(shift + BITS, prefix, block);
+        return new Node(leafMap, nodeMap, prefixes, blocks, newChildren);
+      }
+      return withLeaf(slot, prefix, block);
+    }
+
+    // restituisce il nodo senza la foglia del prefisso prefix, che deve essere
+    // presente (null se il nodo resta vuoto)
+    private Node remove(int shift, int prefix){
+      int slot = slot(prefix, shift);
+      if( (leafMap & slot) != 0 ){
+        return leafMap == slot && nodeMap == 0 ? null : withoutLeaf(index(leafMap, slot), slot);
+      }
+      int j = index(nodeMap, slot);
+      Node child = children[j].remove(shift + BITS, prefix);
+      if( child == null ){
+        return nodeMap == slot && leafMap == 0 ? null : withoutChild(j, slot);
+      }
+      if( child.nodeMap == 0 && Integer.bitCount(child.leafMap) == 1 ){ // il figlio ha una sola foglia: la riporto in questo nodo
+        return withoutChild(j, slot).withLeaf(slot, child.prefixes[0], child.blocks[0]);
+      }
+      Node newChildren[] = children.clone();
+      newChildren[j] = child;
+      return new Node(leafMap, nodeMap, prefixes, blocks, newChildren);
+    }
+
+    private Node withLeaf(int slot, int prefix, Object block){
+      int i = index(leafMap, slot);
+      int newPrefixes[] = new int[prefixes.length + 1];
+      Object newBlocks[] = new Object[blocks.length + 1];
+      System.arraycopy(prefixes, 0, newPrefixes, 0, i);
+      System.arraycopy(blocks, 0, newBlocks, 0, i);
+      newPrefixes[i] = prefix;
+      newBlocks[i] = block;
+      System.arraycopy(prefixes, i, newPrefixes, i + 1, prefixes.length - i);
+      System.arraycopy(blocks, i, newBlocks, i + 1, blocks.length - i);
+      return new Node(leafMap | slot, nodeMap, newPrefixes, newBlocks, children);
+    }
+
+    private Node withoutLeaf(int i, int slot){
+      int newPrefixes[] = new int[prefixes.length - 1];
+      Object newBlocks[] = new Object[blocks.length - 1];
+      System.arraycopy(prefixes, 0, newPrefixes, 0, i);
+      System.arraycopy(blocks, 0, newBlocks, 0, i);
+      System.arraycopy(prefixes, i + 1, newPrefixes, i, prefixes.length - i - 1);
+      System.arraycopy(blocks, i + 1, newBlocks, i, blocks.length - i - 1);
+      return new Node(leafMap ^ slot, nodeMap, newPrefixes, newBlocks, children);
+    }
+
+    private Node withChild(int slot, Node child){
+      int j = index(nodeMap, slot);
+      Node newChildren[] = new Node[children.length + 1];
+      System.arraycopy(children, 0, newChildren, 0, j);
+      newChildren[j] = child;
+      System.arraycopy(children, j, newChildren, j + 1, children.length - j);
+      return new Node(leafMap, nodeMap | slot, prefixes, blocks, newChildren);
+    }
+
+    private Node withoutChild(int j, int slot){
+      Node newChildren[] = new Node[children.length - 1];
+      System.arraycopy(children, 0, newChildren, 0, j);
+      System.arraycopy(children, j + 1, newChildren, j, children.length - j - 1);
+      return new Node(leafMap, nodeMap ^ slot, prefixes, blocks, newChildren);
+    }
+
+    private void forEachBlock(BlockAction action){
+      for(int i = 0; i < blocks.length; i++){
+        action.accept(prefixes[i], blocks[i]);
+      }
+      for(Node child: children){
+        child.forEachBlock(action);
+      }
+    }
+  }
+
+  /*
+    Iteratore in profondità sugli elementi del trie, con una pila esplicita:
+    per ogni nodo visita prima i blocchi e poi i figli, come forEach
+  */
+  private static final class ElementIterator implements PrimitiveIterator.OfInt{
+    private Node stack[] = new Node[8]; // nodi in visita (il trie ha al più 4 livelli)
+    private int positions[] = new int[8]; // posizione corrente in ognuno: blocchi e poi figli
+    private int depth; // numero di nodi nella pila
+    private int high; // prefisso << 16 del blocco corrente
+    private char values[]; // blocco corrente, se è un array
+    private long words[]; // blocco corrente, se è una bitmap
+    private int position; // prossimo elemento di values o prossima parola di words
+    private long word; // bit non ancora restituiti della parola words[position - 1]
+    private int next; // prossimo elemento, -1 se l'iterazione è terminata
+
+    private ElementIterator(Node root){
+      if( root != null ){
+        stack[0] = root;
+        depth = 1;
+      }
+      next = advance();
+    }
+
+    // restituisce il prossimo elemento, -1 se non esiste
+    private int advance(){
+      while( true ){
+        if( values != null && position < values.length ){
+          return high | values[position++];
+        }
+        if( words != null ){
+          while( word == 0 && position < WORDS ){
+            word = words[position++];
+          }
+          if( word != 0 ){
+            int value = high | ((position - 1) << 6) | Long.numberOfTrailingZeros(word);
+            word &= word - 1;
+            return value;
+          }
+        }
+        values = null;
+        words = null;
+        if( depth == 0 ){
+          return -1;
+        }
+        Node node = stack[depth - 1];
+        int index = positions[depth - 1]++;
+        if( index < node.blocks.length ){
+          high = node.prefixes[index] << 16;
+          position = 0;
+          word = 0;
+          if( node.blocks[index] instanceof char[] ){
+            values = (char[]) node.blocks[index];
+          }
+          else{
+            words = (long[]) node.blocks[index];
+          }
+        }
+        else if( index - node.blocks.length < node.children.length ){
+          stack[depth] = node.children[index - node.blocks.length];
+          positions[depth] = 0;
+          depth += 1;
+        }
+        else{
+          stack[--depth] = null;
+        }
+      }
+    }
+
+    public boolean hasNext(){
+      return next != -1;
+    }
+
+    public int nextInt(){
+      if( next == -1 ){
+        throw new NoSuchElementException();
+      }
+      int value = next;
+      next = advance();
+      return value;
+    }
+  }
+}
@@ -1,8 +1,13 @@
 import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Collections;
 import java.sql.Timestamp;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 public class Post implements Comparable<Post>{
   /*
@@ -11,22 +16,39 @@ public class Post implements Comparable<Post>{
 
     Elemento tipico: <id, author, text, timestamp, usersLike}>
 
-    AF(c): f(id, author, [char_0, char_1, ... , char_maxCharText-1], timestamp, usersLike, idCounter) -->
+    AF(c): f(id, author, [char_0, char_1, ... , char_maxCharText-1], timestamp, usersLike) -->
             <id, author, text, timestamp, usersLike>
     IR(c): id >= 0 && author != null && ( text != null && text.length <= MAX_CHAR_TEXT ) && timestamp != null &&
            usersLike != null &&
            usersLike.contains(null) == false &&
            usersLike.contains(author) == false &&
            forall j,k. j,k in [0, usersLike.size()) && j!=k => usersLike.toArray()[j] != usersLike.toArray()[k]
+
+    Gli array text e gli oggetti timestamp non vengono mai modificati dopo essere
+    stati assegnati (editText assegna un nuovo array), per cui possono essere
+    condivisi tra copie dello stesso post ed esposti da viste in sola lettura
+    senza essere copiati.
+
+    I post ricostruiti dal social ricevono come usersLike una vista immutabile
+    dei likes memorizzati (si veda UsernameSet), che traduce gli id degli
+    utenti solo quando viene letta: finché likesShared è vero il post non la
+    possiede, e addLike e removeLike la sostituiscono con una copia prima di
+    modificarla (copy-on-write).
+
+    Gli id dei nuovi post sono assegnati dal generatore idGenerator, condiviso
+    da tutti i post e sicuro per la creazione di post da più thread.
   */
   private int id; // id del post
   private String author; // username dell'autore
   private char text[]; // testo del post
   private Timestamp timestamp; // data di pubblicazione del post
-  private HashSet<String> usersLike; // set di utenti che hanno messo like al post
-  private static int idCounter = 0; // contatore incrementale
+  private Set<String> usersLike; // set di utenti che hanno messo like al post
+  private boolean likesShared; // vero se usersLike è una vista immutabile non posseduta da this
+  private CharSequence textView; // vista in sola lettura di text, creata alla prima richiesta
+  private static volatile PostIdGenerator idGenerator = new BlockIdGenerator(); // generatore degli id dei nuovi post
+  private PostListener listener; // eventuale osservatore delle modifiche (non fa parte dello stato astratto)
 
-  private final int MAX_CHAR_TEXT = 140; // limite massimo lunghezza testo
+  static final int MAX_CHAR_TEXT = 140; // limite massimo lunghezza testo
   // Messaggio di errore da stampare se il testo supera la dimensione massima consentita
   private final String TEXT_TOO_LONG_ERROR_MESSAGE = String.format("Text length must be less or equal than %d.", MAX_CHAR_TEXT);
   // Messaggio di errore se l'autore del post prova a mettere like
@@ -37,32 +59,55 @@ public class Post implements Comparable<Post>{
            falso altrimenti
   */
   public boolean checkRep(){
-    if(id < 0 || author == null || text == null || timestamp == null || usersLike == null){
-      return false;
+    return checkRep(null);
+  }
+
+  /*
+    Come checkRep(), ma la clausola violata viene comunicata a listener; il
+    costo è proporzionale al numero di likes del post.
+
+    EFFECTS: ritorna true se l'invariante di rappresentazione vale per this,
+             falso altrimenti; in questo caso, se listener != null, invoca
+             listener.invariantViolated con la prima clausola violata
+  */
+  public boolean checkRep(InvariantListener listener){
+    String violation = null;
+    if( id < 0 ){
+      violation = "id >= 0";
     }
-    if( text.length > MAX_CHAR_TEXT ){
-      return false;
+    else if( author == null || text == null || timestamp == null || usersLike == null ){
+      violation = "author, text, timestamp and usersLike are not null";
     }
-    if( usersLike.contains(null) || usersLike.contains(author)){
-      return false;
+    else if( text.length > MAX_CHAR_TEXT ){
+      violation = "text.length <= MAX_CHAR_TEXT";
+    }
+    else if( usersLike.contains(null) ){
+      violation = "usersLike doesn't contain null";
+    }
+    else if( usersLike.contains(author) ){
+      violation = "usersLike doesn't contain the author";
+    }
+    if( violation != null && listener != null ){
+      listener.invariantViolated("post " + id, violation);
     }
-    return true;
+    return violation == null;
   }
 
   /*
     Metodo costrutture senza parametri
 
     MODIFIES: this
-    EFFECTS: Inizializza un post vuoto ed incrementa in il contatore degli id di 1, formalmente:
-             IR(this_post) && ( idCounter_post = idCounter_pre + 1 )
+    THROWS: IllegalStateException se gli id dei post sono esauriti
+    EFFECTS: Inizializza un post vuoto con un nuovo id assegnato da idGenerator, formalmente:
+             IR(this_post)
   */
-  public Post(){
-    this.id = this.idCounter;
+  public Post() throws IllegalStateException{
+    this.id = idGenerator.nextId();
     this.author = new String();
     this.text = new char[0];
     this.timestamp = new Timestamp(0);
     this.usersLike = new HashSet<String>();
-    this.idCounter += 1;
+    this.likesShared = false;
   }
 
   /*
@@ -78,11 +123,12 @@ public class Post implements Comparable<Post>{
               se ( author == null || text == null || timestamp == null || usersLike == null || usersLike.contains(null))
             TextTooLongException se text.length >= MAX_CHAR_TEXT
             AuthorCantLikeHimselfException se usersLike.contains(author)
+            IllegalStateException se gli id dei post sono esauriti
     EFFECTS: Inizializza gli attributi di this con i parametri passati come parametro e l'id con
-             il valore del contatore statico (incrementato successivamente di 1); prima di
-             salvarli in this viene fatta una deep copy degli oggetti passati.
+             un nuovo id assegnato da idGenerator; prima di salvarli in this viene fatta una
+             deep copy degli oggetti passati.
   */
-  public Post(String author, char text[], Timestamp timestamp, HashSet<String> usersLike) throws NullPointerException, TextTooLongException, AuthorCantLikeHimselfException{
+  public Post(String author, char text[], Timestamp timestamp, HashSet<String> usersLike) throws NullPointerException, TextTooLongException, AuthorCantLikeHimselfException, IllegalStateException{
     if( author == null || text == null || timestamp == null || usersLike == null || usersLike.contains(null)){
       throw new NullPointerException();
     }
@@ -92,12 +138,75 @@ public class Post implements Comparable<Post>{
     if( usersLike.contains(author) ){
       throw new AuthorCantLikeHimselfException("The author of the post can't like himself.");
     }
-    this.id = this.idCounter;
+    this.id = idGenerator.nextId();
     this.author = author;
     this.text = Arrays.copyOf(text, text.length);
     this.timestamp = new Timestamp(timestamp.getTime());
     this.usersLike = new HashSet<String>(usersLike);
-    this.idCounter += 1;
+    this.likesShared = false;
+  }
+
+  /*
+    Metodo costruttore usato dal social per ricostruire un post memorizzato:
+    l'id è quello passato e non ne viene consumato alcuno da idGenerator.
+    Gli oggetti passati non vengono copiati e diventano parte dello stato di this.
+
+    REQUIRES: i parametri rispettano IR
+    MODIFIES: this
+    EFFECTS: Inizializza gli attributi di this con i parametri passati
+  */
+  Post(int id, String author, char text[], Timestamp timestamp, HashSet<String> usersLike){
+    this.id = id;
+    this.author = author;
+    this.text = text;
+    this.timestamp = timestamp;
+    this.usersLike = usersLike;
+    this.likesShared = false;
+  }
+
+  /*
+    Come il costruttore precedente, ma i likes sono una vista immutabile dei
+    likes memorizzati dal social, che viene condivisa (e non tradotta) finché
+    il post non viene modificato con addLike o removeLike.
+
+    REQUIRES: i parametri rispettano IR
+    MODIFIES: this
+    EFFECTS: Inizializza gli attributi di this con i parametri passati
+  */
+  Post(int id, String author, char text[], Timestamp timestamp, UsernameSet usersLike){
+    this.id = id;
+    this.author = author;
+    this.text = text;
+    this.timestamp = timestamp;
+    this.usersLike = usersLike;
+    this.likesShared = true;
+  }
+
+  /*
+    Usato durante il ripristino di un social: garantisce che i post creati in
+    seguito non ricevano un id già assegnato a un post ripristinato.
+
+    MODIFIES: idGenerator
+    EFFECTS: gli id assegnati in seguito ai nuovi post sono maggiori o uguali a nextId
+  */
+  static void reserveIds(int nextId){
+    idGenerator.reserve(nextId);
+  }
+
+  /*
+    Sostituisce il generatore degli id dei nuovi post (ad esempio con uno che
+    assegni id disgiunti a processi diversi); il nuovo generatore non deve
+    restituire gli id già assegnati dal precedente.
+
+    REQUIRES: generator != null
+    THROWS: NullPointerException se generator == null
+    MODIFIES: idGenerator
+  */
+  public static void setIdGenerator(PostIdGenerator generator) throws NullPointerException{
+    if( generator == null ){
+      throw new NullPointerException();
+    }
+    idGenerator = generator;
   }
 
   /*
@@ -113,11 +222,12 @@ public class Post implements Comparable<Post>{
     if( oldPost == null ){
       throw new NullPointerException();
     }
-    this.id = oldPost.getId();
-    this.author = oldPost.getAuthor();
-    this.text = oldPost.getText();
-    this.timestamp = oldPost.getTimestamp();
-    this.usersLike = oldPost.getUsersLike();
+    this.id = oldPost.id;
+    this.author = oldPost.author;
+    this.text = oldPost.text; // testo e timestamp non vengono mai modificati: basta condividerli
+    this.timestamp = oldPost.timestamp;
+    this.likesShared = oldPost.likesShared; // una vista immutabile può essere condivisa, un set va copiato
+    this.usersLike = likesShared ? oldPost.usersLike : new HashSet<String>(oldPost.usersLike);
   }
 
   /*
@@ -129,7 +239,8 @@ public class Post implements Comparable<Post>{
     MODIFIES: this
     THROWS: NullPointerException se newText == null
             TextTooLongException se newText.length >= MAX_CHAR_TEXT
-    EFFECTS: text_post = newText
+    EFFECTS: text_post = newText; se al post è associato un listener, questo
+             viene avvisato della modifica
   */
   public void editText(char newText[]) throws NullPointerException, TextTooLongException{
     if( newText == null ){
@@ -139,10 +250,26 @@ public class Post implements Comparable<Post>{
       throw new TextTooLongException(TEXT_TOO_LONG_ERROR_MESSAGE);
     }
     else{
+      char oldText[] = this.text;
       this.text = Arrays.copyOf(newText, newText.length);
+      this.textView = null;
+      if( listener != null ){
+        listener.textEdited(this, oldText);
+      }
     }
   }
 
+  /*
+    Associa al post l'osservatore che verrà avvisato delle modifiche del testo;
+    usato dal social network per mantenere aggiornati i propri indici.
+
+    MODIFIES: this
+    EFFECTS: listener_post = listener (null per rimuoverlo)
+  */
+  void setListener(PostListener listener){
+    this.listener = listener;
+  }
+
   /*
     EFFECTS: restituisce l'id del post.
   */
@@ -164,11 +291,43 @@ public class Post implements Comparable<Post>{
     return Arrays.copyOf(text, text.length);
   }
 
+  /*
+    Restituisce il testo del post senza copiarlo. La vista non può modificare
+    il post e mostra il testo al momento della chiamata: dopo editText continua
+    a mostrare il testo precedente.
+
+    EFFECTS: restituisce una sequenza di caratteri in sola lettura uguale al testo
+  */
+  public CharSequence getTextView(){
+    if( textView == null ){
+      textView = new TextView(text, 0, text.length);
+    }
+    return textView;
+  }
+
   /*
     EFFECTS: restituisce una deep copy del timestamp del post
   */
   public Timestamp getTimestamp(){
-    return new Timestamp(this.timestamp.getTime());
+    Timestamp copy = new Timestamp(this.timestamp.getTime());
+    copy.setNanos(this.timestamp.getNanos());
+    return copy;
+  }
+
+  /*
+    EFFECTS: restituisce i millisecondi dall'epoch del timestamp del post
+             (getTimestamp().getTime()), senza creare oggetti
+  */
+  public long getEpochMillis(){
+    return this.timestamp.getTime();
+  }
+
+  /*
+    EFFECTS: restituisce la parte in nanosecondi del timestamp del post
+             (getTimestamp().getNanos()), senza creare oggetti
+  */
+  public int getNanos(){
+    return this.timestamp.getNanos();
   }
 
   /*
@@ -178,10 +337,43 @@ public class Post implements Comparable<Post>{
     return new HashSet<String>(this.usersLike);
   }
 
+  /*
+    Restituisce gli utenti che hanno messo like al post senza copiarli; la
+    vista non può modificare il post e riflette i likes aggiunti o rimossi
+    successivamente.
+
+    EFFECTS: restituisce una vista non modificabile del set di utenti che hanno messo like al post
+  */
+  public Set<String> getUsersLikeView(){
+    return new LikesView();
+  }
+
+  /*
+    EFFECTS: restituisce il numero di utenti che hanno messo like al post
+  */
+  public int likeCount(){
+    return this.usersLike.size();
+  }
+
+  /*
+    Applica l'azione passata come parametro ad ogni utente che ha messo like
+    al post, senza copiare il set.
+
+    REQUIRES: action != null && action non modifica this
+    THROWS: NullPointerException se action == null
+  */
+  public void forEachLike(Consumer<String> action) throws NullPointerException{
+    if( action == null ){
+      throw new NullPointerException();
+    }
+    usersLike.forEach(action);
+  }
+
   /*
     Restituisce vero se il testo del post contiene l'argomento word,
     falso altrimenti. La ricerca della parola all'interno del testo
-    non è case sensitive e fa uso di espressioni regolari.
+    non è case sensitive, rispetta i word boundary e confronta i caratteri
+    di word letteralmente (si veda WordMatcher).
 
     REQUIRES: word != null
     THROWS: NullPointerException se word == null
@@ -191,10 +383,21 @@ public class Post implements Comparable<Post>{
     if( word == null ){
       throw new NullPointerException();
     }
-    String regex = "\\b" + word + "\\b";
-    Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE); // creazione del pattern della parola, con flag CASE_INSENSITIVE
-    Matcher matcher = pattern.matcher(new String(this.text)); // la classe Matcher contiene informazioni sull'esito della ricerca della parola
-    return matcher.find();
+    return WordMatcher.containsWord(this.text, word);
+  }
+
+  /*
+    Restituisce vero se il testo del post contiene almeno una delle parole
+    passate come parametro, con la stessa semantica di doesContainWord;
+    il testo viene percorso una sola volta per tutte le parole.
+
+    REQUIRES: words != null && forall i. i in [0, words.length) => words[i] != null
+    THROWS: NullPointerException se words == null || exist i. words[i] == null
+    EFFECTS: Ritorna true se exist i. i in [0, words.length) t.c. doesContainWord(words[i]),
+             false altrimenti
+  */
+  public boolean doesContainAnyWord(String... words) throws NullPointerException{
+    return WordMatcher.containsAnyWord(this.text, words);
   }
 
   /*
@@ -219,7 +422,10 @@ public class Post implements Comparable<Post>{
     if( username == this.author ){
       throw new AuthorCantLikeHimselfException(AUTHOR_CANT_LIKE_ERROR_MESSAGE);
     }
-    return usersLike.add(username);
+    if( usersLike.contains(username) ){
+      return false;
+    }
+    return ownLikes().add(username);
   }
 
   /*
@@ -238,7 +444,23 @@ public class Post implements Comparable<Post>{
     if( username == null ){
       throw new NullPointerException();
     }
-    return usersLike.remove(username);
+    if( usersLike.contains(username) == false ){
+      return false;
+    }
+    return ownLikes().remove(username);
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: se usersLike è una vista condivisa la sostituisce con una sua copia
+             modificabile; restituisce usersLike
+  */
+  private Set<String> ownLikes(){
+    if( likesShared ){
+      usersLike = new HashSet<String>(usersLike);
+      likesShared = false;
+    }
+    return usersLike;
   }
 
   /*
@@ -273,14 +495,66 @@ public class Post implements Comparable<Post>{
     if( otherPost  == null){
       throw new NullPointerException();
     }
-    return this.timestamp.compareTo(otherPost.getTimestamp());
+    return this.timestamp.compareTo(otherPost.timestamp); // nessuna copia: il confronto non alloca
   }
 
   /*
-    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this, con i
+             likes in ordine alfabetico (indipendente da come sono memorizzati)
   */
   public String toString(){
     return String.format("{%d,%s,%s,%s,%s}", id, author,
-    String.valueOf(text), timestamp, usersLike.toString());
+    String.valueOf(text), timestamp, new TreeSet<String>(usersLike).toString());
+  }
+
+  /*
+    Vista in sola lettura dei likes del post: legge ogni volta il set corrente,
+    per cui riflette anche le modifiche successive alla copia di una vista condivisa.
+  */
+  private final class LikesView extends AbstractSet<String>{
+    public int size(){
+      return usersLike.size();
+    }
+
+    public boolean contains(Object username){
+      return usersLike.contains(username);
+    }
+
+    public Iterator<String> iterator(){
+      return Collections.unmodifiableSet(usersLike).iterator();
+    }
+  }
+
+  /*
+    Vista in sola lettura di una porzione di un array di caratteri che non
+    viene più modificato (si veda l'IR di Post).
+  */
+  private static final class TextView implements CharSequence{
+    private final char chars[];
+    private final int start;
+    private final int end;
+
+    private TextView(char chars[], int start, int end){
+      this.chars = chars;
+      this.start = start;
+      this.end = end;
+    }
+
+    public int length(){
+      return end - start;
+    }
+
+    public char charAt(int index){
+      return chars[start + Objects.checkIndex(index, end - start)];
+    }
+
+    public CharSequence subSequence(int from, int to){
+      Objects.checkFromToIndex(from, to, end - start);
+      return new TextView(chars, start + from, start + to);
+    }
+
+    public String toString(){
+      return new String(chars, start, end - start);
+    }
   }
 }
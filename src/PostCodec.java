@@ -0,0 +1,119 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.Set;
+
+public class PostCodec{
+  /*
+    OVERVIEW: PostCodec raccoglie le funzioni che codificano un post in forma
+    binaria, nel formato usato dal registro delle modifiche (DurableSocialNetwork)
+    e dai file di post importati con PostIngestion:
+      id (int), autore, testo, millisecondi (long), nanosecondi (int),
+      numero di likes (int), username degli utenti che hanno messo like
+    Le stringhe sono scritte con DataOutput.writeUTF, che rappresenta
+    esattamente qualsiasi sequenza di caratteri UTF-16.
+  */
+  private PostCodec(){
+  }
+
+  /*
+    REQUIRES: out != null && post != null
+    THROWS: NullPointerException se out == null || post == null
+            IOException se la scrittura fallisce
+    MODIFIES: out
+    EFFECTS: scrive in out la codifica di post
+  */
+  public static void write(DataOutput out, Post post) throws NullPointerException, IOException{
+    if( out == null || post == null ){
+      throw new NullPointerException();
+    }
+    out.writeInt(post.getId());
+    out.writeUTF(post.getAuthor());
+    out.writeUTF(post.getTextView().toString());
+    out.writeLong(post.getEpochMillis());
+    out.writeInt(post.getNanos());
+    Set<String> usersLike = post.getUsersLikeView();
+    out.writeInt(usersLike.size());
+    for(String username: usersLike){
+      out.writeUTF(username);
+    }
+  }
+
+  /*
+    REQUIRES: post != null
+    THROWS: NullPointerException se post == null
+            UTFDataFormatException se una delle stringhe del post è troppo lunga per writeUTF
+    EFFECTS: restituisce il numero di byte che write scriverebbe per post
+  */
+  public static int encodedSize(Post post) throws NullPointerException, UTFDataFormatException{
+    if( post == null ){
+      throw new NullPointerException();
+    }
+    long size = 4 + utfSize(post.getAuthor()) + utfSize(post.getTextView()) + 8 + 4 + 4;
+    for(String username: post.getUsersLikeView()){
+      size += utfSize(username);
+    }
+    if( size > Integer.MAX_VALUE ){
+      throw new UTFDataFormatException("The encoded post is too long: " + size + " bytes");
+    }
+    return (int) size;
+  }
+
+  /*
+    REQUIRES: string != null
+    THROWS: NullPointerException se string == null
+            UTFDataFormatException se string è troppo lunga per writeUTF
+    EFFECTS: restituisce il numero di byte che DataOutput.writeUTF scriverebbe per string,
+             compresi i due byte della lunghezza
+  */
+  public static int utfSize(CharSequence string) throws NullPointerException, UTFDataFormatException{
+    int bytes = 0;
+    for(int i = 0; i < string.length(); i++){
+      char c = string.charAt(i);
+      bytes += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+    }
+    if( bytes > 65535 ){
+      throw new UTFDataFormatException("The encoded string is too long: " + bytes + " bytes");
+    }
+    return bytes + 2;
+  }
+
+  /*
+    Legge un post codificato con write. L'id viene letto dal record e non
+    consuma id del generatore di Post: il chiamante che inserisce il post in
+    un social deve usare Post.reserveIds.
+
+    REQUIRES: in != null
+    THROWS: NullPointerException se in == null
+            IOException se la lettura fallisce o il record non rappresenta un post valido
+    MODIFIES: in
+    EFFECTS: restituisce un nuovo post con i valori letti da in
+  */
+  public static Post read(DataInput in) throws NullPointerException, IOException{
+    if( in == null ){
+      throw new NullPointerException();
+    }
+    int id = in.readInt();
+    String author = in.readUTF();
+    char text[] = in.readUTF().toCharArray();
+    long millis = in.readLong();
+    int nanos = in.readInt();
+    int likes = in.readInt();
+    if( id < 0 || text.length >= Post.MAX_CHAR_TEXT || nanos < 0 || nanos > 999999999 || likes < 0 ){
+      throw new IOException("Invalid post record");
+    }
+    HashSet<String> usersLike = new HashSet<String>();
+    for(int i = 0; i < likes; i++){
+      usersLike.add(in.readUTF());
+    }
+    if( usersLike.contains(author) ){
+      throw new IOException("The author of the post can't like himself.");
+    }
+    Timestamp timestamp = new Timestamp(millis);
+    timestamp.setNanos(nanos);
+    return new Post(id, author, text, timestamp, usersLike);
+  }
+}
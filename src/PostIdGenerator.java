@@ -0,0 +1,21 @@
+/*
+  interfaccia dei generatori degli id assegnati ai nuovi post (si veda
+  Post.setIdGenerator); un generatore può essere usato contemporaneamente da
+  più thread
+*/
+public interface PostIdGenerator{
+  /*
+    THROWS: IllegalStateException se gli id sono esauriti
+    EFFECTS: restituisce un id >= 0 mai restituito in precedenza e non minore
+             dell'ultimo valore passato a reserve
+  */
+  int nextId() throws IllegalStateException;
+
+  /*
+    Usato durante il ripristino o l'importazione di post con id già assegnati:
+    gli id restituiti in seguito da nextId sono maggiori o uguali a nextId.
+
+    MODIFIES: this
+  */
+  void reserve(int nextId);
+}
@@ -0,0 +1,378 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PostIngestion{
+  /*
+    OVERVIEW: PostIngestion importa in un social i post contenuti in un file,
+    senza caricarli tutti in memoria. L'importazione è una pipeline a tre stadi:
+    - un thread lettore legge il file con un FileChannel a blocchi di circa
+      chunkSize byte, tagliati al termine dell'ultimo record completo;
+    - workers thread analizzano i blocchi, ognuno in una lista di post;
+    - il thread chiamante inserisce le liste nel social con addPosts, nell'ordine
+      del file (SocialNetwork non è thread-safe, per cui le modifiche avvengono
+      tutte in un unico thread).
+    I blocchi in corso di analisi sono mantenuti, in ordine, in una coda limitata
+    a queueCapacity elementi: quando l'inserimento nel social è più lento della
+    lettura il lettore si blocca (backpressure), per cui la memoria occupata è
+    O(queueCapacity * chunkSize) indipendentemente dalla dimensione del file.
+    Un singolo record (una riga TEXT o un record BINARY) non può superare
+    MAX_RECORD_SIZE byte: il buffer del lettore cresce al più fino a questa
+    dimensione, ed un record più lungo (ad esempio una riga non terminata in un
+    file corrotto) interrompe l'importazione con IOException.
+
+    Formati supportati (Format):
+    - TEXT: una riga UTF-8 per post, con i campi separati da tabulazioni
+        id, autore, millisecondi, nanosecondi, likes separati da virgole, testo
+      il testo è l'ultimo campo e può contenere tabulazioni ma non ritorni a capo;
+    - BINARY: sequenza di record [lunghezza (int)][post codificato con PostCodec].
+    Gli id dei post sono quelli del file. Un record malformato interrompe
+    l'importazione con IOException; i post rifiutati dal social (autore o
+    utenti dei likes inesistenti, id già presenti) vengono scartati e contati
+    nel resoconto.
+
+    IR(c): workers > 0 && queueCapacity > 0 && chunkSize > 0
+  */
+  private final int workers; // thread che analizzano i blocchi
+  private final int queueCapacity; // blocchi letti ma non ancora inseriti nel social
+  private final int chunkSize; // dimensione indicativa di un blocco, in byte
+
+  private static final int DEFAULT_CHUNK_SIZE = 1 << 20; // 1 MiB
+  private static final int MAX_RECORD_SIZE = 1 << 24; // 16 MiB: lunghezze maggiori indicano un record corrotto
+  // marcatore di fine file nella coda dei blocchi
+  private static final Future<List<Post>> END = CompletableFuture.completedFuture(Collections.emptyList());
+
+  /*
+    Formati dei file di post
+  */
+  public enum Format{ TEXT, BINARY }
+
+  /*
+    Inizializza una pipeline con un thread di analisi per processore (lasciandone
+    uno al thread che inserisce i post) e blocchi di 1 MiB
+
+    MODIFIES: this
+  */
+  public PostIngestion(){
+    this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+         2 * Math.max(1, Runtime.getRuntime().availableProcessors() - 1), DEFAULT_CHUNK_SIZE);
+  }
+
+  /*
+    REQUIRES: workers > 0 && queueCapacity > 0 && chunkSize > 0
+    THROWS: IllegalArgumentException se un parametro non è positivo
+    MODIFIES: this
+    EFFECTS: inizializza una pipeline con i parametri passati
+  */
+  public PostIngestion(int workers, int queueCapacity, int chunkSize) throws IllegalArgumentException{
+    if( workers <= 0 || queueCapacity <= 0 || chunkSize <= 0 ){
+      throw new IllegalArgumentException("The pipeline parameters must be positive");
+    }
+    this.workers = workers;
+    this.queueCapacity = queueCapacity;
+    this.chunkSize = chunkSize;
+  }
+
+  /*
+    Importa in social i post contenuti in file.
+
+    REQUIRES: file != null && format != null && social != null
+    THROWS: NullPointerException se un parametro è null
+            IOException se il file non può essere letto o contiene un record malformato
+                        (InterruptedIOException se il thread viene interrotto); i post
+                        dei blocchi inseriti prima dell'errore restano nel social
+    MODIFIES: social
+    EFFECTS: aggiunge a social i post del file, nell'ordine del file, e restituisce il
+             resoconto dell'importazione
+  */
+  public IngestionReport ingest(Path file, Format format, SocialNetwork social) throws NullPointerException, IOException{
+    if( file == null || format == null || social == null ){
+      throw new NullPointerException();
+    }
+    long start = System.nanoTime();
+    BlockingQueue<Future<List<Post>>> chunks = new ArrayBlockingQueue<Future<List<Post>>>(queueCapacity);
+    AtomicLong bytesRead = new AtomicLong();
+    ExecutorService parsers = Executors.newFixedThreadPool(workers, task -> {
+      Thread thread = new Thread(task, "post-ingestion-parser");
+      thread.setDaemon(true);
+      return thread;
+    });
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    Thread reader = new Thread(() -> readChunks(channel, format, parsers, chunks, bytesRead), "post-ingestion-reader");
+    reader.setDaemon(true);
+    reader.start();
+    long postsRead = 0;
+    long postsAdded = 0;
+    try{
+      for(Future<List<Post>> chunk = chunks.take(); chunk != END; chunk = chunks.take()){
+        List<Post> batch = chunk.get();
+        postsRead += batch.size();
+        postsAdded += apply(social, batch);
+      }
+      reader.join();
+    }
+    catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("The ingestion of " + file + " was interrupted");
+    }
+    catch(ExecutionException e){
+      if( e.getCause() instanceof IOException ){
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Unexpected error while ingesting " + file, e.getCause());
+    }
+    finally{ // in caso di errore il lettore può essere bloccato sulla coda piena
+      reader.interrupt();
+      chunks.clear();
+      parsers.shutdownNow();
+      channel.close();
+    }
+    return new IngestionReport(postsRead, postsAdded, postsRead - postsAdded, bytesRead.get(), System.nanoTime() - start);
+  }
+
+  /*
+    Stadio di lettura: divide il file in blocchi di record completi e ne affida
+    l'analisi a parsers, accodando i risultati in chunks; al termine accoda END,
+    in caso di errore un risultato fallito. Qualsiasi errore, anche non
+    controllato (OutOfMemoryError, RejectedExecutionException, ...), viene
+    accodato, altrimenti il thread chiamante resterebbe in attesa di END.
+  */
+  private void readChunks(FileChannel channel, Format format, ExecutorService parsers, BlockingQueue<Future<List<Post>>> chunks, AtomicLong bytesRead){
+    try{
+      try{
+        ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+        long offset = 0; // posizione nel file del primo byte di buffer
+        boolean endOfFile = false;
+        while( endOfFile == false ){
+          while( buffer.hasRemaining() && endOfFile == false ){
+            endOfFile = channel.read(buffer) < 0;
+          }
+          int end = endOfFile && format == Format.TEXT ? buffer.position() : completeRecords(buffer, format, offset);
+          if( endOfFile && end != buffer.position() ){
+            throw new IOException("Truncated record at byte " + (offset + end));
+          }
+          if( end == 0 && endOfFile == false ){ // un solo record più grande del buffer
+            if( format == Format.TEXT && buffer.position() > MAX_RECORD_SIZE ){
+              throw new IOException("Record too long at byte " + offset);
+            }
+            // un record BINARY più lungo di MAX_RECORD_SIZE è già stato rifiutato da completeRecords
+            int capacity = (int) Math.min(2L * buffer.capacity(), MAX_RECORD_SIZE + 4L);
+            buffer = ByteBuffer.allocate(capacity).put(buffer.flip());
+            continue;
+          }
+          byte chunk[] = Arrays.copyOf(buffer.array(), end);
+          long chunkOffset = offset;
+          chunks.put(parsers.submit(() -> parse(chunk, chunkOffset, format)));
+          offset += end;
+          buffer.flip().position(end);
+          buffer.compact();
+        }
+        bytesRead.set(offset);
+        chunks.put(END);
+      }
+      catch(IOException | RuntimeException | Error e){ // ogni Throwable tranne InterruptedException
+        chunks.put(CompletableFuture.failedFuture(e));
+      }
+    }
+    catch(InterruptedException e){ // l'importazione è stata interrotta dal thread chiamante
+    }
+  }
+
+  /*
+    EFFECTS: restituisce la lunghezza del più lungo prefisso di buffer[0, buffer.position())
+             composto da record completi
+  */
+  private static int completeRecords(ByteBuffer buffer, Format format, long offset) throws IOException{
+    byte data[] = buffer.array();
+    int end = buffer.position();
+    if( format == Format.TEXT ){
+      while( end > 0 && data[end - 1] != '\n' ){
+        end -= 1;
+      }
+      return end;
+    }
+    int position = 0;
+    while( position + 4 <= end ){
+      int length = buffer.getInt(position);
+      if( length < 0 || length > MAX_RECORD_SIZE ){
+        throw new IOException("Invalid record length at byte " + (offset + position));
+      }
+      if( position + 4 + length > end ){
+        break;
+      }
+      position += 4 + length;
+    }
+    return position;
+  }
+
+  /*
+    Stadio di analisi, eseguito dai thread di parsers.
+
+    THROWS: IOException se chunk contiene un record malformato
+    EFFECTS: restituisce la lista dei post contenuti in chunk, che inizia alla posizione offset del file
+  */
+  private static List<Post> parse(byte chunk[], long offset, Format format) throws IOException{
+    List<Post> batch = new ArrayList<Post>();
+    int position = 0;
+    while( position < chunk.length ){
+      if( format == Format.TEXT ){
+        int end = position;
+        while( end < chunk.length && chunk[end] != '\n' ){
+          end += 1;
+        }
+        int length = end - position;
+        if( length > MAX_RECORD_SIZE ){ // possibile solo con blocchi più grandi di MAX_RECORD_SIZE
+          throw new IOException("Record too long at byte " + (offset + position));
+        }
+        if( length > 0 && chunk[end - 1] == '\r' ){
+          length -= 1;
+        }
+        if( length > 0 ){ // le righe vuote vengono ignorate
+          batch.add(parseLine(new String(chunk, position, length, StandardCharsets.UTF_8), offset + position));
+        }
+        position = end + 1;
+      }
+      else{
+        int length = ByteBuffer.wrap(chunk, position, 4).getInt();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(chunk, position + 4, length));
+        try{
+          batch.add(PostCodec.read(in));
+        }
+        catch(IOException e){
+          throw new IOException("Malformed post at byte " + (offset + position) + ": " + e.getMessage(), e);
+        }
+        if( in.available() != 0 ){
+          throw new IOException("Malformed post at byte " + (offset + position) + ": unexpected data after the post");
+        }
+        position += 4 + length;
+      }
+    }
+    return batch;
+  }
+
+  /*
+    THROWS: IOException se line non rappresenta un post valido
+    EFFECTS: restituisce il post rappresentato da una riga nel formato TEXT
+  */
+  private static Post parseLine(String line, long offset) throws IOException{
+    String fields[] = line.split("\t", 6);
+    try{
+      if( fields.length != 6 || fields[1].isEmpty() ){
+        throw new IllegalArgumentException("expected 6 tab separated fields");
+      }
+      int id = Integer.parseInt(fields[0]);
+      Timestamp timestamp = new Timestamp(Long.parseLong(fields[2]));
+      timestamp.setNanos(Integer.parseInt(fields[3]));
+      HashSet<String> usersLike = new HashSet<String>();
+      if( fields[4].isEmpty() == false ){
+        usersLike.addAll(Arrays.asList(fields[4].split(",", -1)));
+      }
+      char text[] = fields[5].toCharArray();
+      if( id < 0 || text.length >= Post.MAX_CHAR_TEXT || usersLike.contains("") || usersLike.contains(fields[1]) ){
+        throw new IllegalArgumentException("invalid id, text or likes");
+      }
+      return new Post(id, fields[1], text, timestamp, usersLike);
+    }
+    catch(IllegalArgumentException e){ // comprende NumberFormatException
+      throw new IOException("Malformed post at byte " + offset + ": " + e.getMessage(), e);
+    }
+  }
+
+  /*
+    Inserisce batch in social; se il lotto viene rifiutato (perché contiene
+    almeno un post non valido per il social) i post vengono inseriti uno alla
+    volta, scartando solo quelli rifiutati.
+
+    MODIFIES: social
+    EFFECTS: restituisce il numero di post di batch aggiunti a social
+  */
+  private static int apply(SocialNetwork social, List<Post> batch){
+    int nextId = 0;
+    for(Post post: batch){
+      nextId = Math.max(nextId, post.getId() + 1);
+    }
+    Post.reserveIds(nextId); // i post creati in seguito non devono riusare gli id importati
+    try{
+      social.addPosts(batch);
+      return batch.size();
+    }
+    catch(UserNotExistException | PostAlreadyExistException | NegativeIdException e){
+      int added = 0;
+      for(Post post: batch){
+        try{
+          social.addPost(post);
+          added += 1;
+        }
+        catch(UserNotExistException | PostAlreadyExistException | NegativeIdException rejected){
+        }
+      }
+      return added;
+    }
+  }
+
+  /*
+    REQUIRES: post != null && il testo di post non contiene ritorni a capo e
+              nessun username contiene tabulazioni, virgole o ritorni a capo
+    THROWS: NullPointerException se post == null
+            IllegalArgumentException se post non è rappresentabile nel formato TEXT
+    EFFECTS: restituisce la riga (senza terminatore) che rappresenta post nel formato TEXT
+  */
+  public static String toLine(Post post) throws NullPointerException, IllegalArgumentException{
+    String text = post.getTextView().toString();
+    if( text.indexOf('\n') != -1 || text.indexOf('\r') != -1 || isPlainName(post.getAuthor()) == false ){
+      throw new IllegalArgumentException("The post can't be represented as a line of text");
+    }
+    for(String username: post.getUsersLikeView()){
+      if( isPlainName(username) == false ){
+        throw new IllegalArgumentException("The post can't be represented as a line of text");
+      }
+    }
+    return post.getId() + "\t" + post.getAuthor() + "\t" + post.getEpochMillis() + "\t"
+           + post.getNanos() + "\t" + String.join(",", post.getUsersLikeView()) + "\t" + text;
+  }
+
+  /*
+    REQUIRES: out != null && post != null
+    THROWS: NullPointerException se out == null || post == null
+            IOException se la scrittura fallisce
+    MODIFIES: out
+    EFFECTS: scrive in out il record che rappresenta post nel formato BINARY
+  */
+  public static void writeRecord(DataOutput out, Post post) throws NullPointerException, IOException{
+    if( out == null ){
+      throw new NullPointerException();
+    }
+    ByteArrayOutputStream record = new ByteArrayOutputStream();
+    PostCodec.write(new DataOutputStream(record), post);
+    out.writeInt(record.size());
+    out.write(record.toByteArray());
+  }
+
+  private static boolean isPlainName(String username){
+    return username.isEmpty() == false && username.indexOf('\t') == -1 && username.indexOf(',') == -1
+           && username.indexOf('\n') == -1 && username.indexOf('\r') == -1;
+  }
+}
@@ -0,0 +1,12 @@
+/*
+  interfaccia usata da chi (ad esempio il social network che contiene il post)
+  deve essere avvisato delle modifiche apportate ad un post
+*/
+public interface PostListener{
+  /*
+    Invocato dopo che il testo di post è stato sostituito.
+
+    EFFECTS: oldText è il testo del post prima della modifica
+  */
+  void textEdited(Post post, char oldText[]);
+}
@@ -0,0 +1,698 @@
+import java.sql.Timestamp;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+public class PostStore{
+  /*
+    OVERVIEW: PostStore è un tipo di dato astratto modificabile che memorizza
+    i post del social in forma colonnare: ogni post occupa una riga di array
+    paralleli (id, timestamp, id dell'autore, posizione del testo, likes) e i
+    testi sono codificati uno dopo l'altro in un'unica arena di byte, per cui
+    la scansione di tutti i post procede sequenzialmente in memoria.
+    Autori e utenti che hanno messo like sono rappresentati dagli id del
+    dizionario condiviso con il social (si veda UserDictionary); i likes di
+    ogni post sono un insieme persistente di id (si veda PersistentIntSet) i
+    cui blocchi di 2^16 utenti sono, come in IntBitmap, array ordinati di 2
+    byte per like o bitmap di un bit per utente: un post con migliaia di likes
+    sparsi occupa circa 2 byte per like più pochi byte per blocco. Le unioni
+    tra i likes di più post procedono 64 utenti alla volta, l'intersezione
+    tra i likes di due post (coLikers) un blocco alla volta, e un like costa
+    O(log n) più la copia di un blocco anche quando l'insieme è condiviso con
+    lo stato persistente del social (si veda freeze).
+    Gli oggetti Post vengono creati solo quando richiesti (materialize), e i
+    loro likes sono viste dell'insieme persistente (si veda UsernameSet).
+
+    Il testo è codificato in UTF-8 un carattere UTF-16 alla volta (come in
+    CESU-8), così che qualsiasi array di caratteri, anche con surrogati non
+    accoppiati, venga ricostruito esattamente; i caratteri ASCII occupano un byte.
+
+    Elemento tipico: { <id_0, author_0, text_0, timestamp_0, usersLike_0>, ... }
+
+    AF(c): { <ids[r], users.nameOf(authors[r]), decode(arena[textStart[r], textStart[r] + textBytes[r])),
+              timestamp(millis[r], nanos[r]), { users.nameOf(u) | likes[r].contains(u) }>
+             | r in [0, rowCount) && ids[r] != EMPTY }
+    IR(c): users != null && gli array colonna hanno la stessa lunghezza >= rowCount &&
+           arena != null && 0 <= arenaSize <= arena.length && slots != null &&
+           slots.length è una potenza di 2 && size < slots.length &&
+           forall r. r in [0, rowCount) && ids[r] != EMPTY =>
+            ( ids[r] >= 0 && likes[r] != null && 0 <= textStart[r] && textStart[r] + textBytes[r] <= arenaSize &&
+              exist! s. slots[s] == r ) &&
+           forall s. slots[s] != EMPTY => ( 0 <= slots[s] < rowCount && ids[slots[s]] != EMPTY ) &&
+           forall r,q. r,q in [0, rowCount) && r != q && ids[r] != EMPTY => ids[r] != ids[q] &&
+           size == #{ r | r in [0, rowCount) && ids[r] != EMPTY } &&
+           garbage == arenaSize - sum_{r t.c. ids[r] != EMPTY} textBytes[r]
+  */
+  private final UserDictionary users; // dizionario degli utenti condiviso con il social
+  private int ids[]; // id del post memorizzato in ogni riga, EMPTY se la riga è stata liberata
+  private long millis[]; // timestamp dei post, in millisecondi dall'epoch
+  private int nanos[]; // parte in nanosecondi dei timestamp (si veda Timestamp.getNanos)
+  private int authors[]; // id degli autori
+  private int textStart[]; // posizione del testo nell'arena
+  private int textBytes[]; // lunghezza in byte del testo codificato
+  private PersistentIntSet likes[]; // id degli utenti che hanno messo like
+  private int rowCount; // righe occupate, comprese quelle liberate
+  private int size; // numero di post memorizzati
+  private byte arena[]; // testi codificati
+  private int arenaSize; // byte occupati nell'arena
+  private int garbage; // byte dell'arena non più riferiti da alcuna riga
+  private int compactions; // numero di compattazioni dell'arena (si veda compactIfSparse)
+  private int slots[]; // tabella ad indirizzamento aperto id -> riga, EMPTY se lo slot è libero
+
+  private static final int EMPTY = -1; // marcatore di riga o slot libero (gli id sono sempre >= 0)
+  private static final int DEFAULT_CAPACITY = 16; // capacità iniziale delle colonne e della tabella
+  private static final int MIN_COMPACT_SIZE = 4096; // sotto questa dimensione l'arena non viene compattata
+  private static final int SAMPLE_ATTEMPTS = 32; // estrazioni casuali tentate da sample prima di visitare le righe
+
+  /*
+    Metodo costruttore che inizializza un archivio vuoto
+
+    REQUIRES: users != null
+    THROWS: NullPointerException se users == null
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this
+  */
+  public PostStore(UserDictionary users) throws NullPointerException{
+    if( users == null ){
+      throw new NullPointerException();
+    }
+    this.users = users;
+    this.ids = new int[DEFAULT_CAPACITY];
+    this.millis = new long[DEFAULT_CAPACITY];
+    this.nanos = new int[DEFAULT_CAPACITY];
+    this.authors = new int[DEFAULT_CAPACITY];
+    this.textStart = new int[DEFAULT_CAPACITY];
+    this.textBytes = new int[DEFAULT_CAPACITY];
+    this.likes = new PersistentIntSet[DEFAULT_CAPACITY];
+    this.rowCount = 0;
+    this.size = 0;
+    this.arena = new byte[DEFAULT_CAPACITY * 32];
+    this.arenaSize = 0;
+    this.garbage = 0;
+    this.compactions = 0;
+    this.slots = new int[DEFAULT_CAPACITY];
+    Arrays.fill(this.slots, EMPTY);
+  }
+
+  /*
+    EFFECTS: restituisce il numero di post memorizzati
+  */
+  public int size(){
+    return size;
+  }
+
+  /*
+    EFFECTS: restituisce vero se è memorizzato un post con id id, falso altrimenti
+  */
+  public boolean contains(int id){
+    return id >= 0 && slots[slotOf(id)] != EMPTY;
+  }
+
+  /*
+    Memorizza una copia del post, i cui autore e utenti che hanno messo like
+    devono essere presenti nel dizionario.
+
+    REQUIRES: post != null && contains(post.getId()) == false && post.getId() >= 0 &&
+              users.idOf(post.getAuthor()) != -1 &&
+              forall u. post.getUsersLike().contains(u) => users.idOf(u) != -1
+    THROWS: NullPointerException se post == null
+            IllegalArgumentException se il post non rispetta le altre precondizioni
+    MODIFIES: this
+    EFFECTS: aggiunge a this una riga con lo stato corrente di post
+  */
+  public void add(Post post) throws NullPointerException, IllegalArgumentException{
+    if( post == null ){
+      throw new NullPointerException();
+    }
+    int id = post.getId();
+    int authorId = users.idOf(post.getAuthor());
+    if( id < 0 || contains(id) || authorId == -1 ){
+      throw new IllegalArgumentException("Invalid post id or author");
+    }
+    int likerIds[] = new int[post.getUsersLikeView().size()];
+    int likeCount[] = {0};
+    post.forEachLike(username -> {
+      int userId = users.idOf(username);
+      if( userId == -1 ){
+        throw new IllegalArgumentException("A user in the Like list doesn't have an id");
+      }
+      likerIds[likeCount[0]++] = userId;
+    });
+    if( rowCount == ids.length ){
+      grow(ids.length * 2);
+    }
+    int row = rowCount++;
+    ids[row] = id;
+    millis[row] = post.getEpochMillis();
+    nanos[row] = post.getNanos();
+    authors[row] = authorId;
+    likes[row] = PersistentIntSet.of(likerIds);
+    storeText(row, post.getTextView());
+    slots[slotOf(id)] = row;
+    size += 1;
+    if( size * 4 >= slots.length * 3 ){ // fattore di carico oltre 0.75: raddoppio la tabella
+      rehash(slots.length * 2);
+    }
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: rimuove il post con id id; restituisce vero se era presente, falso altrimenti
+  */
+  public boolean remove(int id){
+    if( id < 0 ){
+      return false;
+    }
+    int slot = slotOf(id);
+    int row = slots[slot];
+    if( row == EMPTY ){
+      return false;
+    }
+    deleteSlot(slot);
+    ids[row] = EMPTY;
+    likes[row] = null;
+    garbage += textBytes[row];
+    size -= 1;
+    compactIfSparse();
+    return true;
+  }
+
+  /*
+    REQUIRES: contains(id)
+    THROWS: IllegalArgumentException se contains(id) == false
+    EFFECTS: restituisce l'id nel dizionario dell'autore del post
+  */
+  public int authorId(int id) throws IllegalArgumentException{
+    return authors[rowOf(id)];
+  }
+
+  /*
+    REQUIRES: contains(id)
+    THROWS: IllegalArgumentException se contains(id) == false
+    EFFECTS: restituisce l'username dell'autore del post
+  */
+  public String author(int id) throws IllegalArgumentException{
+    return users.nameOf(authors[rowOf(id)]);
+  }
+
+  /*
+    REQUIRES: contains(id)
+    THROWS: IllegalArgumentException se contains(id) == false
+    EFFECTS: restituisce i millisecondi dall'epoch del timestamp del post
+  */
+  public long millis(int id) throws IllegalArgumentException{
+    return millis[rowOf(id)];
+  }
+
+  /*
+    REQUIRES: contains(id)
+    THROWS: IllegalArgumentException se contains(id) == false
+    EFFECTS: restituisce i nanosecondi del timestamp del post
+  */
+  public int nanos(int id) throws IllegalArgumentException{
+    return nanos[rowOf(id)];
+  }
+
+  /*
+    REQUIRES: contains(id)
+    THROWS: IllegalArgumentException se contains(id) == false
+    EFFECTS: restituisce un nuovo array con gli id, in ordine crescente, degli utenti
+             che hanno messo like al post
+  */
+  public int[] likers(int id) throws IllegalArgumentException{
+    return likes[rowOf(id)].toArray();
+  }
+
+  /*
+    REQUIRES: contains(id)
+    THROWS: IllegalArgumentException se contains(id) == false
+    EFFECTS: restituisce, senza copiarlo, l'insieme immutabile degli id degli utenti
+             che hanno messo like al post; le modifiche successive non sono visibili in esso
+  */
+  public PersistentIntSet likeSet(int id) throws IllegalArgumentException{
+    return likes[rowOf(id)];
+  }
+
+  /*
+    REQUIRES: contains(id)
+    THROWS: IllegalArgumentException se contains(id) == false
+    EFFECTS: restituisce vero se l'utente con id userId ha messo like al post, falso altrimenti
+  */
+  public boolean isLikedBy(int id, int userId) throws IllegalArgumentException{
+    return likes[rowOf(id)].contains(userId);
+  }
+
+  /*
+    Intersezione dei likes di due post, calcolata sugli insiemi memorizzati un
+    blocco alla volta (si veda PersistentIntSet.and).
+
+    REQUIRES: contains(id) && contains(otherId)
+    THROWS: IllegalArgumentException se contains(id) == false || contains(otherId) == false
+    EFFECTS: restituisce l'insieme immutabile degli id degli utenti che hanno
+             messo like ad entrambi i post
+  */
+  public PersistentIntSet coLikers(int id, int otherId) throws IllegalArgumentException{
+    return likes[rowOf(id)].and(likes[rowOf(otherId)]);
+  }
+
+  /*
+    Aggiunge a target gli id degli utenti che hanno messo like al post, una
+    parola di 64 utenti alla volta (si veda PersistentIntSet.orInto).
+
+    REQUIRES: contains(id) && target != null
+    THROWS: IllegalArgumentException se contains(id) == false
+            NullPointerException se target == null
+    MODIFIES: target
+  */
+  public void addLikersTo(int id, IntBitmap target) throws IllegalArgumentException, NullPointerException{
+    if( target == null ){
+      throw new NullPointerException();
+    }
+    likes[rowOf(id)].orInto(target);
+  }
+
+  /*
+    REQUIRES: contains(id)
+    THROWS: IllegalArgumentException se contains(id) == false
+    EFFECTS: restituisce un nuovo array con il testo del post
+  */
+  public char[] text(int id) throws IllegalArgumentException{
+    int row = rowOf(id);
+    char buffer[] = new char[textBytes[row]];
+    return Arrays.copyOf(buffer, decode(row, buffer));
+  }
+
+  /*
+    REQUIRES: contains(id) && text != null
+    THROWS: IllegalArgumentException se contains(id) == false
+            NullPointerException se text == null
+    MODIFIES: this
+    EFFECTS: sostituisce il testo del post con una copia di text
+  */
+  public void setText(int id, char text[]) throws IllegalArgumentException, NullPointerException{
+    if( text == null ){
+      throw new NullPointerException();
+    }
+    int row = rowOf(id);
+    garbage += textBytes[row];
+    storeText(row, CharBuffer.wrap(text));
+    compactIfSparse();
+  }
+
+  /*
+    REQUIRES: contains(id)
+    THROWS: IllegalArgumentException se contains(id) == false
+    MODIFIES: this
+    EFFECTS: aggiunge userId agli utenti che hanno messo like al post; restituisce
+             vero se non era già presente, falso altrimenti
+  */
+  public boolean addLike(int id, int userId) throws IllegalArgumentException{
+    int row = rowOf(id);
+    PersistentIntSet likers = likes[row].plus(userId);
+    if( likers == likes[row] ){
+      return false;
+    }
+    likes[row] = likers;
+    return true;
+  }
+
+  /*
+    REQUIRES: contains(id)
+    THROWS: IllegalArgumentException se contains(id) == false
+    MODIFIES: this
+    EFFECTS: rimuove userId dagli utenti che hanno messo like al post; restituisce
+             vero se era presente, falso altrimenti
+  */
+  public boolean removeLike(int id, int userId) throws IllegalArgumentException{
+    int row = rowOf(id);
+    PersistentIntSet likers = likes[row].minus(userId);
+    if( likers == likes[row] ){
+      return false;
+    }
+    likes[row] = likers;
+    return true;
+  }
+
+  /*
+    Applica action agli id degli utenti che hanno messo like al post, in un
+    ordine non specificato; action può modificare i likes del post, perché
+    viene visitato l'insieme corrente al momento dell'invocazione.
+
+    REQUIRES: contains(id) && action != null
+    THROWS: IllegalArgumentException se contains(id) == false
+            NullPointerException se action == null
+  */
+  public void forEachLike(int id, IntConsumer action) throws IllegalArgumentException, NullPointerException{
+    if( action == null ){
+      throw new NullPointerException();
+    }
+    likes[rowOf(id)].forEach(action);
+  }
+
+  /*
+    Sceglie un post a caso, in modo uniforme: estrae righe a caso finché non ne
+    trova una occupata. Poiché le righe libere vengono compattate (si veda
+    compactIfSparse) ogni estrazione riesce con probabilità almeno 1/2; dopo
+    SAMPLE_ATTEMPTS estrazioni fallite sceglie a caso una delle size righe
+    occupate, visitandole in ordine (anche questa scelta è uniforme).
+
+    REQUIRES: random != null
+    THROWS: NullPointerException se random == null
+    EFFECTS: restituisce l'id di un post memorizzato, -1 se non ce ne sono
+  */
+  public int sample(Random random) throws NullPointerException{
+    if( random == null ){
+      throw new NullPointerException();
+    }
+    if( size == 0 ){
+      return -1;
+    }
+    for(int attempt = 0; attempt < SAMPLE_ATTEMPTS; attempt++){
+      int row = random.nextInt(rowCount);
+      if( ids[row] != EMPTY ){
+        return ids[row];
+      }
+    }
+    int skip = random.nextInt(size);
+    for(int row = 0; ; row++){
+      if( ids[row] != EMPTY && skip-- == 0 ){
+        return ids[row];
+      }
+    }
+  }
+
+  /*
+    Applica action agli id di tutti i post memorizzati, nell'ordine delle righe;
+    action non deve aggiungere o rimuovere post.
+
+    REQUIRES: action != null
+    THROWS: NullPointerException se action == null
+  */
+  public void forEach(IntConsumer action) throws NullPointerException{
+    if( action == null ){
+      throw new NullPointerException();
+    }
+    for(int row = 0; row < rowCount; row++){
+      if( ids[row] != EMPTY ){
+        action.accept(ids[row]);
+      }
+    }
+  }
+
+  /*
+    Aggiunge a matches gli id dei post il cui testo contiene almeno una delle
+    parole di words (si veda WordMatcher.containsAnyWord). I testi vengono
+    decodificati, uno alla volta, in un unico buffer, percorrendo l'arena
+    sequenzialmente.
+
+    REQUIRES: words != null && matches != null && forall i. words[i] != null
+    THROWS: NullPointerException se words == null || matches == null || exist i. words[i] == null
+    MODIFIES: matches
+  */
+  public void addMatching(String words[], IntSet matches) throws NullPointerException{
+    if( words == null || matches == null ){
+      throw new NullPointerException();
+    }
+    char buffer[] = new char[0];
+    for(int row = 0; row < rowCount; row++){
+      if( ids[row] != EMPTY && matches.contains(ids[row]) == false ){
+        if( buffer.length < textBytes[row] ){
+          buffer = new char[Math.max(textBytes[row], buffer.length * 2)];
+        }
+        if( WordMatcher.containsAnyWord(buffer, decode(row, buffer), words) ){
+          matches.add(ids[row]);
+        }
+      }
+    }
+  }
+
+  /*
+    Crea un nuovo oggetto Post con lo stato corrente del post memorizzato,
+    a cui viene associato listener (che può essere null).
+
+    REQUIRES: contains(id)
+    THROWS: IllegalArgumentException se contains(id) == false
+    EFFECTS: restituisce un nuovo post con id, autore, testo, timestamp e likes del
+             post memorizzato con id id
+  */
+  public Post materialize(int id, PostListener listener) throws IllegalArgumentException{
+    int row = rowOf(id);
+    char buffer[] = new char[textBytes[row]];
+    char text[] = Arrays.copyOf(buffer, decode(row, buffer));
+    Timestamp timestamp = new Timestamp(millis[row]);
+    timestamp.setNanos(nanos[row]);
+    // i likes restano id nell'insieme persistente, tradotti solo quando vengono letti
+    Post post = new Post(id, users.nameOf(authors[row]), text, timestamp, new UsernameSet(likes[row], users.freeze()));
+    post.setListener(listener);
+    return post;
+  }
+
+  /*
+    Crea una copia immutabile dello stato corrente del post, che condivide con
+    l'archivio l'insieme dei likes e il testo codificato nell'arena (si veda
+    FrozenPost), in tempo costante.
+
+    REQUIRES: contains(id)
+    THROWS: IllegalArgumentException se contains(id) == false
+    EFFECTS: restituisce un FrozenPost con id, autore, testo, timestamp e likes del
+             post memorizzato con id id
+  */
+  public FrozenPost freeze(int id) throws IllegalArgumentException{
+    int row = rowOf(id);
+    return new FrozenPost(id, users.nameOf(authors[row]), arena, textStart[row], textBytes[row], millis[row], nanos[row], likes[row]);
+  }
+
+  /*
+    EFFECTS: restituisce il numero di compattazioni dell'arena avvenute finora: i
+             FrozenPost creati prima dell'ultima riferiscono un'arena che non è
+             più in uso e che, finché esistono, non può essere liberata
+  */
+  public int compactions(){
+    return compactions;
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: scrive text in fondo all'arena e lo associa alla riga row
+  */
+  private void storeText(int row, CharSequence text){
+    int length = text.length();
+    int needed = 0;
+    for(int i = 0; i < length; i++){
+      needed += encodedLength(text.charAt(i));
+    }
+    if( arenaSize + needed > arena.length ){
+      arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + needed));
+    }
+    textStart[row] = arenaSize;
+    textBytes[row] = needed;
+    for(int i = 0; i < length; i++){
+      arenaSize = encode(text.charAt(i), arena, arenaSize);
+    }
+  }
+
+  /*
+    REQUIRES: buffer.length >= textBytes[row]
+    MODIFIES: buffer
+    EFFECTS: decodifica in buffer il testo della riga row e ne restituisce il numero di caratteri
+  */
+  private int decode(int row, char buffer[]){
+    return decode(arena, textStart[row], textBytes[row], buffer);
+  }
+
+  /*
+    REQUIRES: arena[start, start + bytes) contiene un testo codificato da storeText &&
+              buffer.length >= bytes
+    MODIFIES: buffer
+    EFFECTS: decodifica in buffer il testo e ne restituisce il numero di caratteri
+  */
+  static int decode(byte arena[], int start, int bytes, char buffer[]){
+    int position = start;
+    int end = start + bytes;
+    int length = 0;
+    while( position < end ){
+      int b = arena[position++];
+      if( b >= 0 ){ // 0xxxxxxx
+        buffer[length++] = (char) b;
+      }
+      else if( (b & 0xE0) == 0xC0 ){ // 110xxxxx 10xxxxxx
+        buffer[length++] = (char) (((b & 0x1F) << 6) | (arena[position++] & 0x3F));
+      }
+      else{ // 1110xxxx 10xxxxxx 10xxxxxx
+        buffer[length++] = (char) (((b & 0x0F) << 12) | ((arena[position] & 0x3F) << 6) | (arena[position + 1] & 0x3F));
+        position += 2;
+      }
+    }
+    return length;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di byte usati per codificare c
+  */
+  private static int encodedLength(char c){
+    if( c < 0x80 ){
+      return 1;
+    }
+    return c < 0x800 ? 2 : 3;
+  }
+
+  /*
+    REQUIRES: destination ha almeno encodedLength(c) byte liberi a partire da position
+    MODIFIES: destination
+    EFFECTS: codifica c in destination a partire da position e restituisce la posizione successiva
+  */
+  private static int encode(char c, byte destination[], int position){
+    if( c < 0x80 ){
+      destination[position++] = (byte) c;
+    }
+    else if( c < 0x800 ){
+      destination[position++] = (byte) (0xC0 | (c >> 6));
+      destination[position++] = (byte) (0x80 | (c & 0x3F));
+    }
+    else{
+      destination[position++] = (byte) (0xE0 | (c >> 12));
+      destination[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+      destination[position++] = (byte) (0x80 | (c & 0x3F));
+    }
+    return position;
+  }
+
+  /*
+    THROWS: IllegalArgumentException se non è memorizzato un post con id id
+    EFFECTS: restituisce la riga del post con id id
+  */
+  private int rowOf(int id) throws IllegalArgumentException{
+    int row = id < 0 ? EMPTY : slots[slotOf(id)];
+    if( row == EMPTY ){
+      throw new IllegalArgumentException("The post identified by the id isn't stored");
+    }
+    return row;
+  }
+
+  /*
+    REQUIRES: id >= 0
+    EFFECTS: restituisce lo slot che contiene la riga del post con id id oppure,
+             se il post non è presente, lo slot libero in cui andrebbe inserita
+  */
+  private int slotOf(int id){
+    int mask = slots.length - 1;
+    int slot = hash(id) & mask;
+    while( slots[slot] != EMPTY && ids[slots[slot]] != id ){
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: libera lo slot, ricompattando con backward shift la catena di
+             collisioni successiva, così da non dover usare lapidi
+  */
+  private void deleteSlot(int hole){
+    int mask = slots.length - 1;
+    int next = (hole + 1) & mask;
+    while( slots[next] != EMPTY ){
+      int home = hash(ids[slots[next]]) & mask;
+      if( ((next - home) & mask) >= ((next - hole) & mask) ){
+        slots[hole] = slots[next];
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    slots[hole] = EMPTY;
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: reinserisce le righe vive in una tabella di capacità newCapacity
+  */
+  private void rehash(int newCapacity){
+    slots = new int[newCapacity];
+    Arrays.fill(slots, EMPTY);
+    for(int row = 0; row < rowCount; row++){
+      if( ids[row] != EMPTY ){
+        slots[slotOf(ids[row])] = row;
+      }
+    }
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: porta la capacità delle colonne a capacity
+  */
+  private void grow(int capacity){
+    ids = Arrays.copyOf(ids, capacity);
+    millis = Arrays.copyOf(millis, capacity);
+    nanos = Arrays.copyOf(nanos, capacity);
+    authors = Arrays.copyOf(authors, capacity);
+    textStart = Arrays.copyOf(textStart, capacity);
+    textBytes = Arrays.copyOf(textBytes, capacity);
+    likes = Arrays.copyOf(likes, capacity);
+  }
+
+  /*
+    Se almeno metà delle righe o dell'arena non è più in uso, ricopia le righe
+    vive (nello stesso ordine) all'inizio delle colonne ed i rispettivi testi
+    in una nuova arena; il costo è ammortizzato sulle rimozioni e modifiche
+    che hanno prodotto lo spazio libero.
+
+    MODIFIES: this
+  */
+  private void compactIfSparse(){
+    boolean sparseRows = rowCount > DEFAULT_CAPACITY && size * 2 < rowCount;
+    boolean sparseArena = arenaSize > MIN_COMPACT_SIZE && garbage * 2 > arenaSize;
+    if( sparseRows == false && sparseArena == false ){
+      return;
+    }
+    byte newArena[] = new byte[Math.max(DEFAULT_CAPACITY * 32, (arenaSize - garbage) * 2)];
+    int newArenaSize = 0;
+    int live = 0;
+    for(int row = 0; row < rowCount; row++){
+      if( ids[row] != EMPTY ){
+        System.arraycopy(arena, textStart[row], newArena, newArenaSize, textBytes[row]);
+        ids[live] = ids[row];
+        millis[live] = millis[row];
+        nanos[live] = nanos[row];
+        authors[live] = authors[row];
+        textStart[live] = newArenaSize;
+        textBytes[live] = textBytes[row];
+        likes[live] = likes[row];
+        newArenaSize += textBytes[row];
+        live += 1;
+      }
+    }
+    Arrays.fill(likes, live, rowCount, null);
+    rowCount = live;
+    arena = newArena;
+    arenaSize = newArenaSize;
+    garbage = 0;
+    compactions += 1;
+    rehash(slots.length);
+  }
+
+  /*
+    EFFECTS: restituisce il valore di hash di id, mescolandone i bit per
+             distribuire uniformemente anche id consecutivi
+  */
+  private static int hash(int id){
+    int h = id * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    StringBuilder builder = new StringBuilder("[");
+    for(int row = 0; row < rowCount; row++){
+      if( ids[row] != EMPTY ){
+        if( builder.length() > 1 ){
+          builder.append(", ");
+        }
+        builder.append(materialize(ids[row], null));
+      }
+    }
+    return builder.append(']').toString();
+  }
+}
@@ -0,0 +1,276 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class RemoteShard implements SocialNetworkShard{
+  /*
+    OVERVIEW: RemoteShard è uno shard il cui social è servito da un ShardServer,
+    tipicamente in un altro processo o su un'altra macchina, raggiunto con una
+    connessione TCP (si veda ShardServer per il protocollo). Ogni operazione è
+    una richiesta seguita dalla sua risposta; le eccezioni lanciate dal social
+    remoto vengono rilanciate con lo stesso tipo e messaggio. I post restituiti
+    sono copie: le modifiche del loro testo non sono riportate nello shard.
+    Dopo un errore di comunicazione la connessione non è più utilizzabile.
+
+    IR(c): socket != null && in != null && out != null
+  */
+  private final Socket socket;
+  private final DataInputStream in;
+  private final DataOutputStream out;
+
+  /*
+    REQUIRES: host != null && 0 < port <= 65535
+    THROWS: NullPointerException se host == null
+            IOException se la connessione non può essere aperta
+    MODIFIES: this
+    EFFECTS: inizializza uno shard connesso al ShardServer in ascolto su host:port
+  */
+  public RemoteShard(String host, int port) throws NullPointerException, IOException{
+    if( host == null ){
+      throw new NullPointerException();
+    }
+    this.socket = new Socket(host, port);
+    try{
+      socket.setTcpNoDelay(true);
+      this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+    catch(IOException e){
+      socket.close();
+      throw e;
+    }
+  }
+
+  public synchronized void addUser(String newUser) throws NullPointerException, UserAlreadyExistException, IOException{
+    if( newUser == null ){
+      throw new NullPointerException();
+    }
+    out.writeInt(ShardServer.ADD_USER);
+    out.writeUTF(newUser);
+    try{
+      reply();
+    }
+    catch(UserNotExistException | PostAlreadyExistException | NegativeIdException | PostDoesNotExist | AuthorCantLikeHimselfException e){
+      throw unexpected(e);
+    }
+  }
+
+  public synchronized void removeUser(String username) throws NullPointerException, UserNotExistException, IOException{
+    if( username == null ){
+      throw new NullPointerException();
+    }
+    out.writeInt(ShardServer.REMOVE_USER);
+    out.writeUTF(username);
+    try{
+      reply();
+    }
+    catch(UserAlreadyExistException | PostAlreadyExistException | NegativeIdException | PostDoesNotExist | AuthorCantLikeHimselfException e){
+      throw unexpected(e);
+    }
+  }
+
+  public synchronized boolean containsUser(String username) throws NullPointerException, IOException{
+    if( username == null ){
+      throw new NullPointerException();
+    }
+    out.writeInt(ShardServer.CONTAINS_USER);
+    out.writeUTF(username);
+    return query().readBoolean();
+  }
+
+  public synchronized boolean containsUser(Collection<String> usernameCollection) throws NullPointerException, IOException{
+    if( usernameCollection == null ){
+      throw new NullPointerException();
+    }
+    for(String username: usernameCollection){
+      if( username == null ){ // null non è mai un utente del social, e writeUTF non può codificarlo
+        return false;
+      }
+    }
+    out.writeInt(ShardServer.CONTAINS_USERS);
+    ShardServer.writeStrings(out, usernameCollection);
+    return query().readBoolean();
+  }
+
+  public synchronized void addPost(Post post) throws NullPointerException, UserNotExistException, PostAlreadyExistException, NegativeIdException, IOException{
+    if( post == null ){
+      throw new NullPointerException();
+    }
+    out.writeInt(ShardServer.ADD_POST);
+    PostCodec.write(out, post);
+    try{
+      reply();
+    }
+    catch(UserAlreadyExistException | PostDoesNotExist | AuthorCantLikeHimselfException e){
+      throw unexpected(e);
+    }
+  }
+
+  public synchronized boolean likePost(int idPost, String username) throws NullPointerException, NegativeIdException, UserNotExistException, PostDoesNotExist, AuthorCantLikeHimselfException, IOException{
+    if( username == null ){
+      throw new NullPointerException();
+    }
+    out.writeInt(ShardServer.LIKE_POST);
+    out.writeInt(idPost);
+    out.writeUTF(username);
+    try{
+      return reply().readBoolean();
+    }
+    catch(UserAlreadyExistException | PostAlreadyExistException e){
+      throw unexpected(e);
+    }
+  }
+
+  public synchronized boolean containsPostById(int idPost) throws NegativeIdException, IOException{
+    out.writeInt(ShardServer.CONTAINS_POST);
+    out.writeInt(idPost);
+    try{
+      return reply().readBoolean();
+    }
+    catch(UserNotExistException | UserAlreadyExistException | PostAlreadyExistException | PostDoesNotExist | AuthorCantLikeHimselfException e){
+      throw unexpected(e);
+    }
+  }
+
+  public synchronized Post getPostById(int idPost) throws NegativeIdException, PostDoesNotExist, IOException{
+    out.writeInt(ShardServer.GET_POST);
+    out.writeInt(idPost);
+    try{
+      return PostCodec.read(reply());
+    }
+    catch(UserNotExistException | UserAlreadyExistException | PostAlreadyExistException | AuthorCantLikeHimselfException e){
+      throw unexpected(e);
+    }
+  }
+
+  public synchronized List<Post> writtenBy(String username) throws UserNotExistException, IOException{
+    if( username == null ){ // SocialNetwork.writtenBy(null): null non è un utente del social
+      throw new UserNotExistException("The user identified by the username doesn't exist in the system");
+    }
+    out.writeInt(ShardServer.WRITTEN_BY);
+    out.writeUTF(username);
+    try{
+      return ShardServer.readPosts(reply());
+    }
+    catch(UserAlreadyExistException | PostAlreadyExistException | NegativeIdException | PostDoesNotExist | AuthorCantLikeHimselfException e){
+      throw unexpected(e);
+    }
+  }
+
+  public synchronized int[] postIdsOf(String username) throws NullPointerException, IOException{
+    if( username == null ){
+      throw new NullPointerException();
+    }
+    out.writeInt(ShardServer.USER_POST_IDS);
+    out.writeUTF(username);
+    return ShardServer.readIds(query());
+  }
+
+  public synchronized int[] postIds() throws IOException{
+    out.writeInt(ShardServer.POST_IDS);
+    return ShardServer.readIds(query());
+  }
+
+  public synchronized List<Post> containing(List<String> words) throws NullPointerException, IOException{
+    if( words == null || words.contains(null) ){
+      throw new NullPointerException();
+    }
+    out.writeInt(ShardServer.CONTAINING);
+    ShardServer.writeStrings(out, words);
+    return ShardServer.readPosts(query());
+  }
+
+  public synchronized Set<String> getMentionedUsers() throws IOException{
+    out.writeInt(ShardServer.MENTIONED_USERS);
+    return new HashSet<String>(ShardServer.readStrings(query()));
+  }
+
+  public synchronized Map<String, Integer> influenceMargins() throws IOException{
+    out.writeInt(ShardServer.INFLUENCE_MARGINS);
+    DataInputStream response = query();
+    int count = ShardServer.readCount(response);
+    Map<String, Integer> margins = new HashMap<String, Integer>();
+    for(int i = 0; i < count; i++){
+      String username = response.readUTF();
+      margins.put(username, response.readInt());
+    }
+    return margins;
+  }
+
+  public synchronized Map<String, Set<String>> getUserFollowsMap() throws IOException{
+    out.writeInt(ShardServer.FOLLOWS_MAP);
+    return ShardServer.readMap(query());
+  }
+
+  public synchronized Map<String, Set<String>> getUserFollowersMap() throws IOException{
+    out.writeInt(ShardServer.FOLLOWERS_MAP);
+    return ShardServer.readMap(query());
+  }
+
+  /*
+    THROWS: IOException se la connessione non può essere chiusa
+    MODIFIES: this
+    EFFECTS: chiude la connessione con il server
+  */
+  public void close() throws IOException{
+    socket.close();
+  }
+
+  /*
+    Invia la richiesta scritta in out e ne legge l'esito: se il social remoto ha
+    lanciato un'eccezione, la rilancia con lo stesso tipo e messaggio.
+
+    THROWS: le eccezioni del social remoto, IOException se la comunicazione fallisce
+    EFFECTS: restituisce lo stream da cui leggere il risultato
+  */
+  private DataInputStream reply() throws UserNotExistException, UserAlreadyExistException, PostAlreadyExistException, NegativeIdException,
+                                         PostDoesNotExist, AuthorCantLikeHimselfException, IOException{
+    out.flush();
+    int status = in.readInt();
+    if( status == ShardServer.OK ){
+      return in;
+    }
+    if( status != ShardServer.ERROR ){
+      throw new IOException("Invalid response status " + status);
+    }
+    String type = in.readUTF();
+    String message = in.readUTF();
+    switch( type ){
+      case "UserNotExistException": throw new UserNotExistException(message);
+      case "UserAlreadyExistException": throw new UserAlreadyExistException(message);
+      case "PostAlreadyExistException": throw new PostAlreadyExistException(message);
+      case "NegativeIdException": throw new NegativeIdException(message);
+      case "PostDoesNotExist": throw new PostDoesNotExist(message);
+      case "AuthorCantLikeHimselfException": throw new AuthorCantLikeHimselfException(message);
+      case "java.lang.NullPointerException": throw new NullPointerException(message);
+      case "java.lang.IllegalArgumentException": throw new IllegalArgumentException(message);
+      default: throw new IOException("The shard failed with " + type + ": " + message);
+    }
+  }
+
+  /*
+    Come reply, per le richieste che non possono far lanciare eccezioni al social remoto
+  */
+  private DataInputStream query() throws IOException{
+    try{
+      return reply();
+    }
+    catch(UserNotExistException | UserAlreadyExistException | PostAlreadyExistException | NegativeIdException |
+          PostDoesNotExist | AuthorCantLikeHimselfException e){
+      throw unexpected(e);
+    }
+  }
+
+  private static IOException unexpected(Exception e){
+    return new IOException("Unexpected error from the shard", e);
+  }
+}
@@ -0,0 +1,440 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ShardServer implements Closeable{
+  /*
+    OVERVIEW: ShardServer rende un SocialNetwork raggiungibile come shard di un
+    ShardedSocialNetwork attraverso la rete (si veda RemoteShard). Il server
+    ascolta su un indirizzo esplicito, per default quello di loopback, così che
+    il social non sia esposto ad altre macchine se non lo si chiede. Ogni
+    connessione è servita da un proprio thread, fino a maxConnections
+    connessioni aperte: le connessioni oltre il limite vengono chiuse appena
+    accettate. Le richieste sono eseguite una alla volta, in mutua esclusione
+    sul social.
+
+    Protocollo: ogni richiesta è un tipo (int) seguito dagli argomenti; la
+    risposta è OK seguito dal risultato, oppure ERROR seguito dal nome della
+    classe dell'eccezione lanciata dal social e dal suo messaggio. Stringhe e
+    post sono codificati con DataOutput.writeUTF e PostCodec, le collezioni
+    sono precedute dal numero di elementi.
+
+    Uso: java ShardServer porta [indirizzo], per servire un social vuoto su
+    porta, in ascolto su indirizzo (per default quello di loopback).
+
+    IR(c): social != null && server != null && connections != null &&
+           maxConnections > 0 && connections.size() <= maxConnections
+  */
+  private final SocialNetwork social;
+  private final ServerSocket server;
+  private final Set<Socket> connections; // connessioni aperte, chiuse da close
+  private final int maxConnections; // numero massimo di connessioni (e di thread) servite contemporaneamente
+  private Thread acceptor; // thread che accetta le connessioni, null se il server non è avviato
+
+  // tipi delle richieste
+  static final int ADD_USER = 1;
+  static final int REMOVE_USER = 2;
+  static final int CONTAINS_USER = 3;
+  static final int CONTAINS_USERS = 4;
+  static final int ADD_POST = 5;
+  static final int LIKE_POST = 6;
+  static final int CONTAINS_POST = 7;
+  static final int GET_POST = 8;
+  static final int WRITTEN_BY = 9;
+  static final int CONTAINING = 10;
+  static final int MENTIONED_USERS = 11;
+  static final int INFLUENCE_MARGINS = 12;
+  static final int FOLLOWS_MAP = 13;
+  static final int FOLLOWERS_MAP = 14;
+  static final int USER_POST_IDS = 15;
+  static final int POST_IDS = 16;
+
+  // esiti delle risposte
+  static final int OK = 0;
+  static final int ERROR = 1;
+
+  // Numero massimo di connessioni servite contemporaneamente, se non indicato
+  public static final int DEFAULT_MAX_CONNECTIONS = 64;
+
+  // Connessioni in attesa di essere accettate
+  private static final int BACKLOG = 50;
+
+  // Numero massimo di elementi di una collezione del protocollo
+  static final int MAX_COUNT = 1 << 24;
+
+  /*
+    Apre il server su port dell'indirizzo di loopback (0 per una porta libera
+    qualsiasi), con al più DEFAULT_MAX_CONNECTIONS connessioni, senza avviarlo
+
+    REQUIRES: social != null && 0 <= port <= 65535
+    THROWS: NullPointerException se social == null
+            IOException se la porta non può essere aperta
+    MODIFIES: this
+  */
+  public ShardServer(SocialNetwork social, int port) throws NullPointerException, IOException{
+    this(social, InetAddress.getLoopbackAddress(), port, DEFAULT_MAX_CONNECTIONS);
+  }
+
+  /*
+    REQUIRES: social != null && bindAddress != null && 0 <= port <= 65535 && maxConnections > 0
+    THROWS: NullPointerException se social == null || bindAddress == null
+            IllegalArgumentException se maxConnections <= 0
+            IOException se la porta non può essere aperta
+    MODIFIES: this
+    EFFECTS: apre il server su port di bindAddress (0 per una porta libera
+             qualsiasi), con al più maxConnections connessioni servite
+             contemporaneamente, senza avviarlo
+  */
+  public ShardServer(SocialNetwork social, InetAddress bindAddress, int port, int maxConnections) throws NullPointerException, IllegalArgumentException, IOException{
+    if( social == null || bindAddress == null ){
+      throw new NullPointerException();
+    }
+    if( maxConnections <= 0 ){
+      throw new IllegalArgumentException("The maximum number of connections must be positive");
+    }
+    this.social = social;
+    this.maxConnections = maxConnections;
+    this.server = new ServerSocket(port, BACKLOG, bindAddress);
+    this.connections = new HashSet<Socket>();
+    this.acceptor = null;
+  }
+
+  /*
+    EFFECTS: restituisce l'indirizzo su cui il server accetta connessioni
+  */
+  public InetAddress getAddress(){
+    return server.getInetAddress();
+  }
+
+  /*
+    EFFECTS: restituisce la porta su cui il server accetta connessioni
+  */
+  public int getPort(){
+    return server.getLocalPort();
+  }
+
+  /*
+    THROWS: IllegalStateException se il server è già stato avviato
+    MODIFIES: this
+    EFFECTS: avvia il thread che accetta le connessioni
+  */
+  public synchronized void start() throws IllegalStateException{
+    if( acceptor != null ){
+      throw new IllegalStateException("The server is already started");
+    }
+    acceptor = new Thread(this::accept, "shard-server-" + getPort());
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /*
+    Chiude la porta e tutte le connessioni aperte; le richieste in corso falliscono.
+
+    THROWS: IOException se la porta non può essere chiusa
+    MODIFIES: this
+  */
+  public void close() throws IOException{
+    server.close();
+    synchronized(connections){
+      for(Socket socket: connections){
+        socket.close();
+      }
+      connections.clear();
+    }
+  }
+
+  /*
+    Ciclo del thread che accetta le connessioni: termina alla chiusura della porta.
+    Una connessione oltre maxConnections viene chiusa senza essere servita, ed il
+    client la vede fallire alla prima richiesta.
+  */
+  private void accept(){
+    while( true ){
+      Socket socket;
+      try{
+        socket = server.accept();
+      }
+      catch(IOException e){ // porta chiusa
+        return;
+      }
+      synchronized(connections){
+        if( server.isClosed() ){
+          closeQuietly(socket);
+          return;
+        }
+        if( connections.size() >= maxConnections ){
+          closeQuietly(socket);
+          continue;
+        }
+        connections.add(socket);
+      }
+      Thread thread = new Thread(() -> serve(socket), "shard-connection-" + socket.getPort());
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /*
+    Serve le richieste di una connessione finché il client non la chiude
+  */
+  private void serve(Socket socket){
+    try{
+      socket.setTcpNoDelay(true);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      while( true ){
+        int type;
+        try{
+          type = in.readInt();
+        }
+        catch(EOFException e){ // connessione chiusa dal client
+          return;
+        }
+        synchronized(social){
+          handle(type, in, out);
+        }
+        out.flush();
+      }
+    }
+    catch(IOException e){ // connessione interrotta o richiesta malformata: la connessione viene chiusa
+    }
+    finally{
+      synchronized(connections){
+        connections.remove(socket);
+      }
+      closeQuietly(socket);
+    }
+  }
+
+  /*
+    Esegue sul social la richiesta di tipo type, leggendone gli argomenti da in,
+    e scrive la risposta in out; le eccezioni del social vengono inviate al client.
+
+    THROWS: IOException se la richiesta è malformata o la connessione fallisce
+  */
+  private void handle(int type, DataInputStream in, DataOutputStream out) throws IOException{
+    try{
+      switch( type ){
+        case ADD_USER:
+          String newUser = in.readUTF();
+          social.addUser(newUser);
+          out.writeInt(OK);
+          break;
+        case REMOVE_USER:
+          String username = in.readUTF();
+          social.removeUser(username);
+          out.writeInt(OK);
+          break;
+        case CONTAINS_USER:
+          boolean contained = social.containsUser(in.readUTF());
+          out.writeInt(OK);
+          out.writeBoolean(contained);
+          break;
+        case CONTAINS_USERS:
+          boolean allContained = social.containsUser(readStrings(in));
+          out.writeInt(OK);
+          out.writeBoolean(allContained);
+          break;
+        case ADD_POST:
+          Post post = PostCodec.read(in);
+          social.addPost(post);
+          out.writeInt(OK);
+          break;
+        case LIKE_POST:
+          int likedId = in.readInt();
+          boolean liked = social.likePost(likedId, in.readUTF());
+          out.writeInt(OK);
+          out.writeBoolean(liked);
+          break;
+        case CONTAINS_POST:
+          boolean found = social.containsPostById(in.readInt());
+          out.writeInt(OK);
+          out.writeBoolean(found);
+          break;
+        case GET_POST:
+          Post stored = social.getPostById(in.readInt());
+          out.writeInt(OK);
+          PostCodec.write(out, stored);
+          break;
+        case WRITTEN_BY:
+          List<Post> written = social.writtenBy(in.readUTF());
+          out.writeInt(OK);
+          writePosts(out, written);
+          break;
+        case CONTAINING:
+          List<Post> matching = social.containing(readStrings(in));
+          out.writeInt(OK);
+          writePosts(out, matching);
+          break;
+        case MENTIONED_USERS:
+          Set<String> mentioned = social.getMentionedUsers();
+          out.writeInt(OK);
+          writeStrings(out, mentioned);
+          break;
+        case INFLUENCE_MARGINS:
+          Map<String, Integer> margins = social.influenceMargins();
+          out.writeInt(OK);
+          writeCount(out, margins.size());
+          for(Map.Entry<String, Integer> entry: margins.entrySet()){
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue());
+          }
+          break;
+        case FOLLOWS_MAP:
+          Map<String, Set<String>> follows = social.getUserFollowsMap();
+          out.writeInt(OK);
+          writeMap(out, follows);
+          break;
+        case FOLLOWERS_MAP:
+          Map<String, Set<String>> followers = social.getUserFollowersMap();
+          out.writeInt(OK);
+          writeMap(out, followers);
+          break;
+        case USER_POST_IDS:
+          int userPostIds[] = social.postIdsOf(in.readUTF());
+          out.writeInt(OK);
+          writeIds(out, userPostIds);
+          break;
+        case POST_IDS:
+          int postIds[] = social.postIds();
+          out.writeInt(OK);
+          writeIds(out, postIds);
+          break;
+        default:
+          throw new IOException("Unknown request type " + type);
+      }
+    }
+    catch(UserNotExistException | UserAlreadyExistException | PostAlreadyExistException | NegativeIdException |
+          PostDoesNotExist | AuthorCantLikeHimselfException | RuntimeException e){
+      out.writeInt(ERROR);
+      out.writeUTF(e.getClass().getName());
+      out.writeUTF(e.getMessage() == null ? "" : e.getMessage());
+    }
+  }
+
+  private static void closeQuietly(Socket socket){
+    try{
+      socket.close();
+    }
+    catch(IOException e){ // la connessione viene comunque abbandonata
+    }
+  }
+
+  /*
+    Codifica e decodifica delle collezioni del protocollo, condivise con RemoteShard.
+    Il numero di elementi viene dal peer: le collezioni crescono man mano che gli
+    elementi vengono letti, senza essere dimensionate in anticipo, ed un numero
+    oltre MAX_COUNT fa fallire la lettura con IOException.
+  */
+  static void writeStrings(DataOutput out, Collection<String> strings) throws IOException{
+    writeCount(out, strings.size());
+    for(String string: strings){
+      out.writeUTF(string);
+    }
+  }
+
+  static List<String> readStrings(DataInput in) throws IOException{
+    int count = readCount(in);
+    List<String> strings = new ArrayList<String>();
+    for(int i = 0; i < count; i++){
+      strings.add(in.readUTF());
+    }
+    return strings;
+  }
+
+  static void writePosts(DataOutput out, List<Post> posts) throws IOException{
+    writeCount(out, posts.size());
+    for(Post post: posts){
+      PostCodec.write(out, post);
+    }
+  }
+
+  static List<Post> readPosts(DataInput in) throws IOException{
+    int count = readCount(in);
+    List<Post> posts = new ArrayList<Post>();
+    for(int i = 0; i < count; i++){
+      posts.add(PostCodec.read(in));
+    }
+    return posts;
+  }
+
+  static void writeIds(DataOutput out, int ids[]) throws IOException{
+    writeCount(out, ids.length);
+    for(int id: ids){
+      out.writeInt(id);
+    }
+  }
+
+  static int[] readIds(DataInput in) throws IOException{
+    int count = readCount(in);
+    int ids[] = new int[Math.min(count, 1024)];
+    for(int i = 0; i < count; i++){
+      if( i == ids.length ){
+        ids = Arrays.copyOf(ids, Math.min(count, ids.length * 2));
+      }
+      ids[i] = in.readInt();
+    }
+    return ids;
+  }
+
+  static void writeMap(DataOutput out, Map<String, Set<String>> map) throws IOException{
+    writeCount(out, map.size());
+    for(Map.Entry<String, Set<String>> entry: map.entrySet()){
+      out.writeUTF(entry.getKey());
+      writeStrings(out, entry.getValue());
+    }
+  }
+
+  static Map<String, Set<String>> readMap(DataInput in) throws IOException{
+    int count = readCount(in);
+    Map<String, Set<String>> map = new HashMap<String, Set<String>>();
+    for(int i = 0; i < count; i++){
+      String key = in.readUTF();
+      map.put(key, new HashSet<String>(readStrings(in)));
+    }
+    return map;
+  }
+
+  static int readCount(DataInput in) throws IOException{
+    int count = in.readInt();
+    if( count < 0 || count > MAX_COUNT ){
+      throw new IOException("Invalid count " + count);
+    }
+    return count;
+  }
+
+  static void writeCount(DataOutput out, int count) throws IOException{
+    if( count > MAX_COUNT ){
+      throw new IOException("Too many elements: " + count);
+    }
+    out.writeInt(count);
+  }
+
+  public static void main(String args[]) throws Exception{
+    if( args.length != 1 && args.length != 2 ){
+      System.err.println("Usage: java ShardServer port [address]");
+      System.exit(2);
+    }
+    InetAddress bindAddress = args.length == 2 ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
+    ShardServer server = new ShardServer(new SocialNetwork(), bindAddress, Integer.parseInt(args[0]), DEFAULT_MAX_CONNECTIONS);
+    System.out.println("Shard listening on " + server.getAddress().getHostAddress() + ":" + server.getPort());
+    server.accept(); // il thread principale accetta le connessioni fino alla terminazione del processo
+  }
+}
@@ -0,0 +1,544 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ShardedSocialNetwork implements Closeable{
+  /*
+    OVERVIEW: ShardedSocialNetwork è un social network con la specifica di
+    SocialNetwork (per le operazioni che offre) il cui stato è partizionato tra
+    N shard (SocialNetworkShard), ognuno un SocialNetwork nello stesso processo
+    o in un altro processo. Ogni utente appartiene allo shard di indice
+    floorMod(username.hashCode(), N), che contiene l'utente ed i suoi post: le
+    operazioni su un utente (addUser, writtenBy, addPost del suo post) sono
+    eseguite solo sul suo shard. Le ricerche (containing, getMentionedUsers,
+    influencers, ...) vengono inviate a tutti gli shard in parallelo ed i
+    risultati vengono combinati.
+
+    Archi tra shard: quando un utente mette like ad un post di un altro shard,
+    viene aggiunto a quello shard come utente ospite (senza post), così che lo
+    shard registri il like e l'arco di follow verso l'autore. Per questo:
+    - i followers di un utente si trovano tutti nel suo shard;
+    - gli utenti seguiti da un utente sono l'unione di quelli registrati nel suo
+      shard e negli shard in cui è ospite;
+    - i contatori della classifica si sommano tra gli shard (si veda influencers);
+    - removeUser rimuove l'utente dal suo shard e dagli shard in cui è ospite,
+      insieme ai suoi likes ed archi.
+    Gli id dei post sono unici tra tutti gli shard. Il social tiene una
+    directory degli id dei post di ogni shard, ricostruita dagli shard alla
+    creazione ed aggiornata da addPost e removeUser: le operazioni che cercano
+    un post per id (likePost, getPostById, containsPostById ed il controllo dei
+    duplicati di addPost) la consultano localmente ed interrogano al più lo
+    shard che contiene il post.
+
+    Il social non è thread-safe, come SocialNetwork: i thread interni interrogano
+    shard diversi, ma ogni shard è usato da un solo thread per volta. Se uno
+    shard non può essere raggiunto viene lanciata UncheckedIOException, e una
+    modifica può essere stata applicata solo ad alcuni shard.
+
+    Typical Element e AF(c): come in SocialNetwork, dove
+          userPosts(x) = shards[shardOf(x)].userPosts(x)
+          userFollowers(x) = shards[shardOf(x)].userFollowers(x)
+          userFollows(x) = U_{i} shards[i].userFollows(x) (vuoto se x non è in shards[i])
+    IR(c): shards != null && shards.length > 0 && shards non contiene null && pool != null &&
+           postIds != null && postIds.length == shards.length &&
+           forall i. postIds[i] != null && postIds[i] contiene gli id dei post di shards[i] &&
+           forall x, i. shards[i].containsUser(x) && i != shardOf(x) =>
+            ( shards[shardOf(x)].containsUser(x) && |shards[i].userPosts(x)| == 0 ) &&
+           forall i != j. shards[i] e shards[j] non contengono post con lo stesso id
+  */
+  private final SocialNetworkShard shards[];
+  private final ExecutorService pool; // thread che interrogano gli shard in parallelo
+  private final IntSet postIds[]; // postIds[i] = id dei post di shards[i]
+
+  // Messaggio di errore da stampare se si prova ad operare su un utente che non esiste nel social
+  private final String USER_NOT_EXIST_EXCEPTION = "The user identified by the username doesn't exist in the system";
+
+  /*
+    Operazione eseguita sullo shard di indice index
+  */
+  private interface ShardCall<T>{
+    T apply(int index) throws IOException;
+  }
+
+  /*
+    Inizializza un social con shardCount shard nello stesso processo
+
+    REQUIRES: shardCount > 0
+    THROWS: IllegalArgumentException se shardCount <= 0
+    MODIFIES: this
+  */
+  public ShardedSocialNetwork(int shardCount) throws IllegalArgumentException{
+    this(localShards(shardCount));
+  }
+
+  /*
+    Gli shard devono essere vuoti, o essere stati popolati da un altro
+    ShardedSocialNetwork con gli stessi shard nello stesso ordine.
+
+    REQUIRES: shards != null && shards.size() > 0 && shards.contains(null) == false
+    THROWS: NullPointerException se shards == null || shards.contains(null)
+            IllegalArgumentException se shards è vuota
+            UncheckedIOException se uno shard non può essere raggiunto
+    MODIFIES: this
+    EFFECTS: inizializza un social partizionato tra shards, nell'ordine della
+             lista, leggendo da ogni shard gli id dei suoi post
+  */
+  public ShardedSocialNetwork(List<? extends SocialNetworkShard> shards) throws NullPointerException, IllegalArgumentException{
+    if( shards == null ){
+      throw new NullPointerException();
+    }
+    if( shards.isEmpty() ){
+      throw new IllegalArgumentException("At least one shard is required");
+    }
+    this.shards = shards.toArray(new SocialNetworkShard[0]);
+    for(SocialNetworkShard shard: this.shards){
+      if( shard == null ){
+        throw new NullPointerException();
+      }
+    }
+    this.pool = Executors.newFixedThreadPool(this.shards.length, task -> {
+      Thread thread = new Thread(task, "social-network-shard");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.postIds = new IntSet[this.shards.length];
+    try{
+      List<int[]> shardPostIds = scatter(index -> this.shards[index].postIds());
+      for(int i = 0; i < this.shards.length; i++){
+        postIds[i] = new IntSet();
+        for(int id: shardPostIds.get(i)){
+          postIds[i].add(id);
+        }
+      }
+    }
+    catch(RuntimeException e){
+      pool.shutdownNow();
+      throw e;
+    }
+  }
+
+  private static List<SocialNetworkShard> localShards(int shardCount) throws IllegalArgumentException{
+    if( shardCount <= 0 ){
+      throw new IllegalArgumentException("The number of shards must be positive");
+    }
+    List<SocialNetworkShard> localList = new ArrayList<SocialNetworkShard>(shardCount);
+    for(int i = 0; i < shardCount; i++){
+      localList.add(new LocalShard());
+    }
+    return localList;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di shard
+  */
+  public int shardCount(){
+    return shards.length;
+  }
+
+  /*
+    REQUIRES: username != null
+    THROWS: NullPointerException se username == null
+    EFFECTS: restituisce l'indice dello shard cui appartiene username
+  */
+  public int shardOf(String username) throws NullPointerException{
+    return Math.floorMod(username.hashCode(), shards.length);
+  }
+
+  /*
+    Vedi SocialNetwork.addUser; l'utente viene aggiunto al suo shard
+  */
+  public void addUser(String newUser) throws NullPointerException, UserAlreadyExistException{
+    if( newUser == null ){
+      throw new NullPointerException();
+    }
+    try{
+      shards[shardOf(newUser)].addUser(newUser);
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /*
+    Vedi SocialNetwork.removeUser; l'utente viene rimosso dal suo shard e dagli
+    shard in cui è ospite, in parallelo, ed i suoi post dalla directory
+  */
+  public void removeUser(String username) throws NullPointerException, UserNotExistException{
+    if( username == null ){
+      throw new NullPointerException();
+    }
+    int owner = shardOf(username);
+    try{
+      int removedIds[] = shards[owner].postIdsOf(username);
+      shards[owner].removeUser(username);
+      for(int id: removedIds){
+        postIds[owner].remove(id);
+      }
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+    scatter(index -> {
+      if( index != owner && shards[index].containsUser(username) ){
+        try{
+          shards[index].removeUser(username);
+        }
+        catch(UserNotExistException e){ // verificato da containsUser
+          throw new IllegalStateException(e);
+        }
+      }
+      return null;
+    });
+  }
+
+  /*
+    Vedi SocialNetwork.containsUser
+  */
+  public boolean containsUser(String username) throws NullPointerException{
+    if( username == null ){
+      throw new NullPointerException();
+    }
+    try{
+      return shards[shardOf(username)].containsUser(username);
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /*
+    Vedi SocialNetwork.addPost. Il post viene aggiunto allo shard del suo autore,
+    dopo aver verificato nella directory che l'id non sia già usato e aver
+    aggiunto allo shard come ospiti gli utenti di altri shard che gli hanno
+    messo like; solo gli shard di questi utenti vengono interrogati per
+    verificarne l'esistenza.
+  */
+  public void addPost(Post post) throws NullPointerException, UserNotExistException, PostAlreadyExistException, NegativeIdException{
+    if( post == null ){
+      throw new NullPointerException();
+    }
+    if( post.getId() < 0 ){
+      throw new NegativeIdException();
+    }
+    String author = post.getAuthor();
+    int owner = shardOf(author);
+    // utenti che hanno messo like, raggruppati per shard
+    Map<Integer, List<String>> likersByShard = new HashMap<Integer, List<String>>();
+    for(String userWhoLiked: post.getUsersLikeView()){
+      likersByShard.computeIfAbsent(shardOf(userWhoLiked), index -> new ArrayList<String>()).add(userWhoLiked);
+    }
+    if( likersByShard.isEmpty() == false && scatter(index -> {
+          List<String> likers = likersByShard.get(index);
+          return likers == null || shards[index].containsUser(likers);
+        }).contains(false) ){
+      throw new UserNotExistException("A user in the Like list doesn't exist in the system");
+    }
+    if( containsPostById(post.getId()) ){
+      throw new PostAlreadyExistException("A post with this id already exist in the system");
+    }
+    try{
+      if( shards[owner].containsUser(author) == false ){
+        throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+      }
+      for(Map.Entry<Integer, List<String>> entry: likersByShard.entrySet()){
+        if( entry.getKey() != owner ){
+          for(String guest: entry.getValue()){
+            addGuest(shards[owner], guest);
+          }
+        }
+      }
+      shards[owner].addPost(post);
+      postIds[owner].add(post.getId());
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /*
+    Vedi SocialNetwork.likePost; se il post appartiene ad un altro shard,
+    l'utente vi viene aggiunto come ospite
+  */
+  public boolean likePost(int idPost, String username) throws NullPointerException, NegativeIdException, UserNotExistException, PostDoesNotExist, AuthorCantLikeHimselfException{
+    if( username == null ){
+      throw new NullPointerException();
+    }
+    if( idPost < 0 ){
+      throw new NegativeIdException();
+    }
+    if( containsUser(username) == false ){
+      throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+    }
+    int holder = shardOfPost(idPost);
+    if( holder == -1 ){
+      throw new PostDoesNotExist("The post identified by the id doesn't exist");
+    }
+    try{
+      if( holder != shardOf(username) ){ // l'autore è di un altro shard, quindi non è username
+        addGuest(shards[holder], username);
+      }
+      return shards[holder].likePost(idPost, username);
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /*
+    Vedi SocialNetwork.containsPostById; il post viene cercato nella directory,
+    senza interrogare gli shard
+  */
+  public boolean containsPostById(int idPost) throws NegativeIdException{
+    if( idPost < 0 ){
+      throw new NegativeIdException();
+    }
+    return shardOfPost(idPost) != -1;
+  }
+
+  /*
+    Vedi SocialNetwork.getPostById; il post viene letto dallo shard che lo
+    contiene, trovato nella directory
+  */
+  public Post getPostById(int idPost) throws NegativeIdException, PostDoesNotExist{
+    if( idPost < 0 ){
+      throw new NegativeIdException();
+    }
+    int holder = shardOfPost(idPost);
+    if( holder == -1 ){
+      throw new PostDoesNotExist("The post identified by the id doesn't exist");
+    }
+    try{
+      return shards[holder].getPostById(idPost);
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /*
+    Vedi SocialNetwork.writtenBy; i post vengono letti dallo shard dell'utente
+  */
+  public List<Post> writtenBy(String username) throws UserNotExistException{
+    if( username == null ){
+      throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+    }
+    try{
+      return shards[shardOf(username)].writtenBy(username);
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /*
+    Vedi SocialNetwork.containing; la ricerca viene eseguita su tutti gli shard in
+    parallelo ed i risultati, ordinati per timestamp, vengono fusi
+  */
+  public List<Post> containing(List<String> words) throws NullPointerException{
+    if( words == null || words.contains(null) ){
+      throw new NullPointerException();
+    }
+    List<Post> postList = new ArrayList<Post>();
+    for(List<Post> shardPosts: scatter(index -> shards[index].containing(words))){
+      postList.addAll(shardPosts);
+    }
+    postList.sort(SocialNetwork.TIMESTAMP_ORDER);
+    return postList;
+  }
+
+  /*
+    Vedi SocialNetwork.getMentionedUsers; un utente ospite segue qualcuno, per cui
+    l'unione dei risultati degli shard coincide con il risultato del social intero
+  */
+  public Set<String> getMentionedUsers(){
+    Set<String> mentionedUsersSet = new HashSet<String>();
+    for(Set<String> shardUsers: scatter(index -> shards[index].getMentionedUsers())){
+      mentionedUsersSet.addAll(shardUsers);
+    }
+    return mentionedUsersSet;
+  }
+
+  /*
+    Vedi SocialNetwork.influencers. Il margine (followers - seguiti) di un utente
+    è la somma dei suoi margini negli shard: i suoi followers sono contati solo
+    nel suo shard, e gli utenti che segue in quello dell'autore seguito.
+
+    EFFECTS: restituisce gli utenti con margine positivo, ordinati per margine
+             decrescente e, a parità di margine, per username
+  */
+  public List<String> influencers(){
+    Map<String, Integer> margins = new HashMap<String, Integer>();
+    for(Map<String, Integer> shardMargins: scatter(index -> shards[index].influenceMargins())){
+      for(Map.Entry<String, Integer> entry: shardMargins.entrySet()){
+        margins.merge(entry.getKey(), entry.getValue(), Integer::sum);
+      }
+    }
+    List<String> influencersList = new ArrayList<String>();
+    for(Map.Entry<String, Integer> entry: margins.entrySet()){
+      if( entry.getValue() > 0 ){
+        influencersList.add(entry.getKey());
+      }
+    }
+    influencersList.sort((first, second) -> {
+      int cmp = Integer.compare(margins.get(second), margins.get(first));
+      return cmp != 0 ? cmp : first.compareTo(second);
+    });
+    return influencersList;
+  }
+
+  /*
+    Vedi SocialNetwork.getUserFollowsMap; gli utenti seguiti da ogni utente sono
+    uniti tra il suo shard e quelli in cui è ospite
+  */
+  public Map<String, Set<String>> getUserFollowsMap(){
+    List<Map<String, Set<String>>> shardMaps = scatter(index -> shards[index].getUserFollowsMap());
+    Map<String, Set<String>> followsMap = new HashMap<String, Set<String>>();
+    for(int i = 0; i < shards.length; i++){
+      for(String username: shardMaps.get(i).keySet()){
+        if( shardOf(username) == i ){
+          followsMap.put(username, new HashSet<String>());
+        }
+      }
+    }
+    for(Map<String, Set<String>> shardMap: shardMaps){
+      for(Map.Entry<String, Set<String>> entry: shardMap.entrySet()){
+        followsMap.get(entry.getKey()).addAll(entry.getValue());
+      }
+    }
+    return followsMap;
+  }
+
+  /*
+    Vedi SocialNetwork.getUserFollowersMap; i followers di ogni utente sono nel suo shard
+  */
+  public Map<String, Set<String>> getUserFollowersMap(){
+    List<Map<String, Set<String>>> shardMaps = scatter(index -> shards[index].getUserFollowersMap());
+    Map<String, Set<String>> followersMap = new HashMap<String, Set<String>>();
+    for(int i = 0; i < shards.length; i++){
+      for(Map.Entry<String, Set<String>> entry: shardMaps.get(i).entrySet()){
+        if( shardOf(entry.getKey()) == i ){
+          followersMap.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    return followersMap;
+  }
+
+  /*
+    Chiude gli shard e termina i thread interni.
+
+    THROWS: IOException se uno shard non può essere chiuso
+    MODIFIES: this
+  */
+  public void close() throws IOException{
+    pool.shutdownNow();
+    IOException failure = null;
+    for(SocialNetworkShard shard: shards){
+      try{
+        shard.close();
+      }
+      catch(IOException e){
+        failure = e;
+      }
+    }
+    if( failure != null ){
+      throw failure;
+    }
+  }
+
+  /*
+    REQUIRES: idPost >= 0
+    EFFECTS: restituisce l'indice dello shard che contiene il post idPost, -1 se
+             nessuno, secondo la directory
+  */
+  private int shardOfPost(int idPost){
+    for(int i = 0; i < shards.length; i++){
+      if( postIds[i].contains(idPost) ){
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /*
+    MODIFIES: shard
+    EFFECTS: aggiunge username a shard come utente ospite, se non è già presente
+  */
+  private static void addGuest(SocialNetworkShard shard, String username) throws IOException{
+    if( shard.containsUser(username) == false ){
+      try{
+        shard.addUser(username);
+      }
+      catch(UserAlreadyExistException e){ // verificato da containsUser
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  /*
+    Esegue call su ogni shard in parallelo (direttamente se c'è un solo shard)
+    e ne attende tutti i risultati, anche quando una chiamata fallisce, così
+    che nessuno shard resti in uso dopo il ritorno.
+
+    THROWS: UncheckedIOException se call fallisce con IOException su uno shard;
+            le eccezioni non controllate di call vengono rilanciate
+    EFFECTS: restituisce i risultati di call, nell'ordine degli shard
+  */
+  private <T> List<T> scatter(ShardCall<T> call){
+    List<T> results = new ArrayList<T>(shards.length);
+    try{
+      if( shards.length == 1 ){
+        results.add(call.apply(0));
+        return results;
+      }
+    }
+    catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+    List<Future<T>> futures = new ArrayList<Future<T>>(shards.length);
+    for(int i = 0; i < shards.length; i++){
+      int index = i;
+      futures.add(pool.submit(() -> call.apply(index)));
+    }
+    Throwable failure = null;
+    boolean interrupted = false;
+    for(Future<T> future: futures){
+      while( true ){
+        try{
+          results.add(future.get());
+          break;
+        }
+        catch(ExecutionException e){
+          failure = failure == null ? e.getCause() : failure;
+          break;
+        }
+        catch(InterruptedException e){ // le chiamate in corso vanno comunque attese
+          interrupted = true;
+        }
+      }
+    }
+    if( interrupted ){
+      Thread.currentThread().interrupt();
+    }
+    if( failure instanceof IOException ){
+      throw new UncheckedIOException((IOException) failure);
+    }
+    if( failure instanceof RuntimeException ){
+      throw (RuntimeException) failure;
+    }
+    if( failure != null ){
+      throw (Error) failure;
+    }
+    return results;
+  }
+}
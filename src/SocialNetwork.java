@@ -1,13 +1,28 @@
-import java.util.Collections;
 import java.util.Map;
+import java.sql.Timestamp;
 import java.util.HashMap;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.List;
 import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.TreeSet;
-import java.util.Iterator;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 public class SocialNetwork{
   /*
@@ -26,8 +41,17 @@ public class SocialNetwork{
 
     Notazione: dom(f) = { x | exist y = f(x)}
                |f(x)| <- cardinalità dell'insieme y = f(x)
+               userFollowsMap e userFollowersMap non sono memorizzate esplicitamente:
+               userFollowsMap.get(u) = { userIds.nameOf(j) | followGraph.containsEdge(userIds.idOf(u), j) }
+               userFollowersMap.get(u) = { userIds.nameOf(j) | followGraph.containsEdge(j, userIds.idOf(u)) }
+               con dom(userFollowsMap) == dom(userFollowersMap) == userIds.usernames()
+               userPostMap.get(u) contiene gli id dei post di u, memorizzati in posts, in ordine di
+               timestamp (la stessa chiave <timestamp, id> di TIMESTAMP_ORDER): nelle formule
+               seguenti j in userPostMap.get(i) indica il post posts.materialize(j, null)
 
-    IR(c): userFollowsMap != null && userPostMap != null && userFollowersMap != null &&
+    IR(c): userIds != null && userPostMap != null && followGraph != null &&
+           userIds.usernames().equals(dom(userPostMap)) && followGraph.nodeCount() == userIds.size() &&
+           forall i. userPostMap.containsKey(i) => followGraph.containsNode(userIds.idOf(i)) &&
            userFollowsMap.containsKey(null) == false &&
            userFollowsMap.containsValue(null) == false &&
            forall i. userFollowsMap.values().contains(i) => i.contains(null) == false &&
@@ -47,11 +71,69 @@ public class SocialNetwork{
            forall i. userPostMap.containsKey(i) => ( forall j. userPostMap.get(i).contains(j) => j.getAuthor().equals(i) ) &&
            forall postSet. userPostMap.values().contains(postSet) => (forall post. postSet.contains(post) => IR(post)) &&
            forall i. userFollowsMap.containsKey(i) => ( forall j. userFollowsMap.get(i).contains(j) => exist k in userPostMap.get(j) t.c. k.getUsersLike().contains(i) ) &&
-           forall i. userFollowersMap.containsKey(i) => ( forall j. userFollowersMap.get(i).contains(j)  => exist k in userPostMap.get(i) t.c. k.getUsersLike().contains(j) )
+           forall i. userFollowersMap.containsKey(i) => ( forall j. userFollowersMap.get(i).contains(j)  => exist k in userPostMap.get(i) t.c. k.getUsersLike().contains(j) ) &&
+           posts != null &&
+           posts.size() == sum_{i in dom(userPostMap)} |userPostMap.get(i)| &&
+           forall i. userPostMap.containsKey(i) => ( forall id. userPostMap.get(i).contains(id) => posts.contains(id) ) &&
+           timeIndex != null && timeIndex.size() == posts.size() &&
+           forall i. userPostMap.containsKey(i) => ( forall j. userPostMap.get(i).contains(j) =>
+            timeIndex contiene la chiave <j.getTimestamp(), j.getId()> ) &&
+           wordIndex != null &&
+           forall i. userPostMap.containsKey(i) => ( forall j. userPostMap.get(i).contains(j) =>
+            ( forall t. t in InvertedIndex.terms(j.getText()) => wordIndex.lookup(t).contains(j.getId()) ) ) &&
+           wordIndex.postingCount() == sum_{i in dom(userPostMap), j in userPostMap.get(i)} |InvertedIndex.terms(j.getText())| &&
+           ranking != null &&
+           forall i. userFollowsMap.containsKey(i) => ( ranking.followsCount(i) == userFollowsMap.get(i).size() &&
+            ranking.followersCount(i) == userFollowersMap.get(i).size() ) &&
+           version >= 0 && dom(persistentFollowsMap) == dom(persistentFollowersMap) == dom(userPostMap) &&
+           forall i. persistentFollowsMap.containsKey(i) =>
+            ( persistentFollowsMap.get(i) == followGraph.followedSet(userIds.idOf(i)) &&
+              persistentFollowersMap.get(i) == followGraph.followerSet(userIds.idOf(i)) ) &&
+           dom(persistentPostMap) == dom(userPostMap) &&
+           forall i. userPostMap.containsKey(i) => ( forall j. userPostMap.get(i).contains(j) =>
+            ( persistentPostMap.get(i).contains(j.getId()) &&
+              persistentPostIdMap.get(j.getId()) ha lo stato di j &&
+              persistentPostIdMap.get(j.getId()).getLikes() == posts.likeSet(j.getId()) ) ) &&
+           persistentPostIdMap.size() == posts.size() && frozenCompactions == posts.compactions() &&
+           userLikesMap != null && dom(userLikesMap) == dom(userPostMap) &&
+           forall i. userLikesMap.containsKey(i) => ( forall id. userLikesMap.get(i).contains(id) =>
+            ( posts.contains(id) && posts.materialize(id, null).getUsersLike().contains(i) ) ) &&
+           forall i. userPostMap.containsKey(i) => ( forall j. userPostMap.get(i).contains(j) =>
+            ( forall k. j.getUsersLike().contains(k) => userLikesMap.get(k).contains(j.getId()) ) )
   */
-  private Map<String, Set<String>> userFollowsMap; // mappa f(utente) -> utenti che segue
-  private Map<String, Set<Post>> userPostMap; // mappa g(utente) -> post utente
-  private Map<String, Set<String>> userFollowersMap; // mappa h(utente) -> utenti che lo seguono
+  private UserDictionary userIds; // dizionario username <-> id denso, usato dal grafo dei follows
+  private Map<String, Timeline> userPostMap; // mappa g(utente) -> id dei post dell'utente, ordinati per timestamp
+  private FollowGraph followGraph; // archi f(utente) -> utenti che segue e h(utente) -> utenti che lo seguono, per id
+  private PostStore posts; // archivio colonnare dei post, indicizzato per id
+  private TimeIndex timeIndex; // tutti i post del social, ordinati per timestamp
+  private InvertedIndex wordIndex; // indice parola -> id dei post che la contengono
+  private InfluenceRanking ranking; // contatori di followers e seguiti, ordinati per margine
+  private Map<String, IntSet> userLikesMap; // mappa l(utente) -> id dei post cui ha messo like
+  // osservatore dei post restituiti dal social: ne riporta nell'archivio il testo quando viene modificato
+  private final PostListener postListener = this::textEdited;
+  // stato persistente (con condivisione strutturale) da cui vengono create le istantanee: gli
+  // insiemi di id dei follows e dei likes sono gli stessi, immutabili, del grafo e dell'archivio
+  private long version; // numero di modifiche applicate al social
+  private PersistentHashMap<String, PersistentIntSet> persistentFollowsMap; // utente -> id degli utenti che segue
+  private PersistentHashMap<String, PersistentIntSet> persistentPostMap; // utente -> id dei suoi post
+  private PersistentHashMap<String, PersistentIntSet> persistentFollowersMap; // utente -> id dei suoi followers
+  private PersistentHashMap<Integer, FrozenPost> persistentPostIdMap; // id -> stato del post
+  private int frozenCompactions; // compattazioni dell'archivio quando persistentPostIdMap è stata ricostruita
+  // verifica incrementale dell'invariante (si veda setInvariantListener), non fa parte dello stato astratto
+  private InvariantListener invariantListener; // null se la verifica è disattivata
+  private Set<String> touchedUsers; // utenti aggiunti o rimossi dall'operazione in corso
+  private IntSet touchedLinks; // id degli utenti i cui archi o post sono cambiati
+  private IntSet touchedPosts; // id dei post aggiunti, rimossi o modificati
+  private long touchedLikes[]; // likes aggiunti o rimossi, codificati come (id del post << 32) | id dell'utente
+  private int touchedLikeCount; // numero di likes in touchedLikes
+
+  // Ordinamento dei post per timestamp, a parità di timestamp per id (così che
+  // due post distinti dello stesso autore con lo stesso timestamp siano entrambi conservati)
+  static final Comparator<Post> TIMESTAMP_ORDER = Comparator.<Post>naturalOrder().thenComparingInt(Post::getId);
+
+  // Formato binario delle istantanee salvate su file (si veda saveSnapshot)
+  private static final int SNAPSHOT_MAGIC = 0x534E5350; // "SNSP"
+  private static final int SNAPSHOT_VERSION = 1;
 
   // Messaggio di errore da stampare se si prova ad operare su un utente che non esiste nel social
   private final String USER_NOT_EXIST_EXCEPTION = "The user identified by the username doesn't exist in the system";
@@ -64,28 +146,58 @@ public class SocialNetwork{
   */
   public boolean checkRep(){
     // controllo che le varie mappe non siano null
-    if( userFollowsMap == null || userPostMap == null || userFollowersMap == null ){
+    if( userIds == null || userPostMap == null || followGraph == null || posts == null || timeIndex == null || wordIndex == null || ranking == null || userLikesMap == null ){
       return false;
     }
-    // per ogni mappa, controllo che non sia contenuta la chiave o il valore null,
-    // e che un qualsiasi valore all'interno della mappa non contenga al proprio
-    // interno null
-    if(userFollowsMap.containsKey(null) || userFollowsMap.containsValue(null)){
+    // controllo che il dizionario degli id contenga esattamente gli utenti del social,
+    // ognuno associato ad un nodo del grafo dei follows
+    if( userIds.usernames().equals(userPostMap.keySet()) == false || followGraph.nodeCount() != userIds.size() ){
       return false;
     }
-    for(Collection coll: userFollowsMap.values()){
-      if( coll.contains(null) ){
+    for(String username: userIds.usernames()){
+      int userId = userIds.idOf(username);
+      if( followGraph.containsNode(userId) == false || username.equals(userIds.nameOf(userId)) == false ){
         return false;
       }
     }
-    if(userPostMap.containsKey(null) || userPostMap.containsValue(null)){
+    // i controlli seguenti operano sulle mappe dei follows ricostruite dal grafo
+    // e sui post materializzati dall'archivio
+    Map<String, Set<String>> userFollowsMap = getUserFollowsMap();
+    Map<String, Set<String>> userFollowersMap = getUserFollowersMap();
+    if( userPostMap.containsKey(null) || userPostMap.containsValue(null) ){
       return false;
     }
-    for(String username: userPostMap.keySet()){
-      for(Post post: userPostMap.get(username)){
-        if( post == null ){
+    Map<String, List<Post>> userPosts = new HashMap<>();
+    for(Map.Entry<String, Timeline> entry: userPostMap.entrySet()){
+      Timeline timeline = entry.getValue();
+      List<Post> postList = new ArrayList<Post>(timeline.size());
+      for(int i = 0; i < timeline.size(); i++){
+        if( posts.contains(timeline.id(i)) == false ){
+          return false;
+        }
+        Post post = posts.materialize(timeline.id(i), null);
+        // la chiave di ordinamento della sequenza deve coincidere con il timestamp del post
+        // ed essere presente nell'indice temporale
+        if( post.getEpochMillis() != timeline.millis(i) || post.getNanos() != timeline.nanos(i) ||
+            timeIndex.contains(timeline.id(i), timeline.millis(i), timeline.nanos(i)) == false ){
           return false;
         }
+        postList.add(post);
+      }
+      userPosts.put(entry.getKey(), postList);
+    }
+    if( persistentFollowsMap == null || persistentPostMap == null || persistentFollowersMap == null || persistentPostIdMap == null ){
+      return false;
+    }
+    // per ogni mappa, controllo che non sia contenuta la chiave o il valore null,
+    // e che un qualsiasi valore all'interno della mappa non contenga al proprio
+    // interno null
+    if(userFollowsMap.containsKey(null) || userFollowsMap.containsValue(null)){
+      return false;
+    }
+    for(Collection coll: userFollowsMap.values()){
+      if( coll.contains(null) ){
+        return false;
       }
     }
     if(userFollowersMap.containsKey(null) || userFollowersMap.containsValue(null)){
@@ -105,17 +217,98 @@ public class SocialNetwork{
       return false;
     }
 
-    // Per ogni post nel social controllo che rispetti il repInv di Post
-    // e che in userPostMap sia associato alla chiave del suo autore
+    // Per ogni post nel social controllo che rispetti il repInv di Post,
+    // che in userPostMap sia associato alla chiave del suo autore e che
+    // l'indice delle parole lo contenga
+    int postCount = 0;
+    int postingCount = 0;
     for(String username: userPostMap.keySet()){
-      for(Post post: userPostMap.get(username)){
+      for(Post post: userPosts.get(username)){
         if( post.checkRep() == false ){
           return false;
         }
         if( post.getAuthor().equals(username) == false ){
           return false;
         }
+        for(String term: InvertedIndex.terms(post.getTextView())){
+          IntSet ids = wordIndex.lookup(term);
+          if( ids == null || ids.contains(post.getId()) == false ){
+            return false;
+          }
+          postingCount += 1;
+        }
+        postCount += 1;
+      }
+    }
+    if( postCount != posts.size() || postCount != timeIndex.size() || postingCount != wordIndex.postingCount() ){
+      return false;
+    }
+    // controllo che la mappa dei likes sia l'inversa dei likes memorizzati nei post
+    if( userLikesMap.keySet().equals(userPostMap.keySet()) == false ){
+      return false;
+    }
+    int likeCount = 0;
+    for(String username: userPostMap.keySet()){
+      for(Post post: userPosts.get(username)){
+        for(int likerId: posts.likers(post.getId())){
+          IntSet likedIds = userLikesMap.get(userIds.nameOf(likerId));
+          if( likedIds == null || likedIds.contains(post.getId()) == false ){
+            return false;
+          }
+          likeCount += 1;
+        }
+      }
+    }
+    for(IntSet likedIds: userLikesMap.values()){
+      likeCount -= likedIds.size();
+    }
+    if( likeCount != 0 ){
+      return false;
+    }
+    // controllo che lo stato persistente delle istantanee coincida con quello del social:
+    // gli insiemi dei follows e dei likes devono essere proprio quelli del grafo e dell'archivio
+    if( version < 0 || persistentFollowsMap.keySet().equals(userPostMap.keySet()) == false ||
+        persistentFollowersMap.keySet().equals(userPostMap.keySet()) == false ){
+      return false;
+    }
+    for(String username: userPostMap.keySet()){
+      int userId = userIds.idOf(username);
+      if( persistentFollowsMap.get(username) != followGraph.followedSet(userId) ||
+          persistentFollowersMap.get(username) != followGraph.followerSet(userId) ){
+        return false;
+      }
+    }
+    if( persistentPostMap.keySet().equals(userPostMap.keySet()) == false || persistentPostIdMap.size() != posts.size() ||
+        frozenCompactions != posts.compactions() ){
+      return false;
+    }
+    for(String username: userPostMap.keySet()){
+      PersistentIntSet frozenIds = persistentPostMap.get(username);
+      if( frozenIds.size() != userPosts.get(username).size() ){
+        return false;
+      }
+      for(Post post: userPosts.get(username)){
+        if( frozenIds.contains(post.getId()) == false || matchesFrozen(post.getId()) == false ){
+          return false;
+        }
+      }
+    }
+    // controllo che i contatori della classifica corrispondano alle mappe
+    for(String username: userFollowsMap.keySet()){
+      if( ranking.followsCount(username) != userFollowsMap.get(username).size() ||
+          ranking.followersCount(username) != userFollowersMap.get(username).size() ){
+        return false;
+      }
+    }
+    // per ogni utente, unione (per id del dizionario) degli utenti che hanno messo like ai suoi post
+    Map<String, IntBitmap> likersByAuthor = new HashMap<String, IntBitmap>();
+    for(Map.Entry<String, Timeline> entry: userPostMap.entrySet()){
+      IntBitmap likers = new IntBitmap();
+      Timeline timeline = entry.getValue();
+      for(int i = 0; i < timeline.size(); i++){
+        posts.addLikersTo(timeline.id(i), likers);
       }
+      likersByAuthor.put(entry.getKey(), likers);
     }
     /*
       Controllo che, per ogni utente-chiave nella userFollowsMap, il set
@@ -123,14 +316,10 @@ public class SocialNetwork{
       pubblicato almeno un post cui l'utente-chiave abbia messo like
     */
     for(String username: userFollowsMap.keySet()){
+      int userId = userIds.idOf(username);
       for(String followedUser: userFollowsMap.get(username)){
-        boolean existFlag = false;
-        for(Post post: userPostMap.get(followedUser)){
-          if( post.getUsersLike().contains(username) ){
-            existFlag = true;
-          }
-        }
-        if( existFlag == false ){
+        IntBitmap likers = likersByAuthor.get(followedUser);
+        if( likers == null || likers.contains(userId) == false ){
           return false;
         }
       }
@@ -138,360 +327,1822 @@ public class SocialNetwork{
     /*
       Controllo che, per ogni utente-chiave nella userFollowersMap, il set
       di utenti associati alla chiave contenga esclusivamente utenti che
-      hanno messo like ad almeno un post dell'utente-chiave
+      hanno messo like ad almeno un post dell'utente-chiave, ossia che
+      l'intersezione tra followers e likers coincida con i followers
     */
     for(String username: userFollowersMap.keySet()){
+      IntBitmap followers = new IntBitmap();
       for(String follower: userFollowersMap.get(username)){
-        boolean existFlag = false;
-        for(Post post: userPostMap.get(username)){
-          if( post.getUsersLike().contains(follower) ){
-            existFlag = true;
-          }
-        }
-        if( existFlag == false ){
+        int followerId = userIds.idOf(follower);
+        if( followerId == -1 ){
           return false;
         }
+        followers.add(followerId);
+      }
+      if( followers.andCardinality(likersByAuthor.get(username)) != followers.size() ){
+        return false;
       }
     }
     return true;
   }
 
   /*
-    Metodo costruttore che inizializza un social vuoto
+    Attiva (listener != null) o disattiva (listener == null) la verifica
+    incrementale dell'invariante: al termine di ogni modifica (addUser, removeUser,
+    addPost, addPosts, likePost e modifica del testo di un post restituito) vengono
+    verificate solo le clausole cambiate: checkUser per gli utenti aggiunti o
+    rimossi, checkPost per i post aggiunti, rimossi o modificati, checkLinks per
+    gli utenti che hanno guadagnato o perso archi e checkLike per i singoli likes
+    aggiunti o rimossi. Il costo è quindi proporzionale alla modifica, non ai post
+    ed ai likes degli utenti coinvolti né all'intero social come checkRep. Le
+    violazioni vengono segnalate a listener, dal thread che ha eseguito la modifica.
 
     MODIFIES: this
-    EFFECTS: inizializza le strutture dati di this
   */
-  public SocialNetwork(){
-    this.userFollowsMap = new HashMap<>();
-    this.userPostMap = new HashMap<>();
-    this.userFollowersMap = new HashMap<>();
+  public void setInvariantListener(InvariantListener listener){
+    this.invariantListener = listener;
+    this.touchedUsers.clear();
+    this.touchedLinks.clear();
+    this.touchedPosts.clear();
+    this.touchedLikeCount = 0;
   }
 
   /*
-    Restituisce la rete sociale derivata dalla lista di post passati come parametro
+    Verifica le clausole dell'invariante che riguardano l'utente username: se è
+    nel social, la sua presenza in tutte le strutture, i suoi post (archivio,
+    sequenza ordinata, indice temporale e stato persistente), i suoi likes, i
+    suoi archi di follow (nel grafo, nello stato persistente e nei contatori
+    della classifica) e la loro giustificazione tramite i likes; altrimenti la
+    sua assenza da tutte le strutture. Il costo è proporzionale ai post, ai likes
+    e agli archi dell'utente.
 
-    REQUIRES: ps != null && ps.contains(null) == false
-    THROWS: NullPointerException se ps == null || ps.contains(null)
-    EFFECTS: Ritorna una mappa newUserFollowsMap tale che:
-            newUserFollowsMap.containsKey(null) == false &&
-            newUserFollowsMap.containsValue(null) )) false &&
-            forall i. newUserFollowsMap.values().contains(i) => i.contains(null) == false &&
-            forall i. newUserFollowsMap.containsKey(i) => forall j. newUserFollowsMap.get(i).contains(j) exist k in ps t.c. (k.getAuthor().equals(j) && k.getUsersLike.contains(i))
+    REQUIRES: username != null
+    THROWS: NullPointerException se username == null
+    EFFECTS: restituisce vero se le clausole valgono; altrimenti segnala la prima
+             clausola violata a listener (se non è null) e restituisce falso
   */
-  public static Map<String, Set<String>> guessFollowers(List<Post> ps) throws NullPointerException{
-    if( ps == null || ps.contains(null)){
+  boolean checkUser(String username, InvariantListener listener) throws NullPointerException{
+    if( username == null ){
       throw new NullPointerException();
     }
-    Map<String, Set<String>> newUserFollowsMap = new HashMap<String, Set<String>>();
-    for(Post post: ps){ // itero i post della lista
-      HashSet<String> usersLike = post.getUsersLike(); // lista degli utenti che hanno messo "Mi piace" al post
-      for(String username: usersLike){
-        if( !newUserFollowsMap.containsKey(username) ){ // se l'utente che ha messo like non è presente come chiave nella mappa, lo aggiungo
-          newUserFollowsMap.put(username, new HashSet<String>());
-        }
-        newUserFollowsMap.get(username).add(post.getAuthor()); // ogni utente che ha messo like inizia a seguire l'autore
+    String entity = "user " + username;
+    int userId = userIds.idOf(username);
+    if( userPostMap.containsKey(username) == false ){
+      if( userId != -1 || userLikesMap.containsKey(username) || persistentPostMap.containsKey(username) ||
+          persistentFollowsMap.containsKey(username) || persistentFollowersMap.containsKey(username) ){
+        return violated(listener, entity, "a removed user doesn't appear in any map");
+      }
+      return true;
+    }
+    if( userId == -1 || username.equals(userIds.nameOf(userId)) == false || followGraph.containsNode(userId) == false ){
+      return violated(listener, entity, "the user has an id in the dictionary and a node in the follow graph");
+    }
+    Timeline timeline = userPostMap.get(username);
+    IntSet likedIds = userLikesMap.get(username);
+    PersistentIntSet frozenPosts = persistentPostMap.get(username);
+    PersistentIntSet frozenFollows = persistentFollowsMap.get(username);
+    PersistentIntSet frozenFollowers = persistentFollowersMap.get(username);
+    if( timeline == null || likedIds == null || frozenPosts == null || frozenFollows == null || frozenFollowers == null ){
+      return violated(listener, entity, "dom(userPostMap) == dom(userLikesMap) == dom of the persistent maps");
+    }
+    // i post dell'utente, e l'unione degli utenti che vi hanno messo like
+    IntBitmap likers = new IntBitmap();
+    for(int i = 0; i < timeline.size(); i++){
+      int id = timeline.id(i);
+      if( posts.contains(id) == false || posts.authorId(id) != userId ){
+        return violated(listener, entity, "the posts of the user are stored with the user as author");
+      }
+      if( posts.millis(id) != timeline.millis(i) || posts.nanos(id) != timeline.nanos(i) ||
+          timeIndex.contains(id, timeline.millis(i), timeline.nanos(i)) == false ){
+        return violated(listener, entity, "the timeline keys match the timestamps and the time index");
       }
-      if( !newUserFollowsMap.containsKey(post.getAuthor()) ){ // se non è presente, aggiungo anche l'autore del post
-        newUserFollowsMap.put(post.getAuthor(), new HashSet<String>());
+      if( frozenPosts.contains(id) == false ){
+        return violated(listener, entity, "persistentPostMap contains the posts of the user");
       }
+      posts.addLikersTo(id, likers);
     }
-    return newUserFollowsMap;
-  }
-
-  /*
-    Dato un social, restituisce la lista di influencers, ossia di utenti che hanno più
-    followers che persone che seguono.
-
-    REQUIRES: followers != null &&
-              followers.containsKey(null) == false &&
-              followers.containsValue(null) == false &&
-              forall key. followers.containsKey(key) => followers.get(key).contains(null) == false
-    THROWS: NullPointerException se followers == null || followers.containsKey(null) ||
-            followers.containsValue(null) || exist i. followers.containsKey(i) t.c. followers.get(i).contains(null)
-    EFFECTS: Restituisce una lista di utenti menzionati influencersList tale che
-             forall i. influencersList.contains(i) =>
-             #{ k | k.equals(i) && forall j. followers.values().contains(j) => followers.get(j).contains(k) } >= followers.get(i).size()
-  */
-  public static List<String> influencers(Map<String, Set<String>> followers) throws NullPointerException{
-    if( followers == null || followers.containsKey(null) || followers.containsValue(null) ){
-      throw new NullPointerException();
+    if( frozenPosts.size() != timeline.size() ){
+      return violated(listener, entity, "persistentPostMap contains only the posts of the user");
     }
-    for(String key: followers.keySet()){
-      if( followers.get(key).contains(null) ){
-        throw new NullPointerException();
+    // i post cui l'utente ha messo like, e l'insieme dei loro autori
+    IntBitmap likedAuthors = new IntBitmap();
+    for(int id: likedIds.toArray()){
+      if( posts.contains(id) == false || posts.isLikedBy(id, userId) == false ){
+        return violated(listener, entity, "userLikesMap is the inverse of the likes of the posts");
       }
+      likedAuthors.add(posts.authorId(id));
+    }
+    // ogni utente seguito ha scritto un post cui l'utente ha messo like, ed ogni follower ha messo like ad un suo post
+    int followsCount = followGraph.outDegree(userId);
+    int followersCount = followGraph.inDegree(userId);
+    if( ranking.followsCount(username) != followsCount || ranking.followersCount(username) != followersCount ){
+      return violated(listener, entity, "the ranking counters match the follow graph");
     }
-    List<String> influencersList = new LinkedList<>(); // lista in cui salverò gli influencers
-    LinkedList<String> usersWhoFollowSomebody = new LinkedList<>();
-    for(Set<String> follows: followers.values()){ // inserisco tutti i follows in una lista
-      usersWhoFollowSomebody.addAll(follows);
+    if( frozenFollows != followGraph.followedSet(userId) || frozenFollowers != followGraph.followerSet(userId) ){
+      return violated(listener, entity, "the persistent follow maps share the sets of the follow graph");
     }
-    for(String usernameFollower: followers.keySet()){ // itero le chiavi della mappa di utenti
-      // conto quante occorrenze dell'utente ci sono nella lista di follows
-      int followersOfUser = Collections.frequency(usersWhoFollowSomebody, usernameFollower);
-      if( followersOfUser > followers.get(usernameFollower).size() ){
-        influencersList.add(usernameFollower);
+    for(int followedId: followGraph.followed(userId)){
+      if( likedAuthors.contains(followedId) == false ){
+        return violated(listener, entity, "the user liked a post of every followed user");
       }
     }
-    return influencersList;
+    for(int followerId: followGraph.followersOf(userId)){
+      if( likers.contains(followerId) == false ){
+        return violated(listener, entity, "every follower liked a post of the user");
+      }
+    }
+    return true;
   }
 
   /*
-    Restituisce la lista di utenti menzionati, ossia gli utenti
-    che seguono qualcuno oppure hanno scritto almeno un post, contenuti
-    nel social
+    Verifica le clausole dell'invariante che riguardano il post con id id: se è
+    nel social, l'invariante di Post, la sua presenza nella sequenza dell'autore,
+    nell'indice temporale e nell'indice delle parole, la mappa inversa dei suoi
+    likes e la sua copia nello stato persistente; altrimenti la sua assenza dallo
+    stato persistente. Il costo è proporzionale al testo e ai likes del post.
 
-    EFFECTS: Ritorna un set mentionedUsersSet di utenti menzionati, tale che
-    mentionedUsersSet != null &&
-    mentionedUsersSet.contains(null) == false &&
-    forall i. mentionedUsersSet.contains(i) =>
-    (i in dom(userPosts) && |userPosts(i)| > 0 )  || ( i in dom(userFollowsMap) && |userFollows(i)| > 0 )
+    EFFECTS: restituisce vero se le clausole valgono; altrimenti segnala la prima
+             clausola violata a listener (se non è null) e restituisce falso
   */
-  public Set<String> getMentionedUsers(){
-    Set<String> mentionedUsersSet = new HashSet<String>();
-    for(String username: userPostMap.keySet()){ // aggiungo tutti gli utenti che hanno pubblicato almeno un post
-      if( userPostMap.get(username).isEmpty() == false ){ // controllo che l'utente abbia pubblicato almeno un post
-        mentionedUsersSet.add(username);
+  boolean checkPost(int id, InvariantListener listener){
+    String entity = "post " + id;
+    if( posts.contains(id) == false ){
+      if( persistentPostIdMap.get(id) != null ){
+        return violated(listener, entity, "a removed post doesn't appear in the persistent state");
       }
+      return true;
     }
-    for(String username: userFollowsMap.keySet()){ // aggiungo tutti gli utenti che seguono qualcuno
-      if( userFollowsMap.get(username).isEmpty() == false ){
-        mentionedUsersSet.add(username);
+    Post post = posts.materialize(id, null);
+    if( post.checkRep(listener) == false ){
+      return false;
+    }
+    Timeline timeline = userPostMap.get(post.getAuthor());
+    if( timeline == null || timeline.indexOf(post.getEpochMillis(), post.getNanos(), id) < 0 ){
+      return violated(listener, entity, "the post is in the timeline of its author");
+    }
+    if( timeIndex.contains(id, post.getEpochMillis(), post.getNanos()) == false ){
+      return violated(listener, entity, "the post is in the time index");
+    }
+    for(String term: InvertedIndex.terms(post.getTextView())){
+      IntSet ids = wordIndex.lookup(term);
+      if( ids == null || ids.contains(id) == false ){
+        return violated(listener, entity, "the post is in the word index under each of its terms");
       }
     }
-    return mentionedUsersSet;
+    int authorId = posts.authorId(id);
+    for(int likerId: posts.likers(id)){
+      IntSet likedIds = userLikesMap.get(userIds.nameOf(likerId));
+      if( likedIds == null || likedIds.contains(id) == false ){
+        return violated(listener, entity, "userLikesMap is the inverse of the likes of the posts");
+      }
+      if( followGraph.containsEdge(likerId, authorId) == false ){
+        return violated(listener, entity, "every user who liked the post follows its author");
+      }
+    }
+    PersistentIntSet frozenPosts = persistentPostMap.get(post.getAuthor());
+    if( frozenPosts == null || frozenPosts.contains(id) == false || matchesFrozen(id) == false ){
+      return violated(listener, entity, "the persistent copy matches the post");
+    }
+    return true;
   }
 
   /*
-    Restituisce la lista di utenti menzionati, ossia di utenti che
-    seguono qualcuno oppure hanno scritto almeno un post, a partire da una
-    lista di post.
+    Verifica le clausole dell'invariante che riguardano gli archi ed i post
+    dell'utente con id userId senza visitarli: i contatori della classifica,
+    la condivisione degli insiemi del grafo con lo stato persistente ed il numero
+    dei post nello stato persistente. Se l'id non è assegnato non verifica nulla
+    (l'utente rimosso è verificato da checkUser). Il costo è costante.
 
-    REQUIRES: postList != null && postList.contains(null) == false
-    THROWS: NullPointerException se postList == null || postList.contains(null) == true
-    EFFECTS: Ritorna un set mentionedUsersSet di utenti menzionati, tale che
-    mentionedUsersSet != null &&
-    mentionedUsersSet.contains(null) == false &&
-    forall i. mentionedUsersSet.contains(i) ==>
-    exist j. postList.contains(j) => (j.getAuthor().equals(i) || j.getUsersLike.contains(i))
+    EFFECTS: restituisce vero se le clausole valgono; altrimenti segnala la prima
+             clausola violata a listener (se non è null) e restituisce falso
   */
-  public static Set<String> getMentionedUsers(List<Post> postList) throws NullPointerException{
-    if( postList == null || postList.contains(null) ){
-      throw new NullPointerException();
+  boolean checkLinks(int userId, InvariantListener listener){
+    String username = userIds.nameOf(userId);
+    if( username == null ){
+      return true;
+    }
+    String entity = "user " + username;
+    if( followGraph.containsNode(userId) == false ){
+      return violated(listener, entity, "the user has an id in the dictionary and a node in the follow graph");
+    }
+    if( ranking.followsCount(username) != followGraph.outDegree(userId) ||
+        ranking.followersCount(username) != followGraph.inDegree(userId) ){
+      return violated(listener, entity, "the ranking counters match the follow graph");
     }
-    HashSet<String> tmp = new HashSet<String>();
-    for(Post post: postList){
-      tmp.add(post.getAuthor()); // aggiungo l'autore del post
-      tmp.addAll(post.getUsersLike()); // aggiungo tutti gli utenti che hanno messo like
+    if( persistentFollowsMap.get(username) != followGraph.followedSet(userId) ||
+        persistentFollowersMap.get(username) != followGraph.followerSet(userId) ){
+      return violated(listener, entity, "the persistent follow maps share the sets of the follow graph");
     }
-    return tmp;
+    Timeline timeline = userPostMap.get(username);
+    PersistentIntSet frozenPosts = persistentPostMap.get(username);
+    if( timeline == null || frozenPosts == null || frozenPosts.size() != timeline.size() ){
+      return violated(listener, entity, "persistentPostMap contains only the posts of the user");
+    }
+    return true;
   }
 
   /*
-    Restituisce la lista di post scritti dall'utente il cui username
-    è passato come parametro
+    Verifica le clausole dell'invariante che riguardano il like (presente o
+    assente) dell'utente con id likerId al post con id id: la mappa inversa dei
+    likes, l'arco verso l'autore e la condivisione dell'insieme dei likes con lo
+    stato persistente. Se il post non è nel social non verifica nulla (il post
+    rimosso è verificato da checkPost). Il costo è logaritmico.
 
-    REQUIRES: username in dom(userPosts)
-    THROWS: UserNotExistException se userPostMap.containsKey(username)==false
-    EFFECTS: Ritorna una lista di post listaPost = [post_1, ..., post_n] tale che
-             listaPost != null &&
-             listaPost.contains(null) == false &&
-             forall i. listaPost.contains(i) => post in userPosts(username)
+    EFFECTS: restituisce vero se le clausole valgono; altrimenti segnala la prima
+             clausola violata a listener (se non è null) e restituisce falso
   */
-  public List<Post>	writtenBy(String username) throws UserNotExistException{
-    if( userPostMap.containsKey(username) ){
-      return new LinkedList<Post>(userPostMap.get(username));
+  boolean checkLike(int id, int likerId, InvariantListener listener){
+    if( posts.contains(id) == false ){
+      return true;
+    }
+    String entity = "post " + id;
+    String liker = userIds.nameOf(likerId);
+    IntSet likedIds = liker == null ? null : userLikesMap.get(liker);
+    if( posts.isLikedBy(id, likerId) ){
+      if( likedIds == null || likedIds.contains(id) == false ){
+        return violated(listener, entity, "userLikesMap is the inverse of the likes of the posts");
+      }
+      if( followGraph.containsEdge(likerId, posts.authorId(id)) == false ){
+        return violated(listener, entity, "every user who liked the post follows its author");
+      }
+    }
+    else if( likedIds != null && likedIds.contains(id) ){
+      return violated(listener, entity, "userLikesMap is the inverse of the likes of the posts");
     }
-    throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+    FrozenPost frozen = persistentPostIdMap.get(id);
+    if( frozen == null || frozen.getLikes() != posts.likeSet(id) ){
+      return violated(listener, entity, "the persistent copy matches the post");
+    }
+    return true;
   }
 
   /*
-    Filtra la lista di post passata come parametro, restituendo una lista di
-    post scritti dall'utente identificato da username.
-
-    REQUIRES: postList != null && postList.contains(null) == false
-    THROWS: NullPointerException se postList == null || postList.contains(null)
-    EFFECTS: Ritorna una lista di post userPostList tale che
-             userPostList != null &
-             userPostList.contains(null) == false &&
-             forall i. userPostList.contains(i) =>
-             ( postList.contains(post) && post.getAuthor().equals(username))
+    REQUIRES: posts.contains(id)
+    EFFECTS: restituisce vero se la copia del post con id id nello stato persistente
+             ne ha lo stato corrente e ne condivide l'insieme dei likes, falso altrimenti
   */
-  public static List<Post>	writtenBy(List<Post> postList, String	username) throws NullPointerException{
-      if( postList == null || postList.contains(null)){
-        throw new NullPointerException();
-      }
-      List<Post> userPostList = new LinkedList<Post>();
-      for(Post post: postList){
-        if( post.getAuthor().equals(username) ){
-          userPostList.add(post);
-        }
-      }
-      return userPostList;
+  private boolean matchesFrozen(int id){
+    FrozenPost frozen = persistentPostIdMap.get(id);
+    return frozen != null && frozen.getId() == id && frozen.getAuthor().equals(posts.author(id)) &&
+           frozen.getEpochMillis() == posts.millis(id) && frozen.getNanos() == posts.nanos(id) &&
+           frozen.getLikes() == posts.likeSet(id) &&
+           CharSequence.compare(frozen.getTextView(), CharBuffer.wrap(posts.text(id))) == 0;
   }
 
   /*
-    Restituisce	la lista dei post presenti nella rete
-    sociale	che includono	almeno una delle parole presenti nella lista delle
-    parole argomento del metodo.
-    È ricercata la parola esatta (ossia non viene considerata la parola sotto
-    forma di sottostringa di un'altra parola) e la ricerca non è case sensitive.
+    Verifica le clausole dell'invariante di un utente e di un post scelti a caso
+    (si veda InvariantSampler): ripetuta nel tempo, copre l'intero social senza
+    mai pagare il costo di checkRep in una sola volta.
 
-    REQUIRES: words != null && words.contains(null) == false
-    THROWS: NullPointerException se words == null || words.contains(null)
-    EFFECTS: Ritorna una lista di post postList tale che
-             postList != null &&
-             postList.contain(null) == false &&
-             forall i. postList.contains(i) => exist w. words.contains(w) t.c. i.doesContainWord(w)
+    REQUIRES: random != null
+    THROWS: NullPointerException se random == null
+    EFFECTS: restituisce vero se le clausole valgono (o il social è vuoto); altrimenti
+             segnala le violazioni a listener (se non è null) e restituisce falso
   */
-  public List<Post> containing(List<String>	words) throws NullPointerException{
-    if( words == null || words.contains(null)){
+  boolean checkSample(Random random, InvariantListener listener) throws NullPointerException{
+    if( random == null ){
       throw new NullPointerException();
     }
-    List<Post> postList = new LinkedList<Post>();
-    for(String username: userPostMap.keySet()){ // itero per ogni utente
-      Set<Post> userPostSet = userPostMap.get(username);
-      for(Post post: userPostSet){ // itero per ogni post dell'utente
-        for(String word: words){ // controllo tutte le parole
-          if( post.doesContainWord(word) == true ){ // controllo se il post contiene la parola
-            postList.add(post); // allora aggiungo il post alla lista
-          }
-        }
+    boolean valid = true;
+    int bound = userIds.idBound();
+    if( userIds.size() > 0 ){ // parto da un id casuale e proseguo fino al primo assegnato
+      int userId = random.nextInt(bound);
+      while( userIds.nameOf(userId) == null ){
+        userId = userId + 1 == bound ? 0 : userId + 1;
       }
+      valid = checkUser(userIds.nameOf(userId), listener);
     }
-    return postList;
+    int id = posts.sample(random);
+    if( id >= 0 ){
+      valid = checkPost(id, listener) && valid;
+    }
+    return valid;
   }
 
   /*
-    Aggiunge un utente al social; l'inserimento comporta:
-    -Inserimento nella mappa dei post.
-    -Inserimento nella mappa dei followers
-    -Inserimento nella mappa userFollowsMap
-    L'inserimento avviene solo se la stringa username non è null e se l'utente
-    non è già presente nel sistema.
+    EFFECTS: segnala la violazione a listener, se non è null, e restituisce falso
+  */
+  private static boolean violated(InvariantListener listener, String entity, String invariant){
+    if( listener != null ){
+      listener.invariantViolated(entity, invariant);
+    }
+    return false;
+  }
 
-    REQUIRES: newUser != null && newUser not in dom(userPosts)
-    THROWS: NullPointerException se newUser == null
-            UserAlreadyExistException se newUser in dom(userPosts)
-    MODIFIES: this
-    EFFECTS:  dom(userPosts_post) = dom(userPosts_pre) U {newUser} &&
-              userPosts_post(newUser) = {} &&
-              dom(userFollowers_post) = dom(userFollowers_pre) U {newUser} &&
-              userFollowers_post(newUser) = {} &&
-              dom(userFollows_post) = dom(userFollows_pre) U {newUser} &&
-              userFollows_post(newUser) = {}
+  /*
+    Registrano le clausole cambiate dalla modifica in corso, se la verifica
+    incrementale è attiva: touchUser un utente aggiunto o rimosso, touchLinks un
+    utente i cui archi o post sono cambiati, touchPost un post aggiunto, rimosso
+    o modificato, touchLike un like aggiunto o rimosso; touch(post) registra il
+    post aggiunto ed i contatori del suo autore e degli utenti che gli hanno
+    messo like (i likes del post sono verificati da checkPost).
   */
-  public void addUser(String newUser) throws NullPointerException, UserAlreadyExistException{
-      if( newUser == null ){ // se l'username utente è null
-        throw new NullPointerException();
-      }
-      if( this.userPostMap.containsKey(newUser) == true ){
-        throw new UserAlreadyExistException(USER_ALREADY_EXIST_EXCEPTION); // l'utente già esiste
-      }
-      else{ // lo aggiungo alle strutture
-        this.userPostMap.put(newUser, new TreeSet<Post>());
-        this.userFollowersMap.put(newUser, new HashSet<String>());
-        this.userFollowsMap.put(newUser, new HashSet<String>());
+  private void touchUser(String username){
+    if( invariantListener != null ){
+      touchedUsers.add(username);
+    }
+  }
+
+  private void touchLinks(int userId){
+    if( invariantListener != null ){
+      touchedLinks.add(userId);
+    }
+  }
+
+  private void touchPost(int id){
+    if( invariantListener != null ){
+      touchedPosts.add(id);
+    }
+  }
+
+  private void touchLike(int id, int likerId){
+    if( invariantListener != null ){
+      if( touchedLikeCount == touchedLikes.length ){
+        touchedLikes = Arrays.copyOf(touchedLikes, touchedLikes.length * 2);
       }
+      touchedLikes[touchedLikeCount++] = (long) id << 32 | likerId;
+    }
+  }
+
+  private void touch(Post post){
+    if( invariantListener != null ){
+      touchedPosts.add(post.getId());
+      touchedLinks.add(userIds.idOf(post.getAuthor()));
+      post.forEachLike(username -> touchedLinks.add(userIds.idOf(username)));
+    }
   }
 
   /*
-    Rimuove un utente dal social; l'eliminazione comporta:
-    -Aggiornamento della mappa dei post, con rimozione della chiave dell'utente eliminato
-     e rimozione dai post di tutti i likes da lui messi
-    -Rimozione della chiave dell'utente dalla mappa dei followers
-    -Rimozione di tutte le occorrenze dell'username dell'utente eliminato dalla mappa userFollowsMap
-    La rimozione avviene solo se la stringa username non è null e se l'utente
-    è presente nel sistema.
+    Verifica gli utenti ed i post registrati dalla modifica appena conclusa
+    (anche se fallita, poiché deve lasciare this invariato) e li dimentica.
 
-    REQUIRES: username != null && username in dom(userPosts)
-    THROWS: NullPointerException se username == null
-            UserNotExistException se username not in dom(userPosts)
     MODIFIES: this
-    EFFECTS: dom(userPosts_post) = dom(userPosts_pre) \ {newUser} &&
-             dom(userFollowers_post) = dom(userFollowers_pre) \ {newUser} &&
-             dom(userFollows_post) = dom(userFollows_pre) \ {newUser} &&
-             forall i. i in dom(userPosts_post) =>
-              (forall j. j in userPosts_post(i) => j.getUsersLike().contains(username) == false) &&
-             forall i. i in dom(userFollows) => username not in userFollows(i) &&
-             forall i. i in dom(userFollowers) => username not in userFollowers(i)
   */
-  public void removeUser(String username) throws NullPointerException, UserNotExistException{
-    if( username == null ){
-      throw new NullPointerException();
+  private void verifyTouched(){
+    if( invariantListener == null ){
+      return;
     }
-    if( userPostMap.containsKey(username) == true ){
-      // rimozione delle occorrenze dell'username dalla mappa userFollowsMap
-      userFollowsMap.remove(username);
-      for(Set<String> set: userFollowsMap.values()){
-        set.remove(username);
-      }
-      // rimozione dei post dell'utente e dei likes cha ha messo ai post
-      userPostMap.remove(username); // rimozione dei post dell'utente
-      for(Set<Post> postsSet: userPostMap.values()){
-        for(Post post: postsSet){
-          post.removeLike(username); // rimuovo un suo eventuale like dal post
-        }
-      }
-      // rimozione dell'utente dalle liste di followers
-      userFollowersMap.remove(username); // rimozione della lista followers dell'utente
-      for(Set<String> set: userFollowersMap.values()){
-        set.remove(username);
-      }
+    for(String username: touchedUsers){
+      checkUser(username, invariantListener);
     }
-    else{
-      throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+    touchedLinks.forEach(userId -> checkLinks(userId, invariantListener));
+    touchedPosts.forEach(id -> checkPost(id, invariantListener));
+    for(int i = 0; i < touchedLikeCount; i++){
+      checkLike((int) (touchedLikes[i] >>> 32), (int) touchedLikes[i], invariantListener);
     }
+    touchedUsers.clear();
+    touchedLinks.clear();
+    touchedPosts.clear();
+    touchedLikeCount = 0;
   }
 
   /*
-    Aggiunge un post alla rete ed aggiorna:
-    - la mappa degli utenti che un utente segue.
-    - la mappa dei followers dell'autore
-    - il set dei post pubblicati dall'autore, aggiungendo il post
+    Metodo costruttore che inizializza un social vuoto
+
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this
+  */
+  public SocialNetwork(){
+    this.userIds = new UserDictionary();
+    this.userPostMap = new HashMap<>();
+    this.followGraph = new FollowGraph();
+    this.posts = new PostStore(this.userIds);
+    this.timeIndex = new TimeIndex();
+    this.wordIndex = new InvertedIndex();
+    this.ranking = new InfluenceRanking();
+    this.userLikesMap = new HashMap<>();
+    this.version = 0;
+    this.persistentFollowsMap = PersistentHashMap.empty();
+    this.persistentPostMap = PersistentHashMap.empty();
+    this.persistentFollowersMap = PersistentHashMap.empty();
+    this.persistentPostIdMap = PersistentHashMap.empty();
+    this.frozenCompactions = 0;
+    this.invariantListener = null;
+    this.touchedUsers = new HashSet<String>();
+    this.touchedLinks = new IntSet();
+    this.touchedPosts = new IntSet();
+    this.touchedLikes = new long[16];
+    this.touchedLikeCount = 0;
+  }
+
+  /*
+    Restituisce la rete sociale derivata dalla lista di post passati come parametro
+
+    REQUIRES: ps != null && ps.contains(null) == false
+    THROWS: NullPointerException se ps == null || ps.contains(null)
+    EFFECTS: Ritorna una mappa newUserFollowsMap tale che:
+            newUserFollowsMap.containsKey(null) == false &&
+            newUserFollowsMap.containsValue(null) )) false &&
+            forall i. newUserFollowsMap.values().contains(i) => i.contains(null) == false &&
+            forall i. newUserFollowsMap.containsKey(i) => forall j. newUserFollowsMap.get(i).contains(j) exist k in ps t.c. (k.getAuthor().equals(j) && k.getUsersLike.contains(i))
+  */
+  public static Map<String, Set<String>> guessFollowers(List<Post> ps) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GUESS_FOLLOWERS);
+    try{
+      if( ps == null || ps.contains(null)){
+        throw new NullPointerException();
+      }
+      Map<String, Set<String>> newUserFollowsMap = new HashMap<String, Set<String>>();
+      for(Post post: ps){ // itero i post della lista
+        addGuessedFollows(newUserFollowsMap, post);
+      }
+      return newUserFollowsMap;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Versione parallela di guessFollowers(List): la lista viene suddivisa in
+    blocchi elaborati dai thread del ForkJoinPool comune, ognuno dei quali
+    costruisce una mappa parziale; le mappe parziali vengono poi fuse.
+    Le liste che non supportano l'accesso casuale vengono prima copiate in
+    un array, così da poter essere suddivise in blocchi bilanciati.
+
+    REQUIRES: ps != null && ps.contains(null) == false
+    THROWS: NullPointerException se ps == null || ps.contains(null)
+    EFFECTS: Ritorna una mappa uguale a quella restituita da guessFollowers(ps)
+  */
+  public static Map<String, Set<String>> guessFollowersParallel(List<Post> ps) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GUESS_FOLLOWERS_PARALLEL);
+    try{
+      if( ps == null ){
+        throw new NullPointerException();
+      }
+      List<Post> source = ps instanceof RandomAccess ? ps : new ArrayList<Post>(ps);
+      return collectGuessedFollows(StreamSupport.stream(source.spliterator(), true));
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Versione parallela di guessFollowers che legge i post da uno Spliterator,
+    suddiviso tramite trySplit tra i thread del ForkJoinPool comune.
+
+    REQUIRES: posts != null && posts non fornisce elementi null
+    THROWS: NullPointerException se posts == null || posts fornisce un elemento null
+    EFFECTS: Ritorna una mappa uguale a quella restituita da guessFollowers applicato
+             alla lista dei post forniti da posts
+  */
+  public static Map<String, Set<String>> guessFollowersParallel(Spliterator<Post> posts) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GUESS_FOLLOWERS_PARALLEL);
+    try{
+      if( posts == null ){
+        throw new NullPointerException();
+      }
+      return collectGuessedFollows(StreamSupport.stream(posts, true));
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Versione parallela di guessFollowers che consuma uno Stream di post;
+    lo stream viene reso parallelo e ridotto con mappe parziali per blocco.
+
+    REQUIRES: posts != null && posts non contiene null
+    THROWS: NullPointerException se posts == null || posts contiene null
+    MODIFIES: posts (lo stream viene consumato)
+    EFFECTS: Ritorna una mappa uguale a quella restituita da guessFollowers applicato
+             alla lista dei post di posts
+  */
+  public static Map<String, Set<String>> guessFollowersParallel(Stream<Post> posts) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GUESS_FOLLOWERS_PARALLEL);
+    try{
+      if( posts == null ){
+        throw new NullPointerException();
+      }
+      return collectGuessedFollows(posts);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    REQUIRES: posts != null
+    THROWS: NullPointerException se posts contiene null
+    MODIFIES: posts (lo stream viene consumato)
+    EFFECTS: riduce in parallelo posts a una mappa dei follow dedotti, con mappe parziali per blocco
+  */
+  private static Map<String, Set<String>> collectGuessedFollows(Stream<Post> posts) throws NullPointerException{
+    return posts.parallel().collect(HashMap::new, SocialNetwork::addGuessedFollows, SocialNetwork::mergeGuessedFollows);
+  }
+
+  /*
+    REQUIRES: followsMap != null
+    THROWS: NullPointerException se post == null
+    MODIFIES: followsMap
+    EFFECTS: aggiunge a followsMap l'autore del post (se assente) e, per ogni utente
+             che ha messo like al post, l'arco utente -> autore
+  */
+  private static void addGuessedFollows(Map<String, Set<String>> followsMap, Post post) throws NullPointerException{
+    if( post == null ){
+      throw new NullPointerException();
+    }
+    String author = post.getAuthor();
+    post.forEachLike(username -> // ogni utente che ha messo like inizia a seguire l'autore
+      followsMap.computeIfAbsent(username, key -> new HashSet<String>()).add(author));
+    followsMap.computeIfAbsent(author, key -> new HashSet<String>()); // se non è presente, aggiungo anche l'autore del post
+  }
+
+  /*
+    MODIFIES: target
+    EFFECTS: fonde in target gli archi di source; a parità di chiave il set più
+             piccolo viene aggiunto a quello più grande
+  */
+  private static void mergeGuessedFollows(Map<String, Set<String>> target, Map<String, Set<String>> source){
+    for(Map.Entry<String, Set<String>> entry: source.entrySet()){
+      target.merge(entry.getKey(), entry.getValue(), (first, second) -> {
+        if( first.size() < second.size() ){
+          second.addAll(first);
+          return second;
+        }
+        first.addAll(second);
+        return first;
+      });
+    }
+  }
+
+  /*
+    Dato un social, restituisce la lista di influencers, ossia di utenti che hanno più
+    followers che persone che seguono.
+
+    REQUIRES: followers != null &&
+              followers.containsKey(null) == false &&
+              followers.containsValue(null) == false &&
+              forall key. followers.containsKey(key) => followers.get(key).contains(null) == false
+    THROWS: NullPointerException se followers == null || followers.containsKey(null) ||
+            followers.containsValue(null) || exist i. followers.containsKey(i) t.c. followers.get(i).contains(null)
+    EFFECTS: Restituisce una lista di utenti menzionati influencersList tale che
+             forall i. influencersList.contains(i) =>
+             #{ k | k.equals(i) && forall j. followers.values().contains(j) => followers.get(j).contains(k) } >= followers.get(i).size()
+  */
+  public static List<String> influencers(Map<String, Set<String>> followers) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.INFLUENCERS);
+    try{
+      if( followers == null || followers.containsKey(null) || followers.containsValue(null) ){
+        throw new NullPointerException();
+      }
+      for(String key: followers.keySet()){
+        if( followers.get(key).contains(null) ){
+          throw new NullPointerException();
+        }
+      }
+      // conto in un'unica passata quante volte ogni utente compare tra i seguiti
+      Map<String, Integer> followersCount = new HashMap<>();
+      for(Set<String> follows: followers.values()){
+        for(String followed: follows){
+          followersCount.merge(followed, 1, Integer::sum);
+        }
+      }
+      List<String> influencersList = new LinkedList<>(); // lista in cui salverò gli influencers
+      for(Map.Entry<String, Set<String>> entry: followers.entrySet()){ // itero le chiavi della mappa di utenti
+        int followersOfUser = followersCount.getOrDefault(entry.getKey(), 0);
+        if( followersOfUser > entry.getValue().size() ){
+          influencersList.add(entry.getKey());
+        }
+      }
+      return influencersList;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce la lista di influencers del social, ossia degli utenti che hanno
+    più followers che persone che seguono. Il risultato è ricavato dai contatori
+    mantenuti ad ogni modifica del social, senza scandire le mappe.
+
+    EFFECTS: Restituisce una lista influencersList tale che
+             influencersList != null && influencersList.contains(null) == false &&
+             forall i. influencersList.contains(i) <=> |userFollowers(i)| > |userFollows(i)|
+             ordinata per |userFollowers(i)| - |userFollows(i)| decrescente
+  */
+  public List<String> influencers(){
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.INFLUENCERS);
+    try{
+      return ranking.influencers();
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce i k utenti del social con il margine più alto tra numero di followers
+    e numero di utenti seguiti.
+
+    REQUIRES: k >= 0
+    THROWS: IllegalArgumentException se k < 0
+    EFFECTS: Restituisce una lista topList di min(k, |dom(userPosts)|) utenti tale che
+             forall i,j. topList.contains(i) && j in dom(userPosts) && topList.contains(j) == false =>
+             |userFollowers(i)| - |userFollows(i)| >= |userFollowers(j)| - |userFollows(j)|,
+             ordinata per margine decrescente
+  */
+  public List<String> topInfluencers(int k) throws IllegalArgumentException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.TOP_INFLUENCERS);
+    try{
+      return ranking.top(k);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Usato da ShardedSocialNetwork per combinare le classifiche di più social:
+    i contatori di ogni utente si sommano tra i social che ne contengono gli archi.
+
+    EFFECTS: restituisce una nuova mappa username -> |userFollowers(username)| - |userFollows(username)|
+             degli utenti con margine diverso da 0
+  */
+  Map<String, Integer> influenceMargins(){
+    return ranking.margins();
+  }
+
+  /*
+    Restituisce la lista di utenti menzionati, ossia gli utenti
+    che seguono qualcuno oppure hanno scritto almeno un post, contenuti
+    nel social
+
+    EFFECTS: Ritorna un set mentionedUsersSet di utenti menzionati, tale che
+    mentionedUsersSet != null &&
+    mentionedUsersSet.contains(null) == false &&
+    forall i. mentionedUsersSet.contains(i) =>
+    (i in dom(userPosts) && |userPosts(i)| > 0 )  || ( i in dom(userFollowsMap) && |userFollows(i)| > 0 )
+  */
+  public Set<String> getMentionedUsers(){
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GET_MENTIONED_USERS);
+    try{
+      Set<String> mentionedUsersSet = new HashSet<String>();
+      for(Map.Entry<String, Timeline> entry: userPostMap.entrySet()){
+        // aggiungo gli utenti che hanno pubblicato almeno un post oppure che seguono qualcuno
+        if( entry.getValue().isEmpty() == false || followGraph.outDegree(userIds.idOf(entry.getKey())) > 0 ){
+          mentionedUsersSet.add(entry.getKey());
+        }
+      }
+      return mentionedUsersSet;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce la lista di utenti menzionati, ossia di utenti che
+    seguono qualcuno oppure hanno scritto almeno un post, a partire da una
+    lista di post.
+
+    REQUIRES: postList != null && postList.contains(null) == false
+    THROWS: NullPointerException se postList == null || postList.contains(null) == true
+    EFFECTS: Ritorna un set mentionedUsersSet di utenti menzionati, tale che
+    mentionedUsersSet != null &&
+    mentionedUsersSet.contains(null) == false &&
+    forall i. mentionedUsersSet.contains(i) ==>
+    exist j. postList.contains(j) => (j.getAuthor().equals(i) || j.getUsersLike.contains(i))
+  */
+  public static Set<String> getMentionedUsers(List<Post> postList) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GET_MENTIONED_USERS);
+    try{
+      if( postList == null || postList.contains(null) ){
+        throw new NullPointerException();
+      }
+      HashSet<String> tmp = new HashSet<String>();
+      for(Post post: postList){
+        tmp.add(post.getAuthor()); // aggiungo l'autore del post
+        tmp.addAll(post.getUsersLikeView()); // aggiungo tutti gli utenti che hanno messo like
+      }
+      return tmp;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce la lista di post scritti dall'utente il cui username
+    è passato come parametro, ordinata per timestamp. I post vengono
+    ricostruiti dall'archivio; le modifiche del loro testo (editText) sono
+    riportate nel social.
+
+    REQUIRES: username in dom(userPosts)
+    THROWS: UserNotExistException se userPostMap.containsKey(username)==false
+    EFFECTS: Ritorna una lista di post listaPost = [post_1, ..., post_n] tale che
+             listaPost != null &&
+             listaPost.contains(null) == false &&
+             forall i. listaPost.contains(i) => post in userPosts(username)
+  */
+  public List<Post>	writtenBy(String username) throws UserNotExistException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.WRITTEN_BY);
+    try{
+      if( userPostMap.containsKey(username) ){
+        List<Post> postList = new LinkedList<Post>();
+        userPostMap.get(username).forEach(id -> postList.add(posts.materialize(id, postListener))); // già in ordine di timestamp
+        return postList;
+      }
+      throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Filtra la lista di post passata come parametro, restituendo una lista di
+    post scritti dall'utente identificato da username.
+
+    REQUIRES: postList != null && postList.contains(null) == false
+    THROWS: NullPointerException se postList == null || postList.contains(null)
+    EFFECTS: Ritorna una lista di post userPostList tale che
+             userPostList != null &
+             userPostList.contains(null) == false &&
+             forall i. userPostList.contains(i) =>
+             ( postList.contains(post) && post.getAuthor().equals(username))
+  */
+  public static List<Post>	writtenBy(List<Post> postList, String	username) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.WRITTEN_BY);
+    try{
+        if( postList == null || postList.contains(null)){
+          throw new NullPointerException();
+        }
+        List<Post> userPostList = new LinkedList<Post>();
+        for(Post post: postList){
+          if( post.getAuthor().equals(username) ){
+            userPostList.add(post);
+          }
+        }
+        return userPostList;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce	la lista dei post presenti nella rete
+    sociale	che includono	almeno una delle parole presenti nella lista delle
+    parole argomento del metodo.
+    È ricercata la parola esatta (ossia non viene considerata la parola sotto
+    forma di sottostringa di un'altra parola) e la ricerca non è case sensitive.
+    Le parole singole vengono cercate nell'indice invertito, unendo le relative
+    liste di id; solo le eventuali parole composte (ad esempio contenenti spazi)
+    richiedono la scansione dei testi, che avviene sequenzialmente sull'archivio. Ogni post compare una sola volta nel
+    risultato, anche se contiene più parole, e i post sono ordinati per timestamp.
+
+    REQUIRES: words != null && words.contains(null) == false
+    THROWS: NullPointerException se words == null || words.contains(null)
+    EFFECTS: Ritorna una lista di post postList tale che
+             postList != null &&
+             postList.contain(null) == false &&
+             forall i. postList.contains(i) => exist w. words.contains(w) t.c. i.doesContainWord(w) &&
+             forall i,j. i,j in [0, postList.size()) && i!=j => postList.get(i) != postList.get(j)
+  */
+  public List<Post> containing(List<String>	words) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.CONTAINING);
+    try{
+      if( words == null || words.contains(null)){
+        throw new NullPointerException();
+      }
+      IntSet matchingIds = new IntSet(); // id dei post che contengono almeno una parola
+      List<String> unindexedWords = new LinkedList<String>(); // parole non ricercabili nell'indice
+      for(String word: words){
+        if( InvertedIndex.isTerm(word) ){
+          IntSet ids = wordIndex.lookup(word);
+          if( ids != null ){
+            matchingIds.addAll(ids);
+          }
+        }
+        else{
+          unindexedWords.add(word);
+        }
+      }
+      if( unindexedWords.isEmpty() == false ){
+        posts.addMatching(unindexedWords.toArray(new String[0]), matchingIds);
+      }
+      return materialize(matchingIds);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce la lista dei post del social pubblicati tra from e to (estremi
+    inclusi) che includono almeno una delle parole di words, con la stessa
+    semantica di containing(words). I post dell'intervallo vengono letti
+    dall'indice temporale e filtrati, per cui il costo è O(log n + k * |words|),
+    dove k è il numero di post dell'intervallo.
+
+    REQUIRES: words != null && words.contains(null) == false && from != null && to != null
+    THROWS: NullPointerException se words == null || words.contains(null) || from == null || to == null
+    EFFECTS: Ritorna una lista di post postList, ordinata per timestamp, tale che
+             forall i. postList.contains(i) <=> ( i in postsBetween(from, to) &&
+             exist w. words.contains(w) t.c. i.doesContainWord(w) )
+  */
+  public List<Post> containing(List<String> words, Timestamp from, Timestamp to) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.CONTAINING);
+    try{
+      if( words == null || words.contains(null) || from == null || to == null ){
+        throw new NullPointerException();
+      }
+      List<IntSet> postings = new ArrayList<IntSet>(); // liste dell'indice delle parole singole
+      List<String> unindexedWords = new LinkedList<String>(); // parole non ricercabili nell'indice
+      for(String word: words){
+        if( InvertedIndex.isTerm(word) ){
+          IntSet ids = wordIndex.lookup(word);
+          if( ids != null ){
+            postings.add(ids);
+          }
+        }
+        else{
+          unindexedWords.add(word);
+        }
+      }
+      String unindexedArray[] = unindexedWords.toArray(new String[0]);
+      List<Post> postList = new ArrayList<Post>();
+      timeIndex.forEachBetween(from.getTime(), from.getNanos(), to.getTime(), to.getNanos(), id -> {
+        boolean found = false;
+        for(int i = 0; i < postings.size() && found == false; i++){
+          found = postings.get(i).contains(id);
+        }
+        if( found || (unindexedArray.length > 0 && WordMatcher.containsAnyWord(posts.text(id), unindexedArray)) ){
+          postList.add(posts.materialize(id, postListener));
+        }
+      });
+      return postList;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce la lista dei post del social pubblicati tra from e to, estremi
+    inclusi, letti in ordine dall'indice temporale in tempo O(log n + k), dove k
+    è il numero di post restituiti. Le modifiche del testo dei post restituiti
+    (editText) sono riportate nel social.
+
+    REQUIRES: from != null && to != null
+    THROWS: NullPointerException se from == null || to == null
+    EFFECTS: Ritorna una lista di post postList, ordinata per timestamp, tale che
+             forall i. postList.contains(i) <=> ( exist j. j in dom(userPosts) && i in userPosts(j) &&
+             from.compareTo(i.getTimestamp()) <= 0 && i.getTimestamp().compareTo(to) <= 0 );
+             se from è successivo a to la lista è vuota
+  */
+  public List<Post> postsBetween(Timestamp from, Timestamp to) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.POSTS_BETWEEN);
+    try{
+      if( from == null || to == null ){
+        throw new NullPointerException();
+      }
+      List<Post> postList = new ArrayList<Post>();
+      timeIndex.forEachBetween(from.getTime(), from.getNanos(), to.getTime(), to.getNanos(),
+        id -> postList.add(posts.materialize(id, postListener)));
+      return postList;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Aggiunge un utente al social; l'inserimento comporta:
+    -Inserimento nella mappa dei post.
+    -Inserimento nella mappa dei followers
+    -Inserimento nella mappa userFollowsMap
+    L'inserimento avviene solo se la stringa username non è null e se l'utente
+    non è già presente nel sistema.
+
+    REQUIRES: newUser != null && newUser not in dom(userPosts)
+    THROWS: NullPointerException se newUser == null
+            UserAlreadyExistException se newUser in dom(userPosts)
+    MODIFIES: this
+    EFFECTS:  dom(userPosts_post) = dom(userPosts_pre) U {newUser} &&
+              userPosts_post(newUser) = {} &&
+              dom(userFollowers_post) = dom(userFollowers_pre) U {newUser} &&
+              userFollowers_post(newUser) = {} &&
+              dom(userFollows_post) = dom(userFollows_pre) U {newUser} &&
+              userFollows_post(newUser) = {}
+  */
+  public void addUser(String newUser) throws NullPointerException, UserAlreadyExistException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.ADD_USER);
+    try{
+        if( newUser == null ){ // se l'username utente è null
+          throw new NullPointerException();
+        }
+        if( this.userPostMap.containsKey(newUser) == true ){
+          throw new UserAlreadyExistException(USER_ALREADY_EXIST_EXCEPTION); // l'utente già esiste
+        }
+        else{ // lo aggiungo alle strutture
+          this.userPostMap.put(newUser, new Timeline());
+          this.followGraph.addNode(this.userIds.add(newUser));
+          this.ranking.addUser(newUser);
+          this.userLikesMap.put(newUser, new IntSet());
+          this.persistentFollowsMap = persistentFollowsMap.plus(newUser, PersistentIntSet.empty());
+          this.persistentPostMap = persistentPostMap.plus(newUser, PersistentIntSet.empty());
+          this.persistentFollowersMap = persistentFollowersMap.plus(newUser, PersistentIntSet.empty());
+          this.version += 1;
+          touchUser(newUser);
+        }
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+      verifyTouched();
+    }
+  }
+
+  /*
+    Rimuove un utente dal social; l'eliminazione comporta:
+    -Aggiornamento della mappa dei post, con rimozione della chiave dell'utente eliminato
+     e rimozione dai post di tutti i likes da lui messi
+    -Rimozione della chiave dell'utente dalla mappa dei followers
+    -Rimozione di tutte le occorrenze dell'username dell'utente eliminato dalla mappa userFollowsMap
+    La rimozione avviene solo se la stringa username non è null e se l'utente
+    è presente nel sistema. Grazie alla mappa inversa dei likes vengono visitati
+    solo i post dell'utente, quelli cui ha messo like e gli utenti a lui collegati.
+
+    REQUIRES: username != null && username in dom(userPosts)
+    THROWS: NullPointerException se username == null
+            UserNotExistException se username not in dom(userPosts)
+    MODIFIES: this
+    EFFECTS: dom(userPosts_post) = dom(userPosts_pre) \ {newUser} &&
+             dom(userFollowers_post) = dom(userFollowers_pre) \ {newUser} &&
+             dom(userFollows_post) = dom(userFollows_pre) \ {newUser} &&
+             forall i. i in dom(userPosts_post) =>
+              (forall j. j in userPosts_post(i) => j.getUsersLike().contains(username) == false) &&
+             forall i. i in dom(userFollows) => username not in userFollows(i) &&
+             forall i. i in dom(userFollowers) => username not in userFollowers(i)
+  */
+  public void removeUser(String username) throws NullPointerException, UserNotExistException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.REMOVE_USER);
+    try{
+      if( username == null ){
+        throw new NullPointerException();
+      }
+      if( userPostMap.containsKey(username) == true ){
+        int userId = userIds.idOf(username);
+        touchUser(username);
+        if( invariantListener != null ){ // i post dell'utente vengono rimossi, i likes che ha messo pure
+          userPostMap.get(username).forEach(this::touchPost);
+          userLikesMap.get(username).forEach(id -> touchLike(id, userId));
+        }
+        // rimozione degli archi verso gli utenti che segue
+        for(int followedId: followGraph.followed(userId)){
+          String followed = userIds.nameOf(followedId);
+          touchLinks(followedId);
+          followGraph.removeEdge(userId, followedId);
+          ranking.removeFollow(username, followed);
+          persistentFollowersMap = persistentFollowersMap.plus(followed, followGraph.followerSet(followedId));
+        }
+        // rimozione degli archi provenienti dai suoi followers
+        for(int followerId: followGraph.followersOf(userId)){
+          String follower = userIds.nameOf(followerId);
+          touchLinks(followerId);
+          followGraph.removeEdge(followerId, userId);
+          ranking.removeFollow(follower, username);
+          persistentFollowsMap = persistentFollowsMap.plus(follower, followGraph.followedSet(followerId));
+        }
+        followGraph.removeNode(userId);
+        ranking.removeUser(username);
+        persistentFollowsMap = persistentFollowsMap.minus(username);
+        persistentFollowersMap = persistentFollowersMap.minus(username);
+        // rimozione dei post dell'utente, delle relative voci negli indici e nei likes di chi li aveva apprezzati
+        Timeline removedPosts = userPostMap.remove(username);
+        for(int i = 0; i < removedPosts.size(); i++){
+          int id = removedPosts.id(i);
+          timeIndex.remove(id, removedPosts.millis(i), removedPosts.nanos(i));
+          wordIndex.remove(id, posts.text(id));
+          persistentPostIdMap = persistentPostIdMap.minus(id);
+          posts.forEachLike(id, likerId -> userLikesMap.get(userIds.nameOf(likerId)).remove(id));
+          posts.remove(id);
+        }
+        persistentPostMap = persistentPostMap.minus(username);
+        // rimozione dei likes che l'utente ha messo, visitando solo i post interessati
+        userLikesMap.remove(username).forEach(id -> {
+          posts.removeLike(id, userId);
+          freezeLikes(id);
+        });
+        refreezeIfCompacted();
+        userIds.remove(username); // l'id potrà essere riassegnato ad un nuovo utente
+        version += 1;
+      }
+      else{
+        throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+      }
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+      verifyTouched();
+    }
+  }
+
+  /*
+    Aggiunge un post alla rete ed aggiorna:
+    - la mappa degli utenti che un utente segue.
+    - la mappa dei followers dell'autore
+    - il set dei post pubblicati dall'autore, aggiungendo il post
+
+    REQUIRES: post != null && post.getId() >= 0  && forall i. post.getUsersLike().contains(i) => i in dom(userPosts) &&
+              post.getAuthor() in dom(userPosts) &&
+              forall j. j in dom(userPosts) => ( not exist p. p in userPosts(j) => post.equals(p) )
+    MODIFIES: this
+    THROWS: NullPointerException se post == null
+            UserNotExistException se exist i. post.getUsersLike().contains(i) => i not in dom(userPosts)
+                                     || post.getAuthor not in dom(userPosts)
+            PostAlreadyExistException se exist i. i in dom(userPosts) t.c. post in userPosts(i)
+            NegativeIdException se post.getId() < 0
+    EFFECTS: Sia auth = post.getAuthor()
+             userPosts(auth)_post = userPosts(auth)_pre U {post} &&
+             forall i. post.getUsersLike().contains(i) => userFollowers(auth)_post = userFollowers(auth)_pre U post.getUsersLike() &&
+             forall i. post.getUsersLike().contains(i) => userFollows(i)_post = userFollows(i)_pre U {auth}
+  */
+  public void addPost(Post post) throws NullPointerException, UserNotExistException, PostAlreadyExistException, NegativeIdException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.ADD_POST);
+    try{
+      if( post == null ){
+        throw new NullPointerException();
+      }
+      if( post.getId() < 0 ){
+        throw new NegativeIdException();
+      }
+      // controllo che tutti gli utenti che abbiano messo like al post stiano nel social
+      if( userPostMap.keySet().containsAll(post.getUsersLikeView()) == false ){
+        throw new UserNotExistException("A user in the Like list doesn't exist in the system");
+      }
+      // controllo che il post non esiste già nel sistema (controllando l'id)
+      if( posts.contains(post.getId()) == true ){
+        throw new PostAlreadyExistException("A post with this id already exist in the system");
+      }
+      // controllo che l'autore del post esista nel sistema
+      String authorUsername = post.getAuthor();
+      if( this.userPostMap.containsKey(authorUsername) == false){
+        throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION); // l'autore del post non esiste nel social
+      }
+
+      int idPost = post.getId(); // Se il post non esisteva già continuo e ne copio lo stato nell'archivio
+      storePost(post);
+      touch(post);
+      persistentPostMap = persistentPostMap.plus(authorUsername, persistentPostMap.get(authorUsername).plus(idPost));
+      freeze(idPost);
+      int authorId = userIds.idOf(authorUsername);
+      boolean newFollowers = false;
+      for(String userWhoLiked: post.getUsersLikeView()){ // ogni utente che ha messo like segue l'autore
+        int likerId = userIds.idOf(userWhoLiked);
+        if( followGraph.addEdge(likerId, authorId) ){ // nuovo arco: aggiorno i contatori e lo stato persistente
+          ranking.addFollow(userWhoLiked, authorUsername);
+          persistentFollowsMap = persistentFollowsMap.plus(userWhoLiked, followGraph.followedSet(likerId));
+          newFollowers = true;
+        }
+      }
+      if( newFollowers ){
+        persistentFollowersMap = persistentFollowersMap.plus(authorUsername, followGraph.followerSet(authorId));
+      }
+      version += 1;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+      verifyTouched();
+    }
+  }
 
-    REQUIRES: post != null && post.getId() >= 0  && forall i. post.getUsersLike().contains(i) => i in dom(userPosts) &&
-              post.getAuthor() in dom(userPosts) &&
-              forall j. j in dom(userPosts) => ( not exist p. p in userPosts(j) => post.equals(p) )
+  /*
+    Aggiunge al social tutti i post di newPosts, oppure nessuno. L'intero lotto
+    viene validato prima di qualsiasi modifica: id negativi, utenti sconosciuti
+    (autori e utenti che hanno messo like, raccolti in un unico insieme) e id
+    duplicati, sia all'interno del lotto sia rispetto ai post del social. I post
+    vengono poi inseriti in ordine di timestamp e raggruppati per autore, così
+    che i followers di ogni autore, i relativi contatori della classifica e lo
+    stato persistente vengano aggiornati una sola volta per autore.
+
+    REQUIRES: newPosts != null && newPosts.contains(null) == false &&
+              forall p. newPosts.contains(p) => p rispetta le precondizioni di addPost &&
+              gli id dei post di newPosts sono distinti
     MODIFIES: this
-    THROWS: NullPointerException se post == null
-            UserNotExistException se exist i. post.getUsersLike().contains(i) => i not in dom(userPosts)
-                                     || post.getAuthor not in dom(userPosts)
-            PostAlreadyExistException se exist i. i in dom(userPosts) t.c. post in userPosts(i)
-            NegativeIdException se post.getId() < 0
-    EFFECTS: Sia auth = post.getAuthor()
-             userPosts(auth)_post = userPosts(auth)_pre U {post} &&
-             forall i. post.getUsersLike().contains(i) => userFollowers(auth)_post = userFollowers(auth)_pre U post.getUsersLike() &&
-             forall i. post.getUsersLike().contains(i) => userFollows(i)_post = userFollows(i)_pre U {auth}
+    THROWS: NullPointerException se newPosts == null || newPosts.contains(null)
+            NegativeIdException se exist p. newPosts.contains(p) && p.getId() < 0
+            UserNotExistException se l'autore di un post, o un utente che gli ha messo like,
+                                  non è in dom(userPosts)
+            PostAlreadyExistException se due post di newPosts hanno lo stesso id o se
+                                      un post di newPosts ha l'id di un post del social
+    EFFECTS: se non viene lanciata alcuna eccezione, this_post è lo stato ottenuto
+             applicando addPost ad ogni post di newPosts; altrimenti this non viene modificato
   */
-  public void addPost(Post post) throws NullPointerException, UserNotExistException, PostAlreadyExistException, NegativeIdException{
-    if( post == null ){
+  public void addPosts(Collection<Post> newPosts) throws NullPointerException, UserNotExistException, PostAlreadyExistException, NegativeIdException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.ADD_POSTS);
+    try{
+      if( newPosts == null ){
+        throw new NullPointerException();
+      }
+      List<Post> batch = new ArrayList<Post>(newPosts);
+      Set<String> unknownUsers = new TreeSet<String>();
+      for(Post post: batch){
+        if( post == null ){
+          throw new NullPointerException();
+        }
+        if( post.getId() < 0 ){
+          throw new NegativeIdException();
+        }
+        if( userPostMap.containsKey(post.getAuthor()) == false ){
+          unknownUsers.add(post.getAuthor());
+        }
+        post.forEachLike(username -> {
+          if( userPostMap.containsKey(username) == false ){
+            unknownUsers.add(username);
+          }
+        });
+      }
+      if( unknownUsers.isEmpty() == false ){
+        throw new UserNotExistException("These users don't exist in the system: " + unknownUsers);
+      }
+      IntSet batchIds = new IntSet();
+      for(Post post: batch){
+        if( batchIds.add(post.getId()) == false || posts.contains(post.getId()) ){
+          throw new PostAlreadyExistException("A post with the id " + post.getId() + " already exist in the system or in the batch");
+        }
+      }
+      // da qui in poi nessuna operazione può fallire
+      batch.sort(TIMESTAMP_ORDER); // i post più recenti vengono aggiunti in coda alle sequenze ordinate
+      Map<String, IntBitmap> likersByAuthor = new HashMap<String, IntBitmap>(); // unione dei likes dei post di ogni autore
+      Map<String, PersistentIntSet> idsByAuthor = new HashMap<String, PersistentIntSet>(); // nuovi insiemi persistenti dei post
+      for(Post post: batch){
+        storePost(post);
+        touch(post);
+        String authorUsername = post.getAuthor();
+        PersistentIntSet frozenIds = idsByAuthor.getOrDefault(authorUsername, persistentPostMap.get(authorUsername));
+        idsByAuthor.put(authorUsername, frozenIds.plus(post.getId()));
+        freeze(post.getId());
+        posts.addLikersTo(post.getId(), likersByAuthor.computeIfAbsent(authorUsername, author -> new IntBitmap()));
+      }
+      for(Map.Entry<String, PersistentIntSet> entry: idsByAuthor.entrySet()){
+        persistentPostMap = persistentPostMap.plus(entry.getKey(), entry.getValue());
+      }
+      // archi di follow: lo stato persistente di ogni utente viene aggiornato una sola volta
+      IntBitmap newFollows = new IntBitmap(); // id degli utenti che hanno iniziato a seguire qualcuno
+      for(Map.Entry<String, IntBitmap> entry: likersByAuthor.entrySet()){
+        String authorUsername = entry.getKey();
+        int authorId = userIds.idOf(authorUsername);
+        int newFollowers = 0;
+        for(int likerId: entry.getValue().toArray()){
+          if( followGraph.addEdge(likerId, authorId) ){ // nuovo arco
+            ranking.addFollows(userIds.nameOf(likerId), 0, 1);
+            newFollows.add(likerId);
+            newFollowers += 1;
+          }
+        }
+        if( newFollowers > 0 ){
+          ranking.addFollows(authorUsername, newFollowers, 0);
+          persistentFollowersMap = persistentFollowersMap.plus(authorUsername, followGraph.followerSet(authorId));
+        }
+      }
+      for(int likerId: newFollows.toArray()){
+        persistentFollowsMap = persistentFollowsMap.plus(userIds.nameOf(likerId), followGraph.followedSet(likerId));
+      }
+      version += batch.size();
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+      verifyTouched();
+    }
+  }
+
+  /*
+    Inserisce post nell'archivio, negli indici e nella mappa inversa dei likes,
+    senza verificarne la validità. Lo stato persistente (freeze) e gli archi di
+    follow dovuti ai likes del post vanno aggiornati dal chiamante.
+
+    REQUIRES: post rispetta le precondizioni di addPost
+    MODIFIES: this
+    EFFECTS: memorizza una copia di post, la indicizza e registra i likes
+  */
+  private void storePost(Post post){
+    int idPost = post.getId();
+    this.posts.add(post);
+    this.userPostMap.get(post.getAuthor()).add(idPost, post.getEpochMillis(), post.getNanos());
+    this.timeIndex.add(idPost, post.getEpochMillis(), post.getNanos());
+    this.wordIndex.add(idPost, post.getTextView());
+    post.forEachLike(userWhoLiked -> userLikesMap.get(userWhoLiked).add(idPost));
+  }
+
+  /*
+    Aggiunge il like dell'utente username al post del social identificato da idPost;
+    di conseguenza username inizia a seguire l'autore del post.
+
+    REQUIRES: username != null && username in dom(userPosts) && idPost >= 0 && containsPostById(idPost) &&
+              username non è l'autore del post
+    MODIFIES: this
+    THROWS: NullPointerException se username == null
+            NegativeIdException se idPost < 0
+            UserNotExistException se username not in dom(userPosts)
+            PostDoesNotExist se non esiste nel social un post con id idPost
+            AuthorCantLikeHimselfException se username è l'autore del post
+    EFFECTS: Sia post il post con id idPost e auth = post.getAuthor();
+             se post.getUsersLike().contains(username) ritorna falso, altrimenti
+             post.getUsersLike()_post = post.getUsersLike()_pre U {username} &&
+             userFollows(username)_post = userFollows(username)_pre U {auth} &&
+             userFollowers(auth)_post = userFollowers(auth)_pre U {username} e ritorna vero
+  */
+  public boolean likePost(int idPost, String username) throws NullPointerException, NegativeIdException, UserNotExistException, PostDoesNotExist, AuthorCantLikeHimselfException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.LIKE_POST);
+    try{
+      if( username == null ){
+        throw new NullPointerException();
+      }
+      if( idPost < 0 ){
+        throw new NegativeIdException();
+      }
+      if( userPostMap.containsKey(username) == false ){
+        throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+      }
+      if( posts.contains(idPost) == false ){
+        throw new PostDoesNotExist("The post identified by the id doesn't exist");
+      }
+      String authorUsername = posts.author(idPost);
+      if( authorUsername.equals(username) ){
+        throw new AuthorCantLikeHimselfException("The author of the post can't like himself.");
+      }
+      int userId = userIds.idOf(username);
+      if( posts.addLike(idPost, userId) == false ){ // l'utente aveva già messo like
+        return false;
+      }
+      userLikesMap.get(username).add(idPost);
+      freezeLikes(idPost);
+      int authorId = posts.authorId(idPost);
+      touchLike(idPost, userId);
+      touchLinks(userId);
+      touchLinks(authorId);
+      if( followGraph.addEdge(userId, authorId) ){ // nuovo arco: aggiorno contatori e stato persistente
+        ranking.addFollow(username, authorUsername);
+        persistentFollowsMap = persistentFollowsMap.plus(username, followGraph.followedSet(userId));
+        persistentFollowersMap = persistentFollowersMap.plus(authorUsername, followGraph.followerSet(authorId));
+      }
+      version += 1;
+      return true;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+      verifyTouched();
+    }
+  }
+
+  /*
+    Restituisce la lista dei post del social cui l'utente username ha messo like,
+    ricavata dalla mappa inversa dei likes senza scandire i post del social.
+
+    REQUIRES: username in dom(userPosts)
+    THROWS: UserNotExistException se userPostMap.containsKey(username)==false
+    EFFECTS: Ritorna una lista di post likedList, ordinata per timestamp, tale che
+             forall i. likedList.contains(i) <=>
+             ( exist j. j in dom(userPosts) && i in userPosts(j) && i.getUsersLike().contains(username) )
+  */
+  public List<Post> likedBy(String username) throws UserNotExistException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.LIKED_BY);
+    try{
+      IntSet likedIds = username == null ? null : userLikesMap.get(username);
+      if( likedIds == null ){
+        throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+      }
+      return materialize(likedIds);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce gli utenti che hanno messo like ad entrambi i post, intersecando
+    gli insiemi di id memorizzati un blocco alla volta senza creare i post.
+
+    REQUIRES: idPost >= 0 && otherIdPost >= 0 && containsPostById(idPost) && containsPostById(otherIdPost)
+    THROWS: NegativeIdException se idPost < 0 || otherIdPost < 0
+            PostDoesNotExist se non esiste nel social un post con id idPost o otherIdPost
+    EFFECTS: Ritorna l'insieme immutabile degli username u t.c.
+             getPostById(idPost).getUsersLike().contains(u) && getPostById(otherIdPost).getUsersLike().contains(u)
+  */
+  public Set<String> coLikers(int idPost, int otherIdPost) throws NegativeIdException, PostDoesNotExist{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.CO_LIKERS);
+    try{
+      if( idPost < 0 || otherIdPost < 0 ){
+        throw new NegativeIdException();
+      }
+      if( posts.contains(idPost) == false || posts.contains(otherIdPost) == false ){
+        throw new PostDoesNotExist("The post identified by the id doesn't exist");
+      }
+      return new UsernameSet(posts.coLikers(idPost, otherIdPost), userIds.freeze());
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce una pagina del feed dell'utente username, ossia dei post scritti
+    dagli utenti che segue, dal più recente al meno recente. Le sequenze dei post
+    degli utenti seguiti, già ordinate per timestamp, vengono fuse con un heap
+    fermandosi dopo limit post, per cui il costo è O(|userFollows(username)| +
+    limit * log |userFollows(username)|) e non dipende dal numero totale di post.
+    Per ottenere la pagina successiva si passa FeedCursor.after applicato
+    all'ultimo post della pagina; con cursor == null si parte dal post più recente.
+    Le modifiche del testo dei post restituiti (editText) sono riportate nel social.
+
+    REQUIRES: username != null && username in dom(userPosts) && limit >= 0
+    THROWS: NullPointerException se username == null
+            UserNotExistException se username not in dom(userPosts)
+            IllegalArgumentException se limit < 0
+    EFFECTS: Ritorna la lista dei primi min(limit, n) post, in ordine TIMESTAMP_ORDER
+             decrescente, dell'insieme { p | exist u. u in userFollows(username) && p in userPosts(u) &&
+             (cursor == null || p precede la posizione di cursor in TIMESTAMP_ORDER) },
+             dove n è la cardinalità di tale insieme
+  */
+  public List<Post> feed(String username, FeedCursor cursor, int limit) throws NullPointerException, UserNotExistException, IllegalArgumentException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.FEED);
+    try{
+      return feedPage(username, cursor, limit);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Come feed, ma senza registrare la chiamata nelle metriche: usato dalle
+    sottoclassi che compongono una pagina con più letture del feed.
+  */
+  List<Post> feedPage(String username, FeedCursor cursor, int limit) throws NullPointerException, UserNotExistException, IllegalArgumentException{
+    if( username == null ){
       throw new NullPointerException();
     }
-    if( post.getId() < 0 ){
-      throw new NegativeIdException();
+    if( userPostMap.containsKey(username) == false ){
+      throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+    }
+    if( limit < 0 ){
+      throw new IllegalArgumentException("The limit must be non negative");
+    }
+    int followed[] = followGraph.followed(userIds.idOf(username));
+    Timeline sources[] = new Timeline[followed.length];
+    int ends[] = new int[followed.length];
+    for(int i = 0; i < followed.length; i++){
+      sources[i] = userPostMap.get(userIds.nameOf(followed[i]));
+      ends[i] = sources[i].size();
+      if( cursor != null ){ // considero solo i post che precedono il cursore
+        int index = sources[i].indexOf(cursor.getMillis(), cursor.getNanos(), cursor.getId());
+        ends[i] = index >= 0 ? index : -(index + 1);
+      }
+    }
+    List<Post> page = new ArrayList<Post>(Math.min(limit, 64));
+    Timeline.mergeNewest(sources, ends, limit, id -> page.add(posts.materialize(id, postListener)));
+    return page;
+  }
+
+  /*
+    Restituisce un'istantanea immutabile dello stato corrente del social.
+    L'istantanea condivide la struttura con lo stato persistente mantenuto
+    dal social, per cui viene creata in tempo costante, e le modifiche
+    successive del social non sono visibili in essa.
+
+    EFFECTS: Ritorna un'istantanea snap tale che
+             snap.getVersion() == numero di modifiche applicate a this &&
+             snap.getUserFollowsMap().equals(userFollows) &&
+             snap.getUserFollowersMap().equals(userFollowers) &&
+             forall i. i in dom(userPosts) => snap.writtenBy(i) contiene copie dei post in userPosts(i)
+  */
+  public SocialNetworkSnapshot snapshot(){
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.SNAPSHOT);
+    try{
+      return new SocialNetworkSnapshot(version, userIds.freeze(), persistentFollowsMap, persistentPostMap, persistentFollowersMap, persistentPostIdMap);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Salva lo stato del social in file, con il seguente formato binario (valori
+    big-endian, come in DataOutputStream; le stringhe sono scritte come numero di
+    caratteri seguito dai caratteri UTF-16):
+      SNAPSHOT_MAGIC, SNAPSHOT_VERSION
+      dizionario: numero di utenti n e i loro username; nel resto del file ogni
+        utente è indicato dalla sua posizione nel dizionario
+      liste di adiacenza: per ogni utente, numero di utenti seguiti e loro posizioni
+      tabella dei post, in ordine di timestamp: numero di post e, per ogni post, id,
+        autore, millisecondi, nanosecondi, testo, numero di likes e utenti che li hanno messi
+      SNAPSHOT_MAGIC, per riconoscere un file troncato
+    Il contenuto viene scritto in un file temporaneo che sostituisce file solo
+    quando è completo, per cui un errore durante il salvataggio lascia intatta
+    l'eventuale istantanea precedente.
+
+    REQUIRES: file != null
+    THROWS: NullPointerException se file == null
+            IOException se la scrittura del file fallisce
+    MODIFIES: file
+    EFFECTS: file contiene un'istantanea di this, da cui loadSnapshot ricostruisce un social
+             con gli stessi utenti, post, likes e relazioni di follow
+  */
+  public void saveSnapshot(Path file) throws NullPointerException, IOException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.SAVE_SNAPSHOT);
+    try{
+      if( file == null ){
+        throw new NullPointerException();
+      }
+      Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+      int positions[] = new int[userIds.idBound()]; // posizione nel dizionario di ogni id utente
+      int order[] = new int[posts.size()]; // id dei post in ordine di timestamp
+      int count[] = new int[1];
+      timeIndex.forEachBetween(Long.MIN_VALUE, 0, Long.MAX_VALUE, 999999999, id -> order[count[0]++] = id);
+      try{
+        FileOutputStream fileOut = new FileOutputStream(temporary.toFile());
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))){
+          out.writeInt(SNAPSHOT_MAGIC);
+          out.writeInt(SNAPSHOT_VERSION);
+          out.writeInt(userIds.size());
+          int position = 0;
+          for(String username: userPostMap.keySet()){
+            positions[userIds.idOf(username)] = position++;
+            writeChars(out, username.toCharArray());
+          }
+          for(String username: userPostMap.keySet()){
+            int followed[] = followGraph.followed(userIds.idOf(username));
+            out.writeInt(followed.length);
+            for(int followedId: followed){
+              out.writeInt(positions[followedId]);
+            }
+          }
+          out.writeInt(order.length);
+          for(int id: order){
+            out.writeInt(id);
+            out.writeInt(positions[posts.authorId(id)]);
+            out.writeLong(posts.millis(id));
+            out.writeInt(posts.nanos(id));
+            writeChars(out, posts.text(id));
+            int likers[] = posts.likers(id);
+            out.writeInt(likers.length);
+            for(int likerId: likers){
+              out.writeInt(positions[likerId]);
+            }
+          }
+          out.writeInt(SNAPSHOT_MAGIC);
+          out.flush();
+          fileOut.getFD().sync();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch(IOException e){
+        Files.deleteIfExists(temporary);
+        throw e;
+      }
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Ricostruisce un social dall'istantanea salvata in file con saveSnapshot.
+    Il file viene letto tramite FileChannel e MappedByteBuffer (si veda
+    MappedFileReader) e le strutture del social vengono costruite direttamente,
+    senza passare dalle verifiche di addPost: i post sono nel file in ordine di
+    timestamp, per cui vengono sempre aggiunti in coda alle sequenze ordinate,
+    e gli archi di follow vengono letti dalle liste di adiacenza. La coerenza
+    tra likes e relazioni di follow viene comunque verificata.
+
+    REQUIRES: file != null
+    THROWS: NullPointerException se file == null
+            IOException se il file non può essere letto, non è un'istantanea oppure è corrotto
+    EFFECTS: Ritorna un nuovo social con lo stato salvato in file
+  */
+  public static SocialNetwork loadSnapshot(Path file) throws NullPointerException, IOException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.LOAD_SNAPSHOT);
+    try{
+      if( file == null ){
+        throw new NullPointerException();
+      }
+      SocialNetwork social = new SocialNetwork();
+      try(MappedFileReader in = new MappedFileReader(file)){
+        if( in.size() < 8 || in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION ){
+          throw new IOException("The file " + file + " is not a snapshot of a social network");
+        }
+        social.readSnapshot(in);
+        if( in.readInt() != SNAPSHOT_MAGIC || in.position() != in.size() ){
+          throw new IOException("Unexpected data at the end of the snapshot");
+        }
+      }
+      catch(RuntimeException e){ // indici fuori intervallo o altri dati incoerenti
+        throw new IOException("The snapshot " + file + " is corrupted", e);
+      }
+      return social;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    REQUIRES: this è vuoto && in è posizionato dopo l'intestazione di un'istantanea
+    THROWS: IOException se l'istantanea è incompleta o incoerente
+    MODIFIES: this, in
+    EFFECTS: aggiunge a this utenti, relazioni di follow e post letti da in
+  */
+  private void readSnapshot(MappedFileReader in) throws IOException{
+    // dizionario degli utenti
+    int userCount = readCount(in);
+    String names[] = new String[userCount];
+    int ids[] = new int[userCount];
+    char buffer[] = new char[64];
+    for(int i = 0; i < userCount; i++){
+      int length = readCount(in);
+      if( length > buffer.length ){
+        buffer = new char[Math.max(length, buffer.length * 2)];
+      }
+      in.readChars(buffer, length);
+      names[i] = new String(buffer, 0, length);
+      try{
+        addUser(names[i]);
+      }
+      catch(UserAlreadyExistException e){
+        throw new IOException("The user " + names[i] + " appears twice in the snapshot");
+      }
+      ids[i] = userIds.idOf(names[i]);
+    }
+    // liste di adiacenza: stato persistente e contatori della classifica vengono
+    // aggiornati una sola volta per utente, dopo averle lette tutte
+    for(int i = 0; i < userCount; i++){
+      int degree = readCount(in);
+      for(int k = 0; k < degree; k++){
+        int j = readIndex(in, userCount);
+        if( followGraph.addEdge(ids[i], ids[j]) == false ){
+          throw new IOException("Duplicated follow relation in the snapshot");
+        }
+      }
+    }
+    for(int i = 0; i < userCount; i++){
+      persistentFollowsMap = persistentFollowsMap.plus(names[i], followGraph.followedSet(ids[i]));
+      persistentFollowersMap = persistentFollowersMap.plus(names[i], followGraph.followerSet(ids[i]));
+      ranking.addFollows(names[i], followGraph.inDegree(ids[i]), followGraph.outDegree(ids[i]));
+    }
+    // tabella dei post
+    int postCount = readCount(in);
+    int nextId = 0;
+    for(int k = 0; k < postCount; k++){
+      int id = in.readInt();
+      int author = readIndex(in, userCount);
+      long millis = in.readLong();
+      int nanos = in.readInt();
+      int length = readCount(in);
+      if( id < 0 || posts.contains(id) || nanos < 0 || nanos > 999999999 || length >= Post.MAX_CHAR_TEXT ){
+        throw new IOException("Invalid post in the snapshot");
+      }
+      char text[] = new char[length];
+      in.readChars(text, length);
+      Timestamp timestamp = new Timestamp(millis);
+      timestamp.setNanos(nanos);
+      int likeCount = readCount(in);
+      HashSet<String> usersLike = new HashSet<String>();
+      for(int l = 0; l < likeCount; l++){
+        int liker = readIndex(in, userCount);
+        if( usersLike.add(names[liker]) == false || followGraph.containsEdge(ids[liker], ids[author]) == false ){
+          throw new IOException("A like in the snapshot doesn't match the follow relations");
+        }
+      }
+      storePost(new Post(id, names[author], text, timestamp, usersLike));
+      persistentPostMap = persistentPostMap.plus(names[author], persistentPostMap.get(names[author]).plus(id));
+      freeze(id);
+      nextId = Math.max(nextId, id + 1);
+    }
+    Post.reserveIds(nextId);
+    // ogni relazione di follow deve essere giustificata da almeno un like
+    int marks[] = new int[userIds.idBound()];
+    Arrays.fill(marks, -1);
+    for(int i = 0; i < userCount; i++){
+      int mark = i;
+      userLikesMap.get(names[i]).forEach(id -> marks[posts.authorId(id)] = mark);
+      for(int followedId: followGraph.followed(ids[i])){
+        if( marks[followedId] != mark ){
+          throw new IOException("A follow relation in the snapshot doesn't match any like");
+        }
+      }
+    }
+  }
+
+  private static void writeChars(DataOutputStream out, char chars[]) throws IOException{
+    out.writeInt(chars.length);
+    for(char c: chars){
+      out.writeChar(c);
     }
-    // controllo che tutti gli utenti che abbiano messo like al post stiano nel social
-    if( containsUser(post.getUsersLike()) == false ){
-      throw new UserNotExistException("A user in the Like list doesn't exist in the system");
+  }
+
+  private static int readCount(MappedFileReader in) throws IOException{
+    int count = in.readInt();
+    if( count < 0 || count > in.size() - in.position() ){ // ogni elemento contato occupa almeno un byte
+      throw new IOException("Invalid length in the snapshot");
     }
-    // controllo che il post non esiste già nel sistema (controllando l'id)
-    if( containsPostById(post.getId()) == true ){
-      throw new PostAlreadyExistException("A post with this id already exist in the system");
+    return count;
+  }
+
+  private static int readIndex(MappedFileReader in, int bound) throws IOException{
+    int index = in.readInt();
+    if( index < 0 || index >= bound ){
+      throw new IOException("User index out of range in the snapshot");
     }
-    // controllo che l'autore del post esista nel sistema
-    String authorUsername = post.getAuthor();
-    if( this.userPostMap.containsKey(authorUsername) == false){
-      throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION); // l'autore del post non esiste nel social
+    return index;
+  }
+
+  /*
+    Invocato quando viene modificato il testo di un post restituito dal social;
+    la modifica viene ignorata se il post non fa più parte del social.
+
+    MODIFIES: this
+    EFFECTS: se il post è ancora memorizzato, ne sostituisce il testo nell'archivio,
+             lo reindicizza e ne aggiorna la copia nello stato persistente
+  */
+  private void textEdited(Post post, char oldText[]){
+    int id = post.getId();
+    if( posts.contains(id) == false || posts.author(id).equals(post.getAuthor()) == false ){
+      return;
     }
+    editText(id, post.getText());
+    touchPost(id);
+    verifyTouched();
+  }
+
+  /*
+    Sostituisce il testo di un post memorizzato; è il punto in cui confluiscono
+    le modifiche dei post restituiti dal social, per cui le sottoclassi possono
+    ridefinirlo per osservarle.
+
+    REQUIRES: posts.contains(idPost) && newText != null && newText rispetta i vincoli di Post
+    MODIFIES: this
+    EFFECTS: sostituisce il testo del post con id idPost con newText, lo reindicizza
+             e ne aggiorna la copia nello stato persistente
+  */
+  void editText(int idPost, char newText[]){
+    wordIndex.remove(idPost, posts.text(idPost)); // il testo memorizzato può differire da oldText se il post è stato modificato da un'altra copia
+    wordIndex.add(idPost, newText);
+    posts.setText(idPost, newText);
+    freeze(idPost);
+    refreezeIfCompacted();
+    version += 1;
+  }
+
+  /*
+    REQUIRES: ids != null && forall id. ids.contains(id) => posts.contains(id)
+    EFFECTS: restituisce una nuova lista dei post con gli id in ids, ordinata per
+             timestamp; ai post è associato l'osservatore del social
+  */
+  private List<Post> materialize(IntSet ids){
+    List<Post> postList = new ArrayList<Post>(ids.size());
+    ids.forEach(id -> postList.add(posts.materialize(id, postListener)));
+    postList.sort(TIMESTAMP_ORDER);
+    return postList;
+  }
+
+  /*
+    REQUIRES: posts.contains(id)
+    MODIFIES: this
+    EFFECTS: sostituisce, nello stato persistente, la copia del post con id id con
+             una nuova copia del suo stato corrente
+  */
+  private void freeze(int id){
+    persistentPostIdMap = persistentPostIdMap.plus(id, posts.freeze(id));
+  }
+
+  /*
+    Se l'archivio ha compattato l'arena dei testi, ricostruisce le copie dei
+    post nello stato persistente perché riferiscano la nuova arena, così che
+    quella precedente possa essere liberata (quando nessuna istantanea la
+    riferisce più); il costo è ammortizzato su quello della compattazione.
 
-    this.userPostMap.get(authorUsername).add(new Post(post)); // Se il post non esisteva già continuo e lo inserisco
-    HashSet<String> usersLikeSet = post.getUsersLike();
-    userFollowersMap.get(authorUsername).addAll(usersLikeSet); // aggiungo il followers all'utente
-    for(String userWhoLiked: usersLikeSet){ // inserisco nella mappa userFollowsMap
-      userFollowsMap.get(userWhoLiked).add(authorUsername);
+    MODIFIES: this
+  */
+  private void refreezeIfCompacted(){
+    if( frozenCompactions == posts.compactions() ){
+      return;
+    }
+    PersistentHashMap<Integer, FrozenPost> frozenPosts = PersistentHashMap.empty();
+    int ids[] = new int[posts.size()];
+    int count[] = {0};
+    posts.forEach(id -> ids[count[0]++] = id);
+    for(int id: ids){
+      frozenPosts = frozenPosts.plus(id, posts.freeze(id));
     }
+    persistentPostIdMap = frozenPosts;
+    frozenCompactions = posts.compactions();
+  }
+
+  /*
+    Aggiorna i likes della copia del post nello stato persistente, in tempo
+    O(log n): testo e timestamp vengono condivisi con la copia precedente.
+
+    REQUIRES: posts.contains(id) && persistentPostIdMap.containsKey(id)
+    MODIFIES: this
+    EFFECTS: sostituisce, nello stato persistente, i likes del post con id id con quelli correnti
+  */
+  private void freezeLikes(int id){
+    persistentPostIdMap = persistentPostIdMap.plus(id, persistentPostIdMap.get(id).withLikes(posts.likeSet(id)));
   }
 
   /*
@@ -504,10 +2155,20 @@ public class SocialNetwork{
              i in dom(userPosts), falso altrimenti
   */
   public boolean containsUser(Collection<String> usernameCollection) throws NullPointerException{
-    if( usernameCollection == null){
-      throw new NullPointerException();
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.CONTAINS_USER);
+    try{
+      if( usernameCollection == null){
+        throw new NullPointerException();
+      }
+      return userPostMap.keySet().containsAll(usernameCollection);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
     }
-    return userPostMap.keySet().containsAll(usernameCollection);
   }
 
   /*
@@ -519,10 +2180,20 @@ public class SocialNetwork{
     EFFECTS: Ritorna vero se username in dom(usersPost), falso altrimenti
   */
   public boolean containsUser(String username) throws NullPointerException{
-    if( username == null ){
-      throw new NullPointerException();
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.CONTAINS_USER);
+    try{
+      if( username == null ){
+        throw new NullPointerException();
+      }
+      return this.userPostMap.containsKey(username);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
     }
-    return this.userPostMap.containsKey(username);
   }
 
   /*
@@ -535,67 +2206,167 @@ public class SocialNetwork{
              falso altrimenti
   */
   public boolean containsPostById(int idPost) throws NegativeIdException{
-    if( idPost < 0){
-      throw new NegativeIdException();
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.CONTAINS_POST_BY_ID);
+    try{
+      if( idPost < 0){
+        throw new NegativeIdException();
+      }
+      return posts.contains(idPost);
     }
-    boolean flag = false;
-    Iterator usersIterator = userPostMap.keySet().iterator(); // iteratore degli utenti salvati in userPostMap
-    while(usersIterator.hasNext() && flag == false){
-      String key = (String) usersIterator.next();
-      Set<Post> postSet = userPostMap.get(key);
-      Iterator postsIterator = postSet.iterator();
-      while( postsIterator.hasNext() && flag == false ){ // itero i post in ognuno dei set
-        Post p = (Post) postsIterator.next();
-        if( p.getId() == idPost ){
-          flag = true;
-        }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce il post del social identificato dall'id passato come parametro
+
+    REQUIRES: idPost >= 0 && containsPostById(idPost)
+    THROWS: NegativeIdException se idPost < 0
+            PostDoesNotExist se non esiste nel social un post con id idPost
+    EFFECTS: Ritorna una deep copy del post j t.c. exist i. i in dom(userPosts) && j in userPosts(i) && j.getId() == idPost
+  */
+  public Post getPostById(int idPost) throws NegativeIdException, PostDoesNotExist{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GET_POST_BY_ID);
+    try{
+      if( idPost < 0 ){
+        throw new NegativeIdException();
+      }
+      if( posts.contains(idPost) == false ){
+        throw new PostDoesNotExist("The post identified by the id doesn't exist");
       }
+      return posts.materialize(idPost, null);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
     }
-    return flag;
+  }
+
+  /*
+    EFFECTS: restituisce l'autore del post idPost, null se il post non è nel social
+  */
+  String authorOf(int idPost){
+    return idPost >= 0 && posts.contains(idPost) ? posts.author(idPost) : null;
+  }
+
+  /*
+    EFFECTS: restituisce gli id dei post di username in ordine di timestamp, un array
+             vuoto se username non è nel social
+  */
+  int[] postIdsOf(String username){
+    Timeline timeline = userPostMap.get(username);
+    return timeline == null ? new int[0] : timeline.toArray();
+  }
+
+  /*
+    EFFECTS: restituisce gli id di tutti i post del social, in ordine qualsiasi
+  */
+  int[] postIds(){
+    int ids[] = new int[posts.size()];
+    int count[] = new int[1];
+    posts.forEach(id -> ids[count[0]++] = id);
+    return ids;
+  }
+
+  /*
+    Dimensioni del social, lette anche dal thread JMX (SocialNetworkMetrics.register)
+    senza sincronizzazione: il valore restituito può non riflettere le modifiche
+    più recenti fatte da altri thread.
+  */
+  int userCount(){
+    return userPostMap.size();
+  }
+
+  int postCount(){
+    return posts.size();
+  }
+
+  int edgeCount(){
+    return followGraph.edgeCount();
   }
 
   /*
     Restituisce una deep copy della rappresentazione di userFollows
   */
   public Map<String, Set<String>> getUserFollowsMap(){
-    Map<String, Set<String>> tmp = new HashMap<>();
-    for(String key: this.userFollowsMap.keySet()){ // itero le chiavi della mappa
-      tmp.put(key, new HashSet<String>(this.userFollowsMap.get(key))); // inserisco ogni coppia (chiave, valore) nella nuova mappa
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GET_USER_FOLLOWS_MAP);
+    try{
+      Map<String, Set<String>> tmp = new HashMap<>();
+      for(String key: this.userIds.usernames()){ // itero gli utenti del social
+        Set<String> follows = new HashSet<String>();
+        followGraph.forEachFollowed(userIds.idOf(key), id -> follows.add(userIds.nameOf(id))); // traduco gli id in username
+        tmp.put(key, follows);
+      }
+      return tmp;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
     }
-    return tmp;
   }
 
   /*
     Restituisce una deep copy della rappresentazione di userPosts
   */
   public Map<String, Set<Post>> getUserPostMap(){
-    Map<String, Set<Post>> tmpMap = new HashMap<>(); // inizializzo una mappa vuota
-    for(String key: this.userPostMap.keySet()){ // itero le chiavi
-      Set<Post> tmpSet = new TreeSet<>(); // per ogni chiave, inizializzo un nuovo set vuoto
-      for(Post p: this.userPostMap.get(key)){ // itero tutti i post
-        tmpSet.add(new Post(p)); // creo una deep copy del post
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GET_USER_POST_MAP);
+    try{
+      Map<String, Set<Post>> tmpMap = new HashMap<>(); // inizializzo una mappa vuota
+      for(String key: this.userPostMap.keySet()){ // itero le chiavi
+        Set<Post> tmpSet = new TreeSet<>(TIMESTAMP_ORDER); // per ogni chiave, inizializzo un nuovo set vuoto
+        this.userPostMap.get(key).forEach(id -> tmpSet.add(posts.materialize(id, null))); // ricostruisco una copia di ogni post
+        tmpMap.put(key, tmpSet);
       }
-      tmpMap.put(key, tmpSet);
+      return tmpMap;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
     }
-    return tmpMap;
   }
 
   /*
     Restituisce una deep copy della rappresentazione di userFollowers
   */
   public Map<String, Set<String>> getUserFollowersMap(){
-    Map<String, Set<String>> tmp = new HashMap<>();
-    for(String key: this.userFollowersMap.keySet()){ // itero le chiavi della mappa
-      tmp.put(key, new HashSet<String>(this.userFollowersMap.get(key))); // inserisco ogni coppia (chiave, valore) nella nuova mappa
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GET_USER_FOLLOWERS_MAP);
+    try{
+      Map<String, Set<String>> tmp = new HashMap<>();
+      for(String key: this.userIds.usernames()){ // itero gli utenti del social
+        Set<String> followers = new HashSet<String>();
+        followGraph.forEachFollower(userIds.idOf(key), id -> followers.add(userIds.nameOf(id))); // traduco gli id in username
+        tmp.put(key, followers);
+      }
+      return tmp;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
     }
-    return tmp;
   }
 
   /*
     EFFECTS: Il metodo restituisce una rappresentazione testuale di this
   */
   public String toString(){
-    return String.format("%s\n%s\n%s", userFollowsMap.toString(), userPostMap.toString(), userFollowersMap.toString());
+    return String.format("%s\n%s\n%s", getUserFollowsMap().toString(), getUserPostMap().toString(), getUserFollowersMap().toString());
   }
 
 }
@@ -0,0 +1,15 @@
+public interface SocialNetworkGaugesMXBean{
+  /*
+    OVERVIEW: interfaccia JMX (MXBean "SocialNetwork:type=Gauges,name=...")
+    delle dimensioni di un social registrato con SocialNetworkMetrics.register.
+  */
+
+  // numero di utenti del social
+  int getUsers();
+
+  // numero di post del social
+  int getPosts();
+
+  // numero di relazioni di follow del social
+  int getEdges();
+}
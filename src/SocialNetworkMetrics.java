@@ -0,0 +1,364 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public final class SocialNetworkMetrics implements SocialNetworkMetricsMXBean{
+  /*
+    OVERVIEW: SocialNetworkMetrics raccoglie, per ogni operazione pubblica di
+    SocialNetwork, SocialNetworkWithReport e ConcurrentSocialNetwork, il numero
+    di invocazioni, il numero di errori per tipo di eccezione e l'istogramma
+    delle latenze. Le metriche sono globali (una sola istanza per JVM, comune
+    a tutti i social) e sono esposte dall'MXBean "SocialNetwork:type=Metrics";
+    le dimensioni dei singoli social (utenti, post, relazioni di follow) sono
+    esposte, per i social registrati con register, dagli MXBean
+    "SocialNetwork:type=Gauges,name=...".
+
+    La raccolta è abilitata dalla proprietà di sistema socialnetwork.metrics
+    (-Dsocialnetwork.metrics=true), letta una sola volta: se non è abilitata
+    ENABLED è una costante falsa, time restituisce sempre lo stesso Timer inattivo,
+    il JIT elimina le chiamate a stop e failed, e l'istanza non viene creata, per
+    cui la strumentazione non ha costo.
+    Se è abilitata, la misura può essere sospesa e ripresa dall'MXBean.
+
+    Le invocazioni sono contate con LongAdder e le latenze registrate in un
+    LatencyHistogram per ogni stripe (scelto in base al thread), ognuno protetto
+    dal proprio lock, così che thread diversi raramente si contendano lo stesso
+    contatore. Le operazioni invocate da altre operazioni attraverso l'interfaccia
+    pubblica (ad esempio containsUser da reportPost) sono contate anch'esse.
+
+    Ogni operazione è misurata con un Timer:
+      SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(OPERAZIONE);
+      try{ ... }
+      catch(Throwable e){ timer.failed(e); throw e; }
+      finally{ timer.stop(); ... }
+    Le verifiche dell'invariante vanno eseguite dopo timer.stop(), così che il
+    loro costo non venga attribuito all'operazione.
+  */
+  static final boolean ENABLED = Boolean.getBoolean("socialnetwork.metrics");
+
+  // Operazioni misurate: indici di NAMES
+  static final int GUESS_FOLLOWERS = 0;
+  static final int GUESS_FOLLOWERS_PARALLEL = 1;
+  static final int INFLUENCERS = 2;
+  static final int TOP_INFLUENCERS = 3;
+  static final int GET_MENTIONED_USERS = 4;
+  static final int WRITTEN_BY = 5;
+  static final int CONTAINING = 6;
+  static final int POSTS_BETWEEN = 7;
+  static final int ADD_USER = 8;
+  static final int REMOVE_USER = 9;
+  static final int ADD_POST = 10;
+  static final int ADD_POSTS = 11;
+  static final int LIKE_POST = 12;
+  static final int LIKED_BY = 13;
+  static final int FEED = 14;
+  static final int SNAPSHOT = 15;
+  static final int SAVE_SNAPSHOT = 16;
+  static final int LOAD_SNAPSHOT = 17;
+  static final int CONTAINS_USER = 18;
+  static final int CONTAINS_POST_BY_ID = 19;
+  static final int GET_POST_BY_ID = 20;
+  static final int GET_USER_FOLLOWS_MAP = 21;
+  static final int GET_USER_POST_MAP = 22;
+  static final int GET_USER_FOLLOWERS_MAP = 23;
+  static final int REPORT_POST = 24;
+  static final int GET_REPORTED_POST_MAP = 25;
+  static final int MOST_REPORTED = 26;
+  static final int REPORTED_AT_LEAST = 27;
+  static final int REPORTS_BY_AUTHOR = 28;
+  static final int SET_HIDE_THRESHOLD = 29;
+  static final int GET_HIDE_THRESHOLD = 30;
+  static final int IS_HIDDEN = 31;
+  static final int UNHIDE_POST = 32;
+  static final int CO_LIKERS = 33;
+  private static final String NAMES[] = {
+    "guessFollowers", "guessFollowersParallel", "influencers", "topInfluencers", "getMentionedUsers", "writtenBy",
+    "containing", "postsBetween", "addUser", "removeUser", "addPost", "addPosts", "likePost", "likedBy", "feed",
+    "snapshot", "saveSnapshot", "loadSnapshot", "containsUser", "containsPostById", "getPostById",
+    "getUserFollowsMap", "getUserPostMap", "getUserFollowersMap", "reportPost", "getReportedPostMap",
+    "mostReported", "reportedAtLeast", "reportsByAuthor", "setHideThreshold", "getHideThreshold", "isHidden",
+    "unhidePost", "coLikers"
+  };
+
+  private static final long NOT_RECORDING = Long.MIN_VALUE; // istante di inizio del Timer inattivo
+  private static final String DOMAIN = "SocialNetwork";
+  // unica istanza, null se la raccolta non è abilitata
+  private static final SocialNetworkMetrics INSTANCE = ENABLED ? new SocialNetworkMetrics() : null;
+
+  private final LongAdder calls[]; // invocazioni di ogni operazione
+  private final List<Map<String, LongAdder>> errors; // errori di ogni operazione, per nome semplice della classe dell'eccezione
+  private final LatencyHistogram latencies[][]; // latencies[operazione][stripe]
+  private volatile boolean recording;
+
+  static{
+    if( ENABLED ){
+      try{
+        ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(DOMAIN + ":type=Metrics"));
+      }
+      catch(JMException e){ // le metriche restano raccolte, ma non sono esposte via JMX
+      }
+    }
+  }
+
+  private SocialNetworkMetrics(){
+    int stripes = Integer.highestOneBit(Math.min(8, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+    this.calls = new LongAdder[NAMES.length];
+    this.errors = new ArrayList<Map<String, LongAdder>>(NAMES.length);
+    this.latencies = new LatencyHistogram[NAMES.length][stripes];
+    for(int i = 0; i < NAMES.length; i++){
+      calls[i] = new LongAdder();
+      errors.add(new ConcurrentHashMap<String, LongAdder>());
+      for(int j = 0; j < stripes; j++){
+        latencies[i][j] = new LatencyHistogram();
+      }
+    }
+    this.recording = true;
+  }
+
+  /*
+    EFFECTS: restituisce le metriche globali, null se la raccolta non è abilitata
+  */
+  public static SocialNetworkMetrics get(){
+    return INSTANCE;
+  }
+
+  /*
+    Da invocare all'inizio di un'operazione.
+
+    EFFECTS: restituisce il Timer che misura operation; se la raccolta non è
+             abilitata o è sospesa, un Timer inattivo che non registra nulla
+  */
+  static Timer time(int operation){
+    if( ENABLED && INSTANCE.recording ){
+      return new Timer(operation, System.nanoTime());
+    }
+    return Timer.INACTIVE;
+  }
+
+  public boolean isRecording(){
+    return recording;
+  }
+
+  public void setRecording(boolean recording){
+    this.recording = recording;
+  }
+
+  /*
+    EFFECTS: restituisce le statistiche delle operazioni invocate almeno una volta,
+             ordinate per nome; le statistiche di ogni operazione sono coerenti tra loro
+             a meno delle invocazioni in corso
+  */
+  public Map<String, OperationStats> getOperations(){
+    Map<String, OperationStats> result = new TreeMap<String, OperationStats>();
+    for(int i = 0; i < NAMES.length; i++){
+      LatencyHistogram merged = new LatencyHistogram();
+      for(LatencyHistogram histogram: latencies[i]){
+        synchronized(histogram){
+          merged.add(histogram);
+        }
+      }
+      Map<String, Long> errorCounts = new TreeMap<String, Long>();
+      errors.get(i).forEach((type, count) -> errorCounts.put(type, count.sum()));
+      long count = calls[i].sum();
+      if( count > 0 || errorCounts.isEmpty() == false ){
+        result.put(NAMES[i], new OperationStats(count, errorCounts, merged));
+      }
+    }
+    return result;
+  }
+
+  public void reset(){
+    for(int i = 0; i < NAMES.length; i++){
+      calls[i].reset();
+      errors.get(i).clear();
+      for(LatencyHistogram histogram: latencies[i]){
+        synchronized(histogram){
+          histogram.reset();
+        }
+      }
+    }
+  }
+
+  /*
+    Registra le dimensioni di social come MXBean "SocialNetwork:type=Gauges,name=<name>".
+    Le dimensioni vengono lette dal thread JMX senza sincronizzazione, per cui
+    possono non riflettere le modifiche più recenti; il social non viene
+    modificato. La registrazione non dipende da ENABLED.
+
+    REQUIRES: name != null && social != null
+    THROWS: NullPointerException se name == null || social == null
+            IllegalStateException se un social con lo stesso nome è già registrato
+    EFFECTS: restituisce il nome JMX con cui social è stato registrato
+  */
+  public static ObjectName register(String name, SocialNetwork social) throws NullPointerException, IllegalStateException{
+    if( name == null || social == null ){
+      throw new NullPointerException();
+    }
+    try{
+      ObjectName objectName = gaugesName(name);
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new Gauges(social), objectName);
+      return objectName;
+    }
+    catch(InstanceAlreadyExistsException e){
+      throw new IllegalStateException("A social network named " + name + " is already registered");
+    }
+    catch(JMException e){
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /*
+    REQUIRES: name != null
+    THROWS: NullPointerException se name == null
+    EFFECTS: rimuove la registrazione del social di nome name, se presente
+  */
+  public static void unregister(String name) throws NullPointerException{
+    if( name == null ){
+      throw new NullPointerException();
+    }
+    try{
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = gaugesName(name);
+      if( server.isRegistered(objectName) ){
+        server.unregisterMBean(objectName);
+      }
+    }
+    catch(JMException e){ // rimosso nel frattempo da un altro thread
+    }
+  }
+
+  private static ObjectName gaugesName(String name) throws JMException{
+    return new ObjectName(DOMAIN + ":type=Gauges,name=" + ObjectName.quote(name));
+  }
+
+  static final class Timer{
+    /*
+      OVERVIEW: misura di una singola invocazione di un'operazione, iniziata da
+      time; stop va invocato una sola volta, al termine dell'operazione
+    */
+    private static final Timer INACTIVE = new Timer(-1, NOT_RECORDING);
+
+    private final int operation;
+    private final long start;
+
+    private Timer(int operation, long start){
+      this.operation = operation;
+      this.start = start;
+    }
+
+    /*
+      MODIFIES: le metriche globali
+      EFFECTS: conta un'invocazione dell'operazione e ne registra la latenza
+    */
+    void stop(){
+      if( ENABLED && start != NOT_RECORDING ){
+        long elapsed = Math.max(0, System.nanoTime() - start);
+        INSTANCE.calls[operation].increment();
+        LatencyHistogram stripes[] = INSTANCE.latencies[operation];
+        LatencyHistogram histogram = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        synchronized(histogram){
+          histogram.record(elapsed);
+        }
+      }
+    }
+
+    /*
+      Da invocare se l'operazione termina con un'eccezione.
+
+      MODIFIES: le metriche globali
+      EFFECTS: conta un errore dell'operazione del tipo di error
+    */
+    void failed(Throwable error){
+      if( ENABLED && start != NOT_RECORDING ){
+        INSTANCE.errors.get(operation).computeIfAbsent(error.getClass().getSimpleName(), type -> new LongAdder()).increment();
+      }
+    }
+  }
+
+  public static final class OperationStats{
+    /*
+      OVERVIEW: statistiche immutabili di un'operazione (latenze in nanosecondi),
+      esposte via JMX come CompositeData
+    */
+    private final long calls;
+    private final Map<String, Long> errors;
+    private final double meanNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    OperationStats(long calls, Map<String, Long> errors, LatencyHistogram latencies){
+      this.calls = calls;
+      this.errors = Collections.unmodifiableMap(errors);
+      this.meanNanos = latencies.mean();
+      this.p50Nanos = latencies.percentile(50);
+      this.p99Nanos = latencies.percentile(99);
+      this.p999Nanos = latencies.percentile(99.9);
+      this.maxNanos = latencies.max();
+    }
+
+    public long getCalls(){
+      return calls;
+    }
+
+    // errori per nome semplice della classe dell'eccezione
+    public Map<String, Long> getErrors(){
+      return errors;
+    }
+
+    public double getMeanNanos(){
+      return meanNanos;
+    }
+
+    public long getP50Nanos(){
+      return p50Nanos;
+    }
+
+    public long getP99Nanos(){
+      return p99Nanos;
+    }
+
+    public long getP999Nanos(){
+      return p999Nanos;
+    }
+
+    public long getMaxNanos(){
+      return maxNanos;
+    }
+
+    public String toString(){
+      return String.format("calls=%d errors=%s mean=%.0fns p50=%dns p99=%dns p999=%dns max=%dns",
+                           calls, errors, meanNanos, p50Nanos, p99Nanos, p999Nanos, maxNanos);
+    }
+  }
+
+  private static final class Gauges implements SocialNetworkGaugesMXBean{
+    private final SocialNetwork social;
+
+    Gauges(SocialNetwork social){
+      this.social = social;
+    }
+
+    public int getUsers(){
+      return social.userCount();
+    }
+
+    public int getPosts(){
+      return social.postCount();
+    }
+
+    public int getEdges(){
+      return social.edgeCount();
+    }
+  }
+}
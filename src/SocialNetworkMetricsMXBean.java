@@ -0,0 +1,21 @@
+import java.util.Map;
+
+public interface SocialNetworkMetricsMXBean{
+  /*
+    OVERVIEW: interfaccia JMX (MXBean "SocialNetwork:type=Metrics") delle
+    metriche delle operazioni di SocialNetwork e SocialNetworkWithReport; si
+    veda SocialNetworkMetrics.
+  */
+
+  // vero se le operazioni vengono misurate
+  boolean isRecording();
+
+  // sospende (false) o riprende (true) la misura delle operazioni
+  void setRecording(boolean recording);
+
+  // statistiche di ogni operazione invocata almeno una volta, per nome dell'operazione
+  Map<String, SocialNetworkMetrics.OperationStats> getOperations();
+
+  // azzera tutte le statistiche
+  void reset();
+}
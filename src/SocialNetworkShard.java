@@ -0,0 +1,59 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+  interfaccia di una partizione (shard) di un ShardedSocialNetwork: un
+  SocialNetwork nello stesso processo (LocalShard) o in un altro processo,
+  raggiunto attraverso la rete (RemoteShard). I metodi hanno la specifica dei
+  metodi omonimi di SocialNetwork e lanciano IOException se lo shard non può
+  essere raggiunto; uno shard non deve essere usato da più thread
+  contemporaneamente.
+*/
+public interface SocialNetworkShard extends Closeable{
+  void addUser(String newUser) throws NullPointerException, UserAlreadyExistException, IOException;
+
+  void removeUser(String username) throws NullPointerException, UserNotExistException, IOException;
+
+  boolean containsUser(String username) throws NullPointerException, IOException;
+
+  boolean containsUser(Collection<String> usernameCollection) throws NullPointerException, IOException;
+
+  void addPost(Post post) throws NullPointerException, UserNotExistException, PostAlreadyExistException, NegativeIdException, IOException;
+
+  boolean likePost(int idPost, String username) throws NullPointerException, NegativeIdException, UserNotExistException, PostDoesNotExist, AuthorCantLikeHimselfException, IOException;
+
+  boolean containsPostById(int idPost) throws NegativeIdException, IOException;
+
+  Post getPostById(int idPost) throws NegativeIdException, PostDoesNotExist, IOException;
+
+  List<Post> writtenBy(String username) throws UserNotExistException, IOException;
+
+  /*
+    EFFECTS: restituisce gli id dei post di username, un array vuoto se username
+             non è nello shard (si veda SocialNetwork.postIdsOf)
+  */
+  int[] postIdsOf(String username) throws NullPointerException, IOException;
+
+  /*
+    EFFECTS: restituisce gli id di tutti i post dello shard, in ordine qualsiasi
+  */
+  int[] postIds() throws IOException;
+
+  List<Post> containing(List<String> words) throws NullPointerException, IOException;
+
+  Set<String> getMentionedUsers() throws IOException;
+
+  /*
+    EFFECTS: restituisce la mappa username -> margine (followers - seguiti) degli
+             utenti dello shard con margine diverso da 0 (si veda SocialNetwork.influenceMargins)
+  */
+  Map<String, Integer> influenceMargins() throws IOException;
+
+  Map<String, Set<String>> getUserFollowsMap() throws IOException;
+
+  Map<String, Set<String>> getUserFollowersMap() throws IOException;
+}
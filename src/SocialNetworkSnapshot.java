@@ -0,0 +1,264 @@
+import java.util.Map;
+import java.util.Set;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+
+public final class SocialNetworkSnapshot{
+  /*
+    OVERVIEW: SocialNetworkSnapshot è un tipo di dato astratto immutabile che
+    rappresenta lo stato di un SocialNetwork in un preciso istante (versione).
+    Le mappe sono persistenti e condividono la struttura con quelle mantenute
+    dal social, per cui un'istantanea viene creata in tempo costante e le
+    modifiche successive del social non sono visibili in essa.
+    Utenti seguiti, followers e likes sono insiemi persistenti di id, tradotti
+    in username con la vista del dizionario presa insieme all'istantanea (si
+    veda UserDictionary.freeze) solo quando vengono letti; i post sono
+    conservati come FrozenPost e i metodi che restituiscono post ne
+    restituiscono delle nuove copie.
+
+    Typical Element: <version, userFollows, userPosts, userFollowers>
+    AF(c): <version,
+            { <u, { users.nameOf(i) | userFollowsMap.get(u).contains(i) }> | userFollowsMap.containsKey(u) },
+            { <u, { postIdMap.get(id).toPost(users) | userPostMap.get(u).contains(id) }> | userPostMap.containsKey(u) },
+            { <u, { users.nameOf(i) | userFollowersMap.get(u).contains(i) }> | userFollowersMap.containsKey(u) }>
+    IR(c): version >= 0 && users != null && userFollowsMap != null && userPostMap != null &&
+           userFollowersMap != null && postIdMap != null &&
+           dom(userFollowsMap) == dom(userPostMap) == dom(userFollowersMap) == users.usernames() &&
+           forall u,i. userFollowsMap.get(u).contains(i) || userFollowersMap.get(u).contains(i) => users.nameOf(i) != null &&
+           forall u. userPostMap.containsKey(u) => ( forall id. userPostMap.get(u).contains(id) =>
+            ( postIdMap.containsKey(id) && postIdMap.get(id).getAuthor().equals(u) ) ) &&
+           forall id,i. postIdMap.containsKey(id) && postIdMap.get(id).getLikes().contains(i) => users.nameOf(i) != null &&
+           postIdMap.size() == sum_{u in dom(userPostMap)} userPostMap.get(u).size()
+  */
+  private final long version; // numero di modifiche applicate al social quando è stata presa l'istantanea
+  private final UserDictionary.Frozen users; // dizionario degli utenti al momento dell'istantanea
+  private final PersistentHashMap<String, PersistentIntSet> userFollowsMap; // utente -> id degli utenti che segue
+  private final PersistentHashMap<String, PersistentIntSet> userPostMap; // utente -> id dei suoi post
+  private final PersistentHashMap<String, PersistentIntSet> userFollowersMap; // utente -> id degli utenti che lo seguono
+  private final PersistentHashMap<Integer, FrozenPost> postIdMap; // id -> post
+
+  // Messaggio di errore da stampare se si prova ad operare su un utente che non esiste nell'istantanea
+  private static final String USER_NOT_EXIST_EXCEPTION = "The user identified by the username doesn't exist in the system";
+
+  /*
+    Metodo costruttore usato da SocialNetwork, che passa le proprie mappe persistenti
+
+    REQUIRES: i parametri rispettano IR
+    EFFECTS: inizializza l'istantanea con le mappe passate, senza copiarle
+  */
+  SocialNetworkSnapshot(long version,
+                        UserDictionary.Frozen users,
+                        PersistentHashMap<String, PersistentIntSet> userFollowsMap,
+                        PersistentHashMap<String, PersistentIntSet> userPostMap,
+                        PersistentHashMap<String, PersistentIntSet> userFollowersMap,
+                        PersistentHashMap<Integer, FrozenPost> postIdMap){
+    this.version = version;
+    this.users = users;
+    this.userFollowsMap = userFollowsMap;
+    this.userPostMap = userPostMap;
+    this.userFollowersMap = userFollowersMap;
+    this.postIdMap = postIdMap;
+  }
+
+  /*
+    EFFECTS: restituisce la versione del social a cui si riferisce l'istantanea;
+             versioni maggiori corrispondono a stati successivi dello stesso social
+  */
+  public long getVersion(){
+    return version;
+  }
+
+  /*
+    Usato da ConcurrentSocialNetwork, che crea le istantanee da una copia del
+    proprio stato: l'istantanea restituita porta la versione del social copiato.
+
+    REQUIRES: version >= 0
+    EFFECTS: restituisce un'istantanea con lo stato di this e versione version
+  */
+  SocialNetworkSnapshot withVersion(long version){
+    return new SocialNetworkSnapshot(version, users, userFollowsMap, userPostMap, userFollowersMap, postIdMap);
+  }
+
+  /*
+    EFFECTS: restituisce l'insieme (immutabile) degli utenti presenti nell'istantanea
+  */
+  public Set<String> getUsers(){
+    return users.usernames();
+  }
+
+  /*
+    REQUIRES: username != null
+    THROWS: NullPointerException se username == null
+    EFFECTS: restituisce vero se username è presente nell'istantanea, falso altrimenti
+  */
+  public boolean containsUser(String username) throws NullPointerException{
+    if( username == null ){
+      throw new NullPointerException();
+    }
+    return userPostMap.containsKey(username);
+  }
+
+  /*
+    REQUIRES: username in dom(userFollows)
+    THROWS: UserNotExistException se username non è presente nell'istantanea
+    EFFECTS: restituisce l'insieme (immutabile) userFollows(username)
+  */
+  public Set<String> getFollows(String username) throws UserNotExistException{
+    PersistentIntSet follows = username == null ? null : userFollowsMap.get(username);
+    if( follows == null ){
+      throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+    }
+    return new UsernameSet(follows, users);
+  }
+
+  /*
+    REQUIRES: username in dom(userFollowers)
+    THROWS: UserNotExistException se username non è presente nell'istantanea
+    EFFECTS: restituisce l'insieme (immutabile) userFollowers(username)
+  */
+  public Set<String> getFollowers(String username) throws UserNotExistException{
+    PersistentIntSet followers = username == null ? null : userFollowersMap.get(username);
+    if( followers == null ){
+      throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+    }
+    return new UsernameSet(followers, users);
+  }
+
+  /*
+    EFFECTS: restituisce, in tempo costante, una vista immutabile di userFollows
+  */
+  public Map<String, Set<String>> getUserFollowsMap(){
+    return new UsernameSetMap(userFollowsMap, users);
+  }
+
+  /*
+    EFFECTS: restituisce, in tempo costante, una vista immutabile di userFollowers
+  */
+  public Map<String, Set<String>> getUserFollowersMap(){
+    return new UsernameSetMap(userFollowersMap, users);
+  }
+
+  /*
+    REQUIRES: username in dom(userPosts)
+    THROWS: UserNotExistException se username non è presente nell'istantanea
+    EFFECTS: restituisce una lista di copie dei post in userPosts(username),
+             ordinata per timestamp
+  */
+  public List<Post> writtenBy(String username) throws UserNotExistException{
+    PersistentIntSet ids = username == null ? null : userPostMap.get(username);
+    if( ids == null ){
+      throw new UserNotExistException(USER_NOT_EXIST_EXCEPTION);
+    }
+    List<Post> postList = new ArrayList<Post>(ids.size());
+    ids.forEach(id -> postList.add(postIdMap.get(id).toPost(users)));
+    postList.sort(SocialNetwork.TIMESTAMP_ORDER);
+    return postList;
+  }
+
+  /*
+    REQUIRES: idPost >= 0
+    THROWS: NegativeIdException se idPost < 0
+    EFFECTS: restituisce vero se l'istantanea contiene un post con id idPost, falso altrimenti
+  */
+  public boolean containsPostById(int idPost) throws NegativeIdException{
+    if( idPost < 0 ){
+      throw new NegativeIdException();
+    }
+    return postIdMap.containsKey(idPost);
+  }
+
+  /*
+    REQUIRES: idPost >= 0 && containsPostById(idPost)
+    THROWS: NegativeIdException se idPost < 0
+            PostDoesNotExist se l'istantanea non contiene un post con id idPost
+    EFFECTS: restituisce una copia del post con id idPost
+  */
+  public Post getPostById(int idPost) throws NegativeIdException, PostDoesNotExist{
+    if( idPost < 0 ){
+      throw new NegativeIdException();
+    }
+    FrozenPost post = postIdMap.get(idPost);
+    if( post == null ){
+      throw new PostDoesNotExist("The post identified by the id doesn't exist");
+    }
+    return post.toPost(users);
+  }
+
+  /*
+    EFFECTS: restituisce il numero di utenti presenti nell'istantanea
+  */
+  public int userCount(){
+    return userPostMap.size();
+  }
+
+  /*
+    EFFECTS: restituisce il numero di post presenti nell'istantanea
+  */
+  public int postCount(){
+    return postIdMap.size();
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    List<Post> postList = new ArrayList<Post>(postIdMap.size());
+    for(FrozenPost post: postIdMap.values()){
+      postList.add(post.toPost(users));
+    }
+    return String.format("v%d\n%s\n%s\n%s", version, getUserFollowsMap(), postList, getUserFollowersMap());
+  }
+
+  /*
+    Vista immutabile di una mappa utente -> insieme di id come mappa utente ->
+    insieme di username; gli insiemi vengono tradotti solo quando letti
+    (si veda UsernameSet).
+  */
+  private static final class UsernameSetMap extends AbstractMap<String, Set<String>>{
+    private final PersistentHashMap<String, PersistentIntSet> map;
+    private final UserDictionary.Frozen users;
+
+    UsernameSetMap(PersistentHashMap<String, PersistentIntSet> map, UserDictionary.Frozen users){
+      this.map = map;
+      this.users = users;
+    }
+
+    public int size(){
+      return map.size();
+    }
+
+    public boolean containsKey(Object key){
+      return map.containsKey(key);
+    }
+
+    public Set<String> get(Object key){
+      PersistentIntSet ids = map.get(key);
+      return ids == null ? null : new UsernameSet(ids, users);
+    }
+
+    public Set<Map.Entry<String, Set<String>>> entrySet(){
+      return new AbstractSet<Map.Entry<String, Set<String>>>(){
+        public int size(){
+          return map.size();
+        }
+
+        public Iterator<Map.Entry<String, Set<String>>> iterator(){
+          Iterator<Map.Entry<String, PersistentIntSet>> iterator = map.entrySet().iterator();
+          return new Iterator<Map.Entry<String, Set<String>>>(){
+            public boolean hasNext(){
+              return iterator.hasNext();
+            }
+
+            public Map.Entry<String, Set<String>> next(){
+              Map.Entry<String, PersistentIntSet> entry = iterator.next();
+              return new AbstractMap.SimpleImmutableEntry<String, Set<String>>(entry.getKey(), new UsernameSet(entry.getValue(), users));
+            }
+          };
+        }
+      };
+    }
+  }
+}
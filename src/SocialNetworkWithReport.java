@@ -2,10 +2,17 @@ import java.util.Map;
 import java.util.Set;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.ArrayList;
+import java.sql.Timestamp;
 
 public class SocialNetworkWithReport extends SocialNetwork{
   private Map<Integer, Set<String>> reportedPostMap;
   // reportedPost(idPost) -> {username degli utenti che l'hanno segnalato}
+  private ModerationQueue moderationQueue; // segnalazioni dei post presenti nel social, per post e per autore
+  private IntSet hiddenPosts; // post nascosti dalle letture perché hanno raggiunto la soglia
+  private int hideThreshold; // segnalazioni oltre le quali un post viene nascosto, 0 se disattivato
+  private ModerationListener moderationListener; // eventuale osservatore dei post nascosti
 
   /*
     Inizializza il social
@@ -13,6 +20,10 @@ public class SocialNetworkWithReport extends SocialNetwork{
   public SocialNetworkWithReport(){
     super();
     this.reportedPostMap = new HashMap<>();
+    this.moderationQueue = new ModerationQueue();
+    this.hiddenPosts = new IntSet();
+    this.hideThreshold = 0;
+    this.moderationListener = null;
   }
 
   /*
@@ -28,27 +39,373 @@ public class SocialNetworkWithReport extends SocialNetwork{
     EFFECTS: se l'idPost è già tra le chiavi di reportedPostMap allora username
              viene aggiunto al set associato a idPost e viene ritornato vero, altrimenti
              viene restituito falso.
+             Una nuova segnalazione aggiorna la coda di moderazione in tempo O(log n) e,
+             se il post raggiunge la soglia (setHideThreshold), lo nasconde.
   */
   public boolean reportPost(int idPost, String username) throws NullPointerException, NegativeIdException, PostDoesNotExist, UserNotExistException{
-    if( username == null ){
-      throw new NullPointerException();
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.REPORT_POST);
+    try{
+      if( username == null ){
+        throw new NullPointerException();
+      }
+      if( idPost < 0 ){
+        throw new NegativeIdException("The post id is negative");
+      }
+      if( super.containsUser(username) == false ){
+        throw new UserNotExistException("The user identified by the username doesn't exist in the system");
+      }
+      if( super.containsPostById(idPost) == false){
+        throw new PostDoesNotExist("The post identified by the id doesn't exist");
+      }
+      if( reportedPostMap.containsKey(idPost) == false ){
+        reportedPostMap.put(idPost, new HashSet<String>());
+      }
+      if( reportedPostMap.get(idPost).add(username) == false ){
+        return false;
+      }
+      queueReport(idPost, super.authorOf(idPost));
+      return true;
     }
-    if( idPost < 0 ){
-      throw new NegativeIdException("The post id is negative");
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
     }
-    if( super.containsUser(username) == false ){
-      throw new UserNotExistException("The user identified by the username doesn't exist in the system");
-    }
-    if( super.containsPostById(idPost) == false){
-      throw new PostDoesNotExist("The post identified by the id doesn't exist");
+    finally{
+      timer.stop();
     }
+  }
+
+  /*
+    Ripristina una segnalazione registrata in precedenza (ad esempio in un
+    registro delle modifiche) senza verificare che il post e l'utente siano
+    ancora nel social: le segnalazioni restano anche dopo la loro rimozione.
+
+    REQUIRES: idPost >= 0 && username != null
+    MODIFIES: this
+    EFFECTS: aggiunge username al set associato alla chiave idPost in reportedPostMap
+             e, se il post è nel social, aggiorna la coda di moderazione
+  */
+  void restoreReport(int idPost, String username){
     if( reportedPostMap.containsKey(idPost) == false ){
       reportedPostMap.put(idPost, new HashSet<String>());
     }
-    return reportedPostMap.get(idPost).add(username);
+    String author = super.authorOf(idPost);
+    if( reportedPostMap.get(idPost).add(username) && author != null ){
+      queueReport(idPost, author);
+    }
+  }
+
+  /*
+    Conta una nuova segnalazione di idPost nella coda di moderazione e lo
+    nasconde se raggiunge esattamente la soglia: il controllo riguarda solo il
+    post segnalato, senza scandire la coda.
+
+    REQUIRES: idPost è nel social && author è il suo autore
+    MODIFIES: this
+  */
+  private void queueReport(int idPost, String author){
+    int reports = moderationQueue.report(idPost, author);
+    if( hideThreshold > 0 && reports == hideThreshold ){
+      hide(idPost, reports);
+    }
+  }
+
+  /*
+    Ripristina la soglia ed i post nascosti registrati in precedenza (ad esempio
+    nella compattazione di un registro delle modifiche), senza nascondere altri
+    post e senza avvisare l'osservatore; gli id dei post non più nel social
+    vengono ignorati.
+
+    REQUIRES: threshold >= 0 && hidden != null
+    MODIFIES: this
+  */
+  void restoreHidden(int threshold, int hidden[]){
+    this.hideThreshold = threshold;
+    for(int idPost: hidden){
+      if( super.authorOf(idPost) != null ){
+        hiddenPosts.add(idPost);
+      }
+    }
+  }
+
+  /*
+    EFFECTS: restituisce gli id dei post nascosti
+  */
+  int[] hiddenPostIds(){
+    return hiddenPosts.toArray();
+  }
+
+  private void hide(int idPost, int reports){
+    if( hiddenPosts.add(idPost) && moderationListener != null ){
+      moderationListener.postHidden(idPost, reports);
+    }
+  }
+
+  /*
+    Rimuove l'utente come SocialNetwork.removeUser; i suoi post escono dalla coda di
+    moderazione e dai post nascosti, mentre le segnalazioni restano in reportedPostMap.
+
+    REQUIRES: username != null && username in dom(userPosts)
+    THROWS: NullPointerException se username == null
+            UserNotExistException se username not in dom(userPosts)
+    MODIFIES: this
+  */
+  public void removeUser(String username) throws NullPointerException, UserNotExistException{
+    int removedPosts[] = super.postIdsOf(username);
+    super.removeUser(username);
+    for(int idPost: removedPosts){
+      moderationQueue.remove(idPost);
+      hiddenPosts.remove(idPost);
+    }
+  }
+
+  /*
+    Imposta il numero di segnalazioni al raggiungimento del quale un post viene
+    nascosto (0 disattiva il meccanismo). I post che hanno già almeno threshold
+    segnalazioni vengono nascosti subito, in tempo O(log n + k) dove k è il loro
+    numero; i post nascosti in precedenza restano nascosti.
+
+    REQUIRES: threshold >= 0
+    THROWS: IllegalArgumentException se threshold < 0
+    MODIFIES: this
+  */
+  public void setHideThreshold(int threshold) throws IllegalArgumentException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.SET_HIDE_THRESHOLD);
+    try{
+      if( threshold < 0 ){
+        throw new IllegalArgumentException("The threshold must be non negative");
+      }
+      this.hideThreshold = threshold;
+      if( threshold > 0 ){
+        for(int idPost: moderationQueue.atLeast(threshold)){
+          hide(idPost, moderationQueue.reportsOf(idPost));
+        }
+      }
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    EFFECTS: restituisce la soglia di segnalazioni oltre la quale i post vengono nascosti, 0 se disattivata
+  */
+  public int getHideThreshold(){
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GET_HIDE_THRESHOLD);
+    try{
+      return hideThreshold;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Imposta l'osservatore avvisato ogni volta che un post viene nascosto
+    (null per non avvisare nessuno).
+
+    MODIFIES: this
+  */
+  public void setModerationListener(ModerationListener listener){
+    this.moderationListener = listener;
+  }
+
+  /*
+    EFFECTS: restituisce vero se il post idPost è nascosto, falso altrimenti
+  */
+  public boolean isHidden(int idPost){
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.IS_HIDDEN);
+    try{
+      return hiddenPosts.contains(idPost);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Rende di nuovo visibile un post nascosto (ad esempio dopo la revisione di un
+    moderatore); le sue segnalazioni restano, e il post non viene nascosto di
+    nuovo finché la soglia non cambia.
+
+    MODIFIES: this
+    EFFECTS: restituisce vero se il post era nascosto, falso altrimenti
+  */
+  public boolean unhidePost(int idPost){
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.UNHIDE_POST);
+    try{
+      return hiddenPosts.remove(idPost);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce i post più segnalati tra quelli presenti nel social, in tempo O(log n + k).
+
+    REQUIRES: k >= 0
+    THROWS: IllegalArgumentException se k < 0
+    EFFECTS: restituisce gli id dei min(k, n) post con più segnalazioni, ordinati per
+             segnalazioni decrescenti e, a parità, per id crescente
+  */
+  public List<Integer> mostReported(int k) throws IllegalArgumentException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.MOST_REPORTED);
+    try{
+      return moderationQueue.top(k);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Restituisce i post presenti nel social con almeno threshold segnalazioni, in
+    tempo O(log n + k) dove k è il numero di post restituiti.
+
+    EFFECTS: restituisce gli id dei post con almeno threshold segnalazioni, ordinati per
+             segnalazioni decrescenti e, a parità, per id crescente
+  */
+  public List<Integer> reportedAtLeast(int threshold){
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.REPORTED_AT_LEAST);
+    try{
+      return moderationQueue.atLeast(threshold);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    REQUIRES: username != null
+    THROWS: NullPointerException se username == null
+    EFFECTS: restituisce il numero totale di segnalazioni ricevute dai post di username
+             presenti nel social, in tempo O(1)
+  */
+  public int reportsByAuthor(String username) throws NullPointerException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.REPORTS_BY_AUTHOR);
+    try{
+      if( username == null ){
+        throw new NullPointerException();
+      }
+      return moderationQueue.reportsByAuthor(username);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    Le letture seguenti hanno la specifica di SocialNetwork, ma escludono i post
+    nascosti; se non ci sono post nascosti restituiscono direttamente il risultato
+    di SocialNetwork. I post nascosti restano accessibili ai moderatori con
+    getPostById e getUserPostMap.
+  */
+  public List<Post> writtenBy(String username) throws UserNotExistException{
+    return visible(super.writtenBy(username));
+  }
+
+  public List<Post> containing(List<String> words) throws NullPointerException{
+    return visible(super.containing(words));
+  }
+
+  public List<Post> containing(List<String> words, Timestamp from, Timestamp to) throws NullPointerException{
+    return visible(super.containing(words, from, to));
+  }
+
+  public List<Post> postsBetween(Timestamp from, Timestamp to) throws NullPointerException{
+    return visible(super.postsBetween(from, to));
+  }
+
+  public List<Post> likedBy(String username) throws UserNotExistException{
+    return visible(super.likedBy(username));
+  }
+
+  /*
+    Le pagine da cui sono stati esclusi post nascosti vengono completate con i
+    post successivi del feed, così che la pagina contenga limit post se esistono;
+    le letture del feed formano una sola chiamata di feed nelle metriche.
+  */
+  public List<Post> feed(String username, FeedCursor cursor, int limit) throws NullPointerException, UserNotExistException, IllegalArgumentException{
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.FEED);
+    try{
+      List<Post> page = feedPage(username, cursor, limit);
+      if( hiddenPosts.isEmpty() ){
+        return page;
+      }
+      List<Post> result = new ArrayList<Post>(page.size());
+      int requested = limit;
+      while( true ){
+        int fetched = page.size();
+        Post last = fetched > 0 ? page.get(fetched - 1) : null; // prima di escludere i post nascosti
+        result.addAll(visible(page));
+        if( fetched < requested || result.size() == limit ){ // feed esaurito o pagina completa
+          break;
+        }
+        requested = limit - result.size();
+        page = feedPage(username, FeedCursor.after(last), requested);
+      }
+      return result;
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
   }
 
   public Map<Integer,Set<String>> getReportedPostMap(){
-    return new HashMap<>(this.reportedPostMap);
+    SocialNetworkMetrics.Timer timer = SocialNetworkMetrics.time(SocialNetworkMetrics.GET_REPORTED_POST_MAP);
+    try{
+      return new HashMap<>(this.reportedPostMap);
+    }
+    catch(Throwable e){
+      timer.failed(e);
+      throw e;
+    }
+    finally{
+      timer.stop();
+    }
+  }
+
+  /*
+    MODIFIES: posts
+    EFFECTS: rimuove da posts i post nascosti e restituisce posts
+  */
+  private List<Post> visible(List<Post> posts){
+    if( hiddenPosts.isEmpty() == false ){
+      posts.removeIf(post -> hiddenPosts.contains(post.getId()));
+    }
+    return posts;
   }
 }
@@ -0,0 +1,158 @@
+import java.util.List;
+import java.util.ArrayList;
+import java.util.function.IntConsumer;
+
+public class TimeIndex{
+  /*
+    OVERVIEW: TimeIndex è un tipo di dato astratto modificabile che ordina
+    tutti i post del social per timestamp (millisecondi e nanosecondi) e, a
+    parità di timestamp, per id. Le chiavi sono primitive e sono suddivise
+    in blocchi ordinati di al più BLOCK_SIZE elementi (si veda Timeline):
+    inserimenti e rimozioni costano O(log n + BLOCK_SIZE) e la visita dei k
+    post di un intervallo di tempo costa O(log n + k).
+
+    Elemento tipico: [<id_0, millis_0, nanos_0>, ... , <id_n-1, millis_n-1, nanos_n-1>]
+
+    AF(c): concatenazione di blocks.get(0), ... , blocks.get(blocks.size() - 1)
+    IR(c): blocks != null && blocks.contains(null) == false &&
+           forall b. blocks.contains(b) => 0 < b.size() <= BLOCK_SIZE &&
+           forall i. i in [1, blocks.size()) => l'ultima chiave di blocks.get(i-1)
+            precede la prima chiave di blocks.get(i) &&
+           size == sum_{b in blocks} b.size()
+  */
+  private List<Timeline> blocks; // blocchi ordinati e non vuoti
+  private int size; // numero di post indicizzati
+
+  private static final int BLOCK_SIZE = 512; // numero massimo di chiavi per blocco
+
+  /*
+    Metodo costruttore che inizializza un indice vuoto
+
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this
+  */
+  public TimeIndex(){
+    this.blocks = new ArrayList<Timeline>();
+    this.size = 0;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di post indicizzati
+  */
+  public int size(){
+    return size;
+  }
+
+  /*
+    REQUIRES: id >= 0
+    THROWS: IllegalArgumentException se id < 0
+    MODIFIES: this
+    EFFECTS: inserisce la chiave <postMillis, postNanos, id>; restituisce vero se non
+             era già presente, falso altrimenti
+  */
+  public boolean add(int id, long postMillis, int postNanos) throws IllegalArgumentException{
+    if( id < 0 ){
+      throw new IllegalArgumentException("The id must be non negative");
+    }
+    int blockIndex = Math.min(blockOf(postMillis, postNanos, id), blocks.size() - 1);
+    if( blockIndex < 0 ){ // indice vuoto: creo il primo blocco
+      blocks.add(new Timeline());
+      blockIndex = 0;
+    }
+    Timeline block = blocks.get(blockIndex);
+    if( block.add(id, postMillis, postNanos) == false ){
+      return false;
+    }
+    if( block.size() > BLOCK_SIZE ){
+      blocks.add(blockIndex + 1, block.split());
+    }
+    size += 1;
+    return true;
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: rimuove la chiave <postMillis, postNanos, id>; restituisce vero se era
+             presente, falso altrimenti
+  */
+  public boolean remove(int id, long postMillis, int postNanos){
+    int blockIndex = blockOf(postMillis, postNanos, id);
+    if( blockIndex == blocks.size() || blocks.get(blockIndex).remove(id, postMillis, postNanos) == false ){
+      return false;
+    }
+    if( blocks.get(blockIndex).isEmpty() ){
+      blocks.remove(blockIndex);
+    }
+    size -= 1;
+    return true;
+  }
+
+  /*
+    EFFECTS: restituisce vero se la chiave <postMillis, postNanos, id> è presente, falso altrimenti
+  */
+  public boolean contains(int id, long postMillis, int postNanos){
+    int blockIndex = blockOf(postMillis, postNanos, id);
+    return blockIndex < blocks.size() && blocks.get(blockIndex).indexOf(postMillis, postNanos, id) >= 0;
+  }
+
+  /*
+    Applica action agli id dei post con timestamp compreso (estremi inclusi) tra
+    <fromMillis, fromNanos> e <toMillis, toNanos>, in ordine di timestamp;
+    action non deve modificare this.
+
+    REQUIRES: action != null
+    THROWS: NullPointerException se action == null
+    EFFECTS: restituisce il numero di post visitati
+  */
+  public int forEachBetween(long fromMillis, int fromNanos, long toMillis, int toNanos, IntConsumer action) throws NullPointerException{
+    if( action == null ){
+      throw new NullPointerException();
+    }
+    // gli id sono non negativi: -1 precede ogni post con timestamp <fromMillis, fromNanos>
+    int blockIndex = blockOf(fromMillis, fromNanos, -1);
+    if( blockIndex == blocks.size() ){
+      return 0;
+    }
+    int index = -(blocks.get(blockIndex).indexOf(fromMillis, fromNanos, -1) + 1);
+    int visited = 0;
+    for(; blockIndex < blocks.size(); blockIndex++, index = 0){
+      Timeline block = blocks.get(blockIndex);
+      for(; index < block.size(); index++){
+        if( Timeline.compare(block.millis(index), block.nanos(index), 0, toMillis, toNanos, 0) > 0 ){
+          return visited;
+        }
+        action.accept(block.id(index));
+        visited += 1;
+      }
+    }
+    return visited;
+  }
+
+  /*
+    EFFECTS: restituisce l'indice del primo blocco la cui ultima chiave non precede
+             <keyMillis, keyNanos, keyId>, blocks.size() se non esiste
+  */
+  private int blockOf(long keyMillis, int keyNanos, int keyId){
+    int low = 0;
+    int high = blocks.size() - 1;
+    while( low <= high ){
+      int middle = (low + high) >>> 1;
+      Timeline block = blocks.get(middle);
+      int last = block.size() - 1;
+      if( Timeline.compare(block.millis(last), block.nanos(last), block.id(last), keyMillis, keyNanos, keyId) < 0 ){
+        low = middle + 1;
+      }
+      else{
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    return blocks.toString();
+  }
+}
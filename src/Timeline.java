@@ -0,0 +1,308 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+public class Timeline{
+  /*
+    OVERVIEW: Timeline è un tipo di dato astratto modificabile che rappresenta
+    la sequenza degli id dei post di un utente, ordinata per timestamp e, a
+    parità di timestamp, per id (lo stesso ordine di SocialNetwork.TIMESTAMP_ORDER).
+    Accanto agli id sono memorizzate le chiavi di ordinamento (millisecondi e
+    nanosecondi del timestamp), così che ricerche e fusioni non debbano
+    consultare l'archivio dei post.
+
+    Elemento tipico: [<id_0, millis_0, nanos_0>, ... , <id_n-1, millis_n-1, nanos_n-1>]
+
+    AF(c): [<ids[i], millis[i], nanos[i]> | i in [0, size)]
+    IR(c): ids != null && millis != null && nanos != null &&
+           ids.length == millis.length == nanos.length && 0 <= size <= ids.length &&
+           forall i. i in [0, size) => ids[i] >= 0 &&
+           forall i. i in [1, size) => compare(i-1, i) < 0
+  */
+  private int ids[]; // id dei post, in ordine
+  private long millis[]; // millisecondi dall'epoch dei timestamp
+  private int nanos[]; // nanosecondi dei timestamp
+  private int size; // numero di post nella sequenza
+
+  private static final int DEFAULT_CAPACITY = 4; // capacità iniziale (molti utenti scrivono pochi post)
+
+  /*
+    Metodo costruttore che inizializza una sequenza vuota
+
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this
+  */
+  public Timeline(){
+    this.ids = new int[DEFAULT_CAPACITY];
+    this.millis = new long[DEFAULT_CAPACITY];
+    this.nanos = new int[DEFAULT_CAPACITY];
+    this.size = 0;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di post nella sequenza
+  */
+  public int size(){
+    return size;
+  }
+
+  /*
+    EFFECTS: restituisce vero se la sequenza è vuota, falso altrimenti
+  */
+  public boolean isEmpty(){
+    return size == 0;
+  }
+
+  /*
+    REQUIRES: 0 <= index < size()
+    THROWS: IndexOutOfBoundsException se index < 0 || index >= size()
+    EFFECTS: restituisce l'id del post in posizione index
+  */
+  public int id(int index) throws IndexOutOfBoundsException{
+    return ids[checkIndex(index)];
+  }
+
+  /*
+    REQUIRES: 0 <= index < size()
+    THROWS: IndexOutOfBoundsException se index < 0 || index >= size()
+    EFFECTS: restituisce i millisecondi del timestamp del post in posizione index
+  */
+  public long millis(int index) throws IndexOutOfBoundsException{
+    return millis[checkIndex(index)];
+  }
+
+  /*
+    REQUIRES: 0 <= index < size()
+    THROWS: IndexOutOfBoundsException se index < 0 || index >= size()
+    EFFECTS: restituisce i nanosecondi del timestamp del post in posizione index
+  */
+  public int nanos(int index) throws IndexOutOfBoundsException{
+    return nanos[checkIndex(index)];
+  }
+
+  /*
+    Inserisce il post mantenendo l'ordine; l'inserimento in coda (post più
+    recente di tutti quelli presenti, il caso comune) avviene in tempo costante
+    ammortizzato.
+
+    REQUIRES: id >= 0
+    THROWS: IllegalArgumentException se id < 0
+    MODIFIES: this
+    EFFECTS: inserisce <id, postMillis, postNanos> nella sequenza; restituisce vero
+             se non era già presente, falso altrimenti
+  */
+  public boolean add(int id, long postMillis, int postNanos) throws IllegalArgumentException{
+    if( id < 0 ){
+      throw new IllegalArgumentException("The id must be non negative");
+    }
+    int index = indexOf(postMillis, postNanos, id);
+    if( index >= 0 ){
+      return false;
+    }
+    index = -(index + 1);
+    if( size == ids.length ){
+      ids = Arrays.copyOf(ids, size * 2);
+      millis = Arrays.copyOf(millis, size * 2);
+      nanos = Arrays.copyOf(nanos, size * 2);
+    }
+    System.arraycopy(ids, index, ids, index + 1, size - index);
+    System.arraycopy(millis, index, millis, index + 1, size - index);
+    System.arraycopy(nanos, index, nanos, index + 1, size - index);
+    ids[index] = id;
+    millis[index] = postMillis;
+    nanos[index] = postNanos;
+    size += 1;
+    return true;
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: rimuove <id, postMillis, postNanos> dalla sequenza; restituisce vero
+             se era presente, falso altrimenti
+  */
+  public boolean remove(int id, long postMillis, int postNanos){
+    int index = indexOf(postMillis, postNanos, id);
+    if( index < 0 ){
+      return false;
+    }
+    System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+    System.arraycopy(millis, index + 1, millis, index, size - index - 1);
+    System.arraycopy(nanos, index + 1, nanos, index, size - index - 1);
+    size -= 1;
+    return true;
+  }
+
+  /*
+    Ricerca binaria della chiave <keyMillis, keyNanos, keyId>.
+
+    EFFECTS: restituisce la posizione della chiave se presente, altrimenti
+             -(p + 1) dove p è il numero di elementi che la precedono
+  */
+  public int indexOf(long keyMillis, int keyNanos, int keyId){
+    int low = 0;
+    int high = size - 1;
+    while( low <= high ){
+      int middle = (low + high) >>> 1;
+      int result = compare(millis[middle], nanos[middle], ids[middle], keyMillis, keyNanos, keyId);
+      if( result < 0 ){
+        low = middle + 1;
+      }
+      else if( result > 0 ){
+        high = middle - 1;
+      }
+      else{
+        return middle;
+      }
+    }
+    return -(low + 1);
+  }
+
+  /*
+    Divide la sequenza a metà, spostando la seconda metà in una nuova sequenza.
+
+    MODIFIES: this
+    EFFECTS: this_post = this_pre[0, size_pre / 2) e restituisce una nuova sequenza
+             uguale a this_pre[size_pre / 2, size_pre)
+  */
+  public Timeline split(){
+    int half = size / 2;
+    Timeline upper = new Timeline();
+    int capacity = Math.max(DEFAULT_CAPACITY, ids.length);
+    upper.ids = Arrays.copyOfRange(ids, half, half + capacity);
+    upper.millis = Arrays.copyOfRange(millis, half, half + capacity);
+    upper.nanos = Arrays.copyOfRange(nanos, half, half + capacity);
+    upper.size = size - half;
+    size = half;
+    return upper;
+  }
+
+  /*
+    Applica action agli id dei post, dal meno recente al più recente;
+    action non deve modificare this.
+
+    REQUIRES: action != null
+    THROWS: NullPointerException se action == null
+  */
+  public void forEach(IntConsumer action) throws NullPointerException{
+    if( action == null ){
+      throw new NullPointerException();
+    }
+    for(int i = 0; i < size; i++){
+      action.accept(ids[i]);
+    }
+  }
+
+  /*
+    EFFECTS: restituisce un nuovo array con gli id dei post, in ordine
+  */
+  public int[] toArray(){
+    return Arrays.copyOf(ids, size);
+  }
+
+  /*
+    Fonde le sequenze sources procedendo dal post più recente al meno recente:
+    la sequenza sources[i] viene letta a partire dalla posizione ends[i] - 1
+    verso l'inizio. Le teste delle sequenze sono mantenute in un heap binario,
+    per cui ogni post prodotto costa O(log sources.length) e vengono letti
+    solo i post effettivamente prodotti (più una testa per sequenza).
+
+    REQUIRES: sources != null && ends != null && sources.length == ends.length &&
+              forall i. sources[i] != null && 0 <= ends[i] <= sources[i].size() &&
+              limit >= 0 && action != null
+    THROWS: NullPointerException se sources, ends o action sono null
+    EFFECTS: applica action agli id dei primi limit post (dal più recente) dell'unione
+             delle sottosequenze sources[i][0, ends[i]); restituisce il numero di
+             post prodotti
+  */
+  public static int mergeNewest(Timeline sources[], int ends[], int limit, IntConsumer action) throws NullPointerException{
+    if( sources == null || ends == null || action == null ){
+      throw new NullPointerException();
+    }
+    int heap[] = new int[sources.length]; // indici delle sequenze non esaurite
+    int positions[] = new int[sources.length]; // posizione della testa di ogni sequenza
+    int heapSize = 0;
+    for(int i = 0; i < sources.length; i++){
+      positions[i] = ends[i] - 1;
+      if( positions[i] >= 0 ){
+        heap[heapSize++] = i;
+      }
+    }
+    for(int i = heapSize / 2 - 1; i >= 0; i--){ // costruzione dell'heap in tempo lineare
+      siftDown(heap, heapSize, i, sources, positions);
+    }
+    int produced = 0;
+    while( produced < limit && heapSize > 0 ){
+      int source = heap[0];
+      action.accept(sources[source].ids[positions[source]]);
+      produced += 1;
+      positions[source] -= 1;
+      if( positions[source] < 0 ){ // sequenza esaurita: la tolgo dall'heap
+        heap[0] = heap[--heapSize];
+      }
+      siftDown(heap, heapSize, 0, sources, positions);
+    }
+    return produced;
+  }
+
+  /*
+    MODIFIES: heap
+    EFFECTS: ripristina la proprietà di max-heap (per testa più recente) a partire da index
+  */
+  private static void siftDown(int heap[], int heapSize, int index, Timeline sources[], int positions[]){
+    while( true ){
+      int largest = index;
+      int left = 2 * index + 1;
+      int right = left + 1;
+      if( left < heapSize && newer(heap[left], heap[largest], sources, positions) ){
+        largest = left;
+      }
+      if( right < heapSize && newer(heap[right], heap[largest], sources, positions) ){
+        largest = right;
+      }
+      if( largest == index ){
+        return;
+      }
+      int swap = heap[index];
+      heap[index] = heap[largest];
+      heap[largest] = swap;
+      index = largest;
+    }
+  }
+
+  /*
+    EFFECTS: restituisce vero se la testa della sequenza a è più recente di quella della sequenza b
+  */
+  private static boolean newer(int a, int b, Timeline sources[], int positions[]){
+    Timeline first = sources[a];
+    Timeline second = sources[b];
+    int i = positions[a];
+    int j = positions[b];
+    return compare(first.millis[i], first.nanos[i], first.ids[i], second.millis[j], second.nanos[j], second.ids[j]) > 0;
+  }
+
+  /*
+    EFFECTS: confronta le chiavi <millis, nanos, id> in ordine lessicografico
+  */
+  static int compare(long millis1, int nanos1, int id1, long millis2, int nanos2, int id2){
+    if( millis1 != millis2 ){
+      return Long.compare(millis1, millis2);
+    }
+    if( nanos1 != nanos2 ){
+      return Integer.compare(nanos1, nanos2);
+    }
+    return Integer.compare(id1, id2);
+  }
+
+  private int checkIndex(int index) throws IndexOutOfBoundsException{
+    if( index < 0 || index >= size ){
+      throw new IndexOutOfBoundsException(index);
+    }
+    return index;
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    return Arrays.toString(toArray());
+  }
+}
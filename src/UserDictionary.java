@@ -0,0 +1,219 @@
+import java.util.Set;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class UserDictionary{
+  /*
+    OVERVIEW: UserDictionary è un tipo di dato astratto modificabile che
+    associa ad ogni username un id intero denso (un indice piccolo e non
+    negativo), così che le strutture del social possano memorizzare gli
+    utenti come int primitivi. Gli id degli utenti rimossi vengono riusati
+    dagli utenti aggiunti successivamente, in modo da mantenere compatto
+    l'intervallo degli id.
+    Le associazioni sono memorizzate in mappe persistenti (si veda
+    PersistentHashMap), per cui freeze restituisce in tempo costante una vista
+    immutabile del dizionario, con cui le istantanee del social e le viste dei
+    likes traducono gli id anche dopo che sono stati riassegnati; l'array names
+    consente di tradurre gli id correnti in tempo costante.
+
+    Elemento tipico: { <username_0, id_0>, ... , <username_n-1, id_n-1> }
+
+    AF(c): { <u, ids.get(u)> | ids.containsKey(u) }
+    IR(c): ids != null && persistentNames != null && names != null && freeIds != null &&
+           ids.containsKey(null) == false &&
+           forall u. ids.containsKey(u) => ( 0 <= ids.get(u) < nextId && names[ids.get(u)].equals(u) &&
+            persistentNames.get(ids.get(u)).equals(u) ) &&
+           persistentNames.size() == ids.size() &&
+           ( frozen == null || ( frozen.ids == ids && frozen.names == persistentNames ) ) &&
+           forall i. 0 <= i < nextId => ( names[i] == null <=> i in freeIds[0, freeCount) ) &&
+           ids.size() + freeCount == nextId
+  */
+  private PersistentHashMap<String, Integer> ids; // mappa username -> id
+  private PersistentHashMap<Integer, String> persistentNames; // mappa id -> username
+  private Frozen frozen; // ultima vista restituita da freeze, null se il dizionario è cambiato da allora
+  private String names[]; // names[id] = username, null se l'id è libero
+  private int nextId; // primo id mai assegnato
+  private int freeIds[]; // pila degli id liberati dagli utenti rimossi
+  private int freeCount; // numero di elementi nella pila freeIds
+
+  /*
+    Metodo costruttore che inizializza un dizionario vuoto
+
+    MODIFIES: this
+    EFFECTS: inizializza le strutture dati di this
+  */
+  public UserDictionary(){
+    this.ids = PersistentHashMap.empty();
+    this.persistentNames = PersistentHashMap.empty();
+    this.frozen = null;
+    this.names = new String[16];
+    this.nextId = 0;
+    this.freeIds = new int[16];
+    this.freeCount = 0;
+  }
+
+  /*
+    REQUIRES: username != null && username non è presente nel dizionario
+    THROWS: NullPointerException se username == null
+            IllegalArgumentException se username è già presente
+    MODIFIES: this
+    EFFECTS: assegna a username un id (riusando, se possibile, quello di un utente
+             rimosso) e lo restituisce
+  */
+  public int add(String username) throws NullPointerException, IllegalArgumentException{
+    if( username == null ){
+      throw new NullPointerException();
+    }
+    if( ids.containsKey(username) ){
+      throw new IllegalArgumentException("The user already has an id");
+    }
+    int id;
+    if( freeCount > 0 ){
+      id = freeIds[--freeCount];
+    }
+    else{
+      id = nextId++;
+      if( id == names.length ){
+        names = Arrays.copyOf(names, names.length * 2);
+      }
+    }
+    names[id] = username;
+    ids = ids.plus(username, id);
+    persistentNames = persistentNames.plus(id, username);
+    frozen = null;
+    return id;
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: rimuove username dal dizionario e ne restituisce l'id, che potrà essere
+             riassegnato; restituisce -1 se username non era presente
+  */
+  public int remove(String username){
+    Integer id = username == null ? null : ids.get(username);
+    if( id == null ){
+      return -1;
+    }
+    ids = ids.minus(username);
+    persistentNames = persistentNames.minus(id);
+    frozen = null;
+    names[id] = null;
+    if( freeCount == freeIds.length ){
+      freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+    }
+    freeIds[freeCount++] = id;
+    return id;
+  }
+
+  /*
+    EFFECTS: restituisce l'id di username, -1 se username non è presente
+  */
+  public int idOf(String username){
+    Integer id = username == null ? null : ids.get(username);
+    return id == null ? -1 : id;
+  }
+
+  /*
+    EFFECTS: restituisce l'username con id id, null se l'id non è assegnato
+  */
+  public String nameOf(int id){
+    return id >= 0 && id < nextId ? names[id] : null;
+  }
+
+  /*
+    EFFECTS: restituisce il numero di utenti nel dizionario
+  */
+  public int size(){
+    return ids.size();
+  }
+
+  /*
+    EFFECTS: restituisce un limite superiore (escluso) degli id assegnati, utile
+             per dimensionare le strutture indicizzate per id
+  */
+  public int idBound(){
+    return nextId;
+  }
+
+  /*
+    EFFECTS: restituisce l'insieme (immutabile) degli username presenti; le
+             modifiche successive del dizionario non sono visibili in esso
+  */
+  public Set<String> usernames(){
+    return Collections.unmodifiableSet(ids.keySet());
+  }
+
+  /*
+    EFFECTS: restituisce, in tempo costante, una vista immutabile dello stato
+             corrente del dizionario
+  */
+  public Frozen freeze(){
+    if( frozen == null ){
+      frozen = new Frozen(ids, persistentNames);
+    }
+    return frozen;
+  }
+
+  /*
+    EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+  */
+  public String toString(){
+    return ids.toString();
+  }
+
+  /*
+    OVERVIEW: Frozen è un tipo di dato astratto immutabile che rappresenta lo
+    stato di un UserDictionary in un preciso istante; condivide la struttura
+    con le mappe persistenti del dizionario, per cui non ne viene fatta copia.
+
+    AF(c): { <u, ids.get(u)> | ids.containsKey(u) }
+    IR(c): ids != null && names != null &&
+           forall u. ids.containsKey(u) => names.get(ids.get(u)).equals(u) &&
+           ids.size() == names.size()
+  */
+  public static final class Frozen{
+    private final PersistentHashMap<String, Integer> ids; // mappa username -> id
+    private final PersistentHashMap<Integer, String> names; // mappa id -> username
+
+    private Frozen(PersistentHashMap<String, Integer> ids, PersistentHashMap<Integer, String> names){
+      this.ids = ids;
+      this.names = names;
+    }
+
+    /*
+      EFFECTS: restituisce l'id di username, -1 se username non è presente
+    */
+    public int idOf(String username){
+      Integer id = username == null ? null : ids.get(username);
+      return id == null ? -1 : id;
+    }
+
+    /*
+      EFFECTS: restituisce l'username con id id, null se l'id non è assegnato
+    */
+    public String nameOf(int id){
+      return names.get(id);
+    }
+
+    /*
+      EFFECTS: restituisce il numero di utenti nel dizionario
+    */
+    public int size(){
+      return ids.size();
+    }
+
+    /*
+      EFFECTS: restituisce l'insieme (immutabile) degli username presenti
+    */
+    public Set<String> usernames(){
+      return Collections.unmodifiableSet(ids.keySet());
+    }
+
+    /*
+      EFFECTS: Il metodo restituisce una rappresentazione testuale di this
+    */
+    public String toString(){
+      return ids.toString();
+    }
+  }
+}
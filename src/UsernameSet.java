@@ -0,0 +1,56 @@
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public final class UsernameSet extends AbstractSet<String>{
+  /*
+    OVERVIEW: UsernameSet è una vista immutabile che presenta come insieme di
+    username un insieme persistente di id utente (si veda PersistentIntSet),
+    traducendo gli id con una vista congelata del dizionario (si veda
+    UserDictionary.freeze) solo quando vengono letti: la vista viene creata in
+    tempo costante e contains e size non copiano alcun elemento.
+
+    AF(c): { users.nameOf(i) | ids.contains(i) }
+    IR(c): ids != null && users != null && forall i. ids.contains(i) => users.nameOf(i) != null
+  */
+  private final PersistentIntSet ids; // id degli utenti
+  private final UserDictionary.Frozen users; // dizionario con cui tradurre gli id
+
+  /*
+    REQUIRES: ids != null && users != null && forall i. ids.contains(i) => users.nameOf(i) != null
+    THROWS: NullPointerException se ids == null || users == null
+    EFFECTS: inizializza la vista, senza copiare ids
+  */
+  public UsernameSet(PersistentIntSet ids, UserDictionary.Frozen users) throws NullPointerException{
+    if( ids == null || users == null ){
+      throw new NullPointerException();
+    }
+    this.ids = ids;
+    this.users = users;
+  }
+
+  public int size(){
+    return ids.size();
+  }
+
+  public boolean contains(Object username){
+    return username instanceof String && ids.contains(users.idOf((String) username));
+  }
+
+  public Iterator<String> iterator(){
+    PrimitiveIterator.OfInt iterator = ids.iterator();
+    return new Iterator<String>(){
+      public boolean hasNext(){
+        return iterator.hasNext();
+      }
+
+      public String next(){
+        if( iterator.hasNext() == false ){
+          throw new NoSuchElementException();
+        }
+        return users.nameOf(iterator.nextInt());
+      }
+    };
+  }
+}
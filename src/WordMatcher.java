@@ -0,0 +1,135 @@
+public class WordMatcher{
+  /*
+    OVERVIEW: WordMatcher raccoglie le funzioni per la ricerca di parole
+    esatte all'interno del testo di un post. La ricerca non è case sensitive
+    e rispetta i word boundary, con la stessa semantica dell'espressione
+    regolare "\\b" + word + "\\b", ma i caratteri della parola sono sempre
+    confrontati letteralmente (i metacaratteri delle espressioni regolari
+    non hanno alcun significato speciale). La scansione avviene direttamente
+    sull'array di caratteri del testo, senza allocare oggetti.
+
+    Un carattere di parola è un carattere alfanumerico oppure '_'; tra le
+    posizioni i-1 e i del testo c'è un boundary se esattamente uno dei due
+    caratteri è un carattere di parola (l'esterno del testo non lo è).
+  */
+
+  private WordMatcher(){}
+
+  /*
+    Restituisce vero se text contiene word come parola esatta, falso altrimenti.
+
+    REQUIRES: text != null && word != null
+    THROWS: NullPointerException se text == null || word == null
+    EFFECTS: Ritorna vero se exist i. i in [0, text.length - word.length()] t.c.
+             boundary(text, i) && boundary(text, i + word.length()) &&
+             text[i, i + word.length()) è uguale a word ignorando maiuscole e minuscole,
+             falso altrimenti
+  */
+  public static boolean containsWord(char text[], String word) throws NullPointerException{
+    if( text == null || word == null ){
+      throw new NullPointerException();
+    }
+    int last = text.length - word.length(); // ultima posizione di partenza utile
+    for(int i = 0; i <= last; i++){
+      if( matchesAt(text, text.length, i, word) ){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+    Restituisce vero se text contiene almeno una delle parole di words; il testo
+    viene percorso una sola volta, confrontando ad ogni boundary tutte le parole.
+
+    REQUIRES: text != null && words != null && forall i. i in [0, words.length) => words[i] != null
+    THROWS: NullPointerException se text == null || words == null || exist i. words[i] == null
+    EFFECTS: Ritorna vero se exist i. i in [0, words.length) t.c. containsWord(text, words[i]),
+             falso altrimenti
+  */
+  public static boolean containsAnyWord(char text[], String words[]) throws NullPointerException{
+    if( text == null ){
+      throw new NullPointerException();
+    }
+    return containsAnyWord(text, text.length, words);
+  }
+
+  /*
+    Come containsAnyWord(char[], String[]), considerando come testo solo i
+    primi length caratteri di text; permette di riusare lo stesso buffer per
+    testi diversi.
+
+    REQUIRES: text != null && 0 <= length <= text.length && words != null &&
+              forall i. i in [0, words.length) => words[i] != null
+    THROWS: NullPointerException se text == null || words == null || exist i. words[i] == null
+            IndexOutOfBoundsException se length < 0 || length > text.length
+    EFFECTS: Ritorna containsAnyWord(Arrays.copyOf(text, length), words)
+  */
+  public static boolean containsAnyWord(char text[], int length, String words[]) throws NullPointerException, IndexOutOfBoundsException{
+    if( text == null || words == null ){
+      throw new NullPointerException();
+    }
+    if( length < 0 || length > text.length ){
+      throw new IndexOutOfBoundsException(length);
+    }
+    for(int j = 0; j < words.length; j++){
+      if( words[j] == null ){
+        throw new NullPointerException();
+      }
+    }
+    for(int i = 0; i <= length; i++){
+      for(int j = 0; j < words.length; j++){
+        if( i + words[j].length() <= length && matchesAt(text, length, i, words[j]) ){
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /*
+    EFFECTS: restituisce vero se c è un carattere di parola, falso altrimenti
+  */
+  public static boolean isWordChar(char c){
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+
+  /*
+    EFFECTS: restituisce la forma case-folded del carattere c
+  */
+  public static char fold(char c){
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+
+  /*
+    REQUIRES: 0 <= start && start + word.length() <= length <= text.length
+    EFFECTS: restituisce vero se word compare come parola esatta a partire
+             dalla posizione start dei primi length caratteri di text, falso altrimenti
+  */
+  private static boolean matchesAt(char text[], int length, int start, String word){
+    int wordLength = word.length();
+    if( wordLength > 0 && fold(text[start]) != fold(word.charAt(0)) ){ // scarto veloce sul primo carattere
+      return false;
+    }
+    if( isBoundary(text, length, start) == false || isBoundary(text, length, start + wordLength) == false ){
+      return false;
+    }
+    for(int k = 1; k < wordLength; k++){
+      if( fold(text[start + k]) != fold(word.charAt(k)) ){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /*
+    REQUIRES: 0 <= position <= length <= text.length
+    EFFECTS: restituisce vero se tra le posizioni position-1 e position dei primi
+             length caratteri di text c'è un word boundary, falso altrimenti
+  */
+  private static boolean isBoundary(char text[], int length, int position){
+    boolean wordBefore = position > 0 && isWordChar(text[position - 1]);
+    boolean wordAfter = position < length && isWordChar(text[position]);
+    return wordBefore != wordAfter;
+  }
+}
@@ -0,0 +1,454 @@
+import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+public class WriteAheadLog implements Closeable{
+  /*
+    OVERVIEW: WriteAheadLog è un registro binario in sola aggiunta, memorizzato
+    in un file, in cui ogni record è composto da un tipo e da un contenuto.
+    I record vengono accumulati in memoria e scritti su disco a gruppi (group
+    commit): la scrittura, seguita da un'unica sincronizzazione (fsync), avviene
+    quando il gruppo raggiunge groupSize record oppure quando dall'ultima
+    sincronizzazione sono trascorsi almeno groupMillis millisecondi, oltre che
+    con sync() e close(). Il limite di tempo vale anche se non arrivano altri
+    record: un thread (daemon) del registro sincronizza ogni groupMillis
+    millisecondi i record in attesa, se non c'è un record aperto. In caso di
+    crash si perdono quindi al più i record dell'ultimo gruppo non ancora
+    sincronizzato, scritti negli ultimi groupMillis millisecondi circa.
+    I metodi pubblici sono sincronizzati su this, per escludere il thread di
+    sincronizzazione; il contenuto di un record va scritto dallo stesso thread
+    che lo ha aperto, tra beginRecord ed endRecord (o abortRecord).
+
+    Formato del file: MAGIC (int), FORMAT_VERSION (int), seguiti dai record
+    [lunghezza (int)][tipo (byte)][contenuto][CRC32 di tipo e contenuto (int)].
+    All'apertura il file viene letto fino al primo record incompleto o corrotto
+    (tipicamente scritto solo in parte durante un crash), che viene troncato
+    insieme a tutto ciò che lo segue.
+
+    IR(c): file != null && channel != null && channel è aperto in scrittura alla fine del file &&
+           pending != null && output scrive in pending && groupSize > 0 && groupNanos >= 0 &&
+           0 <= pendingRecords && ( pendingRecords == 0 && recordStart == -1 <=> pending.size() == 0 ) &&
+           durableSize == dimensione del file && recordStart == -1 se non c'è un record aperto
+  */
+  private final Path file; // file del registro
+  private FileChannel channel; // canale in scrittura sul file
+  private final RecordBuffer pending; // record non ancora scritti su disco
+  private final DataOutputStream output; // scrive nel buffer dei record in attesa
+  private int pendingRecords; // numero di record in attesa
+  private int recordStart; // posizione in pending del record aperto, -1 se nessuno
+  private long durableSize; // byte scritti e sincronizzati nel file
+  private long lastSync; // istante (System.nanoTime) dell'ultima sincronizzazione
+  private final int groupSize; // numero massimo di record per gruppo
+  private final long groupNanos; // attesa massima, in nanosecondi, prima di sincronizzare un gruppo
+  private final CRC32 checksum; // calcolo del CRC dei record
+  private final ScheduledExecutorService flusher; // sincronizza i gruppi scaduti, null se groupMillis == 0
+
+  private static final int MAGIC = 0x534E574C; // "SNWL"
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 8; // MAGIC e FORMAT_VERSION
+  static final int MAX_RECORD_SIZE = 1 << 30; // lunghezze maggiori indicano un record corrotto
+
+  /*
+    Interfaccia dei gestori dei record letti durante il ripristino
+  */
+  public interface RecordHandler{
+    /*
+      REQUIRES: in contiene esattamente il contenuto del record
+      EFFECTS: elabora il record di tipo type
+    */
+    void handle(int type, DataInput in) throws IOException;
+  }
+
+  /*
+    Interfaccia delle sorgenti che riscrivono il contenuto del registro durante la compattazione
+  */
+  public interface RecordSource{
+    /*
+      MODIFIES: log
+      EFFECTS: aggiunge a log, con beginRecord ed endRecord, i record che descrivono lo stato corrente
+    */
+    void writeTo(WriteAheadLog log) throws IOException;
+  }
+
+  /*
+    Apre (creandolo se non esiste) il registro memorizzato in file; l'eventuale
+    coda incompleta o corrotta del file viene troncata.
+
+    REQUIRES: file != null && groupSize > 0 && groupMillis >= 0
+    THROWS: NullPointerException se file == null
+            IllegalArgumentException se groupSize <= 0 || groupMillis < 0
+            IOException se il file non può essere letto o scritto oppure non è un registro
+    MODIFIES: this, file
+    EFFECTS: inizializza this in modo che i nuovi record vengano aggiunti in fondo al file
+  */
+  public WriteAheadLog(Path file, int groupSize, long groupMillis) throws NullPointerException, IllegalArgumentException, IOException{
+    if( file == null ){
+      throw new NullPointerException();
+    }
+    if( groupSize <= 0 || groupMillis < 0 ){
+      throw new IllegalArgumentException("The group size must be positive and the group delay non negative");
+    }
+    this.file = file;
+    this.groupSize = groupSize;
+    this.groupNanos = groupMillis * 1000000L;
+    this.checksum = new CRC32();
+    this.pending = new RecordBuffer();
+    this.output = new DataOutputStream(pending);
+    this.pendingRecords = 0;
+    this.recordStart = -1;
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try{
+      if( channel.size() == 0 ){
+        writeHeader(channel);
+        channel.force(true);
+      }
+      this.durableSize = scan(null);
+      channel.truncate(durableSize);
+      channel.position(durableSize);
+    }
+    catch(IOException e){
+      channel.close();
+      throw e;
+    }
+    this.lastSync = System.nanoTime();
+    if( groupMillis > 0 ){ // con groupMillis == 0 ogni endRecord sincronizza da sé
+      this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "write-ahead-log-flusher");
+        thread.setDaemon(true);
+        return thread;
+      });
+      flusher.scheduleWithFixedDelay(this::flushExpired, groupMillis, groupMillis, TimeUnit.MILLISECONDS);
+    }
+    else{
+      this.flusher = null;
+    }
+  }
+
+  /*
+    Rilegge, nell'ordine, tutti i record sincronizzati nel file.
+
+    REQUIRES: handler != null
+    THROWS: NullPointerException se handler == null
+            IOException se il file non può essere letto o se handler lancia IOException
+    EFFECTS: invoca handler su ogni record del file e restituisce il numero di record letti
+  */
+  public synchronized long replay(RecordHandler handler) throws NullPointerException, IOException{
+    if( handler == null ){
+      throw new NullPointerException();
+    }
+    long records[] = new long[1];
+    scan((type, in) -> {
+      handler.handle(type, in);
+      records[0] += 1;
+    });
+    return records[0];
+  }
+
+  /*
+    Inizia un nuovo record di tipo type, il cui contenuto va scritto
+    nell'oggetto restituito e chiuso con endRecord.
+
+    REQUIRES: 0 <= type <= 255 && non c'è un record aperto && this non è stato chiuso
+    THROWS: IllegalStateException se c'è già un record aperto
+            ClosedChannelException se this è stato chiuso
+    MODIFIES: this
+    EFFECTS: apre un record di tipo type e restituisce l'oggetto su cui scriverne il contenuto
+  */
+  public synchronized DataOutput beginRecord(int type) throws IllegalStateException, IOException{
+    if( channel.isOpen() == false ){
+      throw new ClosedChannelException();
+    }
+    if( recordStart != -1 ){
+      throw new IllegalStateException("A record is already open");
+    }
+    recordStart = pending.size();
+    output.writeInt(0); // lunghezza, aggiornata da endRecord
+    output.writeByte(type);
+    return output;
+  }
+
+  /*
+    Chiude il record aperto con beginRecord; se il gruppo corrente è completo
+    (o è trascorso il tempo massimo di attesa) i record in attesa vengono
+    scritti e sincronizzati su disco. Un record più lungo di MAX_RECORD_SIZE
+    verrebbe scambiato per un record corrotto alla riapertura, per cui viene
+    scartato.
+
+    THROWS: IllegalStateException se non c'è un record aperto
+            IOException se il record è troppo lungo (e viene scartato) o la scrittura su disco fallisce
+    MODIFIES: this
+  */
+  public synchronized void endRecord() throws IllegalStateException, IOException{
+    if( recordStart == -1 ){
+      throw new IllegalStateException("No record is open");
+    }
+    int length = pending.size() - recordStart - 4;
+    if( length > MAX_RECORD_SIZE ){
+      abortRecord();
+      throw new IOException("The record is longer than " + MAX_RECORD_SIZE + " bytes");
+    }
+    pending.patchInt(recordStart, length);
+    checksum.reset();
+    checksum.update(pending.array(), recordStart + 4, length);
+    output.writeInt((int) checksum.getValue());
+    recordStart = -1;
+    pendingRecords += 1;
+    if( pendingRecords >= groupSize || System.nanoTime() - lastSync >= groupNanos ){
+      sync();
+    }
+  }
+
+  /*
+    Scarta il record aperto con beginRecord, ad esempio perché la scrittura del
+    suo contenuto è fallita: i record in attesa tornano quelli precedenti a
+    beginRecord. Non ha effetto se non c'è un record aperto.
+
+    MODIFIES: this
+  */
+  public synchronized void abortRecord(){
+    if( recordStart != -1 ){
+      pending.truncate(recordStart);
+      recordStart = -1;
+    }
+  }
+
+  /*
+    I byte vengono scritti a partire da durableSize (e non dalla posizione del
+    canale), così che una scrittura fallita a metà venga sovrascritta dalla
+    successiva invece di lasciare nel file una copia parziale dei record.
+
+    THROWS: IOException se la scrittura su disco fallisce
+    MODIFIES: this
+    EFFECTS: scrive su disco i record in attesa e li sincronizza
+  */
+  public synchronized void sync() throws IOException{
+    if( pendingRecords > 0 ){
+      ByteBuffer buffer = ByteBuffer.wrap(pending.array(), 0, pending.size() - openRecordSize());
+      while( buffer.hasRemaining() ){
+        channel.write(buffer, durableSize + buffer.position());
+      }
+      channel.force(false);
+      durableSize += buffer.limit();
+      pending.discard(buffer.limit());
+      pendingRecords = 0;
+      if( recordStart != -1 ){
+        recordStart = 0;
+      }
+    }
+    lastSync = System.nanoTime();
+  }
+
+  /*
+    Riscrive il registro in un file temporaneo con i soli record prodotti da source,
+    che poi sostituisce atomicamente il file: un crash durante la compattazione
+    lascia intatto il registro precedente.
+
+    REQUIRES: source != null && non c'è un record aperto
+    THROWS: NullPointerException se source == null
+            IllegalStateException se c'è un record aperto
+            IOException se la scrittura del nuovo registro fallisce
+    MODIFIES: this, file
+    EFFECTS: il registro contiene esattamente i record scritti da source
+  */
+  public synchronized void compact(RecordSource source) throws NullPointerException, IllegalStateException, IOException{
+    if( source == null ){
+      throw new NullPointerException();
+    }
+    if( recordStart != -1 ){
+      throw new IllegalStateException("A record is open");
+    }
+    sync();
+    Path temporary = file.resolveSibling(file.getFileName() + ".compact");
+    FileChannel oldChannel = channel;
+    long oldSize = durableSize;
+    channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    try{
+      writeHeader(channel);
+      durableSize = HEADER_SIZE;
+      source.writeTo(this);
+      if( recordStart != -1 ){
+        throw new IllegalStateException("The source left a record open");
+      }
+      sync();
+      channel.force(true);
+      channel.close();
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch(IOException | RuntimeException e){ // ripristino il registro precedente
+      channel.close();
+      Files.deleteIfExists(temporary);
+      pending.discard(pending.size());
+      pendingRecords = 0;
+      recordStart = -1;
+      channel = oldChannel;
+      durableSize = oldSize;
+      throw e;
+    }
+    oldChannel.close();
+    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  /*
+    EFFECTS: restituisce la dimensione in byte del registro, compresi i record in attesa
+  */
+  public synchronized long size(){
+    return durableSize + pending.size();
+  }
+
+  /*
+    EFFECTS: restituisce il file del registro
+  */
+  public Path getFile(){
+    return file;
+  }
+
+  /*
+    MODIFIES: this
+    EFFECTS: sincronizza i record in attesa, chiude il file e ferma il thread di sincronizzazione
+  */
+  public synchronized void close() throws IOException{
+    if( flusher != null ){
+      flusher.shutdown();
+    }
+    if( channel.isOpen() ){
+      try{
+        sync();
+      }
+      finally{
+        channel.close();
+      }
+    }
+  }
+
+  /*
+    Eseguito ogni groupMillis millisecondi dal thread di sincronizzazione:
+    sincronizza i record in attesa, a meno che un record sia aperto (il suo
+    endRecord verificherà il tempo di attesa). Se la scrittura fallisce
+    i record restano in attesa e l'errore viene segnalato dalla prossima
+    sincronizzazione eseguita da endRecord, sync o close.
+  */
+  private synchronized void flushExpired(){
+    if( pendingRecords > 0 && recordStart == -1 && channel.isOpen() ){
+      try{
+        sync();
+      }
+      catch(IOException e){ // segnalato dalla prossima sincronizzazione
+      }
+    }
+  }
+
+  /*
+    Legge i record completi e integri a partire dall'inizio del file, invocando
+    handler (se non è null) su ciascuno.
+
+    THROWS: IOException se il file non è un registro o non può essere letto
+    EFFECTS: restituisce la posizione in cui termina l'ultimo record integro
+  */
+  private long scan(RecordHandler handler) throws IOException{
+    long end = channel.size(); // i record in attesa non sono ancora nel file
+    if( end < HEADER_SIZE ){
+      throw new IOException("The file " + file + " is not a write-ahead log");
+    }
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    readFully(header, 0);
+    if( header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION ){
+      throw new IOException("The file " + file + " is not a write-ahead log");
+    }
+    long position = HEADER_SIZE;
+    ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+    CRC32 crc = new CRC32();
+    while( position + 4 <= end ){
+      lengthBuffer.clear();
+      readFully(lengthBuffer, position);
+      int length = lengthBuffer.getInt(0);
+      if( length < 1 || length > MAX_RECORD_SIZE || position + 4 + length + 4 > end ){
+        break; // record incompleto o lunghezza corrotta
+      }
+      ByteBuffer record = ByteBuffer.allocate(length + 4);
+      readFully(record, position + 4);
+      crc.reset();
+      crc.update(record.array(), 0, length);
+      if( (int) crc.getValue() != record.getInt(length) ){
+        break; // contenuto corrotto
+      }
+      if( handler != null ){
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.array(), 1, length - 1));
+        handler.handle(record.get(0) & 0xFF, in);
+      }
+      position += 4 + length + 4;
+    }
+    return position;
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException{
+    while( buffer.hasRemaining() ){
+      int read = channel.read(buffer, position + buffer.position());
+      if( read < 0 ){
+        throw new IOException("Unexpected end of the write-ahead log");
+      }
+    }
+  }
+
+  private static void writeHeader(FileChannel channel) throws IOException{
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+    while( header.hasRemaining() ){
+      channel.write(header, header.position());
+    }
+    channel.position(HEADER_SIZE);
+  }
+
+  /*
+    EFFECTS: restituisce la dimensione in byte dell'eventuale record aperto
+  */
+  private int openRecordSize(){
+    return recordStart == -1 ? 0 : pending.size() - recordStart;
+  }
+
+  /*
+    Buffer dei record in attesa, che espone l'array interno per evitarne la copia
+  */
+  private static final class RecordBuffer extends ByteArrayOutputStream{
+    RecordBuffer(){
+      super(8192);
+    }
+
+    byte[] array(){
+      return buf;
+    }
+
+    void patchInt(int position, int value){
+      buf[position] = (byte) (value >>> 24);
+      buf[position + 1] = (byte) (value >>> 16);
+      buf[position + 2] = (byte) (value >>> 8);
+      buf[position + 3] = (byte) value;
+    }
+
+    // elimina gli ultimi byte, a partire da size
+    void truncate(int size){
+      count = size;
+    }
+
+    // elimina i primi length byte, spostando in testa gli eventuali byte successivi
+    void discard(int length){
+      System.arraycopy(buf, length, buf, 0, count - length);
+      count -= length;
+    }
+  }
+}